@@ -0,0 +1,89 @@
+package se.moln.ecommerceintegration.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of requests in flight. With virtual threads Tomcat no longer stops at
+ * maxThreads, so without this every request beyond the JDBC pool size would park inside
+ * Hikari until connectionTimeout and then fail with a 500. Here the excess waits up to
+ * {@code maxWaitMillis} for a permit and is then shed with 429 + Retry-After.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final long retryAfterSeconds;
+
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public ConcurrencyLimitFilter(int maxConcurrent, long maxWaitMillis, long retryAfterSeconds, MeterRegistry registry) {
+        this.maxConcurrent = Math.max(maxConcurrent, 1);
+        this.permits = new Semaphore(this.maxConcurrent);
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        Gauge.builder("http.server.concurrency.in.flight", permits, p -> this.maxConcurrent - p.availablePermits())
+                .description("Requests holding a concurrency permit")
+                .register(registry);
+        this.waitTimer = Timer.builder("http.server.concurrency.wait")
+                .description("Time spent waiting for a concurrency permit")
+                .register(registry);
+        this.rejected = Counter.builder("http.server.concurrency.rejected")
+                .description("Requests shed with 429 because no permit became free in time")
+                .register(registry);
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // health probes must answer even when the app is saturated
+        return request.getRequestURI().startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        long t0 = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        waitTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+
+        if (!acquired) {
+            rejected.increment();
+            res.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            res.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+            res.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            res.getWriter().write("{\"error\":\"too_many_requests\",\"message\":\"Server busy, try again later\"}");
+            return;
+        }
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package se.moln.ecommerceintegration.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams the JFR {@code jdk.VirtualThreadPinned} event in-process, so a virtual thread that
+ * blocks while pinned to its carrier (inside {@code synchronized} or a native frame) shows up
+ * as a metric and a rate-limited warning with the blocking frame, instead of as unexplained
+ * throughput loss.
+ */
+public class VirtualThreadPinningMonitor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final long LOG_INTERVAL_NANOS = Duration.ofMinutes(1).toNanos();
+
+    private final RecordingStream stream;
+    private final Counter pinned;
+    private final AtomicLong lastLogged = new AtomicLong(System.nanoTime() - LOG_INTERVAL_NANOS);
+
+    public VirtualThreadPinningMonitor(Duration threshold, MeterRegistry registry) {
+        this.pinned = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads that blocked while pinned longer than the threshold")
+                .register(registry);
+        this.stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+        stream.startAsync();
+    }
+
+    private void onPinned(RecordedEvent e) {
+        pinned.increment();
+        long now = System.nanoTime();
+        long last = lastLogged.get();
+        if (now - last >= LOG_INTERVAL_NANOS && lastLogged.compareAndSet(last, now)) {
+            log.warn("Virtual thread pinned for {} ms at {}", e.getDuration().toMillis(), topFrame(e));
+        }
+    }
+
+    private static String topFrame(RecordedEvent e) {
+        if (e.getStackTrace() == null) return "?";
+        // skip JDK frames so the log points at the synchronized block in our (or a library's) code
+        for (RecordedFrame f : e.getStackTrace().getFrames()) {
+            String type = f.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+                return type + "." + f.getMethod().getName() + ":" + f.getLineNumber();
+            }
+        }
+        return "?";
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
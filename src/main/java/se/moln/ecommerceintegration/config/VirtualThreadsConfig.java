@@ -0,0 +1,68 @@
+package se.moln.ecommerceintegration.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Virtual-thread mode, switched on with {@code spring.threads.virtual.enabled=true}.
+ * Boot then runs Tomcat requests and the {@code applicationTaskExecutor} (used by @Async)
+ * on virtual threads; this class adds the guards that mode needs.
+ * <ul>
+ *   <li>{@link ConcurrencyLimitFilter}: bounds in-flight requests to a multiple of the JDBC pool.</li>
+ *   <li>{@link VirtualThreadPinningMonitor}: reports carrier pinning via JFR.</li>
+ * </ul>
+ * Password hashing keeps its own bounded platform pool (PasswordHashingService); virtual threads
+ * only wait on it, they never run bcrypt on a carrier.
+ */
+@Configuration
+@EnableAsync
+public class VirtualThreadsConfig {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadsConfig.class);
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    @ConditionalOnProperty(name = "virtual-threads.concurrency-limit.enabled", matchIfMissing = true)
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            DataSource dataSource,
+            MeterRegistry registry,
+            @Value("${virtual-threads.concurrency-limit.max-requests:0}") int maxRequests,
+            @Value("${virtual-threads.concurrency-limit.pool-multiplier:2}") int poolMultiplier,
+            @Value("${virtual-threads.concurrency-limit.max-wait-ms:500}") long maxWaitMs,
+            @Value("${virtual-threads.concurrency-limit.retry-after-seconds:1}") long retryAfterSeconds) {
+        // 0 = derive from the connection pool: a few requests may queue for a connection, not thousands
+        int limit = maxRequests > 0 ? maxRequests : poolSize(dataSource) * Math.max(poolMultiplier, 1);
+        log.info("Virtual threads enabled: limiting in-flight requests to {}", limit);
+
+        var reg = new FilterRegistrationBean<>(new ConcurrencyLimitFilter(limit, maxWaitMs, retryAfterSeconds, registry));
+        reg.setOrder(Ordered.HIGHEST_PRECEDENCE + 10); // före security, så överlast avvisas billigt
+        return reg;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    @ConditionalOnProperty(name = "virtual-threads.pinning-monitor.enabled", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            MeterRegistry registry,
+            @Value("${virtual-threads.pinning-monitor.threshold-ms:20}") long thresholdMs) {
+        return new VirtualThreadPinningMonitor(Duration.ofMillis(thresholdMs), registry);
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikari) return hikari.getMaximumPoolSize();
+        return 10; // Hikari default
+    }
+}
@@ -7,28 +7,33 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import se.moln.ecommerceintegration.dto.ErrorResponse;
 import se.moln.ecommerceintegration.model.ActivityLog;
-import se.moln.ecommerceintegration.repository.ActivityLogRepository;
+import se.moln.ecommerceintegration.security.AuthenticatedUser;
+import se.moln.ecommerceintegration.service.ActivityHistoryService;
 
+import java.time.Instant;
 import java.util.List;
 
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
 @RestController
 public class ActivityLogController {
 
-    private final ActivityLogRepository repo;
+    private final ActivityHistoryService history;
 
-    public ActivityLogController(ActivityLogRepository repo) {
-        this.repo = repo;
+    public ActivityLogController(ActivityHistoryService history) {
+        this.history = history;
     }
 
     @GetMapping("/users/history")
     @Operation(
             summary = "Get last 50 activity logs for the authenticated user",
-            description = "Returns the most recent 50 activity log entries for the current user.",
+            description = "Returns the most recent 50 activity log entries for the current user, optionally limited to from <= createdAt < to (ISO-8601 instants).",
             security = @SecurityRequirement(name = "bearerAuth")
     )
     @ApiResponse(
@@ -88,14 +93,10 @@ public class ActivityLogController {
                     )
             )
     )
-    public List<ActivityLog> myHistory(@AuthenticationPrincipal Object principal) {
-        String email = extractEmail(principal);
-        return repo.findTop50ByUserEmailOrderByCreatedAtDesc(email);
-    }
-
-    private String extractEmail(Object principal) {
-        if (principal instanceof UserDetails ud) return ud.getUsername();
-        if (principal instanceof String s) return s;
-        throw new IllegalStateException("Unsupported principal type: " + principal);
+    public List<ActivityLog> myHistory(@AuthenticationPrincipal AuthenticatedUser principal,
+                                       @RequestParam(required = false) Instant from,
+                                       @RequestParam(required = false) Instant to) {
+        if (principal == null) throw new ResponseStatusException(UNAUTHORIZED, "Unauthorized");
+        return history.history(principal.email(), from, to);
     }
 }
\ No newline at end of file
@@ -29,10 +29,12 @@ public class ApiExceptionHandler {
             case 401 -> "unauthorized";
             case 403 -> "forbidden";
             case 404 -> "not_found";
+            case 429 -> "too_many_requests";
             default -> ex.getStatusCode().is4xxClientError() ? "client_error" : "error";
         };
         String message = ex.getReason() != null ? ex.getReason() : ex.getStatusCode().toString();
         return ResponseEntity.status(ex.getStatusCode())
+                .headers(ex.getHeaders())
                 .body(Map.of(
                         "error", errorCode,
                         "message", message
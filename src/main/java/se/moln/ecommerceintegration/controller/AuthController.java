@@ -7,18 +7,25 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.bind.annotation.*;
 import se.moln.ecommerceintegration.dto.AuthResponse;
 import se.moln.ecommerceintegration.dto.LoginRequest;
+import se.moln.ecommerceintegration.dto.RefreshRequest;
 import se.moln.ecommerceintegration.dto.RegisterRequest;
 import se.moln.ecommerceintegration.model.User;
 import se.moln.ecommerceintegration.repository.UserRepository;
+import se.moln.ecommerceintegration.security.AuthenticatedUser;
+import se.moln.ecommerceintegration.security.LoginThrottle;
 import se.moln.ecommerceintegration.service.JwtService;
 import se.moln.ecommerceintegration.dto.ErrorResponse;
+import se.moln.ecommerceintegration.service.PasswordHashingService;
+import se.moln.ecommerceintegration.service.RefreshTokenService;
+import se.moln.ecommerceintegration.service.TokenRevocationService;
 import se.moln.ecommerceintegration.service.UserService;
 
 @RestController
@@ -28,18 +35,28 @@ public class AuthController {
     private final UserService userService;
     private final UserRepository users;
     private final JwtService jwt;
+    private final PasswordHashingService passwordHashing;
+    private final LoginThrottle loginThrottle;
+    private final RefreshTokenService refreshTokens;
+    private final TokenRevocationService revocations;
 
-    public AuthController(UserService userService, UserRepository users, JwtService jwt) {
+    public AuthController(UserService userService, UserRepository users, JwtService jwt,
+                          PasswordHashingService passwordHashing, LoginThrottle loginThrottle,
+                          RefreshTokenService refreshTokens, TokenRevocationService revocations) {
         this.userService = userService;
         this.users = users;
         this.jwt = jwt;
+        this.passwordHashing = passwordHashing;
+        this.loginThrottle = loginThrottle;
+        this.refreshTokens = refreshTokens;
+        this.revocations = revocations;
     }
 
     @PostMapping("/register")
     @ResponseStatus(HttpStatus.CREATED)
     @Operation(
             summary = "Register a new user",
-            description = "Creates a user account and returns an access token."
+            description = "Creates a user account and returns an access token and a refresh token."
     )
     @ApiResponses({
             @ApiResponse(responseCode = "201", description = "Created"),
@@ -61,6 +78,7 @@ public class AuthController {
                                     """)
                     )
             ),
+            @ApiResponse(responseCode = "429", description = "Password hashing capacity exhausted, see Retry-After"),
             @ApiResponse(
                     responseCode = "409",
                     description = "Email already in use",
@@ -91,13 +109,13 @@ public class AuthController {
             @Valid @org.springframework.web.bind.annotation.RequestBody RegisterRequest req
     ) {
         User user = userService.register(req.email(), req.password(), req.firstName(), req.lastName());
-        return new AuthResponse(jwt.createAccessToken(user.getId(), user.getEmail(), user.getRole().name()));
+        return tokensFor(user);
     }
 
     @PostMapping("/login")
     @Operation(
             summary = "Log in with email and password",
-            description = "Validates credentials and returns an access token."
+            description = "Validates credentials and returns an access token and a refresh token."
     )
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "OK"),
@@ -111,7 +129,8 @@ public class AuthController {
                                     { "error": "unauthorized", "message": "Invalid credentials", "details": [] }
                                     """)
                     )
-            )
+            ),
+            @ApiResponse(responseCode = "429", description = "Too many attempts or hashing capacity exhausted, see Retry-After")
     })
     public AuthResponse login(
             @RequestBody(
@@ -127,15 +146,57 @@ public class AuthController {
                                     """
                     ))
             )
-            @Valid @org.springframework.web.bind.annotation.RequestBody LoginRequest req
+            @Valid @org.springframework.web.bind.annotation.RequestBody LoginRequest req,
+            HttpServletRequest httpReq
     ) {
+        // throttle before any DB lookup or hash work
+        loginThrottle.check(req.email(), httpReq);
+
         User user = users.findByEmail(req.email())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid credentials"));
 
-        var enc = new BCryptPasswordEncoder();
-        if (!enc.matches(req.password(), user.getPasswordHash())) {
+        if (!passwordHashing.matches(req.password(), user.getPasswordHash())) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid credentials");
         }
-        return new AuthResponse(jwt.createAccessToken(user.getId(), user.getEmail(), user.getRole().name()));
+        if (passwordHashing.upgradeEncoding(user.getPasswordHash())) {
+            userService.rehashPassword(user, req.password());
+        }
+        loginThrottle.onSuccess(req.email());
+        return tokensFor(user);
+    }
+
+    @PostMapping("/refresh")
+    @Operation(
+            summary = "Exchange a refresh token for a new access token",
+            description = "The refresh token is used up and a new one returned. Reusing a spent token revokes its whole session."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "OK"),
+            @ApiResponse(responseCode = "401", description = "Refresh token invalid, expired, revoked or reused")
+    })
+    public AuthResponse refresh(@Valid @org.springframework.web.bind.annotation.RequestBody RefreshRequest req) {
+        RefreshTokenService.Rotation r = refreshTokens.rotate(req.refreshToken())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid refresh token"));
+        User user = r.user();
+        return new AuthResponse(jwt.createAccessToken(user.getId(), user.getEmail(), user.getRole().name()), r.refreshToken());
+    }
+
+    @PostMapping("/logout")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @Operation(
+            summary = "Revoke a refresh token",
+            description = "Revokes the session the refresh token belongs to, or every session of the user with allSessions=true. "
+                    + "A bearer access token sent along is revoked too."
+    )
+    public void logout(@Valid @org.springframework.web.bind.annotation.RequestBody RefreshRequest req,
+                       @RequestParam(defaultValue = "false") boolean allSessions,
+                       @AuthenticationPrincipal AuthenticatedUser principal) {
+        refreshTokens.revoke(req.refreshToken(), allSessions);
+        if (principal != null) revocations.revoke(principal.tokenId(), principal.userId());
+    }
+
+    private AuthResponse tokensFor(User user) {
+        return new AuthResponse(jwt.createAccessToken(user.getId(), user.getEmail(), user.getRole().name()),
+                refreshTokens.issue(user.getId()));
     }
-}
\ No newline at end of file
+}
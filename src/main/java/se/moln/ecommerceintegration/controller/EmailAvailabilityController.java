@@ -0,0 +1,42 @@
+package se.moln.ecommerceintegration.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import se.moln.ecommerceintegration.dto.EmailAvailabilityResponse;
+import se.moln.ecommerceintegration.service.EmailAvailabilityService;
+
+@RestController
+@RequestMapping("/auth")
+@RequiredArgsConstructor
+public class EmailAvailabilityController {
+
+    private final EmailAvailabilityService emailAvailability;
+
+    @GetMapping("/email-available")
+    @Operation(
+            summary = "Check whether an email can be used for sign-up",
+            description = "Answered from an in-memory filter; only probable matches hit the database. " +
+                    "Registration still enforces uniqueness."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "OK"),
+            @ApiResponse(responseCode = "400", description = "Email missing")
+    })
+    public ResponseEntity<EmailAvailabilityResponse> emailAvailable(@RequestParam(required = false) String email) {
+        if (email == null || email.isBlank()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "email is required");
+        String trimmed = email.trim();
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore()) // svaret ändras så fort någon registrerar sig
+                .body(new EmailAvailabilityResponse(trimmed, emailAvailability.isAvailable(trimmed)));
+    }
+}
@@ -1,13 +1,11 @@
 package se.moln.ecommerceintegration.controller;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import se.moln.ecommerceintegration.model.User;
-import se.moln.ecommerceintegration.repository.UserRepository;
+import se.moln.ecommerceintegration.security.AuthenticatedUser;
 import se.moln.ecommerceintegration.service.EntitlementService;
-import se.moln.ecommerceintegration.service.JwtService;
 
 import java.util.Map;
 import java.util.UUID;
@@ -15,23 +13,17 @@ import java.util.UUID;
 @RestController
 @RequiredArgsConstructor
 public class EntitlementController {
-    private final UserRepository users;
     private final EntitlementService entitlements;
-    private final JwtService jwt;
 
-    private UUID currentUserIdFromAuth(String authHeader) {
-        if (authHeader == null || authHeader.isBlank()) return null;
-        String token = authHeader.startsWith("Bearer ") ? authHeader.substring(7) : authHeader;
-        if (!jwt.isTokenValid(token)) return null;
-        String email = jwt.extractEmail(token);
-        if (email == null || email.isBlank()) return null;
-        return users.findByEmail(email).map(User::getId).orElse(null);
+    // JwtAuthenticationFilter har redan verifierat token och lagt uid i principalen
+    private static UUID currentUserId(AuthenticatedUser principal) {
+        return principal == null ? null : principal.userId();
     }
 
     @GetMapping("/api/users/me/entitlements")
-    public ResponseEntity<?> getEntitlement(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String auth,
+    public ResponseEntity<?> getEntitlement(@AuthenticationPrincipal AuthenticatedUser principal,
                                             @RequestParam String sku) {
-        var uid = currentUserIdFromAuth(auth);
+        var uid = currentUserId(principal);
         if (uid == null) return ResponseEntity.status(401).body(Map.of("error", "unauthorized"));
         return entitlements.find(uid, sku)
                 .<ResponseEntity<?>>map(e -> ResponseEntity.ok(Map.of(
@@ -43,15 +35,15 @@ public class EntitlementController {
 
     // Alias without "/api/users" prefix to be resilient to proxy path rewriting
     @GetMapping("/me/entitlements")
-    public ResponseEntity<?> getEntitlementAlias(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String auth,
+    public ResponseEntity<?> getEntitlementAlias(@AuthenticationPrincipal AuthenticatedUser principal,
                                                  @RequestParam String sku) {
-        return getEntitlement(auth, sku);
+        return getEntitlement(principal, sku);
     }
 
     @PostMapping("/api/users/me/entitlements/consume")
-    public ResponseEntity<?> consume(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String auth,
+    public ResponseEntity<?> consume(@AuthenticationPrincipal AuthenticatedUser principal,
                                      @RequestBody Map<String, Object> body) {
-        var uid = currentUserIdFromAuth(auth);
+        var uid = currentUserId(principal);
         if (uid == null) return ResponseEntity.status(401).body(Map.of("error", "unauthorized"));
         String sku = (String) body.getOrDefault("sku", "");
         int count = ((Number) body.getOrDefault("count", 1)).intValue();
@@ -62,16 +54,16 @@ public class EntitlementController {
 
     // Alias without prefix
     @PostMapping("/me/entitlements/consume")
-    public ResponseEntity<?> consumeAlias(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String auth,
+    public ResponseEntity<?> consumeAlias(@AuthenticationPrincipal AuthenticatedUser principal,
                                           @RequestBody Map<String, Object> body) {
-        return consume(auth, body);
+        return consume(principal, body);
     }
 
     // Mock payment: issues entitlement remaining=1 for the current user
     @PostMapping("/api/users/me/checkout/mock-pay")
-    public ResponseEntity<?> mockPay(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String auth,
+    public ResponseEntity<?> mockPay(@AuthenticationPrincipal AuthenticatedUser principal,
                                      @RequestBody Map<String, Object> body) {
-        var uid = currentUserIdFromAuth(auth);
+        var uid = currentUserId(principal);
         if (uid == null) return ResponseEntity.status(401).body(Map.of("error", "unauthorized"));
         String sku = (String) body.getOrDefault("sku", "HOROSCOPE_PDF");
         entitlements.issue(uid, sku, 1, null);
@@ -80,16 +72,16 @@ public class EntitlementController {
 
     // Alias without prefix
     @PostMapping("/me/checkout/mock-pay")
-    public ResponseEntity<?> mockPayAlias(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String auth,
+    public ResponseEntity<?> mockPayAlias(@AuthenticationPrincipal AuthenticatedUser principal,
                                           @RequestBody Map<String, Object> body) {
-        return mockPay(auth, body);
+        return mockPay(principal, body);
     }
 
     // Grant entitlement after purchase (called by order-service)
     @PostMapping("/api/users/me/entitlements/grant")
-    public ResponseEntity<?> grantEntitlement(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String auth,
+    public ResponseEntity<?> grantEntitlement(@AuthenticationPrincipal AuthenticatedUser principal,
                                               @RequestBody Map<String, Object> body) {
-        var uid = currentUserIdFromAuth(auth);
+        var uid = currentUserId(principal);
         if (uid == null) return ResponseEntity.status(401).body(Map.of("error", "unauthorized"));
         String sku = (String) body.getOrDefault("sku", "");
         int count = ((Number) body.getOrDefault("count", 1)).intValue();
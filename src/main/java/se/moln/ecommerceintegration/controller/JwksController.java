@@ -0,0 +1,46 @@
+package se.moln.ecommerceintegration.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import se.moln.ecommerceintegration.service.SigningKeyService;
+
+import java.time.Duration;
+
+@RestController
+public class JwksController {
+
+    private final SigningKeyService keys;
+    private final CacheControl cacheControl;
+
+    public JwksController(SigningKeyService keys,
+                          @Value("${jwt.jwks.max-age-seconds:300}") long maxAgeSeconds) {
+        this.keys = keys;
+        this.cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+    }
+
+    // Publika nycklar för lokal verifiering i andra tjänster; cachebar, 304 vid oförändrad ETag
+    @GetMapping("/.well-known/jwks.json")
+    @Operation(
+            summary = "Public keys for verifying access tokens (JWKS)",
+            description = "Includes the current signing key, the next one and retired keys whose tokens may still be valid."
+    )
+    public ResponseEntity<byte[]> jwks(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        SigningKeyService.Jwks jwks = keys.jwks();
+        if (ifNoneMatch != null && ifNoneMatch.contains(jwks.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(jwks.etag()).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(jwks.etag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(jwks.json());
+    }
+}
@@ -3,23 +3,27 @@ package se.moln.ecommerceintegration.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import se.moln.ecommerceintegration.dto.UserProfileResponse;
 import se.moln.ecommerceintegration.model.User;
 import se.moln.ecommerceintegration.repository.UserRepository;
+import se.moln.ecommerceintegration.security.AuthenticatedUser;
+
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 
 @RestController
 @RequiredArgsConstructor
 public class ProfileController {
     private final UserRepository userRepository;
 
+    // uid kommer från token, så profilen hämtas på primärnyckel istället för på email
     @GetMapping("/me")
-    public UserProfileResponse me(@AuthenticationPrincipal Object principal){
-        String email = extractEmail(principal);
-        User u = userRepository.findByEmail(email)
-                .orElseThrow(() -> new RuntimeException("User not found: " + email));
+    public UserProfileResponse me(@AuthenticationPrincipal AuthenticatedUser principal){
+        if (principal == null || principal.userId() == null) throw new ResponseStatusException(UNAUTHORIZED, "Unauthorized");
+        User u = userRepository.findById(principal.userId())
+                .orElseThrow(() -> new RuntimeException("User not found: " + principal.email()));
 
         return new UserProfileResponse(
                 u.getId(),
@@ -30,26 +34,4 @@ public class ProfileController {
                 Boolean.TRUE.equals(u.getIsActive())
         );
     }
-
-    private String extractEmail(Object principal) {
-        if (principal instanceof UserDetails ud) return ud.getUsername(); // username = email
-        if (principal instanceof String s) return s; // filtret satte principal som email-string
-        throw new IllegalStateException("Unsupported principal type: " + principal);
-    }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
 }
@@ -0,0 +1,99 @@
+package se.moln.ecommerceintegration.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import se.moln.ecommerceintegration.dto.IntrospectionResult;
+import se.moln.ecommerceintegration.service.TokenIntrospectionService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/auth")
+@RequiredArgsConstructor
+public class TokenIntrospectionController {
+
+    static final int MAX_TOKENS = 1000;
+
+    /**
+     * Big-endian: u32 count, then per token a u8 status (0 active, 1 expired, 2 revoked, 3 invalid);
+     * active entries continue with uid (two i64, zero if absent), exp (i64 epoch seconds,
+     * Long.MIN_VALUE if absent) and role, sub, jti as u16 length + UTF-8 (0xFFFF = null).
+     */
+    public static final String BINARY = "application/x-token-introspection";
+
+    private final TokenIntrospectionService introspection;
+
+    public record IntrospectRequest(@NotNull @Size(max = MAX_TOKENS) List<String> tokens) {}
+
+    public record IntrospectResponse(List<IntrospectionResult> results) {}
+
+    // En round trip per mikrobatch från gateway i stället för ett anrop per användarrequest
+    @PostMapping(value = "/introspect", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+            summary = "Verify a batch of access tokens",
+            description = "Returns claims or an error (expired, revoked, invalid) per token, in request order. "
+                    + "Send Accept: " + BINARY + " for a compact binary encoding."
+    )
+    public ResponseEntity<IntrospectResponse> introspect(@Valid @RequestBody IntrospectRequest req) {
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore())
+                .body(new IntrospectResponse(introspection.introspect(req.tokens())));
+    }
+
+    @PostMapping(value = "/introspect", produces = BINARY)
+    public ResponseEntity<byte[]> introspectBinary(@Valid @RequestBody IntrospectRequest req) throws IOException {
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore())
+                .contentType(MediaType.parseMediaType(BINARY))
+                .body(encode(introspection.introspect(req.tokens())));
+    }
+
+    static byte[] encode(List<IntrospectionResult> results) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + results.size() * 96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(results.size());
+        for (IntrospectionResult r : results) {
+            if (!r.active()) {
+                out.writeByte(switch (r.error()) {
+                    case "expired" -> 1;
+                    case "revoked" -> 2;
+                    default -> 3;
+                });
+                continue;
+            }
+            out.writeByte(0);
+            UUID uid = r.uid();
+            out.writeLong(uid == null ? 0 : uid.getMostSignificantBits());
+            out.writeLong(uid == null ? 0 : uid.getLeastSignificantBits());
+            out.writeLong(r.exp() == null ? Long.MIN_VALUE : r.exp());
+            writeString(out, r.role());
+            writeString(out, r.sub());
+            writeString(out, r.jti());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeShort(0xFFFF);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        int len = Math.min(b.length, 0xFFFE);
+        out.writeShort(len);
+        out.write(b, 0, len);
+    }
+}
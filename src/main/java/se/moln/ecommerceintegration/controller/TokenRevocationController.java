@@ -0,0 +1,45 @@
+package se.moln.ecommerceintegration.controller;
+
+import io.jsonwebtoken.JwtException;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import se.moln.ecommerceintegration.security.Hs256TokenCodec.AccessClaims;
+import se.moln.ecommerceintegration.service.JwtService;
+import se.moln.ecommerceintegration.service.TokenRevocationService;
+
+import java.time.Instant;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+@RestController
+@RequestMapping("/users/tokens")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class TokenRevocationController {
+
+    private final JwtService jwt;
+    private final TokenRevocationService revocations;
+
+    public record RevokeTokenRequest(@NotBlank String token) {}
+
+    // Spärrar en enskild access token (jti) i alla noder tills den löper ut
+    @PostMapping("/revoke")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @Operation(summary = "Revoke an access token before it expires (ADMIN)")
+    public void revoke(@Valid @RequestBody RevokeTokenRequest req) {
+        AccessClaims c;
+        try {
+            c = jwt.verify(req.token());
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new ResponseStatusException(BAD_REQUEST, "Token is invalid or already expired");
+        }
+        if (c.tokenId() == null) throw new ResponseStatusException(BAD_REQUEST, "Token has no jti and cannot be revoked");
+        revocations.revoke(c.tokenId(), c.userId(), Instant.ofEpochSecond(c.expiresAt()));
+    }
+}
@@ -4,14 +4,23 @@ package se.moln.ecommerceintegration.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import se.moln.ecommerceintegration.dto.UserCursor;
+import se.moln.ecommerceintegration.dto.UserFilter;
+import se.moln.ecommerceintegration.dto.UserSummary;
 import se.moln.ecommerceintegration.model.Role;
 import se.moln.ecommerceintegration.model.User;
 import se.moln.ecommerceintegration.repository.UserRepository;
+import se.moln.ecommerceintegration.service.EmailAvailabilityService;
+import se.moln.ecommerceintegration.service.UserSearchService;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
@@ -25,21 +34,57 @@ public class UserAdminController {
 
     private final UserRepository users;
     private final PasswordEncoder passwordEncoder;
+    private final EmailAvailabilityService emailAvailability;
+    private final UserSearchService search;
 
     // DTOs (enkla inline records – byt till dina egna om du vill)
     public record UserDto(UUID id, String email, String firstName, String lastName, Role role, Boolean isActive) {}
     public record CreateUserRequest(String email, String password, String firstName, String lastName, Role role) {}
     public record UpdateUserRequest(String firstName, String lastName, Boolean isActive) {}
     public record UpdateRoleRequest(Role role) {}
+    public record EmailFilterRebuildResponse(long loaded, boolean alreadyRunning) {}
 
     private UserDto toDto(User u) {
         return new UserDto(u.getId(), u.getEmail(), u.getFirstName(), u.getLastName(), u.getRole(), u.getIsActive());
     }
 
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 200;
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Keyset-paginering: nästa sida hämtas med cursor från X-Next-Cursor, lika billigt för sida N som sida 1
     @GetMapping
-    @Operation(summary = "List all users (ADMIN)")
-    public List<UserDto> list() {
-        return users.findAll().stream().map(this::toDto).toList();
+    @Operation(
+            summary = "List users, newest first, one page at a time (ADMIN)",
+            description = "Pass the X-Next-Cursor header of the previous response as cursor to get the next page; " +
+                    "the header is absent on the last page. createdTo is exclusive."
+    )
+    public ResponseEntity<List<UserSummary>> list(
+            @RequestParam(required = false) Role role,
+            @RequestParam(required = false) Boolean active,
+            @RequestParam(required = false) String emailPrefix,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            throw new ResponseStatusException(BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        UserCursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : UserCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(BAD_REQUEST, "Invalid cursor");
+        }
+        String prefix = emailPrefix == null || emailPrefix.isBlank() ? null : emailPrefix.trim();
+
+        // one extra row tells us whether there is a next page without a count query
+        List<UserSummary> rows = users.findPage(new UserFilter(role, active, prefix, createdFrom, createdTo), after, limit + 1);
+        if (rows.size() <= limit) return ResponseEntity.ok(rows);
+
+        List<UserSummary> page = rows.subList(0, limit);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, UserCursor.after(page.get(limit - 1)).encode())
+                .body(List.copyOf(page));
     }
 
     @GetMapping("/{id}")
@@ -55,8 +100,6 @@ public class UserAdminController {
     public UserDto create(@Valid @RequestBody CreateUserRequest req) {
         if (req.email() == null || req.email().isBlank())
             throw new ResponseStatusException(BAD_REQUEST, "Email is required");
-        if (users.existsByEmail(req.email()))
-            throw new ResponseStatusException(CONFLICT, "Email already in use");
 
         User u = User.newUser(
                 req.email(),
@@ -67,7 +110,15 @@ public class UserAdminController {
         u.setRole(req.role() == null ? Role.USER : req.role());
         u.setIsActive(true);
 
-        return toDto(users.save(u));
+        try {
+            User saved = users.saveAndFlush(u);
+            emailAvailability.added(saved.getEmail());
+            search.indexed(saved);
+            return toDto(saved);
+        } catch (DataIntegrityViolationException e) {
+            if (UserRepository.isDuplicateEmail(e)) throw new ResponseStatusException(CONFLICT, "Email already in use");
+            throw e;
+        }
     }
 
     @PutMapping("/{id}")
@@ -77,7 +128,9 @@ public class UserAdminController {
         if (req.firstName() != null) u.setFirstName(req.firstName());
         if (req.lastName() != null)  u.setLastName(req.lastName());
         if (req.isActive() != null)  u.setIsActive(req.isActive());
-        return toDto(users.save(u));
+        User saved = users.save(u);
+        search.indexed(saved);
+        return toDto(saved);
     }
 
     @PostMapping("/{id}/role")
@@ -93,7 +146,16 @@ public class UserAdminController {
     @ResponseStatus(NO_CONTENT)
     @Operation(summary = "Delete user (ADMIN)")
     public void delete(@PathVariable UUID id) {
-        if (!users.existsById(id)) throw new ResponseStatusException(NOT_FOUND, "User not found");
-        users.deleteById(id);
+        User u = users.findById(id).orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "User not found"));
+        users.delete(u);
+        emailAvailability.removed(u.getEmail());
+        search.removed(u.getId());
+    }
+
+    @PostMapping("/email-filter/rebuild")
+    @Operation(summary = "Rebuild the email availability filter from the database (ADMIN)")
+    public EmailFilterRebuildResponse rebuildEmailFilter() {
+        long loaded = emailAvailability.rebuild();
+        return new EmailFilterRebuildResponse(Math.max(loaded, 0), loaded < 0);
     }
 }
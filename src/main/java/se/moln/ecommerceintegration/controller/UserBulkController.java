@@ -0,0 +1,69 @@
+package se.moln.ecommerceintegration.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import se.moln.ecommerceintegration.dto.UserFilter;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.service.UserBulkService;
+import se.moln.ecommerceintegration.service.UserBulkService.BulkResult;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+@RestController
+@RequestMapping("/users/bulk")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class UserBulkController {
+
+    static final int MAX_IDS = 10_000;
+
+    private final UserBulkService bulkService;
+
+    // Antingen ids eller filter; ett tomt filter skulle träffa alla användare och avvisas
+    public record BulkRoleRequest(List<UUID> ids, UserFilter filter, Role role) {}
+    public record BulkActiveRequest(List<UUID> ids, UserFilter filter, Boolean active) {}
+    public record BulkDeleteRequest(List<UUID> ids, UserFilter filter) {}
+
+    @PostMapping("/role")
+    @Operation(summary = "Set role for many users by ids or filter (ADMIN)")
+    public BulkResult setRole(@RequestBody BulkRoleRequest req) {
+        if (req.role() == null) throw new ResponseStatusException(BAD_REQUEST, "role is required");
+        validateTargets(req.ids(), req.filter());
+        return bulkService.setRole(req.ids(), req.filter(), req.role());
+    }
+
+    @PostMapping("/active")
+    @Operation(summary = "Activate or deactivate many users by ids or filter (ADMIN)")
+    public BulkResult setActive(@RequestBody BulkActiveRequest req) {
+        if (req.active() == null) throw new ResponseStatusException(BAD_REQUEST, "active is required");
+        validateTargets(req.ids(), req.filter());
+        return bulkService.setActive(req.ids(), req.filter(), req.active());
+    }
+
+    @PostMapping("/delete")
+    @Operation(summary = "Delete many users by ids or filter (ADMIN)")
+    public BulkResult delete(@RequestBody BulkDeleteRequest req) {
+        validateTargets(req.ids(), req.filter());
+        return bulkService.delete(req.ids(), req.filter());
+    }
+
+    private static void validateTargets(List<UUID> ids, UserFilter filter) {
+        if ((ids == null) == (filter == null))
+            throw new ResponseStatusException(BAD_REQUEST, "Give either ids or filter");
+        if (ids != null && (ids.isEmpty() || ids.size() > MAX_IDS))
+            throw new ResponseStatusException(BAD_REQUEST, "ids must contain between 1 and " + MAX_IDS + " entries");
+        if (ids != null && ids.contains(null))
+            throw new ResponseStatusException(BAD_REQUEST, "ids must not contain null");
+        if (filter != null && filter.isEmpty())
+            throw new ResponseStatusException(BAD_REQUEST, "filter must have at least one criterion");
+    }
+}
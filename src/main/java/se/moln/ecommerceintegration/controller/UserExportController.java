@@ -0,0 +1,48 @@
+package se.moln.ecommerceintegration.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import se.moln.ecommerceintegration.service.UserExportService;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+@RestController
+@RequestMapping("/users")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class UserExportController {
+
+    private final UserExportService exportService;
+
+    // Skriver direkt till response-strömmen batch för batch, så minnet är konstant oavsett antal användare
+    @GetMapping("/export")
+    @Operation(
+            summary = "Export all users as NDJSON or CSV (ADMIN)",
+            description = "Streams every user without password hashes, ordered by id."
+    )
+    public void export(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+        UserExportService.Format f = switch (format.toLowerCase(Locale.ROOT)) {
+            case "ndjson" -> UserExportService.Format.NDJSON;
+            case "csv" -> UserExportService.Format.CSV;
+            default -> throw new ResponseStatusException(BAD_REQUEST, "format must be ndjson or csv");
+        };
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(f == UserExportService.Format.CSV ? "text/csv;charset=UTF-8" : UserImportController.NDJSON);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"users." + (f == UserExportService.Format.CSV ? "csv" : "ndjson") + "\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        exportService.export(f, response.getOutputStream());
+    }
+}
@@ -0,0 +1,58 @@
+package se.moln.ecommerceintegration.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import se.moln.ecommerceintegration.service.UserImportService;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+@RequestMapping("/users")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class UserImportController {
+
+    static final String NDJSON = "application/x-ndjson";
+
+    private final UserImportService importService;
+
+    // Body läses direkt från request-strömmen och resultatet skrivs rad för rad, inget buffras i minnet
+    @PostMapping(value = "/import", consumes = {NDJSON, "text/csv"}, produces = NDJSON)
+    @Operation(
+            summary = "Bulk import users from NDJSON or CSV (ADMIN)",
+            description = "One user per line: email, password or passwordHash, firstName, lastName, role, active. " +
+                    "CSV needs a header row. Streams one NDJSON result per input line and a final summary line."
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Streamed per-line results"),
+            @ApiResponse(responseCode = "429", description = "Another import is already running, see Retry-After")
+    })
+    public void importUsers(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        UserImportService.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? UserImportService.Format.CSV
+                : UserImportService.Format.NDJSON;
+
+        importService.importUsers(
+                new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8),
+                format,
+                () -> {
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    response.setContentType(NDJSON);
+                    response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+                    return response.getOutputStream();
+                });
+    }
+}
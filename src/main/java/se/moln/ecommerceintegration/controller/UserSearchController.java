@@ -0,0 +1,48 @@
+package se.moln.ecommerceintegration.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import se.moln.ecommerceintegration.dto.UserSearchResponse;
+import se.moln.ecommerceintegration.service.UserSearchService;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+@RestController
+@RequestMapping("/users")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class UserSearchController {
+
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_OFFSET = 10_000;
+
+    private final UserSearchService searchService;
+
+    // Söker i minnesindexet, bara träffarna på sidan hämtas från databasen
+    @GetMapping("/search")
+    @Operation(
+            summary = "Search users by email, first or last name (ADMIN)",
+            description = "Every whitespace-separated term must match: 1-2 characters match the start of a word, " +
+                    "3 or more match anywhere. Best matches first (exact email, then prefix, word prefix, substring)."
+    )
+    public UserSearchResponse search(@RequestParam String q,
+                                     @RequestParam(defaultValue = "0") int offset,
+                                     @RequestParam(defaultValue = "" + DEFAULT_LIMIT) int limit) {
+        if (q.isBlank()) throw new ResponseStatusException(BAD_REQUEST, "q is required");
+        if (limit < 1 || limit > UserAdminController.MAX_PAGE_SIZE)
+            throw new ResponseStatusException(BAD_REQUEST, "limit must be between 1 and " + UserAdminController.MAX_PAGE_SIZE);
+        if (offset < 0 || offset > MAX_OFFSET)
+            throw new ResponseStatusException(BAD_REQUEST, "offset must be between 0 and " + MAX_OFFSET);
+        if (!searchService.isReady()) throw new ResponseStatusException(SERVICE_UNAVAILABLE, "Search index is still building");
+
+        UserSearchService.SearchResult r = searchService.search(q, offset, limit);
+        return new UserSearchResponse(r.items(), r.total(), offset, limit);
+    }
+}
@@ -19,10 +19,9 @@ import se.moln.ecommerceintegration.dto.ErrorResponse;
 import se.moln.ecommerceintegration.dto.UpdateSettingsRequest;
 import se.moln.ecommerceintegration.dto.UserProfileResponse;
 import se.moln.ecommerceintegration.model.User;
+import se.moln.ecommerceintegration.security.AuthenticatedUser;
 import se.moln.ecommerceintegration.service.UserService;
 
-import static se.moln.ecommerceintegration.utils.PrincipalUtils.extractEmail;
-
 @RestController
 @RequiredArgsConstructor
 public class UserSettingsController {
@@ -110,10 +109,10 @@ public class UserSettingsController {
             )
     })
     public UserProfileResponse updateSettings(
-            @AuthenticationPrincipal Object principal,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @Valid @org.springframework.web.bind.annotation.RequestBody UpdateSettingsRequest req
     ) {
-        String email = extractEmail(principal);
+        if (principal == null) throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized");
 
         String first = req.firstName();
         if (first != null) {
@@ -131,7 +130,7 @@ public class UserSettingsController {
             }
         }
 
-        User u = userService.updateSettings(email, first, last);
+        User u = userService.updateSettings(principal.userId(), first, last);
         return new UserProfileResponse(
                 u.getId(), u.getEmail(), u.getFirstName(), u.getLastName(),
                 u.getRole().name(), Boolean.TRUE.equals(u.getIsActive())
@@ -1,5 +1,9 @@
 package se.moln.ecommerceintegration.dto;
 
-public record AuthResponse(String accessToken, String tokenType) {
-    public AuthResponse(String token) { this(token, "Bearer"); }
-}
\ No newline at end of file
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AuthResponse(String accessToken, String tokenType, String refreshToken) {
+    public AuthResponse(String token) { this(token, "Bearer", null); }
+    public AuthResponse(String token, String refreshToken) { this(token, "Bearer", refreshToken); }
+}
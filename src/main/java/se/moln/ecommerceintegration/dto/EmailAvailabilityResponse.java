@@ -0,0 +1,3 @@
+package se.moln.ecommerceintegration.dto;
+
+public record EmailAvailabilityResponse(String email, boolean available) {}
@@ -0,0 +1,17 @@
+package se.moln.ecommerceintegration.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.UUID;
+
+/**
+ * Outcome for one token: claims when {@code active}, otherwise {@code error}
+ * ({@code expired}, {@code revoked} or {@code invalid}). {@code exp} is epoch seconds.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record IntrospectionResult(boolean active, String sub, UUID uid, String role, Long exp, String jti, String error) {
+
+    public static IntrospectionResult inactive(String error) {
+        return new IntrospectionResult(false, null, null, null, null, null, error);
+    }
+}
@@ -0,0 +1,6 @@
+package se.moln.ecommerceintegration.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+public record RefreshRequest(@NotBlank @Size(max = 64) String refreshToken) {}
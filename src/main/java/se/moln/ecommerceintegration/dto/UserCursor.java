@@ -0,0 +1,34 @@
+package se.moln.ecommerceintegration.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position after the last row of a page in (createdAt desc, id desc) order.
+ * Clients get it as an opaque base64url token and must not parse it.
+ */
+public record UserCursor(Instant createdAt, UUID id) {
+    private static final String VERSION = "v1";
+
+    public static UserCursor after(UserSummary last) {
+        return new UserCursor(last.createdAt(), last.id());
+    }
+
+    public String encode() {
+        String raw = VERSION + "|" + createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @throws IllegalArgumentException for a token this class did not produce */
+    public static UserCursor decode(String token) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 3 || !VERSION.equals(parts[0])) throw new IllegalArgumentException("Invalid cursor");
+            return new UserCursor(Instant.parse(parts[1]), UUID.fromString(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
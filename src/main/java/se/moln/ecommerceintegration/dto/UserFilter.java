@@ -0,0 +1,17 @@
+package se.moln.ecommerceintegration.dto;
+
+import se.moln.ecommerceintegration.model.Role;
+
+import java.time.Instant;
+
+/** Optional filters for the admin user list; null means "no filter". createdTo is exclusive. */
+public record UserFilter(Role role, Boolean active, String emailPrefix, Instant createdFrom, Instant createdTo) {
+    public static UserFilter none() {
+        return new UserFilter(null, null, null, null, null);
+    }
+
+    public boolean isEmpty() {
+        return role == null && active == null && (emailPrefix == null || emailPrefix.isBlank())
+                && createdFrom == null && createdTo == null;
+    }
+}
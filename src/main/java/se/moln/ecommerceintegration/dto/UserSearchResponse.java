@@ -0,0 +1,5 @@
+package se.moln.ecommerceintegration.dto;
+
+import java.util.List;
+
+public record UserSearchResponse(List<UserSummary> items, int total, int offset, int limit) {}
@@ -0,0 +1,11 @@
+package se.moln.ecommerceintegration.dto;
+
+import se.moln.ecommerceintegration.model.Role;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** Read-only projection of a user row without the password hash, for listing and export. */
+public record UserSummary(UUID id, String email, String firstName, String lastName, Role role,
+                          Boolean isActive, Instant createdAt) {
+}
@@ -117,7 +117,7 @@ public class GlobalExceptionHandler {
         body.put("error", error);
         body.put("message", message);
         body.put("details", List.of());
-        return ResponseEntity.status(sc).body(body);
+        return ResponseEntity.status(sc).headers(ex.getHeaders()).body(body);
     }
 
     @ExceptionHandler(AccessDeniedException.class)
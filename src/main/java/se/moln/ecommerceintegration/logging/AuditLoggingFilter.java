@@ -8,58 +8,84 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import se.moln.ecommerceintegration.utils.RequestUtils;
 
 import java.io.IOException;
-import java.util.UUID;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 @Order(Integer.MAX_VALUE)
 public class AuditLoggingFilter extends OncePerRequestFilter {
 
     private static final Logger log = LoggerFactory.getLogger(AuditLoggingFilter.class);
+    private static final String LINE = "{} - {} {} status={} took={}ms ua=\"{}\"";
+    private static final HexFormat HEX = HexFormat.of();
     private final se.moln.ecommerceintegration.service.AuditLogService audit;
+    private final AuditPolicy policy;
+    private final LatencyRecorder latency;
 
-    public AuditLoggingFilter(se.moln.ecommerceintegration.service.AuditLogService audit) {
+    public AuditLoggingFilter(se.moln.ecommerceintegration.service.AuditLogService audit, AuditPolicy policy,
+                              LatencyRecorder latency) {
         this.audit = audit;
+        this.policy = policy;
+        this.latency = latency;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
             throws ServletException, IOException {
 
-        String reqId = UUID.randomUUID().toString().substring(0, 8);
-        MDC.put("reqId", reqId);
-        MDC.put("ip", clientIp(req));
+        String ip = RequestUtils.clientIp(req);
+        MDC.put("reqId", requestId());
+        MDC.put("ip", ip);
 
         long started = System.currentTimeMillis();
+        long startedNanos = System.nanoTime();
         try {
             chain.doFilter(req, res);
         } finally {
-            String user = resolveUserEmail();
+            var auth = org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication();
+            String user = (auth != null) ? auth.getName() : null;
             MDC.put("userEmail", user != null ? user : "anon");
 
             int status = res.getStatus();
             long took = System.currentTimeMillis() - started;
-            String action = actionFor(req);
+            String method = req.getMethod();
+            String uri = req.getRequestURI();
+            String ua = userAgent(req);
+            String action = actionFor(uri, method);
 
-            String msg = String.format("%s %s status=%d took=%dms ua=\"%s\"",
-                    req.getMethod(), req.getRequestURI(), status, took, userAgent(req));
+            // keyed by the handler's pattern (/users/{id}), not the raw path
+            latency.record((String) req.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE), method, status,
+                    System.nanoTime() - startedNanos);
 
-            if (status >= 400) log.warn("{} - {}", action, msg);
-            else               log.info("{} - {}", action, msg);
+            // nothing is formatted or boxed unless the level is on
+            if (status >= 400) {
+                if (log.isWarnEnabled()) log.warn(LINE, action, method, uri, status, took, ua);
+            } else if (log.isInfoEnabled()) {
+                log.info(LINE, action, method, uri, status, took, ua);
+            }
 
-            // persist if enabled
-            audit.save(action, user, req.getMethod(), req.getRequestURI(), status, clientIp(req), userAgent(req), took);
+            // persist if enabled and the policy keeps it; weight = how many requests the row stands for
+            boolean authenticated = auth != null && !(auth instanceof AnonymousAuthenticationToken);
+            int weight = policy.weight(action, uri, status, authenticated);
+            if (weight > 0) audit.save(action, user, method, uri, status, ip, ua, took, weight);
 
             MDC.clear();
         }
     }
 
-    private String actionFor(HttpServletRequest req) {
-        String p = req.getRequestURI();
-        String m = req.getMethod();
+    // 8 hex digits, like the UUID prefix this used to take, without going through SecureRandom
+    private static String requestId() {
+        return HEX.toHexDigits(ThreadLocalRandom.current().nextInt());
+    }
+
+    private static String actionFor(String p, String m) {
         if (p.startsWith("/auth/login"))    return "AUTH_LOGIN";
         if (p.startsWith("/auth/register")) return "AUTH_REGISTER";
         if (p.equals("/me"))                return "PROFILE_VIEW";
@@ -67,15 +93,7 @@ public class AuditLoggingFilter extends OncePerRequestFilter {
             return "USER_UPDATE";
         return "REQUEST";
     }
-    private String resolveUserEmail() {
-        var a = org.springframework.security.core.context.SecurityContextHolder.getContext().getAuthentication();
-        return (a != null) ? a.getName() : null;
-    }
-    private String clientIp(HttpServletRequest req) {
-        String xff = req.getHeader("X-Forwarded-For");
-        return (xff != null && !xff.isBlank()) ? xff.split(",")[0].trim() : req.getRemoteAddr();
-    }
-    private String userAgent(HttpServletRequest req) {
+    private static String userAgent(HttpServletRequest req) {
         String ua = req.getHeader("User-Agent");
         return ua != null ? ua : "-";
     }
@@ -0,0 +1,198 @@
+package se.moln.ecommerceintegration.logging;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Decides which requests {@link AuditLoggingFilter} persists, from {@code audit.policy.rules}:
+ * rules separated by {@code ;}, tried in order, first match wins; requests no rule matches get
+ * {@code audit.policy.default}. A rule is
+ * <pre>
+ *   [action:A,B] [path:/ant/**,/x] [status:2xx,401] [auth:user|anon] -> always | never | sample N | rate N
+ * </pre>
+ * where omitted conditions match anything. {@code sample N} keeps every Nth matching request,
+ * {@code rate N} at most N per second.
+ * <p>
+ * A kept row carries a sample weight, the number of requests it stands for: N for {@code sample N},
+ * and 1 plus the requests suppressed since the previous kept one for {@code rate N}. Summing
+ * {@code sample_weight} instead of counting rows gives the real request count.
+ */
+@Component
+public class AuditPolicy {
+
+    public enum Outcome { ALWAYS, NEVER, SAMPLE, RATE }
+
+    private static final AntPathMatcher PATHS = new AntPathMatcher();
+
+    private final List<Rule> rules;
+    private final Rule fallback;
+    private final Counter skipped;
+
+    public AuditPolicy(MeterRegistry registry,
+                       @Value("${audit.policy.rules:}") String rules,
+                       @Value("${audit.policy.default:always}") String fallback) {
+        this.rules = parse(rules);
+        this.fallback = rule("", fallback);
+        this.skipped = Counter.builder("audit.events.skipped")
+                .description("Requests not persisted because of the audit policy")
+                .register(registry);
+    }
+
+    /** 0 if the request should not be persisted, otherwise the sample weight of its row. */
+    public int weight(String action, String path, int status, boolean authenticated) {
+        Rule r = fallback;
+        for (Rule candidate : rules) {
+            if (candidate.matches(action, path, status, authenticated)) {
+                r = candidate;
+                break;
+            }
+        }
+        int w = r.apply();
+        if (w == 0) skipped.increment();
+        return w;
+    }
+
+    static List<Rule> parse(String spec) {
+        List<Rule> out = new ArrayList<>();
+        if (spec == null) return out;
+        for (String part : spec.split(";")) {
+            if (part.isBlank()) continue;
+            int arrow = part.indexOf("->");
+            if (arrow < 0) throw new IllegalArgumentException("Audit policy rule without '->': " + part.trim());
+            out.add(rule(part.substring(0, arrow), part.substring(arrow + 2)));
+        }
+        return out;
+    }
+
+    private static Rule rule(String conditions, String outcome) {
+        Set<String> actions = null;
+        List<Predicate<String>> paths = null;
+        List<int[]> statuses = null;
+        Boolean authenticated = null;
+        for (String c : conditions.trim().split("\\s+")) {
+            if (c.isEmpty()) continue;
+            int colon = c.indexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Audit policy condition must be key:value: " + c);
+            String key = c.substring(0, colon).toLowerCase(Locale.ROOT);
+            List<String> values = List.of(c.substring(colon + 1).split(","));
+            switch (key) {
+                case "action" -> actions = Set.copyOf(values);
+                case "path" -> paths = values.stream().map(AuditPolicy::pathMatcher).toList();
+                case "status" -> statuses = values.stream().map(AuditPolicy::statusRange).toList();
+                case "auth" -> authenticated = switch (values.get(0).toLowerCase(Locale.ROOT)) {
+                    case "user" -> true;
+                    case "anon" -> false;
+                    default -> throw new IllegalArgumentException("Audit policy auth must be user or anon: " + c);
+                };
+                default -> throw new IllegalArgumentException("Unknown audit policy condition: " + c);
+            }
+        }
+
+        String[] o = outcome.trim().split("\\s+");
+        Outcome kind = Outcome.valueOf(o[0].toUpperCase(Locale.ROOT));
+        int n = 1;
+        if (kind == Outcome.SAMPLE || kind == Outcome.RATE) {
+            if (o.length < 2) throw new IllegalArgumentException("Audit policy outcome needs a number: " + outcome.trim());
+            n = Integer.parseInt(o[1]);
+            if (n < 1) throw new IllegalArgumentException("Audit policy number must be positive: " + outcome.trim());
+        }
+        return new Rule(actions, paths, statuses, authenticated, kind, n);
+    }
+
+    // plain paths and "/prefix/**" are compared directly; AntPathMatcher tokenizes the path on every call
+    private static Predicate<String> pathMatcher(String pattern) {
+        boolean prefix = pattern.endsWith("/**");
+        String literal = prefix ? pattern.substring(0, pattern.length() - 3) : pattern;
+        if (literal.indexOf('*') >= 0 || literal.indexOf('?') >= 0 || literal.indexOf('{') >= 0) {
+            return path -> PATHS.match(pattern, path);
+        }
+        if (!prefix) return literal::equals;
+        return path -> path.startsWith(literal) && (path.length() == literal.length() || path.charAt(literal.length()) == '/');
+    }
+
+    // "4xx" -> [400, 499], "401" -> [401, 401]
+    private static int[] statusRange(String s) {
+        String v = s.trim().toLowerCase(Locale.ROOT);
+        if (v.length() == 3 && v.endsWith("xx")) {
+            int c = (v.charAt(0) - '0') * 100;
+            return new int[]{c, c + 99};
+        }
+        int code = Integer.parseInt(v);
+        return new int[]{code, code};
+    }
+
+    static final class Rule {
+        private final Set<String> actions;
+        private final List<Predicate<String>> paths;
+        private final List<int[]> statuses;
+        private final Boolean authenticated;
+        final Outcome outcome;
+        final int n;
+
+        private final AtomicLong seen = new AtomicLong();
+        // rate window, guarded by this
+        private long second = Long.MIN_VALUE;
+        private int used;
+        private int suppressed;
+
+        Rule(Set<String> actions, List<Predicate<String>> paths, List<int[]> statuses, Boolean authenticated, Outcome outcome, int n) {
+            this.actions = actions;
+            this.paths = paths;
+            this.statuses = statuses;
+            this.authenticated = authenticated;
+            this.outcome = outcome;
+            this.n = n;
+        }
+
+        boolean matches(String action, String path, int status, boolean auth) {
+            if (authenticated != null && authenticated != auth) return false;
+            if (actions != null && !actions.contains(action)) return false;
+            if (statuses != null && !matchesStatus(status)) return false;
+            return paths == null || matchesPath(path);
+        }
+
+        private boolean matchesStatus(int status) {
+            for (int[] r : statuses) if (status >= r[0] && status <= r[1]) return true;
+            return false;
+        }
+
+        private boolean matchesPath(String path) {
+            for (Predicate<String> p : paths) if (p.test(path)) return true;
+            return false;
+        }
+
+        int apply() {
+            return switch (outcome) {
+                case ALWAYS -> 1;
+                case NEVER -> 0;
+                case SAMPLE -> seen.getAndIncrement() % n == 0 ? n : 0;
+                case RATE -> acquire(System.currentTimeMillis() / 1000);
+            };
+        }
+
+        synchronized int acquire(long nowSecond) {
+            if (nowSecond != second) {
+                second = nowSecond;
+                used = 0;
+            }
+            if (used < n) {
+                used++;
+                int w = 1 + suppressed;
+                suppressed = 0;
+                return w;
+            }
+            suppressed++;
+            return 0;
+        }
+    }
+}
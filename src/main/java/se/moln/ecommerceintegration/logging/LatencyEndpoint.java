@@ -0,0 +1,36 @@
+package se.moln.ecommerceintegration.logging;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * {@code GET /actuator/latency}: count, mean and p50/p90/p99/p99.9 per route, method and status class
+ * over the rolling window; {@code GET /actuator/latency/{method}} narrows it to one HTTP method.
+ */
+@Component
+@Endpoint(id = "latency")
+public class LatencyEndpoint {
+
+    public record Report(long windowSeconds, List<LatencyRecorder.Summary> routes) {}
+
+    private final LatencyRecorder recorder;
+
+    public LatencyEndpoint(LatencyRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @ReadOperation
+    public Report latency() {
+        return new Report(recorder.windowSeconds(), recorder.summaries());
+    }
+
+    @ReadOperation
+    public Report latencyFor(@Selector String method) {
+        return new Report(recorder.windowSeconds(), recorder.summaries().stream()
+                .filter(s -> s.method().equalsIgnoreCase(method)).toList());
+    }
+}
@@ -0,0 +1,103 @@
+package se.moln.ecommerceintegration.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram over a rolling window, in microseconds.
+ * <p>
+ * Buckets are log-linear like HdrHistogram's: values below 16 µs get one bucket each, above that
+ * every power of two is split into 16 sub-buckets, so a reported percentile is within 1/16 (6.25%)
+ * of the true value. Values are clamped at 2^28 µs (about 4.5 minutes).
+ * <p>
+ * The window is {@code slots} slots of {@code slotMillis} each. {@link #record} increments a
+ * bucket, a count and a sum in the current slot. The first recorder in a new period resets that
+ * slot; a value recorded concurrently with the reset may be lost, which is acceptable for metrics.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BITS = 4;
+    static final int SUB = 1 << SUB_BITS;
+    static final int MAX_EXPONENT = 27;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    /** Percentiles in microseconds over the window; -1 when there were no values. */
+    public record Snapshot(long count, double mean, long p50, long p90, long p99, long p999) {}
+
+    private final long slotMillis;
+    private final Slot[] slots;
+
+    public LatencyHistogram(int slots, long slotMillis) {
+        this.slotMillis = Math.max(slotMillis, 1);
+        this.slots = new Slot[Math.max(slots, 1)];
+        for (int i = 0; i < this.slots.length; i++) this.slots[i] = new Slot();
+    }
+
+    public void record(long micros, long nowMillis) {
+        long period = nowMillis / slotMillis;
+        Slot s = slots[(int) (period % slots.length)];
+        long seen = s.period.get();
+        if (seen != period && s.period.compareAndSet(seen, period)) s.reset();
+        s.counts.incrementAndGet(bucket(micros));
+        s.count.incrementAndGet();
+        s.sum.addAndGet(micros);
+    }
+
+    public Snapshot snapshot(long nowMillis) {
+        long period = nowMillis / slotMillis;
+        long[] merged = new long[BUCKETS];
+        long count = 0, sum = 0;
+        for (Slot s : slots) {
+            long p = s.period.get();
+            if (p > period || p <= period - slots.length) continue;
+            for (int i = 0; i < BUCKETS; i++) merged[i] += s.counts.get(i);
+            count += s.count.get();
+            sum += s.sum.get();
+        }
+        if (count == 0) return new Snapshot(0, -1, -1, -1, -1, -1);
+        return new Snapshot(count, (double) sum / count,
+                percentile(merged, count, 0.50), percentile(merged, count, 0.90),
+                percentile(merged, count, 0.99), percentile(merged, count, 0.999));
+    }
+
+    static int bucket(long v) {
+        if (v < SUB) return (int) Math.max(v, 0);
+        v = Math.min(v, MAX_VALUE);
+        int e = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (e - SUB_BITS)) & (SUB - 1);
+        return (e - SUB_BITS + 1) * SUB + sub;
+    }
+
+    // midpoint of the bucket's range
+    static long valueOf(int bucket) {
+        if (bucket < SUB) return bucket;
+        int e = bucket / SUB + SUB_BITS - 1;
+        int sub = bucket % SUB;
+        long width = 1L << (e - SUB_BITS);
+        return ((long) (SUB + sub) << (e - SUB_BITS)) + width / 2;
+    }
+
+    private static long percentile(long[] counts, long total, double q) {
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) return valueOf(i);
+        }
+        return valueOf(counts.length - 1);
+    }
+
+    private static final class Slot {
+        final AtomicLong period = new AtomicLong(Long.MIN_VALUE);
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong sum = new AtomicLong();
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+            count.set(0);
+            sum.set(0);
+        }
+    }
+}
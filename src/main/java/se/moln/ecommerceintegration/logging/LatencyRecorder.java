@@ -0,0 +1,92 @@
+package se.moln.ecommerceintegration.logging;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Request latency per route template, HTTP method and status class, each a rolling
+ * {@link LatencyHistogram} over {@code metrics.latency.window-seconds}. Fed by {@link AuditLoggingFilter},
+ * read by {@link LatencyEndpoint}.
+ * <p>
+ * Keys are bounded: routes are handler mapping patterns ({@code /users/{id}}, not the raw path),
+ * requests no handler matched share {@value #UNMATCHED}, and unknown methods share {@code OTHER}.
+ * Once a key exists, recording is a map lookup and a few atomic increments.
+ */
+@Component
+public class LatencyRecorder {
+    static final String UNMATCHED = "UNMATCHED";
+    private static final String[] METHODS = {"GET", "POST", "PUT", "PATCH", "DELETE", "HEAD", "OPTIONS", "OTHER"};
+    private static final String[] CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    /** One row of {@link #summaries()}; latencies in milliseconds. */
+    public record Summary(String route, String method, String status, long count,
+                          double meanMs, double p50Ms, double p90Ms, double p99Ms, double p999Ms) {}
+
+    private final boolean enabled;
+    private final int slots;
+    private final long slotMillis;
+    private final ConcurrentHashMap<String, AtomicReferenceArray<LatencyHistogram>> routes = new ConcurrentHashMap<>();
+
+    public LatencyRecorder(@Value("${metrics.latency.enabled:true}") boolean enabled,
+                           @Value("${metrics.latency.window-seconds:60}") int windowSeconds,
+                           @Value("${metrics.latency.slots:6}") int slots) {
+        this.enabled = enabled;
+        this.slots = Math.max(slots, 1);
+        this.slotMillis = Math.max(windowSeconds * 1000L / this.slots, 1);
+    }
+
+    public void record(String route, String method, int status, long nanos) {
+        if (!enabled) return;
+        AtomicReferenceArray<LatencyHistogram> byKey = routes.get(route != null ? route : UNMATCHED);
+        if (byKey == null) {
+            byKey = routes.computeIfAbsent(route != null ? route : UNMATCHED,
+                    k -> new AtomicReferenceArray<>(METHODS.length * CLASSES.length));
+        }
+        int i = methodIndex(method) * CLASSES.length + Math.min(Math.max(status / 100 - 1, 0), CLASSES.length - 1);
+        LatencyHistogram h = byKey.get(i);
+        if (h == null) {
+            byKey.compareAndSet(i, null, new LatencyHistogram(slots, slotMillis));
+            h = byKey.get(i);
+        }
+        h.record(nanos / 1000, System.currentTimeMillis());
+    }
+
+    /** Every key with requests in the window, busiest first. */
+    public List<Summary> summaries() {
+        long now = System.currentTimeMillis();
+        List<Summary> out = new ArrayList<>();
+        for (Map.Entry<String, AtomicReferenceArray<LatencyHistogram>> e : routes.entrySet()) {
+            AtomicReferenceArray<LatencyHistogram> byKey = e.getValue();
+            for (int i = 0; i < byKey.length(); i++) {
+                LatencyHistogram h = byKey.get(i);
+                if (h == null) continue;
+                LatencyHistogram.Snapshot s = h.snapshot(now);
+                if (s.count() == 0) continue;
+                out.add(new Summary(e.getKey(), METHODS[i / CLASSES.length], CLASSES[i % CLASSES.length], s.count(),
+                        ms(Math.round(s.mean())), ms(s.p50()), ms(s.p90()), ms(s.p99()), ms(s.p999())));
+            }
+        }
+        out.sort(Comparator.comparingLong(Summary::count).reversed());
+        return out;
+    }
+
+    public long windowSeconds() {
+        return slots * slotMillis / 1000;
+    }
+
+    private static int methodIndex(String method) {
+        for (int i = 0; i < METHODS.length - 1; i++) if (METHODS[i].equals(method)) return i;
+        return METHODS.length - 1;
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -1,10 +1,12 @@
 package se.moln.ecommerceintegration.model;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.util.UUID;
 import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Getter
 @Setter
@@ -47,13 +49,30 @@ public class ActivityLog {
     @Column(name = "duration_ms")
     private long durationMs;
 
+    // requests this row stands for when the audit policy samples (1 = not sampled)
+    @Builder.Default
+    @ColumnDefault("1")
+    @Column(name = "sample_weight", nullable = false)
+    private int sampleWeight = 1;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
     @PrePersist
     void onCreate() {
-        if (id == null) id = UUID.randomUUID();
+        if (id == null) id = newId();
+    }
+
+    /**
+     * A random (version 4) UUID drawn from ThreadLocalRandom. Audit ids only have to be unique,
+     * not unguessable, so the request path does not go through UUID.randomUUID()'s shared SecureRandom.
+     */
+    public static UUID newId() {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        long msb = (r.nextLong() & ~0xF000L) | 0x4000L;                          // version 4
+        long lsb = (r.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;   // IETF variant
+        return new UUID(msb, lsb);
     }
 
     public static ActivityLog of(
@@ -0,0 +1,88 @@
+package se.moln.ecommerceintegration.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One opaque refresh token, stored only as its SHA-256 hash. Every rotation adds a token to the
+ * same family; presenting an already used token revokes the whole family.
+ */
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Entity
+@Table(
+        name = "refresh_tokens",
+        uniqueConstraints = @UniqueConstraint(name = "uk_refresh_tokens_hash", columnNames = "token_hash"),
+        indexes = {
+                @Index(name = "ix_refresh_tokens_family", columnList = "family_id"),
+                @Index(name = "ix_refresh_tokens_user", columnList = "user_id"),
+                @Index(name = "ix_refresh_tokens_expires", columnList = "expires_at")
+        }
+)
+public class RefreshToken implements Persistable<UUID> {
+
+    @Id
+    @Column(nullable = false, updatable = false)
+    private UUID id;
+
+    @Column(name = "token_hash", nullable = false, updatable = false, length = 43)
+    private String tokenHash;
+
+    @Column(name = "family_id", nullable = false, updatable = false)
+    private UUID familyId;
+
+    @Column(name = "user_id", nullable = false, updatable = false)
+    private UUID userId;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false, updatable = false)
+    private Instant expiresAt;
+
+    // the family may not be extended past this, however often it is rotated
+    @Column(name = "family_expires_at", nullable = false, updatable = false)
+    private Instant familyExpiresAt;
+
+    @Column(name = "used_at")
+    private Instant usedAt;
+
+    @Column(name = "revoked_at")
+    private Instant revokedAt;
+
+    // id is assigned in Java; as for User, this makes save() a plain INSERT instead of a merge
+    @Transient
+    private boolean isNew = true;
+
+    public static RefreshToken of(String tokenHash, UUID familyId, UUID userId, Instant now,
+                                  Instant expiresAt, Instant familyExpiresAt) {
+        RefreshToken t = new RefreshToken();
+        t.id = UUID.randomUUID();
+        t.tokenHash = tokenHash;
+        t.familyId = familyId;
+        t.userId = userId;
+        t.createdAt = now;
+        t.expiresAt = expiresAt.isAfter(familyExpiresAt) ? familyExpiresAt : expiresAt;
+        t.familyExpiresAt = familyExpiresAt;
+        return t;
+    }
+
+    public void markUsed(Instant now) { this.usedAt = now; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+}
@@ -0,0 +1,52 @@
+package se.moln.ecommerceintegration.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A revoked access token ({@code jti}). {@code seq} only grows, so nodes fetch what is new
+ * since the highest seq they have seen. Rows are deleted once the token would have expired anyway.
+ */
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Entity
+@Table(
+        name = "revoked_tokens",
+        uniqueConstraints = @UniqueConstraint(name = "uk_revoked_tokens_jti", columnNames = "jti"),
+        indexes = {
+                @Index(name = "ix_revoked_tokens_revoked_at", columnList = "revoked_at"),
+                @Index(name = "ix_revoked_tokens_expires_at", columnList = "expires_at")
+        }
+)
+public class RevokedToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long seq;
+
+    @Column(nullable = false, updatable = false, length = 64)
+    private String jti;
+
+    @Column(name = "user_id", updatable = false)
+    private UUID userId;
+
+    @Column(name = "expires_at", nullable = false, updatable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at", nullable = false, updatable = false)
+    private Instant revokedAt;
+
+    public static RevokedToken of(String jti, UUID userId, Instant expiresAt, Instant revokedAt) {
+        RevokedToken r = new RevokedToken();
+        r.jti = jti;
+        r.userId = userId;
+        r.expiresAt = expiresAt;
+        r.revokedAt = revokedAt;
+        return r;
+    }
+}
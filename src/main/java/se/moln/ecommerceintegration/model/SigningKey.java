@@ -0,0 +1,57 @@
+package se.moln.ecommerceintegration.model;
+
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * An asymmetric token-signing key pair. The newest key whose {@code activatesAt} has passed signs
+ * new tokens; older keys stay published in the JWKS until the tokens they signed have expired.
+ * Keys are encoded as X.509 (public) and PKCS#8 (private) DER.
+ */
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Entity
+@Table(
+        name = "signing_keys",
+        // one successor per rotation slot: nodes rotating at the same time collide here instead of both adding a key
+        uniqueConstraints = @UniqueConstraint(name = "uk_signing_keys_alg_activates", columnNames = {"algorithm", "activates_at"}),
+        indexes = @Index(name = "ix_signing_keys_activates_at", columnList = "activates_at")
+)
+public class SigningKey {
+
+    @Id
+    @Column(nullable = false, updatable = false, length = 32)
+    private String kid;
+
+    @Column(nullable = false, updatable = false, length = 10)
+    private String algorithm;
+
+    @Lob
+    @Column(name = "public_key", nullable = false, updatable = false)
+    private byte[] publicKey;
+
+    @Lob
+    @Column(name = "private_key", nullable = false, updatable = false)
+    private byte[] privateKey;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "activates_at", nullable = false, updatable = false)
+    private Instant activatesAt;
+
+    public static SigningKey of(String kid, String algorithm, byte[] publicKey, byte[] privateKey, Instant activatesAt) {
+        SigningKey k = new SigningKey();
+        k.kid = kid;
+        k.algorithm = algorithm;
+        k.publicKey = publicKey;
+        k.privateKey = privateKey;
+        k.createdAt = Instant.now();
+        k.activatesAt = activatesAt;
+        return k;
+    }
+}
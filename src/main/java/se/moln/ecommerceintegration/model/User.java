@@ -2,19 +2,31 @@ package se.moln.ecommerceintegration.model;
 
 import jakarta.persistence.*;
 import lombok.Setter;
+import org.springframework.data.domain.Persistable;
 
 import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "users")
-public class User {
+@Table(
+        name = "users",
+        uniqueConstraints = @UniqueConstraint(name = User.EMAIL_CONSTRAINT, columnNames = "email"),
+        // keyset paging on (created_at, id), optionally narrowed by role or active flag
+        indexes = {
+                @Index(name = "idx_users_created_id", columnList = "created_at, id"),
+                @Index(name = "idx_users_role_created_id", columnList = "role, created_at, id"),
+                @Index(name = "idx_users_active_created_id", columnList = "is_active, created_at, id")
+        }
+)
+public class User implements Persistable<UUID> {
+    public static final String EMAIL_CONSTRAINT = "uk_users_email";
+
     @Id
     @Column(nullable = false, updatable = false)
     private UUID id;
 
     @Setter
-    @Column(nullable = false, unique = true, length = 255)
+    @Column(nullable = false, length = 255)
     private String email;
 
     @Setter
@@ -33,13 +45,18 @@ public class User {
     private Role role = Role.USER;
 
     @Setter
-    @Column(nullable = false)
+    @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
-    @Column(nullable = false)
+    @Column(name = "created_at", nullable = false)
     private Instant createdAt;
-    @Column(nullable = false)
+    @Column(name = "updated_at", nullable = false)
     private Instant updatedAt;
 
+    // id is assigned in Java, so Spring Data cannot tell new from detached by a null id;
+    // without this, save() would merge (SELECT + INSERT) instead of persist (INSERT only)
+    @Transient
+    private boolean isNew = true;
+
     public User() {
     }
 
@@ -66,7 +83,19 @@ public class User {
         updatedAt = Instant.now();
     }
 
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
     // getters
+    @Override
     public UUID getId() {
         return id;
     }
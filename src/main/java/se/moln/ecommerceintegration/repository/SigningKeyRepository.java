@@ -0,0 +1,10 @@
+package se.moln.ecommerceintegration.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import se.moln.ecommerceintegration.model.SigningKey;
+
+import java.util.List;
+
+public interface SigningKeyRepository extends JpaRepository<SigningKey, String> {
+    List<SigningKey> findAllByOrderByActivatesAtAsc();
+}
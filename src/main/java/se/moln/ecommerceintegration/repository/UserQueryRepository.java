@@ -0,0 +1,23 @@
+package se.moln.ecommerceintegration.repository;
+
+import se.moln.ecommerceintegration.dto.UserCursor;
+import se.moln.ecommerceintegration.dto.UserFilter;
+import se.moln.ecommerceintegration.dto.UserSummary;
+
+import java.util.List;
+
+/** Dynamic queries that Spring Data cannot derive; implemented by {@link UserQueryRepositoryImpl}. */
+public interface UserQueryRepository {
+
+    /**
+     * Up to {@code limit} users matching {@code filter}, newest first, strictly after
+     * {@code after} (null for the first page).
+     */
+    List<UserSummary> findPage(UserFilter filter, UserCursor after, int limit);
+
+    /**
+     * As {@link #findPage}, but locks the returned rows until the surrounding transaction ends, so
+     * a statement run on them in the same transaction sees them still matching {@code filter}.
+     */
+    List<UserSummary> findPageForUpdate(UserFilter filter, UserCursor after, int limit);
+}
@@ -0,0 +1,68 @@
+package se.moln.ecommerceintegration.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import se.moln.ecommerceintegration.dto.UserCursor;
+import se.moln.ecommerceintegration.dto.UserFilter;
+import se.moln.ecommerceintegration.dto.UserSummary;
+import se.moln.ecommerceintegration.model.User;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+class UserQueryRepositoryImpl implements UserQueryRepository {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<UserSummary> findPage(UserFilter filter, UserCursor after, int limit) {
+        return page(filter, after, limit, LockModeType.NONE);
+    }
+
+    @Override
+    public List<UserSummary> findPageForUpdate(UserFilter filter, UserCursor after, int limit) {
+        return page(filter, after, limit, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    private List<UserSummary> page(UserFilter filter, UserCursor after, int limit, LockModeType lock) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<UserSummary> q = cb.createQuery(UserSummary.class);
+        Root<User> u = q.from(User.class);
+
+        List<Predicate> where = new ArrayList<>();
+        if (filter.role() != null) where.add(cb.equal(u.get("role"), filter.role()));
+        if (filter.active() != null) where.add(cb.equal(u.get("isActive"), filter.active()));
+        if (filter.emailPrefix() != null) {
+            // prefix match stays an index range scan on the unique email index
+            where.add(cb.like(u.get("email"), escapeLike(filter.emailPrefix()) + "%", '\\'));
+        }
+        if (filter.createdFrom() != null) where.add(cb.greaterThanOrEqualTo(u.<Instant>get("createdAt"), filter.createdFrom()));
+        if (filter.createdTo() != null) where.add(cb.lessThan(u.<Instant>get("createdAt"), filter.createdTo()));
+        if (after != null) {
+            // (created_at, id) < (:createdAt, :id), spelled out because JPQL has no row-value comparison
+            where.add(cb.or(
+                    cb.lessThan(u.<Instant>get("createdAt"), after.createdAt()),
+                    cb.and(cb.equal(u.get("createdAt"), after.createdAt()), cb.lessThan(u.<UUID>get("id"), after.id()))));
+        }
+
+        q.select(cb.construct(UserSummary.class,
+                        u.get("id"), u.get("email"), u.get("firstName"), u.get("lastName"),
+                        u.get("role"), u.get("isActive"), u.get("createdAt")))
+                .where(where.toArray(Predicate[]::new))
+                .orderBy(cb.desc(u.get("createdAt")), cb.desc(u.get("id")));
+
+        return em.createQuery(q).setMaxResults(limit).setLockMode(lock).getResultList();
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,12 +1,83 @@
 package se.moln.ecommerceintegration.repository;
 
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+import jakarta.persistence.QueryHint;
+import se.moln.ecommerceintegration.dto.UserSummary;
+import se.moln.ecommerceintegration.model.Role;
 import se.moln.ecommerceintegration.model.User;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-public interface UserRepository extends JpaRepository<User, UUID> {
+public interface UserRepository extends JpaRepository<User, UUID>, UserQueryRepository {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    /** Every email, streamed with a JDBC fetch size; call inside a read-only transaction. */
+    @Query("select u.email from User u")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<String> streamAllEmails();
+
+    // keyset batches by primary key: each page is an index range scan, no OFFSET and no entities
+    @Query("select new se.moln.ecommerceintegration.dto.UserSummary(u.id, u.email, u.firstName, u.lastName, u.role, u.isActive, u.createdAt) "
+            + "from User u order by u.id")
+    List<UserSummary> findSummaries(Pageable firstPage);
+
+    @Query("select new se.moln.ecommerceintegration.dto.UserSummary(u.id, u.email, u.firstName, u.lastName, u.role, u.isActive, u.createdAt) "
+            + "from User u where u.id > :after order by u.id")
+    List<UserSummary> findSummariesAfter(UUID after, Pageable firstPage);
+
+    @Query("select new se.moln.ecommerceintegration.dto.UserSummary(u.id, u.email, u.firstName, u.lastName, u.role, u.isActive, u.createdAt) "
+            + "from User u where u.id in :ids")
+    List<UserSummary> findSummariesByIdIn(Collection<UUID> ids);
+
+    // set-based bulk writes: one statement per chunk, rows already in the target state are not touched
+    @Modifying
+    @Query("update User u set u.role = :role, u.updatedAt = :now where u.id in :ids and u.role <> :role")
+    int updateRole(Collection<UUID> ids, Role role, Instant now);
+
+    @Modifying
+    @Query("update User u set u.isActive = :active, u.updatedAt = :now where u.id in :ids and u.isActive <> :active")
+    int updateActive(Collection<UUID> ids, boolean active, Instant now);
+
+    @Modifying
+    @Query("delete from User u where u.id in :ids")
+    int deleteByIdIn(Collection<UUID> ids);
+
+    /**
+     * Swaps the password hash only if it is still {@code oldHash}; touches no other column, so a
+     * login-time rehash cannot write back a stale copy of the row (role, active flag, names).
+     */
+    @Transactional
+    @Modifying
+    @Query("update User u set u.passwordHash = :newHash where u.id = :id and u.passwordHash = :oldHash")
+    int updatePasswordHash(UUID id, String oldHash, String newHash);
+
+    /**
+     * True when an insert/update failed on the unique email constraint, so callers can insert
+     * directly and map the violation to 409 instead of checking existsByEmail first.
+     */
+    static boolean isDuplicateEmail(DataIntegrityViolationException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ConstraintViolationException cve && cve.getConstraintName() != null) {
+                String name = cve.getConstraintName().toLowerCase(Locale.ROOT);
+                // named constraint, or the auto-named one on schemas created before it had a name
+                return name.contains(User.EMAIL_CONSTRAINT) || name.contains("(email");
+            }
+        }
+        return false;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package se.moln.ecommerceintegration.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import se.moln.ecommerceintegration.model.Role;
+
+import java.util.UUID;
+
+/**
+ * Principal built from the access token's {@code uid}, {@code sub}, {@code role} and {@code jti} claims.
+ * Controllers take it with {@code @AuthenticationPrincipal AuthenticatedUser} and so never need
+ * to look the caller up by email or parse the token again. {@link #getName()} is the email.
+ * {@code tokenId} is null for tokens issued without a {@code jti}.
+ */
+public record AuthenticatedUser(UUID userId, String email, Role role, String tokenId) implements AuthenticatedPrincipal {
+
+    public AuthenticatedUser(UUID userId, String email, Role role) {
+        this(userId, email, role, null);
+    }
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
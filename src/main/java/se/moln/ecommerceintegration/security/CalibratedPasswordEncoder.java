@@ -0,0 +1,142 @@
+package se.moln.ecommerceintegration.security;
+
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.scrypt.SCryptPasswordEncoder;
+
+import java.util.Map;
+
+/**
+ * DelegatingPasswordEncoder over bcrypt, scrypt and Argon2 that encodes with one active
+ * algorithm and cost (see {@link PasswordEncoderCalibrator}).
+ * <p>
+ * {@link #upgradeEncoding(String)} reports true for hashes of another algorithm and for hashes
+ * whose cost is more than a factor of two away from the active cost in either direction
+ * (too weak or too expensive). The band keeps nodes that calibrate one step apart from
+ * rehashing the same user back and forth.
+ * Legacy hashes without an {id} prefix are treated as bcrypt.
+ */
+public class CalibratedPasswordEncoder implements PasswordEncoder {
+    public static final String BCRYPT = "bcrypt";
+    public static final String SCRYPT = "scrypt";
+    public static final String ARGON2 = "argon2";
+
+    // fixed (non-calibrated) parameters
+    static final int SCRYPT_BLOCK_SIZE = 8;
+    static final int SCRYPT_PARALLELISM = 1;
+    static final int ARGON2_PARALLELISM = 1;
+
+    private final String algorithm;
+    private final int cost;
+    private final int argon2MemoryKib;
+    private final DelegatingPasswordEncoder delegate;
+
+    /**
+     * @param algorithm       bcrypt, scrypt or argon2
+     * @param cost            bcrypt log rounds, scrypt log2(N) or Argon2 iterations
+     * @param argon2MemoryKib Argon2 memory in KiB (ignored for the other algorithms)
+     */
+    public CalibratedPasswordEncoder(String algorithm, int cost, int argon2MemoryKib) {
+        this.algorithm = algorithm;
+        this.cost = cost;
+        this.argon2MemoryKib = argon2MemoryKib;
+
+        PasswordEncoder bcrypt = BCRYPT.equals(algorithm) ? encoderFor(BCRYPT, cost, argon2MemoryKib) : new BCryptPasswordEncoder();
+        PasswordEncoder scrypt = SCRYPT.equals(algorithm) ? encoderFor(SCRYPT, cost, argon2MemoryKib) : SCryptPasswordEncoder.defaultsForSpringSecurity_v5_8();
+        PasswordEncoder argon2 = ARGON2.equals(algorithm) ? encoderFor(ARGON2, cost, argon2MemoryKib) : Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8();
+
+        this.delegate = new DelegatingPasswordEncoder(algorithm, Map.of(BCRYPT, bcrypt, SCRYPT, scrypt, ARGON2, argon2));
+        this.delegate.setDefaultPasswordEncoderForMatches(bcrypt); // hashes stored before the {id} prefix
+    }
+
+    /** Plain encoder for one algorithm/cost, also used by the calibrator to time candidates. */
+    static PasswordEncoder encoderFor(String algorithm, int cost, int argon2MemoryKib) {
+        return switch (algorithm) {
+            case BCRYPT -> new BCryptPasswordEncoder(cost);
+            case SCRYPT -> new SCryptPasswordEncoder(1 << cost, SCRYPT_BLOCK_SIZE, SCRYPT_PARALLELISM, 32, 16);
+            case ARGON2 -> new Argon2PasswordEncoder(16, 32, ARGON2_PARALLELISM, argon2MemoryKib, cost);
+            default -> throw new IllegalArgumentException("Unsupported password algorithm: " + algorithm);
+        };
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return delegate.matches(rawPassword, encodedPassword);
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) return false;
+
+        String id = BCRYPT;
+        String hash = encodedPassword;
+        if (encodedPassword.startsWith("{")) {
+            int end = encodedPassword.indexOf('}');
+            if (end < 0) return true;
+            id = encodedPassword.substring(1, end);
+            hash = encodedPassword.substring(end + 1);
+        }
+        if (!algorithm.equals(id)) return true;
+
+        try {
+            return switch (algorithm) {
+                case BCRYPT -> outsideBand(bcryptCost(hash));
+                case SCRYPT -> scryptNeedsUpgrade(hash);
+                case ARGON2 -> argon2NeedsUpgrade(hash);
+                default -> true;
+            };
+        } catch (RuntimeException e) {
+            return true; // unparsable hash: replace it with a fresh one
+        }
+    }
+
+    // bcrypt and scrypt costs are log2 of the work, so one step = factor two
+    private boolean outsideBand(int storedLogCost) {
+        return Math.abs(storedLogCost - cost) > 1;
+    }
+
+    private static int bcryptCost(String hash) {
+        // $2a$12$<salt+hash>
+        return Integer.parseInt(hash.substring(4, 6));
+    }
+
+    private boolean scryptNeedsUpgrade(String hash) {
+        // Spring format: $<hex(log2N << 16 | r << 8 | p)>$<salt>$<derived>
+        long params = Long.parseLong(hash.split("\\$")[1], 16);
+        int logN = (int) (params >> 16 & 0xffff);
+        int r = (int) (params >> 8 & 0xff);
+        int p = (int) (params & 0xff);
+        return r != SCRYPT_BLOCK_SIZE || p != SCRYPT_PARALLELISM || outsideBand(logN);
+    }
+
+    private boolean argon2NeedsUpgrade(String hash) {
+        // $argon2id$v=19$m=19456,t=2,p=1$<salt>$<hash>
+        int m = -1, t = -1, p = -1;
+        for (String kv : hash.split("\\$")[3].split(",")) {
+            int v = Integer.parseInt(kv.substring(2));
+            switch (kv.charAt(0)) {
+                case 'm' -> m = v;
+                case 't' -> t = v;
+                case 'p' -> p = v;
+                default -> { }
+            }
+        }
+        // iterations are linear in work: accept half to double
+        return m != argon2MemoryKib || p != ARGON2_PARALLELISM || t * 2 < cost || t > cost * 2;
+    }
+}
@@ -0,0 +1,468 @@
+package se.moln.ecommerceintegration.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.IncorrectClaimException;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.security.SignatureException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Mint and verify for our one access-token shape ({@code sub, iss, iat, exp, uid, role, jti}, HS256)
+ * without jjwt's builder, parser and claim maps.
+ * <p>
+ * Output is byte-for-byte what a JWS library accepts: the header segment is the constant
+ * {@code {"alg":"HS256"}} that jjwt writes, the payload is compact JSON, Base64URL without padding.
+ * Payloads are written and read straight from a per-thread byte buffer, and the HMAC comes from a
+ * per-thread {@link Mac} (cloned from a keyed prototype, so no provider lookup or re-keying).
+ * <p>
+ * {@link #verify} returns {@code null} for tokens it does not recognise (another header, extra
+ * claims) so the caller can fall back to the general parser. Bad signatures, expired tokens
+ * and a wrong issuer throw the same jjwt exception types as the general parser.
+ */
+public final class Hs256TokenCodec {
+
+    /** Base64URL of {@code {"alg":"HS256"}}. */
+    static final String HEADER = "eyJhbGciOiJIUzI1NiJ9";
+    private static final int SIG_BYTES = 32;
+    private static final int SIG_CHARS = 43;
+
+    private static final byte[] ENCODE = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final int[] DECODE = new int[128];
+
+    static {
+        Arrays.fill(DECODE, -1);
+        for (int i = 0; i < ENCODE.length; i++) DECODE[ENCODE[i]] = i;
+    }
+
+    private static final byte[] SUB = ascii("{\"sub\":");
+    private static final byte[] IAT = ascii(",\"iat\":");
+    private static final byte[] EXP = ascii(",\"exp\":");
+    private static final byte[] UID = ascii(",\"uid\":");
+    private static final byte[] ROLE = ascii(",\"role\":");
+    private static final byte[] JTI = ascii(",\"jti\":");
+
+    /**
+     * {@code issuedAt} and {@code expiresAt} are epoch seconds, {@link Long#MIN_VALUE} when the claim is absent;
+     * {@code tokenId} is the {@code jti}, null for tokens minted without one.
+     */
+    public record AccessClaims(String subject, String issuer, long issuedAt, long expiresAt, UUID userId, String role,
+                               String tokenId) {}
+
+    private final Mac prototype;
+    private final String issuer;
+    private final byte[] issJson; // ,"iss":"<issuer>" pre-escaped
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(this::newScratch);
+
+    public Hs256TokenCodec(byte[] secret, String issuer) {
+        try {
+            this.prototype = Mac.getInstance("HmacSHA256");
+            this.prototype.init(new SecretKeySpec(secret, "HmacSHA256"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+        this.issuer = issuer;
+        Scratch s = new Scratch(prototype);
+        int n = put(s.json, 0, ascii(",\"iss\":"));
+        n = putString(s, n, issuer);
+        this.issJson = Arrays.copyOf(s.json, n);
+    }
+
+    /** Compact HS256 token; {@code iat} and {@code exp} are epoch seconds, {@code tokenId} (jti) may be null. */
+    public String mint(UUID userId, String email, String role, long iat, long exp, String tokenId) {
+        Scratch s = scratch();
+        s.ensureJson(128 + 6 * (email.length() + role.length() + (tokenId == null ? 0 : tokenId.length())));
+        int n = put(s.json, 0, SUB);
+        n = putString(s, n, email);
+        n = put(s.json, n, issJson);
+        n = put(s.json, n, IAT);
+        n = putLong(s.json, n, iat);
+        n = put(s.json, n, EXP);
+        n = putLong(s.json, n, exp);
+        n = put(s.json, n, UID);
+        n = putString(s, n, userId.toString());
+        n = put(s.json, n, ROLE);
+        n = putString(s, n, role);
+        if (tokenId != null) {
+            n = put(s.json, n, JTI);
+            n = putString(s, n, tokenId);
+        }
+        s.json[n++] = '}';
+
+        int payloadChars = (n * 4 + 2) / 3;
+        byte[] out = new byte[HEADER.length() + 1 + payloadChars + 1 + SIG_CHARS];
+        int o = 0;
+        for (int i = 0; i < HEADER.length(); i++) out[o++] = (byte) HEADER.charAt(i);
+        out[o++] = '.';
+        o = encode(s.json, n, out, o);
+        s.mac.update(out, 0, o);
+        sign(s);
+        out[o++] = '.';
+        o = encode(s.sig, SIG_BYTES, out, o);
+        return new String(out, 0, o, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Claims of a valid token, or {@code null} if the token is not in our fixed shape.
+     * Throws {@link MalformedJwtException}, {@link SignatureException}, {@link ExpiredJwtException}
+     * or {@link IncorrectClaimException} for tokens in our shape that fail validation.
+     */
+    public AccessClaims verify(String token, long nowMillis) {
+        if (token == null || !token.startsWith(HEADER) || token.length() <= HEADER.length()
+                || token.charAt(HEADER.length()) != '.') return null;
+        int dot1 = HEADER.length();
+        int dot2 = token.indexOf('.', dot1 + 1);
+        if (dot2 < 0 || token.indexOf('.', dot2 + 1) >= 0) throw new MalformedJwtException("JWT must have three parts");
+        if (token.length() - dot2 - 1 != SIG_CHARS) throw new SignatureException("JWT signature does not match");
+
+        Scratch s = scratch();
+        s.ensureSigned(dot2);
+        for (int i = 0; i < dot2; i++) {
+            char c = token.charAt(i);
+            if (c >= 128) throw new MalformedJwtException("JWT contains non-ASCII characters");
+            s.signed[i] = (byte) c;
+        }
+        s.mac.update(s.signed, 0, dot2);
+        sign(s);
+        if (decode(token, dot2 + 1, token.length(), s.sigIn) != SIG_BYTES || !constantTimeEquals(s.sig, s.sigIn))
+            throw new SignatureException("JWT signature does not match locally computed signature");
+
+        s.ensureJson((dot2 - dot1) * 3 / 4 + 3);
+        int len = decode(token, dot1 + 1, dot2, s.json);
+        if (len < 0) throw new MalformedJwtException("Invalid Base64URL payload");
+        AccessClaims c = new PayloadReader(s.json, len).read();
+        if (c == null) return null;
+
+        if (!issuer.equals(c.issuer()))
+            throw new IncorrectClaimException(null, null, "Expected iss claim to be: " + issuer + ", but was: " + c.issuer());
+        if (c.expiresAt() != Long.MIN_VALUE && nowMillis > c.expiresAt() * 1000)
+            throw new ExpiredJwtException(null, null, "JWT expired at " + c.expiresAt());
+        return c;
+    }
+
+    private Scratch scratch() {
+        // a virtual thread rarely serves more than one request, so caching per thread buys nothing
+        return Thread.currentThread().isVirtual() ? newScratch() : scratch.get();
+    }
+
+    private Scratch newScratch() {
+        try {
+            return new Scratch((Mac) prototype.clone());
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("HmacSHA256 Mac is not cloneable", e);
+        }
+    }
+
+    private static void sign(Scratch s) {
+        try {
+            s.mac.doFinal(s.sig, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean constantTimeEquals(byte[] a, byte[] b) {
+        int diff = 0;
+        for (int i = 0; i < SIG_BYTES; i++) diff |= a[i] ^ b[i];
+        return diff == 0;
+    }
+
+    // ---- Base64URL, no padding ----
+
+    private static int encode(byte[] src, int len, byte[] dst, int o) {
+        int i = 0;
+        for (; i + 3 <= len; i += 3) {
+            int v = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            dst[o++] = ENCODE[v >>> 18];
+            dst[o++] = ENCODE[(v >>> 12) & 63];
+            dst[o++] = ENCODE[(v >>> 6) & 63];
+            dst[o++] = ENCODE[v & 63];
+        }
+        int rest = len - i;
+        if (rest == 1) {
+            int v = (src[i] & 0xff) << 16;
+            dst[o++] = ENCODE[v >>> 18];
+            dst[o++] = ENCODE[(v >>> 12) & 63];
+        } else if (rest == 2) {
+            int v = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8;
+            dst[o++] = ENCODE[v >>> 18];
+            dst[o++] = ENCODE[(v >>> 12) & 63];
+            dst[o++] = ENCODE[(v >>> 6) & 63];
+        }
+        return o;
+    }
+
+    // decoded length, or -1 on an invalid character or length
+    private static int decode(String s, int from, int to, byte[] dst) {
+        int n = to - from;
+        if (n % 4 == 1) return -1;
+        int o = 0, bits = 0, acc = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            int v = c < 128 ? DECODE[c] : -1;
+            if (v < 0) return -1;
+            acc = acc << 6 | v;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                if (o == dst.length) return -1;
+                dst[o++] = (byte) (acc >>> bits);
+            }
+        }
+        return o;
+    }
+
+    // ---- JSON writing ----
+
+    private static int put(byte[] dst, int o, byte[] src) {
+        System.arraycopy(src, 0, dst, o, src.length);
+        return o + src.length;
+    }
+
+    private static int putLong(byte[] dst, int o, long v) {
+        if (v < 0) {
+            dst[o++] = '-';
+            v = -v;
+        }
+        int start = o;
+        do {
+            dst[o++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v > 0);
+        for (int i = start, j = o - 1; i < j; i++, j--) {
+            byte t = dst[i];
+            dst[i] = dst[j];
+            dst[j] = t;
+        }
+        return o;
+    }
+
+    // quoted JSON string, UTF-8; escapes as Jackson does (quote, backslash, control characters)
+    private static int putString(Scratch s, int o, String v) {
+        byte[] d = s.json;
+        d[o++] = '"';
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c >= 0x20 && c < 0x80) {
+                if (c == '"' || c == '\\') d[o++] = '\\';
+                d[o++] = (byte) c;
+            } else if (c < 0x20) {
+                d[o++] = '\\';
+                d[o++] = 'u';
+                d[o++] = '0';
+                d[o++] = '0';
+                d[o++] = (byte) Character.forDigit(c >> 4, 16);
+                d[o++] = (byte) Character.forDigit(c & 15, 16);
+            } else if (c < 0x800) {
+                d[o++] = (byte) (0xc0 | c >> 6);
+                d[o++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < v.length() && Character.isLowSurrogate(v.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, v.charAt(++i));
+                d[o++] = (byte) (0xf0 | cp >> 18);
+                d[o++] = (byte) (0x80 | (cp >> 12) & 0x3f);
+                d[o++] = (byte) (0x80 | (cp >> 6) & 0x3f);
+                d[o++] = (byte) (0x80 | cp & 0x3f);
+            } else {
+                d[o++] = (byte) (0xe0 | c >> 12);
+                d[o++] = (byte) (0x80 | (c >> 6) & 0x3f);
+                d[o++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        d[o++] = '"';
+        return o;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Per-thread buffers and Mac; grown on demand, never shrunk. */
+    private static final class Scratch {
+        final Mac mac;
+        final byte[] sig = new byte[SIG_BYTES];
+        final byte[] sigIn = new byte[SIG_BYTES];
+        byte[] json = new byte[512];
+        byte[] signed = new byte[512];
+
+        Scratch(Mac mac) {
+            this.mac = mac;
+        }
+
+        void ensureJson(int n) {
+            if (json.length < n) json = new byte[Math.max(n, json.length * 2)];
+        }
+
+        void ensureSigned(int n) {
+            if (signed.length < n) signed = new byte[Math.max(n, signed.length * 2)];
+        }
+    }
+
+    /**
+     * Reads a flat JSON object holding only our six claims as strings and integers. Returns null
+     * for anything else (other claims such as nbf, nested values, fractions) so the caller can use
+     * the general parser, which knows how to validate them.
+     */
+    private static final class PayloadReader {
+        private final byte[] b;
+        private final int end;
+        private int p;
+        private boolean unsupported;
+
+        PayloadReader(byte[] b, int end) {
+            this.b = b;
+            this.end = end;
+        }
+
+        AccessClaims read() {
+            String sub = null, iss = null, uid = null, role = null, jti = null;
+            long iat = Long.MIN_VALUE, exp = Long.MIN_VALUE;
+            skipWs();
+            expect('{');
+            skipWs();
+            if (peek() == '}') {
+                p++;
+            } else {
+                while (true) {
+                    skipWs();
+                    String key = string();
+                    skipWs();
+                    expect(':');
+                    skipWs();
+                    byte c = peek();
+                    if (c == '"') {
+                        String v = string();
+                        switch (key) {
+                            case "sub" -> sub = v;
+                            case "iss" -> iss = v;
+                            case "uid" -> uid = v;
+                            case "role" -> role = v;
+                            case "jti" -> jti = v;
+                            default -> unsupported = true;
+                        }
+                    } else if (c == '-' || (c >= '0' && c <= '9')) {
+                        long v = number();
+                        if (key.equals("iat")) iat = v;
+                        else if (key.equals("exp")) exp = v;
+                        else unsupported = true;
+                    } else {
+                        return null; // nested, boolean or null value
+                    }
+                    if (unsupported) return null;
+                    skipWs();
+                    byte sep = next();
+                    if (sep == '}') break;
+                    if (sep != ',') throw malformed();
+                }
+            }
+            skipWs();
+            if (p != end) throw malformed();
+            if (unsupported) return null;
+            UUID userId;
+            try {
+                userId = uid == null ? null : UUID.fromString(uid);
+            } catch (IllegalArgumentException e) {
+                throw new MalformedJwtException("uid claim is not a UUID");
+            }
+            return new AccessClaims(sub, iss, iat, exp, userId, role, jti);
+        }
+
+        private String string() {
+            expect('"');
+            int start = p;
+            boolean escaped = false;
+            while (p < end && b[p] != '"') {
+                if (b[p] == '\\') {
+                    escaped = true;
+                    p++;
+                }
+                p++;
+            }
+            if (p >= end) throw malformed();
+            int stop = p++;
+            if (!escaped) return new String(b, start, stop - start, StandardCharsets.UTF_8);
+            return unescape(start, stop);
+        }
+
+        private String unescape(int start, int stop) {
+            // decode UTF-8 first, then resolve escapes (escapes are pure ASCII, so this is safe)
+            String raw = new String(b, start, stop - start, StandardCharsets.UTF_8);
+            StringBuilder sb = new StringBuilder(raw.length());
+            for (int i = 0; i < raw.length(); i++) {
+                char c = raw.charAt(i);
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (++i >= raw.length()) throw malformed();
+                char e = raw.charAt(i);
+                switch (e) {
+                    case '"', '\\', '/' -> sb.append(e);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (i + 4 >= raw.length()) throw malformed();
+                        try {
+                            sb.append((char) Integer.parseInt(raw, i + 1, i + 5, 16));
+                        } catch (NumberFormatException ex) {
+                            throw malformed();
+                        }
+                        i += 4;
+                    }
+                    default -> throw malformed();
+                }
+            }
+            return sb.toString();
+        }
+
+        private long number() {
+            boolean neg = peek() == '-';
+            if (neg) p++;
+            int start = p;
+            long v = 0;
+            while (p < end && b[p] >= '0' && b[p] <= '9') {
+                if (p - start >= 18) {
+                    unsupported = true;
+                    return 0;
+                }
+                v = v * 10 + (b[p++] - '0');
+            }
+            if (p == start) throw malformed();
+            if (p < end && (b[p] == '.' || b[p] == 'e' || b[p] == 'E')) {
+                unsupported = true; // fractions and exponents: leave to the general parser
+                while (p < end && "+-.eE0123456789".indexOf(b[p]) >= 0) p++;
+            }
+            return neg ? -v : v;
+        }
+
+        private void skipWs() {
+            while (p < end && (b[p] == ' ' || b[p] == '\t' || b[p] == '\n' || b[p] == '\r')) p++;
+        }
+
+        private byte peek() {
+            if (p >= end) throw malformed();
+            return b[p];
+        }
+
+        private byte next() {
+            if (p >= end) throw malformed();
+            return b[p++];
+        }
+
+        private void expect(char c) {
+            if (next() != c) throw malformed();
+        }
+
+        private static MalformedJwtException malformed() {
+            return new MalformedJwtException("Malformed JWT payload JSON");
+        }
+    }
+}
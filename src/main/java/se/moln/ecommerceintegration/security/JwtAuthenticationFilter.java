@@ -1,23 +1,32 @@
 package se.moln.ecommerceintegration.security;
 
-import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
+import se.moln.ecommerceintegration.model.Role;
 import se.moln.ecommerceintegration.service.JwtService;
+import se.moln.ecommerceintegration.service.TokenRevocationService;
 
 import java.io.IOException;
 import java.util.List;
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtService jwt;
-    public JwtAuthenticationFilter(JwtService jwt) { this.jwt = jwt; }
+    private final TokenAuthenticationCache cache;
+    private final TokenRevocationService revocations;
+
+    public JwtAuthenticationFilter(JwtService jwt, TokenAuthenticationCache cache, TokenRevocationService revocations) {
+        this.jwt = jwt;
+        this.cache = cache;
+        this.revocations = revocations;
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
@@ -25,12 +34,23 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String header = req.getHeader(HttpHeaders.AUTHORIZATION);
         if (header != null && header.startsWith("Bearer ")) {
             try {
-                Claims c = jwt.parse(header.substring(7)).getBody();
-                var auth = new UsernamePasswordAuthenticationToken(
-                        c.getSubject(), null, List.of(new SimpleGrantedAuthority("ROLE_" + c.get("role"))));
-                SecurityContextHolder.getContext().setAuthentication(auth);
+                Authentication auth = cache.get(header.substring(7), this::authenticate);
+                // checked on every request, so a revocation also applies to cached tokens
+                if (!(auth.getPrincipal() instanceof AuthenticatedUser u) || !revocations.isRevoked(u.tokenId())) {
+                    SecurityContextHolder.getContext().setAuthentication(auth);
+                }
             } catch (Exception ignored) { SecurityContextHolder.clearContext(); }
         }
         chain.doFilter(req, res);
     }
-}
\ No newline at end of file
+
+    // full verification, only on a cache miss
+    private TokenAuthenticationCache.Entry authenticate(String token) {
+        Hs256TokenCodec.AccessClaims c = jwt.verify(token);
+        Role role = Role.valueOf(c.role());
+        var principal = new AuthenticatedUser(c.userId(), c.subject(), role, c.tokenId());
+        var auth = new UsernamePasswordAuthenticationToken(
+                principal, null, List.of(new SimpleGrantedAuthority("ROLE_" + role.name())));
+        return new TokenAuthenticationCache.Entry(auth, c.expiresAt() == Long.MIN_VALUE ? 0 : c.expiresAt() * 1000);
+    }
+}
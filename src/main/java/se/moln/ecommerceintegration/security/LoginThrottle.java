@@ -0,0 +1,93 @@
+package se.moln.ecommerceintegration.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.stereotype.Component;
+import se.moln.ecommerceintegration.exception.TooManyRequestsException;
+import se.moln.ecommerceintegration.utils.RequestUtils;
+
+import java.util.Locale;
+
+/**
+ * Rejects login attempts per normalized email and per client IP before any user lookup or
+ * password hashing happens. A successful login clears the email's counter.
+ * <p>
+ * The IP is taken from the X-Forwarded-For hop appended by the outermost of
+ * {@code auth.throttle.trusted-proxies} proxies, never from hops the client could have sent.
+ */
+@Component
+public class LoginThrottle {
+    private final boolean enabled;
+    private final int trustedProxies;
+    private final SlidingWindowLimiter byEmail;
+    private final SlidingWindowLimiter byIp;
+
+    private final Counter allowed;
+    private final Counter rejectedEmail;
+    private final Counter rejectedIp;
+
+    public LoginThrottle(MeterRegistry registry,
+                         @Value("${auth.throttle.enabled:true}") boolean enabled,
+                         @Value("${auth.throttle.email.max-attempts:10}") int emailMaxAttempts,
+                         @Value("${auth.throttle.email.window-seconds:300}") int emailWindowSeconds,
+                         @Value("${auth.throttle.ip.max-attempts:100}") int ipMaxAttempts,
+                         @Value("${auth.throttle.ip.window-seconds:60}") int ipWindowSeconds,
+                         @Value("${auth.throttle.buckets:10}") int buckets,
+                         @Value("${auth.throttle.max-keys:100000}") int maxKeys,
+                         @Value("${auth.throttle.trusted-proxies:1}") int trustedProxies) {
+        this.enabled = enabled;
+        this.trustedProxies = Math.max(trustedProxies, 0);
+        this.byEmail = new SlidingWindowLimiter(emailMaxAttempts, emailWindowSeconds * 1000L, buckets, maxKeys);
+        this.byIp = new SlidingWindowLimiter(ipMaxAttempts, ipWindowSeconds * 1000L, buckets, maxKeys);
+
+        this.allowed = Counter.builder("auth.throttle.allowed").register(registry);
+        this.rejectedEmail = Counter.builder("auth.throttle.rejected").tag("key", "email").register(registry);
+        this.rejectedIp = Counter.builder("auth.throttle.rejected").tag("key", "ip").register(registry);
+        Gauge.builder("auth.throttle.keys", byEmail, SlidingWindowLimiter::trackedKeys).tag("key", "email").register(registry);
+        Gauge.builder("auth.throttle.keys", byIp, SlidingWindowLimiter::trackedKeys).tag("key", "ip").register(registry);
+    }
+
+    /** As {@link #check(String, String)}, with the client IP resolved from {@code req}. */
+    public void check(String email, HttpServletRequest req) {
+        if (enabled) check(email, RequestUtils.clientIp(req, trustedProxies));
+    }
+
+    /**
+     * Counts one login attempt, throwing 429 with Retry-After when either key is over its limit.
+     */
+    public void check(String email, String ip) {
+        if (!enabled) return;
+        long now = System.currentTimeMillis();
+
+        if (ip != null && !ip.isBlank()) {
+            long wait = byIp.tryAcquire(ip, now);
+            if (wait > 0) {
+                rejectedIp.increment();
+                throw tooMany(wait);
+            }
+        }
+        if (email != null && !email.isBlank()) {
+            long wait = byEmail.tryAcquire(normalize(email), now);
+            if (wait > 0) {
+                rejectedEmail.increment();
+                throw tooMany(wait);
+            }
+        }
+        allowed.increment();
+    }
+
+    public void onSuccess(String email) {
+        if (enabled && email != null) byEmail.reset(normalize(email));
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static TooManyRequestsException tooMany(long waitMillis) {
+        return new TooManyRequestsException("Too many login attempts, try again later", (waitMillis + 999) / 1000);
+    }
+}
@@ -0,0 +1,78 @@
+package se.moln.ecommerceintegration.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Picks the cost for the active password algorithm so that one verification takes about
+ * {@code targetMillis} on the current host.
+ * <p>
+ * Only one reference cost is timed; the rest is extrapolated (bcrypt/scrypt double per step,
+ * Argon2 is linear in iterations), so startup pays for a handful of hashes, not a search.
+ */
+public final class PasswordEncoderCalibrator {
+    private static final Logger log = LoggerFactory.getLogger(PasswordEncoderCalibrator.class);
+    private static final String SAMPLE = "Calibrate-Me-123!";
+
+    // reference cost that gets timed, and the allowed range per algorithm
+    static final int BCRYPT_REF = 10, BCRYPT_MIN = 10, BCRYPT_MAX = 16;
+    static final int SCRYPT_REF = 14, SCRYPT_MIN = 14, SCRYPT_MAX = 17; // 2^17 * r=8 = 128 MiB per hash
+    static final int ARGON2_REF = 2, ARGON2_MIN = 2, ARGON2_MAX = 10;
+
+    private final ToDoubleFunction<PasswordEncoder> verifyMillis;
+
+    public PasswordEncoderCalibrator() {
+        this(PasswordEncoderCalibrator::timeVerify);
+    }
+
+    PasswordEncoderCalibrator(ToDoubleFunction<PasswordEncoder> verifyMillis) {
+        this.verifyMillis = verifyMillis;
+    }
+
+    public CalibratedPasswordEncoder calibrate(String algorithm, long targetMillis, int argon2MemoryKib) {
+        int cost = switch (algorithm) {
+            case CalibratedPasswordEncoder.BCRYPT -> logScaled(algorithm, BCRYPT_REF, BCRYPT_MIN, BCRYPT_MAX, targetMillis, argon2MemoryKib);
+            case CalibratedPasswordEncoder.SCRYPT -> logScaled(algorithm, SCRYPT_REF, SCRYPT_MIN, SCRYPT_MAX, targetMillis, argon2MemoryKib);
+            case CalibratedPasswordEncoder.ARGON2 -> {
+                double ms = verifyMillis.applyAsDouble(CalibratedPasswordEncoder.encoderFor(algorithm, ARGON2_REF, argon2MemoryKib));
+                int c = clamp((int) Math.floor(targetMillis / (ms / ARGON2_REF)), ARGON2_MIN, ARGON2_MAX);
+                log.info("Password encoder calibration: argon2 t={} took {} ms, target {} ms -> t={}", ARGON2_REF, fmt(ms), targetMillis, c);
+                yield c;
+            }
+            default -> throw new IllegalArgumentException("Unsupported password algorithm: " + algorithm);
+        };
+        return new CalibratedPasswordEncoder(algorithm, cost, argon2MemoryKib);
+    }
+
+    private int logScaled(String algorithm, int ref, int min, int max, long targetMillis, int argon2MemoryKib) {
+        double ms = verifyMillis.applyAsDouble(CalibratedPasswordEncoder.encoderFor(algorithm, ref, argon2MemoryKib));
+        int steps = (int) Math.floor(Math.log(targetMillis / Math.max(ms, 0.001)) / Math.log(2));
+        int cost = clamp(ref + steps, min, max);
+        log.info("Password encoder calibration: {} cost {} took {} ms, target {} ms -> cost {}", algorithm, ref, fmt(ms), targetMillis, cost);
+        return cost;
+    }
+
+    /** Best of three verifications after one warm-up. */
+    static double timeVerify(PasswordEncoder encoder) {
+        String hash = encoder.encode(SAMPLE);
+        encoder.matches(SAMPLE, hash);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long t0 = System.nanoTime();
+            encoder.matches(SAMPLE, hash);
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        return best / 1_000_000.0;
+    }
+
+    private static int clamp(int v, int min, int max) {
+        return Math.max(min, Math.min(max, v));
+    }
+
+    private static String fmt(double ms) {
+        return String.format("%.1f", ms);
+    }
+}
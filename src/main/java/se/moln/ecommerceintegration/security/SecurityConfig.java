@@ -1,5 +1,6 @@
 package se.moln.ecommerceintegration.security;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -9,26 +10,35 @@ import org.springframework.security.config.Customizer;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import se.moln.ecommerceintegration.service.JwtService;
+import se.moln.ecommerceintegration.service.TokenRevocationService;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import java.util.List;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 
 @Configuration
 @EnableMethodSecurity(prePostEnabled = true)
 public class SecurityConfig {
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(@Value("${auth.password.algorithm:bcrypt}") String algorithm,
+                                           @Value("${auth.password.target-verify-ms:250}") long targetVerifyMs,
+                                           @Value("${auth.password.cost:0}") int fixedCost,
+                                           @Value("${auth.password.argon2-memory-kib:19456}") int argon2MemoryKib) {
+        // cost > 0 pins the parameters; otherwise calibrate against this host at startup
+        if (fixedCost > 0) return new CalibratedPasswordEncoder(algorithm, fixedCost, argon2MemoryKib);
+        return new PasswordEncoderCalibrator().calibrate(algorithm, targetVerifyMs, argon2MemoryKib);
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http, JwtService jwt) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, JwtService jwt, TokenAuthenticationCache tokenCache,
+                                           TokenRevocationService revocations,
+                                           @Value("${auth.service-keys:}") String serviceKeys) throws Exception {
         return http
                 .csrf(AbstractHttpConfigurer::disable)
                 .cors(Customizer.withDefaults())
@@ -39,12 +49,15 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         // allow preflight requests universally
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                        // service-to-service only; must come before the /auth/** permitAll below
+                        .requestMatchers("/auth/introspect").hasAnyRole("SERVICE", "ADMIN")
                         //släpp in Swagger & API-docs utan auth
                         .requestMatchers(
                                 "/v3/api-docs/**",
                                 "/swagger-ui/**",
                                 "/swagger-ui.html",
                                 "/actuator/health",
+                                "/.well-known/jwks.json",
                                 "/auth/**",
                                 "/error",
                                 "/register",
@@ -53,12 +66,15 @@ public class SecurityConfig {
                         ).permitAll()
                         .requestMatchers("/me").authenticated()
                         .requestMatchers("/users/**").hasRole("ADMIN")
+                        .requestMatchers("/actuator/latency/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .anonymous(Customizer.withDefaults())
+                .exceptionHandling(e -> e.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
                 .formLogin(AbstractHttpConfigurer::disable)
                 .httpBasic(AbstractHttpConfigurer::disable)
-                .addFilterBefore(new JwtAuthenticationFilter(jwt), UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(new JwtAuthenticationFilter(jwt, tokenCache, revocations), UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(new ServiceKeyAuthenticationFilter(serviceKeys), UsernamePasswordAuthenticationFilter.class)
                 .build();
     }
 
@@ -72,7 +88,7 @@ public class SecurityConfig {
         ));
         cfg.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         cfg.setAllowedHeaders(List.of("Authorization", "Content-Type", "X-Requested-With", "Origin", "Accept"));
-        cfg.setExposedHeaders(List.of("Authorization", "Content-Type"));
+        cfg.setExposedHeaders(List.of("Authorization", "Content-Type", "Retry-After", "X-Next-Cursor"));
         cfg.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
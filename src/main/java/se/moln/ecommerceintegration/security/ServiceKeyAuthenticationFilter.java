@@ -0,0 +1,68 @@
+package se.moln.ecommerceintegration.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Authenticates other services (gateway, order-service) by a shared key in {@value #HEADER}.
+ * Keys come from {@code auth.service-keys} as a comma separated list of {@code name:key}; a match
+ * authenticates as the service name with {@code ROLE_SERVICE}. Keys are compared as SHA-256
+ * digests with {@link MessageDigest#isEqual} so the comparison time does not leak a prefix.
+ */
+public class ServiceKeyAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Service-Key";
+
+    private final Map<String, byte[]> keys = new LinkedHashMap<>();
+
+    public ServiceKeyAuthenticationFilter(String serviceKeys) {
+        if (serviceKeys == null) return;
+        for (String entry : serviceKeys.split(",")) {
+            int colon = entry.indexOf(':');
+            if (colon < 0) continue;
+            String name = entry.substring(0, colon).trim();
+            String key = entry.substring(colon + 1).trim();
+            if (!name.isEmpty() && !key.isEmpty()) keys.put(name, digest(key));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+            throws ServletException, IOException {
+        String key = req.getHeader(HEADER);
+        if (key != null && !keys.isEmpty()) {
+            byte[] presented = digest(key);
+            String matched = null;
+            for (Map.Entry<String, byte[]> e : keys.entrySet()) {
+                if (MessageDigest.isEqual(presented, e.getValue())) matched = e.getKey();
+            }
+            if (matched != null) {
+                SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                        matched, null, List.of(new SimpleGrantedAuthority("ROLE_SERVICE"))));
+            }
+        }
+        chain.doFilter(req, res);
+    }
+
+    private static byte[] digest(String key) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
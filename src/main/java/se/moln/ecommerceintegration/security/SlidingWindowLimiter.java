@@ -0,0 +1,127 @@
+package se.moln.ecommerceintegration.security;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-key sliding window counter made of {@code buckets} time slots.
+ * <p>
+ * Each slot is one AtomicLong packing {@code bucketIndex << 24 | count}, so incrementing and
+ * rolling a slot over to a new time bucket is a single CAS and no locks are taken. Only the low
+ * 40 bits of the bucket index are stored and ages are compared modulo 2^40, so epoch-millis
+ * timestamps fit even with 1 ms buckets (wrap-around after ~35 years of 1 ms buckets is harmless).
+ * The check-then-increment is not atomic across slots, so under heavy contention a key may
+ * overshoot its limit by a few attempts; that is fine for throttling.
+ * <p>
+ * Memory is bounded by {@code maxKeys}: when exceeded, keys idle for a full window are evicted,
+ * and if that is not enough, arbitrary keys are dropped (they simply start from zero again).
+ */
+public class SlidingWindowLimiter {
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long BUCKET_MASK = (1L << (Long.SIZE - COUNT_BITS)) - 1;
+
+    private final int limit;
+    private final int buckets;
+    private final long bucketMillis;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    public SlidingWindowLimiter(int limit, long windowMillis, int buckets, int maxKeys) {
+        this.limit = limit;
+        this.buckets = Math.max(buckets, 1);
+        this.bucketMillis = Math.max(windowMillis / this.buckets, 1);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Counts one attempt for {@code key} and returns 0, or returns the number of millis until
+     * the oldest counted bucket leaves the window when the key is already at its limit.
+     */
+    public long tryAcquire(String key, long nowMillis) {
+        long bucket = nowMillis / bucketMillis;
+        Window w = windows.get(key);
+        if (w == null) {
+            if (windows.size() >= maxKeys) sweep(bucket);
+            w = windows.computeIfAbsent(key, k -> new Window(buckets));
+        }
+        w.lastBucket = bucket;
+
+        if (w.sum(bucket) >= limit) {
+            long oldest = w.oldestBucket(bucket);
+            return Math.max((oldest + buckets) * bucketMillis - nowMillis, 1);
+        }
+        w.increment(bucket);
+        return 0;
+    }
+
+    public void reset(String key) {
+        windows.remove(key);
+    }
+
+    public int trackedKeys() {
+        return windows.size();
+    }
+
+    private void sweep(long bucket) {
+        if (!sweeping.compareAndSet(false, true)) return;
+        try {
+            windows.values().removeIf(w -> w.lastBucket <= bucket - buckets);
+            Iterator<Map.Entry<String, Window>> it = windows.entrySet().iterator();
+            int target = maxKeys - Math.max(maxKeys / 10, 1);
+            while (windows.size() > target && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static final class Window {
+        private final AtomicLongArray slots;
+        volatile long lastBucket;
+
+        Window(int buckets) {
+            this.slots = new AtomicLongArray(buckets);
+        }
+
+        void increment(long bucket) {
+            int i = (int) Math.floorMod(bucket, slots.length());
+            long base = (bucket & BUCKET_MASK) << COUNT_BITS;
+            while (true) {
+                long v = slots.get(i);
+                long next = (v & ~COUNT_MASK) == base ? Math.min(v + 1, base | COUNT_MASK) : base | 1;
+                if (slots.compareAndSet(i, v, next)) return;
+            }
+        }
+
+        int sum(long bucket) {
+            int total = 0;
+            for (int i = 0; i < slots.length(); i++) {
+                long v = slots.get(i);
+                if (age(bucket, v) < slots.length()) total += (int) (v & COUNT_MASK);
+            }
+            return total;
+        }
+
+        long oldestBucket(long bucket) {
+            long oldest = 0;
+            for (int i = 0; i < slots.length(); i++) {
+                long v = slots.get(i);
+                long age = age(bucket, v);
+                if ((v & COUNT_MASK) > 0 && age < slots.length()) oldest = Math.max(oldest, age);
+            }
+            return bucket - oldest;
+        }
+
+        // buckets between now and the slot's bucket, modulo the stored width
+        private static long age(long bucket, long slot) {
+            return (bucket - (slot >>> COUNT_BITS)) & BUCKET_MASK;
+        }
+    }
+}
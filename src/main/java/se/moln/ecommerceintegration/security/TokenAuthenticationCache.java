@@ -0,0 +1,129 @@
+package se.moln.ecommerceintegration.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Bearer token to {@link Authentication}, so a token seen before skips signature verification
+ * and claims parsing until it expires.
+ * <p>
+ * Keys are SHA-256 digests of the token, never the token itself, so a heap dump does not
+ * hold usable credentials and a cache hit cannot be forged with a colliding weak hash.
+ * Entries expire at the token's own {@code exp}. Only successfully validated tokens are cached.
+ * <p>
+ * Memory is bounded by {@code maxEntries}: when full, expired entries are swept and, if that is
+ * not enough, arbitrary entries are dropped (their next request simply parses again).
+ */
+@Component
+public class TokenAuthenticationCache {
+
+    /** What the loader returns for a valid token: the authentication and when it stops being valid. */
+    public record Entry(Authentication authentication, long expiresAtMillis) {}
+
+    private record Digest(long a, long b, long c, long d) {}
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final MessageDigest sha256;
+    private final ConcurrentHashMap<Digest, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public TokenAuthenticationCache(MeterRegistry registry,
+                                    @Value("${auth.token-cache.enabled:true}") boolean enabled,
+                                    @Value("${auth.token-cache.max-entries:10000}") int maxEntries) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(maxEntries, 1);
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        this.hits = Counter.builder("auth.token.cache").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("auth.token.cache").tag("result", "miss").register(registry);
+        this.evictions = Counter.builder("auth.token.cache.evictions")
+                .description("Entries dropped before expiry because the cache was full")
+                .register(registry);
+        Gauge.builder("auth.token.cache.size", entries, Map::size).register(registry);
+    }
+
+    /**
+     * The cached authentication for {@code token}, or the loader's result, cached until its expiry.
+     * Exceptions from the loader (invalid or expired token) propagate and nothing is cached.
+     */
+    public Authentication get(String token, Function<String, Entry> loader) {
+        if (!enabled) return loader.apply(token).authentication();
+        long now = System.currentTimeMillis();
+        Digest key = digest(token);
+        Entry e = entries.get(key);
+        if (e != null) {
+            if (now < e.expiresAtMillis()) {
+                hits.increment();
+                return e.authentication();
+            }
+            entries.remove(key, e);
+        }
+        misses.increment();
+
+        Entry loaded = loader.apply(token);
+        if (loaded.expiresAtMillis() > now) {
+            if (entries.size() >= maxEntries) sweep(now);
+            entries.put(key, loaded);
+        }
+        return loaded.authentication();
+    }
+
+    /** Drops every entry, e.g. after revocations or a key change. */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private Digest digest(String token) {
+        MessageDigest md;
+        try {
+            md = (MessageDigest) sha256.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer h = ByteBuffer.wrap(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        return new Digest(h.getLong(), h.getLong(), h.getLong(), h.getLong());
+    }
+
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) return;
+        try {
+            entries.values().removeIf(e -> e.expiresAtMillis() <= now);
+            Iterator<Map.Entry<Digest, Entry>> it = entries.entrySet().iterator();
+            int target = maxEntries - Math.max(maxEntries / 10, 1);
+            while (entries.size() > target && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictions.increment();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
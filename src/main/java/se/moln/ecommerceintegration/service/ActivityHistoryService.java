@@ -0,0 +1,197 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import se.moln.ecommerceintegration.model.ActivityLog;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The latest {@value #CAPACITY} activity entries per user, kept in memory so {@code GET /users/history}
+ * does not query {@code activity_logs} for events this process produced itself.
+ * <p>
+ * Every audited event is {@link #recorded} into its user's ring. A ring only answers a read once it
+ * has been merged with the database (lazily, on the first read for that user, and again every
+ * {@code audit.history.refresh-seconds}), so after a restart, or for events written by another
+ * node, the table stays the source of truth. Merging is by id, so events that are recorded here but
+ * not yet written by the async writer are never lost from the result.
+ * <p>
+ * At most {@code audit.history.max-users} rings are kept. The map is a plain ConcurrentHashMap, so
+ * the audit hot path takes no shared lock; each ring carries the time it was last used, and once the
+ * map grows past max-users one thread sweeps it and drops the least recently used users down to 90%
+ * of the limit. Eviction is therefore batched and only approximately LRU under concurrent use.
+ */
+@Service
+public class ActivityHistoryService {
+    static final int CAPACITY = 50;
+    private static final int EVICTION_SAMPLE = 8;
+    // principal name of Spring Security's AnonymousAuthenticationFilter; it is nobody's history
+    static final String ANONYMOUS = "anonymousUser";
+
+    private final ActivityLogPartitions store;
+    private final boolean enabled;
+    private final long refreshMillis;
+    private final int maxUsers;
+    private final ConcurrentHashMap<String, Ring> rings = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public ActivityHistoryService(ActivityLogPartitions store,
+                                  MeterRegistry registry,
+                                  @Value("${audit.history.enabled:true}") boolean enabled,
+                                  @Value("${audit.history.max-users:10000}") int maxUsers,
+                                  @Value("${audit.history.refresh-seconds:300}") long refreshSeconds) {
+        this.store = store;
+        this.enabled = enabled;
+        this.refreshMillis = refreshSeconds * 1000;
+        this.maxUsers = Math.max(maxUsers, 1);
+
+        this.hits = Counter.builder("audit.history").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("audit.history").tag("result", "miss").register(registry);
+        Gauge.builder("audit.history.users", this, ActivityHistoryService::users).register(registry);
+    }
+
+    /** Adds an event from the audit write path to its user's ring. */
+    public void recorded(ActivityLog event) {
+        String email = event.getUserEmail();
+        if (!enabled || email == null || ANONYMOUS.equals(email)) return;
+        ring(email).add(event);
+    }
+
+    /** The user's latest entries, newest first. */
+    public List<ActivityLog> history(String email) {
+        if (!enabled) return store.latest(email, null, null, CAPACITY);
+        long now = System.currentTimeMillis();
+        Ring r = rings.get(email);
+        if (r != null) {
+            r.touched = System.nanoTime();
+            List<ActivityLog> cached = r.snapshot(now - refreshMillis);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+        List<ActivityLog> stored = store.latest(email, null, null, CAPACITY);
+        return ring(email).merge(stored, now);
+    }
+
+    /** Entries with {@code from <= createdAt < to}, newest first; always read from the table buckets in that range. */
+    public List<ActivityLog> history(String email, Instant from, Instant to) {
+        if (from == null && to == null) return history(email);
+        return store.latest(email, from, to, CAPACITY);
+    }
+
+    public int users() {
+        return rings.size();
+    }
+
+    private Ring ring(String email) {
+        Ring r = rings.get(email);
+        if (r == null) {
+            r = rings.computeIfAbsent(email, k -> new Ring());
+            if (rings.size() > maxUsers) evict();
+        }
+        r.touched = System.nanoTime();
+        return r;
+    }
+
+    // One thread sweeps; writers that lose the race evict a sampled victim each, so the map
+    // never runs more than the number of concurrent writers past max-users
+    private void evict() {
+        while (rings.size() > maxUsers) {
+            if (sweeping.compareAndSet(false, true)) {
+                try {
+                    sweep(maxUsers - maxUsers / 10);
+                } finally {
+                    sweeping.set(false);
+                }
+            } else {
+                evictSampled();
+            }
+        }
+    }
+
+    private void evictSampled() {
+        String victim = null;
+        Ring victimRing = null;
+        long oldest = Long.MAX_VALUE;
+        int seen = 0;
+        for (Map.Entry<String, Ring> e : rings.entrySet()) {
+            long touched = e.getValue().touched;
+            if (touched < oldest) {
+                oldest = touched;
+                victim = e.getKey();
+                victimRing = e.getValue();
+            }
+            if (++seen == EVICTION_SAMPLE) break;
+        }
+        if (victim != null) rings.remove(victim, victimRing);
+    }
+
+    private void sweep(int target) {
+        // stamps are copied first: other threads keep touching rings while we sort
+        List<Stamped> stamped = new ArrayList<>(rings.size());
+        rings.forEach((email, r) -> stamped.add(new Stamped(email, r, r.touched)));
+        int excess = stamped.size() - target;
+        if (excess <= 0) return;
+        stamped.sort(Comparator.comparingLong(Stamped::touched));
+        for (int i = 0; i < excess; i++) rings.remove(stamped.get(i).email(), stamped.get(i).ring());
+    }
+
+    private record Stamped(String email, Ring ring, long touched) {}
+
+    private static final class Ring {
+        private final ActivityLog[] items = new ActivityLog[CAPACITY];
+        private int next;
+        private int size;
+        private long mergedAt; // 0 until merged with the database
+        volatile long touched = System.nanoTime(); // last read or write, for eviction
+
+        synchronized void add(ActivityLog e) {
+            items[next] = e;
+            next = (next + 1) % CAPACITY;
+            if (size < CAPACITY) size++;
+        }
+
+        // null if never merged, or merged at or before notBefore
+        synchronized List<ActivityLog> snapshot(long notBefore) {
+            if (mergedAt == 0 || mergedAt <= notBefore) return null;
+            return newestFirst();
+        }
+
+        synchronized List<ActivityLog> merge(List<ActivityLog> stored, long now) {
+            Map<UUID, ActivityLog> byId = new LinkedHashMap<>();
+            for (ActivityLog e : newestFirst()) byId.put(e.getId(), e);
+            for (ActivityLog e : stored) byId.putIfAbsent(e.getId(), e);
+            List<ActivityLog> all = new ArrayList<>(byId.values());
+            all.sort(Comparator.comparing(ActivityLog::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+            List<ActivityLog> top = all.size() > CAPACITY ? all.subList(0, CAPACITY) : all;
+
+            size = 0;
+            next = 0;
+            for (int i = top.size() - 1; i >= 0; i--) add(top.get(i));
+            mergedAt = now;
+            return List.copyOf(top);
+        }
+
+        private List<ActivityLog> newestFirst() {
+            List<ActivityLog> out = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) out.add(items[(next - i + CAPACITY) % CAPACITY]);
+            return out;
+        }
+    }
+}
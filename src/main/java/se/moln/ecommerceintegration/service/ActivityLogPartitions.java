@@ -0,0 +1,261 @@
+package se.moln.ecommerceintegration.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import se.moln.ecommerceintegration.model.ActivityLog;
+
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Time-bucketed storage for audit rows. With {@code audit.retention.enabled}, rows go into one table
+ * per UTC day or ISO week ({@code activity_logs_yyyyMMdd}, named after the bucket's first day), created
+ * on first write. A bucket covers its first day up to the next bucket's first day (or one bucket length
+ * for the newest), so reads stay correct even if the bucket size is changed between runs.
+ * <p>
+ * Existing bucket tables are discovered on first use and again on every retention run, so buckets
+ * created or dropped by other nodes are picked up within {@code audit.retention.interval-ms}.
+ * <p>
+ * Retention drops whole tables once a bucket ends more than {@code audit.retention.days} ago, so old
+ * rows cost neither DELETEs nor index maintenance. History reads go through {@link #latest}, which only
+ * queries buckets that overlap the requested range, newest first, and stops once it has enough rows.
+ * Rows in the original {@code activity_logs} table are read as the oldest bucket and left alone.
+ * <p>
+ * Disabled, everything reads and writes {@code activity_logs} as before.
+ */
+@Service
+public class ActivityLogPartitions {
+    private static final Logger log = LoggerFactory.getLogger(ActivityLogPartitions.class);
+
+    static final String BASE_TABLE = "activity_logs";
+    private static final Pattern BUCKET_TABLE = Pattern.compile("activity_logs_(\\d{8})");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final String COLUMNS = "id, action, user_email, method, path, status, ip, user_agent, duration_ms, created_at, sample_weight";
+
+    private static final RowMapper<ActivityLog> ROW = (rs, n) -> ActivityLog.builder()
+            .id(rs.getObject("id", UUID.class))
+            .action(rs.getString("action"))
+            .userEmail(rs.getString("user_email"))
+            .method(rs.getString("method"))
+            .path(rs.getString("path"))
+            .status(rs.getInt("status"))
+            .ip(rs.getString("ip"))
+            .userAgent(rs.getString("user_agent"))
+            .durationMs(rs.getLong("duration_ms"))
+            .createdAt(rs.getTimestamp("created_at").toInstant())
+            .sampleWeight(rs.getInt("sample_weight"))
+            .build();
+
+    public enum Bucket { DAY, WEEK }
+
+    private final JdbcTemplate jdbc;
+    private final boolean enabled;
+    private final Bucket bucket;
+    private final int retentionDays;
+
+    private final ConcurrentSkipListMap<LocalDate, String> tables = new ConcurrentSkipListMap<>();
+    private volatile boolean discovered;
+    // DDL and discovery; a ReentrantLock rather than synchronized so virtual threads do not pin
+    private final ReentrantLock ddlLock = new ReentrantLock();
+
+    public ActivityLogPartitions(JdbcTemplate jdbc,
+                                 @Value("${audit.retention.enabled:false}") boolean enabled,
+                                 @Value("${audit.retention.bucket:day}") String bucket,
+                                 @Value("${audit.retention.days:90}") int retentionDays) {
+        this.jdbc = jdbc;
+        this.enabled = enabled;
+        this.bucket = Bucket.valueOf(bucket.toUpperCase(Locale.ROOT));
+        this.retentionDays = Math.max(retentionDays, 1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** The table an event created at {@code createdAt} belongs in, created if needed; null if already past retention. */
+    public String tableFor(Instant createdAt) {
+        if (!enabled) return BASE_TABLE;
+        LocalDate start = start(createdAt);
+        if (!end(start, null).isAfter(cutoff(Instant.now()))) return null;
+        discover();
+        String table = tables.get(start);
+        return table != null ? table : create(start);
+    }
+
+    /**
+     * Up to {@code limit} rows for {@code email} with {@code from <= created_at < to}, newest first.
+     * Either bound may be null.
+     */
+    public List<ActivityLog> latest(String email, Instant from, Instant to, int limit) {
+        List<ActivityLog> out = new ArrayList<>(Math.min(limit, 64));
+        for (String table : tablesOverlapping(from, to)) {
+            StringBuilder sql = new StringBuilder("select ").append(COLUMNS).append(" from ").append(table)
+                    .append(" where user_email = ?");
+            List<Object> args = new ArrayList<>(4);
+            args.add(email);
+            if (from != null) {
+                sql.append(" and created_at >= ?");
+                args.add(Timestamp.from(from));
+            }
+            if (to != null) {
+                sql.append(" and created_at < ?");
+                args.add(Timestamp.from(to));
+            }
+            sql.append(" order by created_at desc fetch first ? rows only");
+            args.add(limit - out.size());
+            try {
+                out.addAll(jdbc.query(sql.toString(), ROW, args.toArray()));
+            } catch (BadSqlGrammarException e) {
+                // dropped by retention after we listed it
+                if (!table.equals(BASE_TABLE)) continue;
+                throw e;
+            }
+            if (out.size() >= limit) break;
+        }
+        return out;
+    }
+
+    /** Tables whose bucket overlaps {@code [from, to)}, newest first; null bounds are open. */
+    List<String> tablesOverlapping(Instant from, Instant to) {
+        if (!enabled) return List.of(BASE_TABLE);
+        discover();
+        List<String> out = new ArrayList<>();
+        LocalDate next = null;
+        for (Map.Entry<LocalDate, String> e : tables.descendingMap().entrySet()) {
+            LocalDate start = e.getKey();
+            Instant begin = start.atStartOfDay(ZoneOffset.UTC).toInstant();
+            boolean overlaps = (to == null || begin.isBefore(to)) && (from == null || end(start, next).isAfter(from));
+            if (overlaps) out.add(e.getValue());
+            next = start;
+        }
+        // rows from before bucketing are older than the first bucket
+        if (from == null || next == null || next.atStartOfDay(ZoneOffset.UTC).toInstant().isAfter(from)) out.add(BASE_TABLE);
+        return out;
+    }
+
+    @Scheduled(fixedDelayString = "${audit.retention.interval-ms:3600000}")
+    public void dropExpired() {
+        if (!enabled) return;
+        int n = dropExpired(Instant.now());
+        if (n > 0) log.info("Dropped {} expired audit bucket(s)", n);
+    }
+
+    int dropExpired(Instant now) {
+        ddlLock.lock();
+        try {
+            // also picks up buckets other nodes created (or dropped) since we last looked
+            scan();
+            discovered = true;
+            Instant cutoff = cutoff(now);
+            int dropped = 0;
+            LocalDate next = null;
+            for (LocalDate start : new ArrayList<>(tables.descendingKeySet())) {
+                if (!end(start, next).isAfter(cutoff)) {
+                    jdbc.execute("drop table if exists " + tables.get(start));
+                    tables.remove(start);
+                    dropped++;
+                }
+                next = start;
+            }
+            return dropped;
+        } finally {
+            ddlLock.unlock();
+        }
+    }
+
+    private String create(LocalDate start) {
+        ddlLock.lock();
+        try {
+            String table = tables.get(start);
+            return table != null ? table : createTable(start);
+        } finally {
+            ddlLock.unlock();
+        }
+    }
+
+    // under ddlLock
+    private String createTable(LocalDate start) {
+        String table = BASE_TABLE + "_" + start.format(SUFFIX);
+        jdbc.execute("create table if not exists " + table + " ("
+                + "id uuid not null primary key, "
+                + "action varchar(32) not null, "
+                + "user_email varchar(255), "
+                + "method varchar(10), "
+                + "path varchar(512), "
+                + "status integer not null, "
+                + "ip varchar(64), "
+                + "user_agent varchar(256), "
+                + "duration_ms bigint not null, "
+                + "created_at timestamp(6) with time zone not null, "
+                + "sample_weight integer default 1 not null)");
+        jdbc.execute("create index if not exists ix_" + table + "_user_ts on " + table + " (user_email, created_at)");
+        tables.put(start, table);
+        return table;
+    }
+
+    private void discover() {
+        if (discovered) return;
+        ddlLock.lock();
+        try {
+            if (discovered) return;
+            scan();
+            discovered = true;
+        } finally {
+            ddlLock.unlock();
+        }
+    }
+
+    // under ddlLock: syncs 'tables' with the bucket tables that exist in the schema
+    private void scan() {
+        Set<LocalDate> found = new HashSet<>();
+        for (String name : jdbc.queryForList(
+                "select table_name from information_schema.tables where table_schema = current_schema", String.class)) {
+            Matcher m = BUCKET_TABLE.matcher(name.toLowerCase(Locale.ROOT));
+            if (!m.matches()) continue;
+            LocalDate start = LocalDate.parse(m.group(1), SUFFIX);
+            found.add(start);
+            if (tables.containsKey(start)) continue;
+            // buckets created before sample weights existed
+            jdbc.execute("alter table " + m.group() + " add column if not exists sample_weight integer default 1 not null");
+            tables.put(start, m.group());
+        }
+        tables.keySet().retainAll(found);
+    }
+
+    private LocalDate start(Instant t) {
+        LocalDate day = LocalDate.ofInstant(t, ZoneOffset.UTC);
+        return bucket == Bucket.DAY ? day : day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private Instant end(LocalDate start, LocalDate next) {
+        LocalDate end = next != null ? next : start.plus(1, bucket == Bucket.DAY ? ChronoUnit.DAYS : ChronoUnit.WEEKS);
+        return end.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private Instant cutoff(Instant now) {
+        return now.minus(retentionDays, ChronoUnit.DAYS);
+    }
+}
@@ -0,0 +1,471 @@
+package se.moln.ecommerceintegration.service;
+
+import se.moln.ecommerceintegration.model.ActivityLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of audit events in fixed-size memory-mapped segment files, so an event
+ * survives a database outage or a crash of this process once {@link #append} has returned.
+ * <p>
+ * Record layout, big-endian: {@code u32 length, u32 crc32c(payload), i64 segmentId, payload}.
+ * The payload is id (2 x i64), createdAt (i64 epoch millis), status (i32), durationMs (i64) and
+ * action, userEmail, method, path, ip, userAgent as {@code u16 length + UTF-8} ({@code 0xFFFF} = null)
+ * and sampleWeight (i32; absent in records from before sampling, read as 1).
+ * A zero length, a CRC mismatch or a foreign segment id marks the end of a segment; the segment id
+ * check is what keeps stale records in a recycled file from being read back.
+ * <p>
+ * One reader (the shipper) {@link #poll}s records after the checkpoint and moves the checkpoint
+ * with {@link #checkpoint} once they are stored. Segments wholly before the checkpoint are renamed
+ * into a small pool of spares and reused when the writer rolls over.
+ * <p>
+ * Appenders only copy bytes under the lock: the shipper {@link #force}s outside it and maps the next
+ * segment ahead of time with {@link #prepareNext}, so a rollover is normally a pointer swap. Sealed
+ * segments are forced by the next {@link #force} call.
+ * <p>
+ * The directory is locked while open, so a second process (or a second application context in
+ * the same JVM) cannot write into the same files.
+ */
+public final class AuditJournal implements Closeable {
+
+    static final int HEADER = 16;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SPARE_SUFFIX = ".spare";
+
+    /** A point in the journal: segment id and byte offset within it. */
+    public record Position(long segment, int offset) {}
+
+    /** Records read by {@link #poll} and the position just after the last one. */
+    public record Batch(List<ActivityLog> events, Position end) {}
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxSpares;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock fileLock = new ReentrantLock(); // renames between segment and spare files
+    private long segmentId;
+    private MappedByteBuffer segment;
+    private MappedByteBuffer nextSegment;  // segmentId + 1, mapped ahead by the shipper
+    private List<MappedByteBuffer> sealed = new ArrayList<>(); // rolled over, not yet forced
+    private volatile Position committed;   // end of the last complete record, published after the copy
+    private volatile boolean dirty;
+
+    private Position checkpoint;
+    private long readSegmentId = -1;
+    private ByteBuffer readBuffer;
+
+    private final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[1024]);
+    private final ThreadLocal<CRC32C> crcs = ThreadLocal.withInitial(CRC32C::new);
+
+    private AuditJournal(Path dir, int segmentBytes, int maxSpares, FileChannel lockChannel, FileLock lock) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSpares = maxSpares;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    /** Opens (or creates) the journal in {@code dir}; fails if another instance holds it. */
+    public static AuditJournal open(Path dir, int segmentBytes, int maxSpares) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel ch = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = ch.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            ch.close();
+            throw new IOException("Audit journal " + dir + " is in use by another instance");
+        }
+        AuditJournal j = new AuditJournal(dir, segmentBytes, maxSpares, ch, lock);
+        try {
+            j.recover();
+        } catch (IOException | RuntimeException e) {
+            j.close();
+            throw e;
+        }
+        return j;
+    }
+
+    private void recover() throws IOException {
+        TreeMap<Long, Path> segments = segments();
+        checkpoint = readCheckpoint();
+        if (segments.isEmpty()) {
+            long first = checkpoint == null ? 1 : checkpoint.segment();
+            segment = map(first);
+            segmentId = first;
+            checkpoint = new Position(first, 0);
+            committed = checkpoint;
+            return;
+        }
+        if (checkpoint == null || checkpoint.segment() < segments.firstKey()) checkpoint = new Position(segments.firstKey(), 0);
+        long last = segments.lastKey();
+        segment = map(last);
+        segmentId = last;
+        int end = scan(segment.duplicate(), last, last == checkpoint.segment() ? checkpoint.offset() : 0, null, Integer.MAX_VALUE);
+        segment.position(end);
+        committed = new Position(last, end);
+    }
+
+    // ---- writing ----
+
+    /** Copies {@code e} into the journal; false if the record would not fit in a segment. */
+    public boolean append(ActivityLog e) {
+        byte[] buf = scratch.get();
+        int len;
+        while ((len = encode(e, buf, HEADER)) < 0) {
+            if (buf.length >= segmentBytes) return false;
+            buf = new byte[buf.length * 2];
+            scratch.set(buf);
+        }
+        int payload = len - HEADER;
+        if (len > segmentBytes) return false;
+        CRC32C crc = crcs.get();
+        crc.reset();
+        crc.update(buf, HEADER, payload);
+        putInt(buf, 0, payload);
+        putInt(buf, 4, (int) crc.getValue());
+
+        appendLock.lock();
+        try {
+            if (segment.remaining() < len) roll();
+            putLong(buf, 8, segmentId);
+            segment.put(buf, 0, len);
+            committed = new Position(segmentId, segment.position());
+            dirty = true;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not roll audit journal segment", ex);
+        } finally {
+            appendLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Flushes mapped pages to disk if anything was appended since the last call. Only the buffer
+     * references are taken under the append lock; the msync itself does not block appenders.
+     */
+    public void force() {
+        if (!dirty) return;
+        dirty = false;
+        MappedByteBuffer active;
+        List<MappedByteBuffer> rolled;
+        appendLock.lock();
+        try {
+            active = segment;
+            rolled = sealed;
+            if (!rolled.isEmpty()) sealed = new ArrayList<>();
+        } finally {
+            appendLock.unlock();
+        }
+        rolled.forEach(MappedByteBuffer::force);
+        active.force();
+    }
+
+    /** Maps the segment after the current one, so the appender that fills it does not have to. */
+    public void prepareNext() throws IOException {
+        long id;
+        appendLock.lock();
+        try {
+            if (nextSegment != null) return;
+            id = segmentId + 1;
+        } finally {
+            appendLock.unlock();
+        }
+        MappedByteBuffer next = map(id);
+        appendLock.lock();
+        try {
+            // an appender may have rolled (and mapped the file itself) in the meantime
+            if (nextSegment == null && segmentId + 1 == id) nextSegment = next;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // under appendLock
+    private void roll() throws IOException {
+        if (segment.position() + 4 <= segmentBytes) segment.putInt(segment.position(), 0); // explicit end marker
+        sealed.add(segment);
+        dirty = true;
+        MappedByteBuffer next = nextSegment;
+        nextSegment = null;
+        segment = next != null ? next : map(segmentId + 1); // the slow path only when the shipper fell behind
+        segmentId++;
+    }
+
+    private MappedByteBuffer map(long id) throws IOException {
+        Path file = segmentPath(id);
+        fileLock.lock();
+        try {
+            if (!Files.exists(file)) {
+                Path spare = firstSpare();
+                if (spare != null) Files.move(spare, file, StandardCopyOption.ATOMIC_MOVE);
+            }
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            }
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    // ---- reading (single shipper thread) ----
+
+    /** Up to {@code max} records after the checkpoint (or after {@code from}, if given). */
+    public Batch poll(Position from, int max) throws IOException {
+        Position p = from != null ? from : checkpoint;
+        Position end = committed;
+        List<ActivityLog> out = new ArrayList<>(Math.min(max, 1024));
+        while (out.size() < max && (p.segment() < end.segment() || p.offset() < end.offset())) {
+            boolean active = p.segment() == end.segment();
+            int want = max - out.size();
+            int before = out.size();
+            int next = scan(readBuffer(p.segment()), p.segment(), p.offset(), out, want, active ? end.offset() : segmentBytes);
+            // a sealed segment that yields fewer records than asked for is exhausted
+            p = !active && out.size() - before < want ? new Position(p.segment() + 1, 0) : new Position(p.segment(), next);
+            if (active) break;
+        }
+        return new Batch(out, p);
+    }
+
+    /** Everything before {@code p} is stored; segments before it are recycled. */
+    public void checkpoint(Position p) throws IOException {
+        Path tmp = dir.resolve("checkpoint.tmp");
+        ByteBuffer b = ByteBuffer.allocate(12).putLong(p.segment()).putInt(p.offset()).flip();
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (b.hasRemaining()) ch.write(b);
+            ch.force(false);
+        }
+        Files.move(tmp, dir.resolve("checkpoint"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long before = checkpoint.segment();
+        checkpoint = p;
+        for (long id = before; id < p.segment(); id++) recycle(id);
+    }
+
+    public Position checkpoint() {
+        return checkpoint;
+    }
+
+    public Position end() {
+        return committed;
+    }
+
+    private void recycle(long id) throws IOException {
+        if (id == readSegmentId) {
+            readSegmentId = -1;
+            readBuffer = null;
+        }
+        Path file = segmentPath(id);
+        fileLock.lock();
+        try {
+            if (!Files.exists(file)) return;
+            long spares;
+            try (Stream<Path> s = Files.list(dir)) {
+                spares = s.filter(f -> f.getFileName().toString().endsWith(SPARE_SUFFIX)).count();
+            }
+            if (spares < maxSpares) Files.move(file, dir.resolve(name(id) + SPARE_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            else Files.delete(file);
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    private ByteBuffer readBuffer(long id) throws IOException {
+        if (id == segmentId) {
+            appendLock.lock();
+            try {
+                if (id == segmentId) return segment.duplicate();
+            } finally {
+                appendLock.unlock();
+            }
+        }
+        if (id != readSegmentId) {
+            try (FileChannel ch = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+                readBuffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, segmentBytes);
+            }
+            readSegmentId = id;
+        }
+        return readBuffer.duplicate();
+    }
+
+    private static int scan(ByteBuffer b, long id, int from, List<ActivityLog> out, int max) {
+        return scan(b, id, from, out, max, b.capacity());
+    }
+
+    // decodes valid records from 'from' (into out, if given) and returns the offset after the last one
+    private static int scan(ByteBuffer b, long id, int from, List<ActivityLog> out, int max, int limit) {
+        int p = from;
+        int n = 0;
+        byte[] payload = null;
+        CRC32C crc = new CRC32C();
+        while (n < max && p + HEADER <= limit) {
+            int len = b.getInt(p);
+            if (len <= 0 || p + HEADER + len > limit || b.getLong(p + 8) != id) break;
+            if (payload == null || payload.length < len) payload = new byte[Math.max(len, 512)];
+            b.get(p + HEADER, payload, 0, len);
+            crc.reset();
+            crc.update(payload, 0, len);
+            if ((int) crc.getValue() != b.getInt(p + 4)) break;
+            if (out != null) out.add(decode(payload, len));
+            p += HEADER + len;
+            n++;
+        }
+        return p;
+    }
+
+    // ---- files ----
+
+    private TreeMap<Long, Path> segments() throws IOException {
+        TreeMap<Long, Path> m = new TreeMap<>();
+        try (Stream<Path> s = Files.list(dir)) {
+            s.forEach(f -> {
+                String n = f.getFileName().toString();
+                if (n.endsWith(SEGMENT_SUFFIX)) m.put(Long.parseLong(n.substring(0, n.length() - SEGMENT_SUFFIX.length())), f);
+            });
+        }
+        return m;
+    }
+
+    private Path firstSpare() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(f -> f.getFileName().toString().endsWith(SPARE_SUFFIX)).findFirst().orElse(null);
+        }
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path f = dir.resolve("checkpoint");
+        if (!Files.exists(f)) return null;
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(f));
+        return b.remaining() < 12 ? null : new Position(b.getLong(), b.getInt());
+    }
+
+    private Path segmentPath(long id) {
+        return dir.resolve(name(id) + SEGMENT_SUFFIX);
+    }
+
+    private static String name(long id) {
+        return String.format("%016d", id);
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            sealed.forEach(MappedByteBuffer::force);
+            sealed.clear();
+            if (segment != null) segment.force();
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            if (lock.isValid()) lock.release();
+        } finally {
+            lockChannel.close();
+        }
+    }
+
+    // ---- encoding ----
+
+    // returns the end offset, or -1 if buf is too small
+    private static int encode(ActivityLog e, byte[] buf, int o) {
+        if (buf.length < o + 36) return -1;
+        UUID id = e.getId();
+        putLong(buf, o, id.getMostSignificantBits());
+        putLong(buf, o + 8, id.getLeastSignificantBits());
+        putLong(buf, o + 16, e.getCreatedAt().toEpochMilli());
+        putInt(buf, o + 24, e.getStatus());
+        putLong(buf, o + 28, e.getDurationMs());
+        o += 36;
+        for (String s : new String[]{e.getAction(), e.getUserEmail(), e.getMethod(), e.getPath(), e.getIp(), e.getUserAgent()}) {
+            o = putString(buf, o, s);
+            if (o < 0) return -1;
+        }
+        if (o + 4 > buf.length) return -1;
+        putInt(buf, o, e.getSampleWeight());
+        return o + 4;
+    }
+
+    private static int putString(byte[] buf, int o, String s) {
+        if (o + 2 > buf.length) return -1;
+        if (s == null) {
+            buf[o] = (byte) 0xFF;
+            buf[o + 1] = (byte) 0xFF;
+            return o + 2;
+        }
+        int start = o + 2, p = start;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                // rare in audit fields; take the general encoder for the remainder
+                byte[] rest = s.substring(i).getBytes(StandardCharsets.UTF_8);
+                if (p + rest.length > buf.length) return -1;
+                System.arraycopy(rest, 0, buf, p, rest.length);
+                p += rest.length;
+                break;
+            }
+            if (p >= buf.length) return -1;
+            buf[p++] = (byte) c;
+        }
+        int len = Math.min(p - start, NULL_STRING - 1);
+        buf[o] = (byte) (len >>> 8);
+        buf[o + 1] = (byte) len;
+        return start + len;
+    }
+
+    private static ActivityLog decode(byte[] b, int len) {
+        ByteBuffer in = ByteBuffer.wrap(b, 0, len);
+        UUID id = new UUID(in.getLong(), in.getLong());
+        Instant createdAt = Instant.ofEpochMilli(in.getLong());
+        int status = in.getInt();
+        long duration = in.getLong();
+        ActivityLog e = ActivityLog.of(getString(in), getString(in), getString(in), getString(in), status,
+                getString(in), getString(in), duration);
+        e.setId(id);
+        e.setCreatedAt(createdAt);
+        if (in.remaining() >= 4) e.setSampleWeight(in.getInt());
+        return e;
+    }
+
+    private static String getString(ByteBuffer in) {
+        int len = in.getShort() & 0xFFFF;
+        if (len == NULL_STRING) return null;
+        String s = new String(in.array(), in.position(), len, StandardCharsets.UTF_8);
+        in.position(in.position() + len);
+        return s;
+    }
+
+    private static void putInt(byte[] b, int o, int v) {
+        b[o] = (byte) (v >>> 24);
+        b[o + 1] = (byte) (v >>> 16);
+        b[o + 2] = (byte) (v >>> 8);
+        b[o + 3] = (byte) v;
+    }
+
+    private static void putLong(byte[] b, int o, long v) {
+        putInt(b, o, (int) (v >>> 32));
+        putInt(b, o + 4, (int) v);
+    }
+}
@@ -0,0 +1,183 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import se.moln.ecommerceintegration.model.ActivityLog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Owns the {@link AuditJournal} and the shipper thread that replays it into {@code activity_logs}.
+ * <p>
+ * While the journal is open, {@link AuditLogService} appends every event to it, so an event is on
+ * disk (in the page cache, forced every ship interval) before the request finishes. The shipper
+ * also maps the next segment ahead of time, so request threads do not map files on rollover. It
+ * reads batches of {@code audit.async.batch-size} after the checkpoint, writes them with
+ * {@link AuditLogWriter#replay}, and only then moves the checkpoint. If the database is down it
+ * backs off and retries the same batch; events keep accumulating in the journal meanwhile.
+ * <p>
+ * If the journal cannot be opened (e.g. another instance holds the directory), events go through
+ * the in-memory {@link AuditLogWriter} buffer as before.
+ */
+@Component
+public class AuditJournalService implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(AuditJournalService.class);
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final AuditLogWriter writer;
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final int spareSegments;
+    private final long shipIntervalMs;
+    private final int batchSize;
+
+    private final Counter shipped;
+    private final Counter shipFailures;
+    private final Counter rejected;
+
+    private volatile AuditJournal journal;
+    private volatile boolean running;
+    private Thread shipper;
+
+    public AuditJournalService(AuditLogWriter writer,
+                               MeterRegistry registry,
+                               @Value("${audit.persist.enabled:false}") boolean persist,
+                               @Value("${audit.journal.enabled:false}") boolean enabled,
+                               @Value("${audit.journal.dir:./data/audit-journal}") String dir,
+                               @Value("${audit.journal.segment-size-mb:16}") int segmentSizeMb,
+                               @Value("${audit.journal.spare-segments:2}") int spareSegments,
+                               @Value("${audit.journal.ship-interval-ms:200}") long shipIntervalMs,
+                               @Value("${audit.async.batch-size:500}") int batchSize) {
+        this.writer = writer;
+        this.enabled = persist && enabled;
+        this.dir = Path.of(dir);
+        this.segmentBytes = Math.max(segmentSizeMb, 1) * 1024 * 1024;
+        this.spareSegments = Math.max(spareSegments, 0);
+        this.shipIntervalMs = Math.max(shipIntervalMs, 1);
+        this.batchSize = Math.max(batchSize, 1);
+
+        this.shipped = Counter.builder("audit.journal.shipped").register(registry);
+        this.shipFailures = Counter.builder("audit.journal.ship.failures").register(registry);
+        this.rejected = Counter.builder("audit.journal.rejected")
+                .description("Events too large for a segment, handed to the in-memory writer instead")
+                .register(registry);
+    }
+
+    /** Appends {@code event} to the journal; false if there is no open journal or it does not fit. */
+    public boolean append(ActivityLog event) {
+        AuditJournal j = journal;
+        if (j == null) return false;
+        if (j.append(event)) return true;
+        rejected.increment();
+        return false;
+    }
+
+    public boolean isActive() {
+        return journal != null;
+    }
+
+    /** Forces the journal and replays everything after the checkpoint; returns the number of events shipped. */
+    public int ship() throws IOException {
+        AuditJournal j = journal;
+        return j == null ? 0 : ship(j);
+    }
+
+    private int ship(AuditJournal j) throws IOException {
+        j.force();
+        j.prepareNext();
+        int n = 0;
+        while (true) {
+            AuditJournal.Batch b = j.poll(null, batchSize);
+            if (b.events().isEmpty()) {
+                // a sealed segment may end without further records; still move past it so it is recycled
+                if (!b.end().equals(j.checkpoint())) j.checkpoint(b.end());
+                return n;
+            }
+            writer.replay(b.events());
+            j.checkpoint(b.end());
+            n += b.events().size();
+            shipped.increment(b.events().size());
+        }
+    }
+
+    private void run(AuditJournal j) {
+        long backoff = shipIntervalMs;
+        boolean failing = false;
+        while (running) {
+            LockSupport.parkNanos(backoff * 1_000_000);
+            try {
+                ship(j);
+                if (failing) log.info("Audit journal shipping resumed");
+                failing = false;
+                backoff = shipIntervalMs;
+            } catch (RuntimeException | IOException e) {
+                shipFailures.increment();
+                if (!failing) log.warn("Could not ship audit journal, retrying: {}", e.toString());
+                failing = true;
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    // ---- lifecycle ----
+
+    @Override
+    public synchronized void start() {
+        if (running || !enabled) return;
+        AuditJournal j;
+        try {
+            j = AuditJournal.open(dir, segmentBytes, spareSegments);
+        } catch (IOException e) {
+            log.warn("Audit journal disabled, using the in-memory buffer: {}", e.getMessage());
+            return;
+        }
+        journal = j;
+        running = true;
+        shipper = new Thread(() -> run(j), "audit-journal-shipper");
+        shipper.setDaemon(true);
+        shipper.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        AuditJournal j = journal;
+        journal = null; // later events go to the in-memory writer, which stops after us
+        LockSupport.unpark(shipper);
+        try {
+            shipper.join(MAX_BACKOFF_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            ship(j);
+        } catch (RuntimeException | IOException e) {
+            log.warn("Audit journal not fully shipped on shutdown, the rest is replayed on next start: {}", e.toString());
+        }
+        try {
+            j.close();
+        } catch (IOException e) {
+            log.warn("Could not close audit journal", e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // stopped before the AuditLogWriter (phase 0) and after the web server
+    @Override
+    public int getPhase() {
+        return 1;
+    }
+}
@@ -1,26 +1,39 @@
 package se.moln.ecommerceintegration.service;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import se.moln.ecommerceintegration.model.ActivityLog;
-import se.moln.ecommerceintegration.repository.ActivityLogRepository;
+
+import java.time.Instant;
 
 @Service
 public class AuditLogService {
-    private ActivityLogRepository activityLogRepository;
+    private final AuditLogWriter writer;
+    private final AuditJournalService journal;
+    private final ActivityHistoryService history;
     private final boolean enabled;
 
-    public AuditLogService(ActivityLogRepository activityLogRepository, @Value("${audit.persist.enabled:false}") boolean enabled) {
-        this.activityLogRepository = activityLogRepository;
+    public AuditLogService(AuditLogWriter writer, AuditJournalService journal, ActivityHistoryService history,
+                           @Value("${audit.persist.enabled:false}") boolean enabled) {
+        this.writer = writer;
+        this.journal = journal;
+        this.history = history;
         this.enabled = enabled;
     }
 
-    @Transactional
+    // journalen först (överlever omstart och DB-avbrott), annars köas och skrivs i batch av AuditLogWriter; requesten väntar aldrig på databasen
     public void save(String action, String userEmail, String method, String path, int status, String ip, String userAgent, long durationMs){
-        if(!enabled) return;
-        activityLogRepository.save(ActivityLog.of(action, userEmail, method, path, status, ip, userAgent, durationMs));
-
-
-        }
+        save(action, userEmail, method, path, status, ip, userAgent, durationMs, 1);
     }
 
+    // sampleWeight: hur många requests raden representerar (AuditPolicy)
+    public void save(String action, String userEmail, String method, String path, int status, String ip, String userAgent,
+                     long durationMs, int sampleWeight){
+        if(!enabled) return;
+        ActivityLog event = ActivityLog.of(action, userEmail, method, path, status, ip, userAgent, durationMs);
+        event.setSampleWeight(sampleWeight);
+        event.setId(ActivityLog.newId());
+        event.setCreatedAt(Instant.now());
+        if (!journal.append(event)) writer.offer(event);
+        history.recorded(event);
+    }
+}
@@ -0,0 +1,315 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.moln.ecommerceintegration.model.ActivityLog;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes audit events off the request path: {@link #offer} puts the event in a bounded ring buffer
+ * and returns, and one background thread drains it in batches of up to {@code audit.async.batch-size},
+ * each written in one transaction as multi-row INSERTs into the table {@link ActivityLogPartitions} picks.
+ * <p>
+ * When the buffer is full the {@code audit.async.overflow} policy decides:
+ * {@code drop} discards the event, {@code block} waits up to {@code block-timeout-ms} for room, then
+ * drops, and {@code sample} keeps only every {@code sample-rate}th event once the buffer is three
+ * quarters full, and drops when it is full. Every discarded event is counted.
+ * <p>
+ * The buffer is flushed on shutdown. The writer stops after the web server, so events from
+ * requests that finish during a graceful shutdown are written too.
+ */
+@Component
+public class AuditLogWriter implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(AuditLogWriter.class);
+    private static final int ROWS_PER_STATEMENT = 50;
+    private static final String COLUMNS =
+            " (id, action, user_email, method, path, status, ip, user_agent, duration_ms, created_at, sample_weight) values ";
+    private static final String ROW = "(?,?,?,?,?,?,?,?,?,?,?)";
+
+    public enum Overflow { DROP, BLOCK, SAMPLE }
+
+    private final JdbcTemplate jdbc;
+    private final ActivityLogPartitions partitions;
+    private final TransactionTemplate tx;
+    private final ArrayBlockingQueue<ActivityLog> buffer;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final Overflow overflow;
+    private final long blockTimeoutMs;
+    private final int sampleRate;
+    private final int sampleWatermark;
+    private final long shutdownTimeoutMs;
+    private final Map<String, String> fullStatements = new ConcurrentHashMap<>();
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private final Counter written;
+    private final Counter droppedFull;
+    private final Counter droppedSampled;
+    private final Counter droppedExpired;
+    private final Counter failed;
+    private final Timer batchLatency;
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public AuditLogWriter(JdbcTemplate jdbc,
+                          ActivityLogPartitions partitions,
+                          PlatformTransactionManager txManager,
+                          MeterRegistry registry,
+                          @Value("${audit.async.capacity:8192}") int capacity,
+                          @Value("${audit.async.batch-size:500}") int batchSize,
+                          @Value("${audit.async.flush-interval-ms:200}") long flushIntervalMs,
+                          @Value("${audit.async.overflow:drop}") String overflow,
+                          @Value("${audit.async.block-timeout-ms:50}") long blockTimeoutMs,
+                          @Value("${audit.async.sample-rate:10}") int sampleRate,
+                          @Value("${audit.async.shutdown-timeout-ms:5000}") long shutdownTimeoutMs) {
+        this.jdbc = jdbc;
+        this.partitions = partitions;
+        this.tx = new TransactionTemplate(txManager);
+        this.buffer = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+        this.batchSize = Math.max(batchSize, 1);
+        this.flushIntervalMs = Math.max(flushIntervalMs, 1);
+        this.overflow = Overflow.valueOf(overflow.toUpperCase(Locale.ROOT));
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.sampleRate = Math.max(sampleRate, 1);
+        this.sampleWatermark = Math.max(capacity, 1) * 3 / 4;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+
+        this.written = Counter.builder("audit.events.written").register(registry);
+        this.droppedFull = Counter.builder("audit.events.dropped").tag("reason", "full").register(registry);
+        this.droppedSampled = Counter.builder("audit.events.dropped").tag("reason", "sampled").register(registry);
+        this.droppedExpired = Counter.builder("audit.events.dropped").tag("reason", "expired").register(registry);
+        this.failed = Counter.builder("audit.events.failed")
+                .description("Events lost because their batch could not be written")
+                .register(registry);
+        this.batchLatency = Timer.builder("audit.batch.latency").register(registry);
+        this.batchSizes = DistributionSummary.builder("audit.batch.size").register(registry);
+        Gauge.builder("audit.queue.depth", buffer, ArrayBlockingQueue::size).register(registry);
+    }
+
+    /** Queues {@code event}; false if the overflow policy discarded it. Never blocks longer than block-timeout-ms. */
+    public boolean offer(ActivityLog event) {
+        if (overflow == Overflow.SAMPLE && buffer.size() >= sampleWatermark
+                && sampleCounter.incrementAndGet() % sampleRate != 0) {
+            droppedSampled.increment();
+            return false;
+        }
+        boolean queued = buffer.offer(event);
+        if (!queued && overflow == Overflow.BLOCK) {
+            try {
+                queued = buffer.offer(event, blockTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!queued) droppedFull.increment();
+        return queued;
+    }
+
+    public int depth() {
+        return buffer.size();
+    }
+
+    /** Writes everything queued so far on the calling thread. */
+    public void flush() {
+        List<ActivityLog> batch = new ArrayList<>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void run() {
+        List<ActivityLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                ActivityLog first = buffer.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                log.error("Audit writer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void write(List<ActivityLog> batch) {
+        long t0 = System.nanoTime();
+        try {
+            written.increment(insert(route(batch)));
+        } catch (RuntimeException e) {
+            failed.increment(batch.size());
+            log.error("Could not write {} audit events", batch.size(), e);
+        } finally {
+            batchLatency.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+            batchSizes.record(batch.size());
+        }
+    }
+
+    /**
+     * Writes {@code batch} like the background thread does, but throws if it cannot, and skips
+     * events whose id is already stored; for replaying a journal that may overlap what is in the table.
+     */
+    public void replay(List<ActivityLog> batch) {
+        if (batch.isEmpty()) return;
+        long t0 = System.nanoTime();
+        Map<String, List<ActivityLog>> byTable = route(batch);
+        int n;
+        try {
+            n = insert(byTable);
+        } catch (DuplicateKeyException e) {
+            Map<String, List<ActivityLog>> rest = new LinkedHashMap<>();
+            byTable.forEach((table, events) -> {
+                Set<UUID> stored = new HashSet<>(jdbc.queryForList(
+                        "select id from " + table + " where id in (" + String.join(",", Collections.nCopies(events.size(), "?")) + ")",
+                        UUID.class, events.stream().map(ActivityLog::getId).toArray()));
+                List<ActivityLog> missing = events.stream().filter(ev -> !stored.contains(ev.getId())).toList();
+                if (!missing.isEmpty()) rest.put(table, missing);
+            });
+            n = insert(rest);
+        } finally {
+            batchLatency.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+            batchSizes.record(batch.size());
+        }
+        written.increment(n);
+    }
+
+    // groups events by target table; events already past retention are dropped
+    private Map<String, List<ActivityLog>> route(List<ActivityLog> batch) {
+        if (!partitions.isEnabled()) return Map.of(ActivityLogPartitions.BASE_TABLE, batch);
+        Map<String, List<ActivityLog>> byTable = new LinkedHashMap<>(4);
+        for (ActivityLog e : batch) {
+            String table = partitions.tableFor(e.getCreatedAt());
+            if (table == null) droppedExpired.increment();
+            else byTable.computeIfAbsent(table, k -> new ArrayList<>()).add(e);
+        }
+        return byTable;
+    }
+
+    private int insert(Map<String, List<ActivityLog>> byTable) {
+        if (byTable.isEmpty()) return 0;
+        tx.executeWithoutResult(s -> byTable.forEach(this::insert));
+        int n = 0;
+        for (List<ActivityLog> events : byTable.values()) n += events.size();
+        return n;
+    }
+
+    private void insert(String table, List<ActivityLog> batch) {
+        int full = batch.size() / ROWS_PER_STATEMENT;
+        if (full > 0) {
+            jdbc.batchUpdate(fullStatements.computeIfAbsent(table, t -> statement(t, ROWS_PER_STATEMENT)),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            bind(ps, batch, i * ROWS_PER_STATEMENT, ROWS_PER_STATEMENT);
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return full;
+                        }
+                    });
+        }
+        int rest = batch.size() - full * ROWS_PER_STATEMENT;
+        if (rest > 0) jdbc.update(statement(table, rest), ps -> bind(ps, batch, full * ROWS_PER_STATEMENT, rest));
+    }
+
+    private static void bind(PreparedStatement ps, List<ActivityLog> batch, int from, int rows) throws SQLException {
+        int p = 1;
+        for (int i = from; i < from + rows; i++) {
+            ActivityLog e = batch.get(i);
+            ps.setObject(p++, e.getId());
+            ps.setString(p++, e.getAction());
+            ps.setString(p++, e.getUserEmail());
+            ps.setString(p++, e.getMethod());
+            ps.setString(p++, e.getPath());
+            ps.setInt(p++, e.getStatus());
+            ps.setString(p++, e.getIp());
+            ps.setString(p++, e.getUserAgent());
+            ps.setLong(p++, e.getDurationMs());
+            ps.setTimestamp(p++, Timestamp.from(e.getCreatedAt()));
+            ps.setInt(p++, e.getSampleWeight());
+        }
+    }
+
+    private static String statement(String table, int rows) {
+        StringBuilder sb = new StringBuilder(12 + table.length() + COLUMNS.length() + rows * (ROW.length() + 1));
+        sb.append("insert into ").append(table).append(COLUMNS);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(ROW);
+        }
+        return sb.toString();
+    }
+
+    // ---- lifecycle ----
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        worker = new Thread(this::run, "audit-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false; // the worker finishes its current batch and exits within flush-interval-ms
+        try {
+            worker.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int pending = buffer.size();
+        flush();
+        if (pending > 0) log.info("Flushed {} audit events on shutdown", pending);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // lower than the web server's phases: started before it, stopped after it
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+}
@@ -0,0 +1,161 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import se.moln.ecommerceintegration.repository.UserRepository;
+import se.moln.ecommerceintegration.utils.BloomFilter;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Answers "is this email free?" from a Bloom filter of registered emails, so definite
+ * negatives never reach the database; only probable positives are confirmed with existsByEmail.
+ * <p>
+ * The filter is advisory: the unique email constraint still decides at registration time.
+ * Until the first build has finished every check goes to the database. Deleted users cannot
+ * be removed from a Bloom filter; they are counted as stale and cleared by {@link #rebuild()}.
+ */
+@Service
+public class EmailAvailabilityService {
+    private static final Logger log = LoggerFactory.getLogger(EmailAvailabilityService.class);
+
+    private final UserRepository users;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double fpp;
+
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building; // receives writes while a rebuild is streaming
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong stale = new AtomicLong();
+
+    private final Counter negatives;
+    private final Counter truePositives;
+    private final Counter falsePositives;
+    private final Counter dbChecks;
+
+    public EmailAvailabilityService(UserRepository users,
+                                    MeterRegistry registry,
+                                    @Value("${auth.email-filter.enabled:true}") boolean enabled,
+                                    @Value("${auth.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                                    @Value("${auth.email-filter.fpp:0.01}") double fpp) {
+        this.users = users;
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+
+        this.negatives = Counter.builder("auth.email.filter.checks").tag("result", "negative").register(registry);
+        this.truePositives = Counter.builder("auth.email.filter.checks").tag("result", "true_positive").register(registry);
+        this.falsePositives = Counter.builder("auth.email.filter.checks").tag("result", "false_positive").register(registry);
+        this.dbChecks = Counter.builder("auth.email.filter.db.checks")
+                .description("Availability checks answered by the database (probable positives, or filter not ready)")
+                .register(registry);
+        Gauge.builder("auth.email.filter.false.positive.rate", this, EmailAvailabilityService::observedFalsePositiveRate)
+                .description("False positives / (false positives + negatives) since startup")
+                .register(registry);
+        Gauge.builder("auth.email.filter.insertions", this, s -> s.filter == null ? 0 : s.filter.insertions()).register(registry);
+        FunctionCounter.builder("auth.email.filter.stale", stale, AtomicLong::get)
+                .description("Deleted emails still set in the filter until the next rebuild")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true) // rebuild() is a self-call, so the stream needs the transaction from here
+    public void warmUp() {
+        if (enabled) rebuild();
+    }
+
+    /**
+     * Rebuilds the filter from the users table, sized for at least twice the current population.
+     * Returns the number of emails loaded, or -1 if a rebuild was already running.
+     */
+    @Transactional(readOnly = true)
+    public long rebuild() {
+        if (!enabled) return 0;
+        if (!rebuilding.compareAndSet(false, true)) return -1;
+        long t0 = System.nanoTime();
+        try {
+            long current = filter == null ? 0 : filter.insertions() - stale.get();
+            BloomFilter next = new BloomFilter(Math.max(expectedInsertions, current * 2), fpp);
+            building = next;
+            long staleBefore = stale.get();
+            long loaded = 0;
+            try (Stream<String> emails = users.streamAllEmails()) {
+                for (String email : (Iterable<String>) emails::iterator) {
+                    next.put(normalize(email));
+                    loaded++;
+                }
+            }
+            filter = next;
+            stale.addAndGet(-staleBefore);
+            log.info("Email filter built: {} emails, {} bits, k={} in {} ms",
+                    loaded, next.bitSize(), next.hashFunctions(), (System.nanoTime() - t0) / 1_000_000);
+            return loaded;
+        } finally {
+            building = null;
+            rebuilding.set(false);
+        }
+    }
+
+    public boolean isAvailable(String email) {
+        String key = normalize(email);
+        BloomFilter f = filter;
+        if (f != null && !f.mightContain(key)) {
+            negatives.increment();
+            return true;
+        }
+        dbChecks.increment();
+        boolean exists = users.existsByEmail(email.trim());
+        if (f != null) (exists ? truePositives : falsePositives).increment();
+        return !exists;
+    }
+
+    /** Call after a user row with this email has been written. */
+    public void added(String email) {
+        if (!enabled || email == null) return;
+        String key = normalize(email);
+        BloomFilter f = filter, b = building;
+        if (f != null) f.put(key);
+        if (b != null) b.put(key);
+    }
+
+    /** Call after a user has been deleted; the bit pattern stays until the next rebuild. */
+    public void removed(String email) {
+        if (enabled && email != null && filter != null) stale.incrementAndGet();
+    }
+
+    /** As {@link #removed(String)}, for {@code count} users deleted in bulk without reading their emails. */
+    public void removed(int count) {
+        if (enabled && count > 0 && filter != null) stale.addAndGet(count);
+    }
+
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    public long staleEntries() {
+        return stale.get();
+    }
+
+    double observedFalsePositiveRate() {
+        double fp = falsePositives.count();
+        double total = fp + negatives.count();
+        return total == 0 ? 0.0 : fp / total;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -2,41 +2,97 @@ package se.moln.ecommerceintegration.service;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import se.moln.ecommerceintegration.security.Hs256TokenCodec;
+import se.moln.ecommerceintegration.security.Hs256TokenCodec.AccessClaims;
 
 import javax.crypto.SecretKey;
-import java.time.Instant;
+import java.security.Key;
+import java.security.PublicKey;
 import java.util.Date;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Mints and verifies access tokens. With {@code jwt.signing.algorithm=HS256} tokens are signed with
+ * the shared {@code jwt.secret}; with RS256/ES256 they are signed by the current
+ * {@link SigningKeyService} key and carry its {@code kid}, so other services can verify them
+ * against the published JWKS. If {@code jwt.secret} is set it is still accepted for verification,
+ * so HS256 tokens issued before a switch stay valid until they expire.
+ */
 @Component
 public class JwtService {
-    private final SecretKey key;
     private final String issuer;
     private final int accessMinutes;
+    private final SigningKeyService keys; // null for HS256
+    private final SecretKey hmacKey;      // null if no secret configured
+    private final Hs256TokenCodec codec;
+    private final JwtParser parser;
 
-    public JwtService(@Value("${jwt.secret}") String secret,
+    @Autowired
+    public JwtService(@Value("${jwt.secret:}") String secret,
                       @Value("${jwt.issuer:user-service}") String issuer,
-                      @Value("${jwt.access-token-minutes:30}") int accessMinutes) {
-        this.key = Keys.hmacShaKeyFor(secret.getBytes());
+                      @Value("${jwt.access-token-minutes:30}") int accessMinutes,
+                      SigningKeyService keys) {
         this.issuer = issuer;
         this.accessMinutes = accessMinutes;
+        this.keys = keys != null && keys.isEnabled() ? keys : null;
+        this.hmacKey = secret == null || secret.isEmpty() ? null : Keys.hmacShaKeyFor(secret.getBytes());
+        if (this.keys == null && hmacKey == null)
+            throw new IllegalStateException("jwt.secret is required when jwt.signing.algorithm is HS256");
+        this.codec = hmacKey == null ? null : new Hs256TokenCodec(hmacKey.getEncoded(), issuer);
+        this.parser = Jwts.parserBuilder().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+            @Override
+            public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                return resolve(header);
+            }
+        }).requireIssuer(issuer).build();
+    }
+
+    /** HS256 only, with the shared secret. */
+    public JwtService(String secret, String issuer, int accessMinutes) {
+        this(secret, issuer, accessMinutes, null);
     }
 
     public String createAccessToken(UUID userId, String email, String role) {
-        Instant now = Instant.now();
+        long now = System.currentTimeMillis() / 1000;
+        long exp = now + accessMinutes * 60L;
+        String jti = UUID.randomUUID().toString();
+        if (keys == null) return codec.mint(userId, email, role, now, exp, jti);
+
+        SigningKeyService.ActiveKey key = keys.signingKey();
+        if (key == null) throw new IllegalStateException("No active signing key");
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, key.kid())
                 .setSubject(email).setIssuer(issuer)
-                .setIssuedAt(Date.from(now))
-                .setExpiration(Date.from(now.plusSeconds(accessMinutes * 60L)))
+                .setIssuedAt(new Date(now * 1000))
+                .setExpiration(new Date(exp * 1000))
                 .addClaims(Map.of("uid", userId.toString(), "role", role))
-                .signWith(key, SignatureAlgorithm.HS256).compact();
+                .setId(jti)
+                .signWith(key.privateKey(), key.algorithm()).compact();
     }
 
     public Jws<Claims> parse(String token) {
-        return Jwts.parserBuilder().setSigningKey(key).requireIssuer(issuer).build().parseClaimsJws(token);
+        return parser.parseClaimsJws(token);
+    }
+
+    /**
+     * Validates signature, issuer and expiration and returns the access-token claims.
+     * HS256 tokens in our own shape take the allocation-light path; anything else goes through jjwt.
+     * Throws the usual {@link JwtException} subtypes for invalid tokens.
+     */
+    public AccessClaims verify(String token) {
+        if (codec != null) {
+            AccessClaims fast = codec.verify(token, System.currentTimeMillis());
+            if (fast != null) return fast;
+        }
+        Claims c = parse(token).getBody();
+        String uid = c.get("uid", String.class);
+        return new AccessClaims(c.getSubject(), c.getIssuer(), seconds(c.getIssuedAt()), seconds(c.getExpiration()),
+                uid == null ? null : UUID.fromString(uid), c.get("role", String.class), c.getId());
     }
 
     /**
@@ -45,9 +101,8 @@ public class JwtService {
     public boolean isTokenValid(String token) {
         try {
             if (token == null || token.isBlank()) return false;
-            Jws<Claims> jws = parse(token);
-            Date exp = jws.getBody().getExpiration();
-            return exp != null && exp.after(new Date());
+            long exp = verify(token).expiresAt();
+            return exp != Long.MIN_VALUE && exp * 1000 > System.currentTimeMillis();
         } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
@@ -57,6 +112,22 @@ public class JwtService {
      * Extracts the email stored in the JWT subject ("sub").
      */
     public String extractEmail(String token) {
-        return parse(token).getBody().getSubject();
+        return verify(token).subject();
+    }
+
+    // jjwt then checks that the key type matches the header's alg, so an HS256 header cannot pass with a public key
+    private Key resolve(JwsHeader<?> header) {
+        String kid = header.getKeyId();
+        if (kid != null) {
+            PublicKey k = keys == null ? null : keys.verificationKey(kid);
+            if (k == null) throw new SignatureException("Unknown signing key id: " + kid);
+            return k;
+        }
+        if (hmacKey == null) throw new SignatureException("Token has no key id");
+        return hmacKey;
+    }
+
+    private static long seconds(Date d) {
+        return d == null ? Long.MIN_VALUE : d.getTime() / 1000;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import se.moln.ecommerceintegration.exception.TooManyRequestsException;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs password hashing (encode/matches) on a dedicated, size-capped worker pool
+ * so that a login storm cannot occupy every request thread.
+ * When the queue is full (or a task waits too long) the caller gets a 429 with Retry-After.
+ */
+@Service
+public class PasswordHashingService {
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor pool;
+    private final long maxWaitMillis;
+    private final long retryAfterSeconds;
+
+    private final Timer waitTimer;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter rejected;
+
+    public PasswordHashingService(PasswordEncoder encoder,
+                                  MeterRegistry registry,
+                                  @Value("${auth.hashing.pool-size:0}") int poolSize,
+                                  @Value("${auth.hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${auth.hashing.max-wait-ms:2000}") long maxWaitMillis,
+                                  @Value("${auth.hashing.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.encoder = encoder;
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        // 0 = one worker per core; hashing is CPU bound so more threads only add queueing
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                r -> {
+                    Thread t = new Thread(r, "pwd-hash-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.hashing.queue.depth", pool, p -> p.getQueue().size())
+                .description("Password hashing tasks waiting for a worker")
+                .register(registry);
+        Gauge.builder("auth.hashing.active", pool, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashing tasks currently running")
+                .register(registry);
+        this.waitTimer = Timer.builder("auth.hashing.wait")
+                .description("Time a hashing task spent queued before a worker picked it up")
+                .register(registry);
+        this.encodeTimer = Timer.builder("auth.hashing.duration").tag("op", "encode").register(registry);
+        this.matchesTimer = Timer.builder("auth.hashing.duration").tag("op", "matches").register(registry);
+        this.rejected = Counter.builder("auth.hashing.rejected")
+                .description("Hashing requests shed with 429 because the pool was saturated")
+                .register(registry);
+    }
+
+    public String encode(CharSequence rawPassword) {
+        return submit(encodeTimer, () -> encoder.encode(rawPassword));
+    }
+
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(matchesTimer, () -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * True when the stored hash uses another algorithm or a cost outside the current band.
+     * Only parses the hash, so it runs on the caller's thread.
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        return encoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T submit(Timer hashTimer, Callable<T> task) {
+        long enqueued = System.nanoTime();
+        Future<T> future;
+        try {
+            future = pool.submit(() -> {
+                waitTimer.record(System.nanoTime() - enqueued, TimeUnit.NANOSECONDS);
+                return hashTimer.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            throw shed();
+        }
+
+        try {
+            return future.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw shed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private TooManyRequestsException shed() {
+        rejected.increment();
+        return new TooManyRequestsException("Too many authentication requests, try again later", retryAfterSeconds);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,143 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import se.moln.ecommerceintegration.model.RefreshToken;
+import se.moln.ecommerceintegration.model.User;
+import se.moln.ecommerceintegration.repository.RefreshTokenRepository;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Opaque refresh tokens, so a client can renew its access token without the password (and without
+ * a password-hash verification on our side).
+ * <p>
+ * Tokens are 256 random bits, stored only as their SHA-256 hash: they are too long to brute-force,
+ * so a slow hash would buy nothing. Each refresh uses up the presented token and issues a new one
+ * in the same family. Presenting a used token means it was copied, so the whole family is revoked
+ * and both the thief and the legitimate client must log in again.
+ * <p>
+ * A token is valid for {@code auth.refresh.ttl-days} after it was issued, and a family never
+ * outlives {@code auth.refresh.max-lifetime-days} from the login that started it.
+ */
+@Service
+public class RefreshTokenService {
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+
+    /** The user to mint an access token for and the refresh token replacing the presented one. */
+    public record Rotation(User user, String refreshToken) {}
+
+    private final RefreshTokenRepository tokens;
+    private final UserRepository users;
+    private final SecureRandom random = new SecureRandom();
+    private final Duration ttl;
+    private final Duration maxLifetime;
+
+    private final Counter rotated;
+    private final Counter reused;
+    private final Counter rejected;
+
+    public RefreshTokenService(RefreshTokenRepository tokens,
+                               UserRepository users,
+                               MeterRegistry registry,
+                               @Value("${auth.refresh.ttl-days:14}") long ttlDays,
+                               @Value("${auth.refresh.max-lifetime-days:90}") long maxLifetimeDays) {
+        this.tokens = tokens;
+        this.users = users;
+        this.ttl = Duration.ofDays(ttlDays);
+        this.maxLifetime = Duration.ofDays(Math.max(maxLifetimeDays, ttlDays));
+
+        this.rotated = Counter.builder("auth.refresh").tag("result", "rotated").register(registry);
+        this.reused = Counter.builder("auth.refresh").tag("result", "reused").register(registry);
+        this.rejected = Counter.builder("auth.refresh").tag("result", "rejected").register(registry);
+    }
+
+    /** Starts a new family, e.g. at login. */
+    @Transactional
+    public String issue(UUID userId) {
+        Instant now = Instant.now();
+        String token = newToken();
+        tokens.save(RefreshToken.of(hash(token), UUID.randomUUID(), userId, now, now.plus(ttl), now.plus(maxLifetime)));
+        return token;
+    }
+
+    /**
+     * Uses up {@code token} and returns its successor, or empty if the token is unknown, expired,
+     * revoked, reused or its user is gone or deactivated. Reuse revokes the family.
+     */
+    @Transactional
+    public Optional<Rotation> rotate(String token) {
+        Instant now = Instant.now();
+        RefreshToken current = tokens.findForUpdate(hash(token)).orElse(null);
+        if (current == null || current.getRevokedAt() != null || !current.getExpiresAt().isAfter(now)) {
+            rejected.increment();
+            return Optional.empty();
+        }
+        if (current.getUsedAt() != null) {
+            int n = tokens.revokeFamily(current.getFamilyId(), now);
+            reused.increment();
+            log.warn("Refresh token reuse for user {}; revoked family {} ({} tokens)", current.getUserId(), current.getFamilyId(), n);
+            return Optional.empty();
+        }
+        User user = users.findById(current.getUserId()).orElse(null);
+        if (user == null || !Boolean.TRUE.equals(user.getIsActive())) {
+            tokens.revokeFamily(current.getFamilyId(), now);
+            rejected.increment();
+            return Optional.empty();
+        }
+
+        current.markUsed(now);
+        String next = newToken();
+        tokens.save(RefreshToken.of(hash(next), current.getFamilyId(), current.getUserId(), now,
+                now.plus(ttl), current.getFamilyExpiresAt()));
+        rotated.increment();
+        return Optional.of(new Rotation(user, next));
+    }
+
+    /** Logout: revokes the family of {@code token}, or every family of its user when {@code allSessions}. */
+    @Transactional
+    public void revoke(String token, boolean allSessions) {
+        tokens.findForUpdate(hash(token)).ifPresent(t -> {
+            if (allSessions) tokens.revokeAllForUser(t.getUserId(), Instant.now());
+            else tokens.revokeFamily(t.getFamilyId(), Instant.now());
+        });
+    }
+
+    // used tokens are kept until they expire so reuse can still be detected
+    @Scheduled(fixedDelayString = "${auth.refresh.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int n = tokens.deleteExpired(Instant.now());
+        if (n > 0) log.info("Purged {} expired refresh tokens", n);
+    }
+
+    String newToken() {
+        byte[] b = new byte[32];
+        random.nextBytes(b);
+        return B64.encodeToString(b);
+    }
+
+    static String hash(String token) {
+        try {
+            return B64.encodeToString(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package se.moln.ecommerceintegration.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.SignatureAlgorithm;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import se.moln.ecommerceintegration.model.SigningKey;
+import se.moln.ecommerceintegration.repository.SigningKeyRepository;
+
+import java.math.BigInteger;
+import java.security.*;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asymmetric signing keys for access tokens, stored in {@code signing_keys} so every node signs
+ * and verifies with the same set, and published as a JWKS for downstream services.
+ * <p>
+ * A new key is created every {@code jwt.keys.rotation-hours} but only starts signing
+ * {@code jwt.keys.publish-ahead-minutes} later, so nodes and JWKS caches downstream already have
+ * it when the first token arrives. A key that has stopped signing stays published until the
+ * tokens it signed have expired, then it is deleted.
+ * <p>
+ * Keys are only created and deleted at startup and by the scheduled {@link #refresh()}. Every node
+ * gives the successor the same activation time, and {@code (algorithm, activates_at)} is unique,
+ * so when several nodes rotate at once one insert wins and the others load its key. Request
+ * threads never generate keys; a token with an unknown kid only makes them reload the table.
+ * <p>
+ * Disabled (no keys, empty JWKS) when {@code jwt.signing.algorithm} is HS256.
+ */
+@Service
+public class SigningKeyService {
+    private static final Logger log = LoggerFactory.getLogger(SigningKeyService.class);
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+    private static final long UNKNOWN_KID_RELOAD_MS = 5_000;
+
+    /** The key that signs new tokens. */
+    public record ActiveKey(String kid, SignatureAlgorithm algorithm, PrivateKey privateKey) {}
+
+    /** Serialized JWKS document and its strong ETag (quoted). */
+    public record Jwks(byte[] json, String etag) {}
+
+    private record Snapshot(ActiveKey active, Map<String, PublicKey> verification, Jwks jwks) {}
+
+    private final SigningKeyRepository repo;
+    private final ObjectMapper json;
+    private final SignatureAlgorithm algorithm;
+    private final Duration rotation;
+    private final Duration publishAhead;
+    private final Duration tokenLifetime;
+
+    // not a monitor: refresh does database I/O and key generation, which would pin a virtual thread's carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+    private volatile long loadedAtMillis;
+
+    public SigningKeyService(SigningKeyRepository repo,
+                             ObjectMapper json,
+                             @Value("${jwt.signing.algorithm:RS256}") String algorithm,
+                             @Value("${jwt.keys.rotation-hours:168}") long rotationHours,
+                             @Value("${jwt.keys.publish-ahead-minutes:10}") long publishAheadMinutes,
+                             @Value("${jwt.access-token-minutes:30}") int accessMinutes) {
+        this.repo = repo;
+        this.json = json;
+        this.algorithm = SignatureAlgorithm.forName(algorithm);
+        if (this.algorithm != SignatureAlgorithm.HS256 && this.algorithm != SignatureAlgorithm.RS256
+                && this.algorithm != SignatureAlgorithm.ES256)
+            throw new IllegalArgumentException("jwt.signing.algorithm must be HS256, RS256 or ES256");
+        this.rotation = Duration.ofHours(Math.max(rotationHours, 1));
+        this.publishAhead = Duration.ofMinutes(Math.max(publishAheadMinutes, 0));
+        this.tokenLifetime = Duration.ofMinutes(accessMinutes).plus(CLOCK_SKEW);
+    }
+
+    public boolean isEnabled() {
+        return algorithm != SignatureAlgorithm.HS256;
+    }
+
+    public ActiveKey signingKey() {
+        ActiveKey k = current().active();
+        if (k == null && System.currentTimeMillis() - loadedAtMillis > UNKNOWN_KID_RELOAD_MS) {
+            reload(loadedAtMillis);
+            k = snapshot.active();
+        }
+        if (k == null) throw new IllegalStateException("No active signing key yet");
+        return k;
+    }
+
+    /** Public key for {@code kid}, or null. An unknown kid triggers a (rate-limited) reload, since another node may have just created it. */
+    public PublicKey verificationKey(String kid) {
+        PublicKey k = current().verification().get(kid);
+        if (k == null && isEnabled() && System.currentTimeMillis() - loadedAtMillis > UNKNOWN_KID_RELOAD_MS) {
+            reload(loadedAtMillis);
+            k = snapshot.verification().get(kid);
+        }
+        return k;
+    }
+
+    public Jwks jwks() {
+        return current().jwks();
+    }
+
+    /** Creates the first key before the web server takes requests; if the database is not reachable yet, the schedule retries. */
+    @PostConstruct
+    void init() {
+        if (!isEnabled()) return;
+        try {
+            refresh(Instant.now());
+        } catch (RuntimeException e) {
+            log.warn("Could not load signing keys at startup, retrying on schedule: {}", e.toString());
+        }
+    }
+
+    /** Reloads keys, creates a successor when rotation is due and deletes keys nobody can still hold tokens for. */
+    @Scheduled(fixedDelayString = "${jwt.keys.refresh-ms:60000}")
+    public void refresh() {
+        if (isEnabled()) refresh(Instant.now());
+    }
+
+    void refresh(Instant now) {
+        lock.lock();
+        try {
+            List<SigningKey> keys = repo.findAllByOrderByActivatesAtAsc();
+
+            SigningKey newest = null;
+            for (SigningKey k : keys) if (k.getAlgorithm().equals(algorithm.getValue())) newest = k;
+            SigningKey created = null;
+            boolean due = newest == null || !newest.getActivatesAt().plus(rotation).isAfter(now.plus(publishAhead));
+            if (newest == null) {
+                created = create(now);
+                if (created != null) log.info("Created initial {} signing key", algorithm.getValue());
+            } else if (due) {
+                // the same slot on every node; only after a missed rotation (all nodes down) is it "now"
+                Instant slot = newest.getActivatesAt().plus(rotation);
+                created = create(slot.isBefore(now) ? now.plus(publishAhead) : slot);
+                if (created != null) log.info("Created signing key {}, signs from {}", created.getKid(), created.getActivatesAt());
+            }
+            if (due) keys = repo.findAllByOrderByActivatesAtAsc(); // with our new key, or the one that beat it
+
+            List<String> expired = new ArrayList<>();
+            List<SigningKey> live = live(keys, now, expired);
+            if (!expired.isEmpty()) {
+                repo.deleteAllById(expired);
+                log.info("Deleted expired signing keys {}", expired);
+            }
+
+            snapshot = build(live, now);
+            loadedAtMillis = System.currentTimeMillis();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // request path: reads the table and nothing else; callers that queued behind a reload reuse its result
+    private void reload(long seenLoadedAt) {
+        lock.lock();
+        try {
+            if (loadedAtMillis != seenLoadedAt) return;
+            Instant now = Instant.now();
+            snapshot = build(live(repo.findAllByOrderByActivatesAtAsc(), now, new ArrayList<>()), now);
+            loadedAtMillis = System.currentTimeMillis();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // null if another node stored a key for the same slot first
+    private SigningKey create(Instant activatesAt) {
+        try {
+            return repo.saveAndFlush(generate(activatesAt));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Signing key for {} already created by another node", activatesAt);
+            return null;
+        }
+    }
+
+    // a key stops signing when a later one activates; it is expired once its last token has
+    private List<SigningKey> live(List<SigningKey> keys, Instant now, List<String> expired) {
+        List<SigningKey> live = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            SigningKey k = keys.get(i);
+            Instant retiredAt = null;
+            for (int j = i + 1; j < keys.size() && retiredAt == null; j++) {
+                if (!keys.get(j).getActivatesAt().isAfter(now)) retiredAt = keys.get(j).getActivatesAt();
+            }
+            if (retiredAt != null && retiredAt.plus(tokenLifetime).isBefore(now)) expired.add(k.getKid());
+            else live.add(k);
+        }
+        return live;
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s != null) return s;
+        if (!isEnabled()) {
+            s = build(List.of(), Instant.now());
+            snapshot = s;
+            return s;
+        }
+        reload(loadedAtMillis);
+        return snapshot;
+    }
+
+    private Snapshot build(List<SigningKey> keys, Instant now) {
+        ActiveKey active = null;
+        Map<String, PublicKey> verification = new HashMap<>();
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        for (SigningKey k : keys) {
+            SignatureAlgorithm alg = SignatureAlgorithm.forName(k.getAlgorithm());
+            PublicKey pub = decodePublic(alg, k.getPublicKey());
+            verification.put(k.getKid(), pub);
+            jwks.add(jwk(k.getKid(), alg, pub));
+            if (alg == algorithm && !k.getActivatesAt().isAfter(now))
+                active = new ActiveKey(k.getKid(), alg, decodePrivate(alg, k.getPrivateKey()));
+        }
+        try {
+            byte[] body = json.writeValueAsBytes(Map.of("keys", jwks));
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            String etag = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16)) + "\"";
+            return new Snapshot(active, Map.copyOf(verification), new Jwks(body, etag));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not build JWKS", e);
+        }
+    }
+
+    private SigningKey generate(Instant activatesAt) {
+        try {
+            KeyPairGenerator gen;
+            if (algorithm == SignatureAlgorithm.ES256) {
+                gen = KeyPairGenerator.getInstance("EC");
+                gen.initialize(new ECGenParameterSpec("secp256r1"));
+            } else {
+                gen = KeyPairGenerator.getInstance("RSA");
+                gen.initialize(2048);
+            }
+            KeyPair pair = gen.generateKeyPair();
+            byte[] id = new byte[12];
+            new SecureRandom().nextBytes(id);
+            String kid = Base64.getUrlEncoder().withoutPadding().encodeToString(id);
+            return SigningKey.of(kid, algorithm.getValue(), pair.getPublic().getEncoded(), pair.getPrivate().getEncoded(), activatesAt);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not generate " + algorithm.getValue() + " key", e);
+        }
+    }
+
+    private static Map<String, Object> jwk(String kid, SignatureAlgorithm alg, PublicKey key) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        if (key instanceof RSAPublicKey rsa) {
+            jwk.put("kty", "RSA");
+            jwk.put("n", base64Url(rsa.getModulus(), 0));
+            jwk.put("e", base64Url(rsa.getPublicExponent(), 0));
+        } else if (key instanceof ECPublicKey ec) {
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("x", base64Url(ec.getW().getAffineX(), 32));
+            jwk.put("y", base64Url(ec.getW().getAffineY(), 32));
+        }
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", alg.getValue());
+        return jwk;
+    }
+
+    // unsigned big-endian, left-padded to size bytes (0 = minimal length)
+    private static String base64Url(BigInteger v, int size) {
+        byte[] b = v.toByteArray();
+        if (b.length > 1 && b[0] == 0) b = Arrays.copyOfRange(b, 1, b.length);
+        if (b.length < size) {
+            byte[] padded = new byte[size];
+            System.arraycopy(b, 0, padded, size - b.length, b.length);
+            b = padded;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+    }
+
+    private static KeyFactory keyFactory(SignatureAlgorithm alg) throws NoSuchAlgorithmException {
+        return KeyFactory.getInstance(alg.isEllipticCurve() ? "EC" : "RSA");
+    }
+
+    private static PublicKey decodePublic(SignatureAlgorithm alg, byte[] der) {
+        try {
+            return keyFactory(alg).generatePublic(new X509EncodedKeySpec(der));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Corrupt public key in signing_keys", e);
+        }
+    }
+
+    private static PrivateKey decodePrivate(SignatureAlgorithm alg, byte[] der) {
+        try {
+            return keyFactory(alg).generatePrivate(new PKCS8EncodedKeySpec(der));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Corrupt private key in signing_keys", e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package se.moln.ecommerceintegration.service;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import se.moln.ecommerceintegration.dto.IntrospectionResult;
+import se.moln.ecommerceintegration.exception.TooManyRequestsException;
+import se.moln.ecommerceintegration.security.Hs256TokenCodec.AccessClaims;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies a batch of access tokens for other services (gateway, order-service), so they pay one
+ * round trip per micro-batch instead of one per user request. Same checks as our own request
+ * filter: signature, issuer, expiry and the revocation list.
+ * <p>
+ * Batches of at least {@code auth.introspect.parallel-threshold} tokens are split into chunks and
+ * verified on a dedicated, size-capped pool (never the common fork-join pool, which the rest of the
+ * JVM shares). The calling thread verifies the first chunk itself. When the pool's queue is full,
+ * or the chunks are not done within {@code auth.introspect.max-wait-ms}, the caller gets a 429 with
+ * Retry-After, like {@link PasswordHashingService}.
+ */
+@Service
+public class TokenIntrospectionService {
+
+    private final JwtService jwt;
+    private final TokenRevocationService revocations;
+    private final int parallelThreshold;
+    private final ThreadPoolExecutor pool;
+    private final int threads;
+    private final long maxWaitMillis;
+    private final long retryAfterSeconds;
+    private final DistributionSummary batchSizes;
+    private final Counter rejected;
+
+    public TokenIntrospectionService(JwtService jwt,
+                                     TokenRevocationService revocations,
+                                     MeterRegistry registry,
+                                     @Value("${auth.introspect.parallel-threshold:64}") int parallelThreshold,
+                                     @Value("${auth.introspect.pool-size:0}") int poolSize,
+                                     @Value("${auth.introspect.queue-capacity:32}") int queueCapacity,
+                                     @Value("${auth.introspect.max-wait-ms:1000}") long maxWaitMillis,
+                                     @Value("${auth.introspect.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.jwt = jwt;
+        this.revocations = revocations;
+        this.parallelThreshold = Math.max(parallelThreshold, 2);
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        // 0 = one worker per core; verification is CPU bound
+        this.threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                r -> {
+                    Thread t = new Thread(r, "token-introspect-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.introspect.queue.depth", pool, p -> p.getQueue().size())
+                .description("Introspection chunks waiting for a worker")
+                .register(registry);
+        this.batchSizes = DistributionSummary.builder("auth.introspect.batch.size").register(registry);
+        this.rejected = Counter.builder("auth.introspect.rejected")
+                .description("Introspection batches shed with 429 because the pool was saturated")
+                .register(registry);
+    }
+
+    /** One result per token, in request order. */
+    public List<IntrospectionResult> introspect(List<String> tokens) {
+        batchSizes.record(tokens.size());
+        IntrospectionResult[] out = new IntrospectionResult[tokens.size()];
+        if (out.length < parallelThreshold) {
+            verify(tokens, out, 0, out.length);
+            return Arrays.asList(out);
+        }
+
+        // at most one chunk per worker plus the caller's own, and never smaller than the threshold
+        int chunks = Math.min(threads + 1, (out.length + parallelThreshold - 1) / parallelThreshold);
+        int chunkSize = (out.length + chunks - 1) / chunks;
+        List<Future<?>> futures = new ArrayList<>(chunks - 1);
+        try {
+            for (int from = chunkSize; from < out.length; from += chunkSize) {
+                int start = from, end = Math.min(from + chunkSize, out.length);
+                futures.add(pool.submit(() -> verify(tokens, out, start, end)));
+            }
+        } catch (RejectedExecutionException e) {
+            futures.forEach(f -> f.cancel(false));
+            throw shed();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        verify(tokens, out, 0, Math.min(chunkSize, out.length));
+        try {
+            for (Future<?> f : futures) {
+                f.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            futures.forEach(f -> f.cancel(false));
+            throw shed();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(f -> f.cancel(false));
+            throw new IllegalStateException("Interrupted while waiting for token introspection", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Token introspection failed", e.getCause());
+        }
+        return Arrays.asList(out);
+    }
+
+    private void verify(List<String> tokens, IntrospectionResult[] out, int from, int to) {
+        for (int i = from; i < to; i++) out[i] = introspect(tokens.get(i));
+    }
+
+    private TooManyRequestsException shed() {
+        rejected.increment();
+        return new TooManyRequestsException("Too many introspection requests, try again later", retryAfterSeconds);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private IntrospectionResult introspect(String token) {
+        if (token == null || token.isBlank()) return IntrospectionResult.inactive("invalid");
+        AccessClaims c;
+        try {
+            c = jwt.verify(token);
+        } catch (ExpiredJwtException e) {
+            return IntrospectionResult.inactive("expired");
+        } catch (JwtException | IllegalArgumentException e) {
+            return IntrospectionResult.inactive("invalid");
+        }
+        if (revocations.isRevoked(c.tokenId())) return IntrospectionResult.inactive("revoked");
+        return new IntrospectionResult(true, c.subject(), c.userId(), c.role(),
+                c.expiresAt() == Long.MIN_VALUE ? null : c.expiresAt(), c.tokenId(), null);
+    }
+}
@@ -0,0 +1,147 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import se.moln.ecommerceintegration.model.RevokedToken;
+import se.moln.ecommerceintegration.repository.RevokedTokenRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Denylist of revoked access-token ids ({@code jti}).
+ * <p>
+ * {@link #isRevoked} is a single set probe and runs on every authenticated request, cache hit or
+ * not. Each id is also filed in a bucket by its token's expiry ({@code auth.revocation.bucket-seconds}
+ * wide); once a bucket's end has passed, all its ids are dropped together, since the tokens
+ * would be rejected as expired anyway. The set therefore never holds more than one token
+ * lifetime's worth of revocations.
+ * <p>
+ * Revocations are written to {@code revoked_tokens}. Every node polls for rows with a higher
+ * {@code seq} than it has seen, and re-reads a short trailing window by time, because an insert
+ * can commit after one with a higher seq.
+ */
+@Service
+public class TokenRevocationService {
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationService.class);
+    private static final int POLL_BATCH = 1000;
+    private static final Duration LATE_COMMIT_WINDOW = Duration.ofSeconds(30);
+
+    private final RevokedTokenRepository repo;
+    private final long bucketSeconds;
+    private final Duration maxTokenLifetime;
+
+    private final Set<String> revoked = ConcurrentHashMap.newKeySet();
+    private final ConcurrentSkipListMap<Long, Queue<String>> buckets = new ConcurrentSkipListMap<>();
+    private volatile long lastSeq;
+
+    private final Counter revocations;
+
+    public TokenRevocationService(RevokedTokenRepository repo,
+                                  MeterRegistry registry,
+                                  @Value("${auth.revocation.bucket-seconds:60}") long bucketSeconds,
+                                  @Value("${jwt.access-token-minutes:30}") int accessMinutes) {
+        this.repo = repo;
+        this.bucketSeconds = Math.max(bucketSeconds, 1);
+        this.maxTokenLifetime = Duration.ofMinutes(accessMinutes);
+
+        this.revocations = Counter.builder("auth.revocation.revoked").register(registry);
+        Gauge.builder("auth.revocation.size", revoked, Set::size).register(registry);
+    }
+
+    public boolean isRevoked(String jti) {
+        return jti != null && revoked.contains(jti);
+    }
+
+    /**
+     * Revokes {@code jti} cluster-wide; takes effect on this node immediately, on others at their next poll.
+     * Not transactional on purpose: the INSERT runs in its own transaction, so a duplicate jti (another
+     * node, or logout racing an admin) only rolls that back and is treated as already revoked.
+     */
+    public void revoke(String jti, UUID userId, Instant expiresAt) {
+        Instant now = Instant.now();
+        if (jti == null || !expiresAt.isAfter(now)) return;
+        try {
+            repo.saveAndFlush(RevokedToken.of(jti, userId, expiresAt, now));
+            revocations.increment();
+        } catch (DataIntegrityViolationException alreadyRevoked) {
+            // unique on jti: someone got there first
+        }
+        add(jti, expiresAt.getEpochSecond(), now.getEpochSecond());
+    }
+
+    /** For a token whose expiry is not at hand: assumes the longest lifetime we issue. */
+    public void revoke(String jti, UUID userId) {
+        revoke(jti, userId, Instant.now().plus(maxTokenLifetime));
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    /** Pulls revocations made on other nodes and drops buckets whose tokens have expired. */
+    @Scheduled(fixedDelayString = "${auth.revocation.poll-ms:5000}")
+    public void poll() {
+        Instant now = Instant.now();
+        long nowSec = now.getEpochSecond();
+        expire(nowSec);
+
+        boolean first = lastSeq == 0;
+        int loaded = 0;
+        while (true) {
+            List<RevokedToken> batch = repo.findBySeqGreaterThanAndExpiresAtAfterOrderBySeq(lastSeq, now, Limit.of(POLL_BATCH));
+            for (RevokedToken r : batch) {
+                add(r.getJti(), r.getExpiresAt().getEpochSecond(), nowSec);
+                lastSeq = Math.max(lastSeq, r.getSeq());
+            }
+            loaded += batch.size();
+            if (batch.size() < POLL_BATCH) break;
+        }
+        if (!first) {
+            for (RevokedToken r : repo.findByRevokedAtGreaterThanEqualAndExpiresAtAfter(now.minus(LATE_COMMIT_WINDOW), now))
+                add(r.getJti(), r.getExpiresAt().getEpochSecond(), nowSec);
+        } else if (loaded > 0) {
+            log.info("Loaded {} revoked tokens", loaded);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.revocation.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int n = repo.deleteExpired(Instant.now());
+        if (n > 0) log.info("Purged {} expired token revocations", n);
+    }
+
+    private void add(String jti, long expSec, long nowSec) {
+        if (expSec <= nowSec || !revoked.add(jti)) return;
+        // bucket k holds expiries in ((k-1)*w, k*w] and is dropped at k*w
+        long k = Math.floorDiv(expSec + bucketSeconds - 1, bucketSeconds);
+        buckets.computeIfAbsent(k, x -> new ConcurrentLinkedQueue<>()).add(jti);
+    }
+
+    void expire(long nowSec) {
+        Map.Entry<Long, Queue<String>> head;
+        while ((head = buckets.firstEntry()) != null && head.getKey() * bucketSeconds <= nowSec) {
+            if (buckets.remove(head.getKey(), head.getValue())) {
+                for (String jti : head.getValue()) revoked.remove(jti);
+            }
+        }
+    }
+}
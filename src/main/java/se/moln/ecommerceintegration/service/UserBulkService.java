@@ -0,0 +1,121 @@
+package se.moln.ecommerceintegration.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.moln.ecommerceintegration.dto.UserCursor;
+import se.moln.ecommerceintegration.dto.UserFilter;
+import se.moln.ecommerceintegration.dto.UserSummary;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Role changes, activation and deletion for many users at once. Work is split into chunks of
+ * {@code users.bulk.chunk-size} ids; each chunk is one set-based UPDATE/DELETE in its own
+ * transaction, so a large cohort never holds long locks and a failure keeps earlier chunks.
+ * <p>
+ * Targets are either explicit ids, which go straight into the statement without being read
+ * first, or a {@link UserFilter}. Filter matches are walked with the same keyset cursor as the
+ * admin list, so rows that stop matching after an update are not revisited and none are
+ * skipped; each page is selected and locked in the chunk's transaction, so a row that stops
+ * matching before the statement runs is not changed by it.
+ */
+@Service
+public class UserBulkService {
+    private static final Logger log = LoggerFactory.getLogger(UserBulkService.class);
+
+    /**
+     * matched: the distinct ids given, or the users the filter found; affected: rows actually
+     * changed or deleted.
+     */
+    public record BulkResult(long matched, long affected) {}
+
+    private final UserRepository users;
+    private final EmailAvailabilityService emailAvailability;
+    private final UserSearchService search;
+    private final TransactionTemplate chunkTx;
+    private final int chunkSize;
+
+    public UserBulkService(UserRepository users,
+                           EmailAvailabilityService emailAvailability,
+                           UserSearchService search,
+                           PlatformTransactionManager txManager,
+                           @Value("${users.bulk.chunk-size:500}") int chunkSize) {
+        this.users = users;
+        this.emailAvailability = emailAvailability;
+        this.search = search;
+        this.chunkTx = new TransactionTemplate(txManager);
+        this.chunkSize = Math.max(chunkSize, 1);
+    }
+
+    public BulkResult setRole(List<UUID> ids, UserFilter filter, Role role) {
+        return run(ids, filter, part -> users.updateRole(part, role, Instant.now()), (part, n) -> {});
+    }
+
+    public BulkResult setActive(List<UUID> ids, UserFilter filter, boolean active) {
+        return run(ids, filter, part -> users.updateActive(part, active, Instant.now()), (part, n) -> {});
+    }
+
+    public BulkResult delete(List<UUID> ids, UserFilter filter) {
+        return run(ids, filter, users::deleteByIdIn, (part, deleted) -> {
+            emailAvailability.removed(deleted);
+            for (UUID id : part) search.removed(id); // unknown ids are a no-op in the index
+        });
+    }
+
+    // afterCommit gets the chunk's ids and the rows affected, once its transaction has committed
+    private BulkResult run(List<UUID> ids, UserFilter filter,
+                           ToIntFunction<List<UUID>> statement, ObjIntConsumer<List<UUID>> afterCommit) {
+        long matched = 0, affected = 0;
+        if (ids != null) {
+            List<UUID> distinct = List.copyOf(new LinkedHashSet<>(ids));
+            matched = distinct.size();
+            for (int from = 0; from < distinct.size(); from += chunkSize) {
+                List<UUID> part = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+                Integer n = chunkTx.execute(s -> statement.applyAsInt(part));
+                int done = n == null ? 0 : n;
+                afterCommit.accept(part, done);
+                affected += done;
+            }
+        } else {
+            UserCursor after = null;
+            while (true) {
+                UserCursor from = after;
+                Chunk chunk = chunkTx.execute(s -> walk(filter, from, statement));
+                if (chunk == null || chunk.rows().isEmpty()) break;
+                List<UserSummary> rows = chunk.rows();
+                matched += rows.size();
+                affected += chunk.affected();
+                afterCommit.accept(ids(rows), chunk.affected());
+                if (rows.size() < chunkSize) break;
+                after = UserCursor.after(rows.get(rows.size() - 1));
+            }
+        }
+        log.info("Bulk user operation: {} matched, {} affected", matched, affected);
+        return new BulkResult(matched, affected);
+    }
+
+    private record Chunk(List<UserSummary> rows, int affected) {}
+
+    private Chunk walk(UserFilter filter, UserCursor after, ToIntFunction<List<UUID>> statement) {
+        List<UserSummary> rows = users.findPageForUpdate(filter, after, chunkSize);
+        return new Chunk(rows, rows.isEmpty() ? 0 : statement.applyAsInt(ids(rows)));
+    }
+
+    private static List<UUID> ids(List<UserSummary> chunk) {
+        List<UUID> ids = new ArrayList<>(chunk.size());
+        for (UserSummary u : chunk) ids.add(u.id());
+        return ids;
+    }
+}
@@ -0,0 +1,111 @@
+package se.moln.ecommerceintegration.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import se.moln.ecommerceintegration.dto.UserSummary;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes every user as NDJSON or CSV without loading the table: rows are fetched in keyset
+ * batches ordered by id as {@link UserSummary} projections (no entities, no password hashes),
+ * and each batch is written and flushed before the next is read. Heap use is one batch.
+ */
+@Service
+public class UserExportService {
+
+    public enum Format { NDJSON, CSV }
+
+    static final String CSV_HEADER = "id,email,firstName,lastName,role,isActive,createdAt";
+
+    private final UserRepository users;
+    private final ObjectMapper mapper;
+    private final int batchSize;
+
+    public UserExportService(UserRepository users,
+                             ObjectMapper mapper,
+                             @Value("${users.export.batch-size:1000}") int batchSize) {
+        this.users = users;
+        this.mapper = mapper;
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    /** Returns the number of rows written. */
+    public long export(Format format, OutputStream out) throws IOException {
+        return format == Format.CSV ? exportCsv(out) : exportNdjson(out);
+    }
+
+    private long exportNdjson(OutputStream out) throws IOException {
+        JsonGenerator gen = mapper.getFactory().createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        long count = 0;
+        for (List<UserSummary> batch = first(); !batch.isEmpty(); batch = next(batch)) {
+            for (UserSummary u : batch) {
+                mapper.writeValue(gen, u);
+                gen.writeRaw('\n');
+            }
+            gen.flush();
+            count += batch.size();
+        }
+        gen.close();
+        return count;
+    }
+
+    private long exportCsv(OutputStream out) throws IOException {
+        Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        w.write(CSV_HEADER);
+        w.write('\n');
+        long count = 0;
+        for (List<UserSummary> batch = first(); !batch.isEmpty(); batch = next(batch)) {
+            for (UserSummary u : batch) {
+                w.write(u.id().toString());
+                w.write(',');
+                csv(w, u.email());
+                w.write(',');
+                csv(w, u.firstName());
+                w.write(',');
+                csv(w, u.lastName());
+                w.write(',');
+                w.write(u.role() == null ? "" : u.role().name());
+                w.write(',');
+                w.write(String.valueOf(Boolean.TRUE.equals(u.isActive())));
+                w.write(',');
+                w.write(u.createdAt() == null ? "" : u.createdAt().toString());
+                w.write('\n');
+            }
+            w.flush();
+            count += batch.size();
+        }
+        return count;
+    }
+
+    private List<UserSummary> first() {
+        return users.findSummaries(PageRequest.ofSize(batchSize));
+    }
+
+    private List<UserSummary> next(List<UserSummary> previous) {
+        if (previous.size() < batchSize) return List.of();
+        return users.findSummariesAfter(previous.get(previous.size() - 1).id(), PageRequest.ofSize(batchSize));
+    }
+
+    // quote only when needed; names may contain commas or quotes
+    private static void csv(Writer w, String value) throws IOException {
+        if (value == null) return;
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            w.write(value);
+            return;
+        }
+        w.write('"');
+        w.write(value.replace("\"", "\"\""));
+        w.write('"');
+    }
+}
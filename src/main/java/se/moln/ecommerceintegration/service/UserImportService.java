@@ -0,0 +1,342 @@
+package se.moln.ecommerceintegration.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.moln.ecommerceintegration.exception.TooManyRequestsException;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.model.User;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bulk user import for tenant migrations.
+ * <p>
+ * The input is read line by line and processed in chunks of {@code chunkSize} rows:
+ * <ol>
+ *   <li>Raw passwords in the chunk are hashed in parallel on a dedicated bounded pool,
+ *       separate from the login pool so a migration never starves sign-ins.</li>
+ *   <li>The chunk is inserted in one transaction with saveAll + flush, which Hibernate sends as
+ *       JDBC batches of {@code hibernate.jdbc.batch_size}.</li>
+ *   <li>If that fails (typically a duplicate email) the chunk is retried row by row so each line
+ *       gets its own result.</li>
+ * </ol>
+ * One NDJSON result line is written per input row, and a summary line at the end. Only one chunk
+ * is held in memory at a time. Rows with {@code passwordHash} instead of {@code password} skip
+ * hashing; they are upgraded on the user's first login like any other old hash.
+ */
+@Service
+public class UserImportService {
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+    private static final List<String> HASH_PREFIXES = List.of("{bcrypt}", "{scrypt}", "{argon2}", "$2a$", "$2b$", "$2y$");
+
+    public enum Format { NDJSON, CSV }
+
+    private final UserRepository users;
+    private final PasswordEncoder passwordEncoder;
+    private final EmailAvailabilityService emailAvailability;
+    private final UserSearchService search;
+    private final ObjectMapper mapper;
+    private final TransactionTemplate chunkTx;
+    private final TransactionTemplate rowTx;
+    private final ThreadPoolExecutor hashPool;
+    private final Semaphore running;
+    private final int chunkSize;
+
+    private final Counter created;
+    private final Counter failed;
+    private final Timer chunkTimer;
+
+    public UserImportService(UserRepository users,
+                             PasswordEncoder passwordEncoder,
+                             EmailAvailabilityService emailAvailability,
+                             UserSearchService search,
+                             ObjectMapper mapper,
+                             PlatformTransactionManager txManager,
+                             MeterRegistry registry,
+                             @Value("${users.import.chunk-size:500}") int chunkSize,
+                             @Value("${users.import.hash-threads:0}") int hashThreads,
+                             @Value("${users.import.max-concurrent:1}") int maxConcurrent) {
+        this.users = users;
+        this.passwordEncoder = passwordEncoder;
+        this.emailAvailability = emailAvailability;
+        this.search = search;
+        this.mapper = mapper;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.chunkTx = new TransactionTemplate(txManager);
+        this.rowTx = new TransactionTemplate(txManager);
+        this.rowTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.running = new Semaphore(Math.max(maxConcurrent, 1));
+
+        // 0 = half the cores, leaving the rest for login hashing and request handling
+        int threads = hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        // CallerRunsPolicy: if the queue is full the import thread hashes itself, which throttles reading
+        this.hashPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.chunkSize),
+                r -> {
+                    Thread t = new Thread(r, "import-hash-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.created = Counter.builder("users.import.rows").tag("result", "created").register(registry);
+        this.failed = Counter.builder("users.import.rows").tag("result", "failed").register(registry);
+        this.chunkTimer = Timer.builder("users.import.chunk").description("Hash + insert time per chunk").register(registry);
+    }
+
+    public record Summary(int total, int created, int failed, long tookMs) {}
+
+    record Row(int line, String email, String password, String passwordHash,
+               String firstName, String lastName, Role role, boolean active) {}
+
+    /** A row plus its outcome; hash is filled in before insert, error ends processing of the row. */
+    private static final class Pending {
+        final Row row;
+        String hash;
+        String error;
+        UUID id;
+
+        Pending(Row row) {
+            this.row = row;
+        }
+    }
+
+    /**
+     * Imports all rows from {@code in}, writing NDJSON results as each chunk completes.
+     * Throws 429 if the maximum number of concurrent imports is already running; {@code output}
+     * is only opened after that check, so the caller can still answer with a normal error.
+     */
+    public Summary importUsers(Reader in, Format format, Callable<OutputStream> output) throws IOException {
+        if (!running.tryAcquire()) throw new TooManyRequestsException("An import is already running", 30);
+        long t0 = System.nanoTime();
+        int[] totals = new int[3]; // total, created, failed
+        OutputStream out;
+        try {
+            out = output.call();
+        } catch (Exception e) {
+            running.release();
+            throw e instanceof IOException io ? io : new IOException(e);
+        }
+        try (BufferedReader reader = in instanceof BufferedReader b ? b : new BufferedReader(in)) {
+            List<Pending> chunk = new ArrayList<>(chunkSize);
+            String[] header = null;
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                if (format == Format.CSV && header == null) {
+                    header = splitCsv(line).stream().map(String::trim).toArray(String[]::new);
+                    continue;
+                }
+                chunk.add(parse(lineNo, line, format, header));
+                if (chunk.size() >= chunkSize) {
+                    processChunk(chunk, out, totals);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) processChunk(chunk, out, totals);
+        } finally {
+            running.release();
+        }
+        Summary summary = new Summary(totals[0], totals[1], totals[2], (System.nanoTime() - t0) / 1_000_000);
+        writeLine(out, Map.of("summary", summary));
+        out.flush();
+        log.info("User import finished: {} rows, {} created, {} failed in {} ms",
+                summary.total(), summary.created(), summary.failed(), summary.tookMs());
+        return summary;
+    }
+
+    private void processChunk(List<Pending> chunk, OutputStream out, int[] totals) throws IOException {
+        long t0 = System.nanoTime();
+        hashAll(chunk);
+
+        List<Pending> valid = chunk.stream().filter(p -> p.error == null).toList();
+        if (!valid.isEmpty()) {
+            try {
+                chunkTx.executeWithoutResult(s -> {
+                    List<User> entities = valid.stream().map(UserImportService::toUser).toList();
+                    users.saveAll(entities);
+                    users.flush();
+                    for (int i = 0; i < valid.size(); i++) valid.get(i).id = entities.get(i).getId();
+                });
+            } catch (DataIntegrityViolationException e) {
+                // one bad row poisons the batch; redo it row by row to find out which
+                for (Pending p : valid) insertOne(p);
+            }
+        }
+        chunkTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+
+        for (Pending p : chunk) {
+            totals[0]++;
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("line", p.row.line());
+            if (p.row.email() != null) result.put("email", p.row.email());
+            if (p.error == null) {
+                totals[1]++;
+                created.increment();
+                emailAvailability.added(p.row.email());
+                search.indexed(p.id, p.row.email(), p.row.firstName(), p.row.lastName());
+                result.put("status", "created");
+                result.put("id", p.id);
+            } else {
+                totals[2]++;
+                failed.increment();
+                result.put("status", "failed");
+                result.put("error", p.error);
+            }
+            writeLine(out, result);
+        }
+        out.flush();
+    }
+
+    private void insertOne(Pending p) {
+        try {
+            p.id = rowTx.execute(s -> users.saveAndFlush(toUser(p)).getId());
+        } catch (DataIntegrityViolationException e) {
+            p.error = UserRepository.isDuplicateEmail(e) ? "Email already in use" : "Constraint violation";
+        }
+    }
+
+    private void hashAll(List<Pending> chunk) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Pending p : chunk) {
+            if (p.error != null) continue;
+            if (p.row.passwordHash() != null) {
+                p.hash = p.row.passwordHash();
+            } else {
+                futures.add(hashPool.submit(() -> { p.hash = passwordEncoder.encode(p.row.password()); }));
+            }
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while hashing import chunk", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Password hashing failed during import", e.getCause());
+            }
+        }
+    }
+
+    private static User toUser(Pending p) {
+        Row r = p.row;
+        User u = User.newUser(r.email(), p.hash, r.firstName(), r.lastName());
+        u.setRole(r.role());
+        u.setIsActive(r.active());
+        return u;
+    }
+
+    private Pending parse(int lineNo, String line, Format format, String[] header) {
+        Map<String, String> f = new HashMap<>();
+        try {
+            if (format == Format.NDJSON) {
+                JsonNode node = mapper.readTree(line);
+                node.properties().forEach(e -> f.put(e.getKey(), e.getValue().isNull() ? null : e.getValue().asText()));
+            } else {
+                List<String> values = splitCsv(line);
+                for (int i = 0; i < header.length && i < values.size(); i++) f.put(header[i], values.get(i));
+            }
+        } catch (IOException | RuntimeException e) {
+            return invalid(lineNo, null, "Unparsable row");
+        }
+
+        String email = trimToNull(f.get("email"));
+        String password = f.get("password");
+        String passwordHash = trimToNull(f.get("passwordHash"));
+        if (email == null || email.indexOf('@') < 1) return invalid(lineNo, email, "Invalid email");
+        if (passwordHash != null) {
+            if (HASH_PREFIXES.stream().noneMatch(passwordHash::startsWith)) {
+                return invalid(lineNo, email, "Unsupported passwordHash format");
+            }
+        } else if (password == null || password.isEmpty() || password.getBytes(StandardCharsets.UTF_8).length > 72) {
+            return invalid(lineNo, email, "password (max 72 bytes) or passwordHash is required");
+        }
+
+        Role role;
+        try {
+            String r = trimToNull(f.get("role"));
+            role = r == null ? Role.USER : Role.valueOf(r.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return invalid(lineNo, email, "Unknown role");
+        }
+        String active = trimToNull(f.get("active"));
+        return new Pending(new Row(lineNo, email, passwordHash == null ? password : null, passwordHash,
+                trimToNull(f.get("firstName")), trimToNull(f.get("lastName")), role,
+                active == null || Boolean.parseBoolean(active)));
+    }
+
+    private static Pending invalid(int lineNo, String email, String error) {
+        Pending p = new Pending(new Row(lineNo, email, null, null, null, null, Role.USER, false));
+        p.error = error;
+        return p;
+    }
+
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(mapper.writeValueAsBytes(value));
+        out.write('\n');
+    }
+
+    /** RFC 4180 fields on one line: quoted fields may contain commas and doubled quotes, not newlines. */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cur.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    cur.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        fields.add(cur.toString());
+        return fields;
+    }
+
+    private static String trimToNull(String s) {
+        if (s == null) return null;
+        String t = s.trim();
+        return t.isEmpty() ? null : t;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashPool.shutdownNow();
+    }
+}
@@ -0,0 +1,158 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import se.moln.ecommerceintegration.dto.UserSummary;
+import se.moln.ecommerceintegration.model.User;
+import se.moln.ecommerceintegration.repository.UserRepository;
+import se.moln.ecommerceintegration.utils.TrigramIndex;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Admin search over email, first and last name from an in-memory {@link TrigramIndex}.
+ * <p>
+ * The index only holds the searchable text and ids; the page of hits is loaded from the
+ * database by id, so role, active flag etc. are never stale. The index is built at startup
+ * from keyset batches and kept current by the user write paths calling {@link #indexed(User)}
+ * and {@link #removed(UUID)}. Writes that arrive during a rebuild are replayed on top of it
+ * before it is published: the final replay and the swap hold {@code swapLock} exclusively, while
+ * writes share it, so no write can land between them and be overwritten by an older replayed one.
+ */
+@Service
+public class UserSearchService {
+    private static final Logger log = LoggerFactory.getLogger(UserSearchService.class);
+    private static final int BATCH_SIZE = 1000;
+    private static final String[] REMOVED = new String[0];
+
+    public record SearchResult(List<UserSummary> items, int total) {}
+
+    private final UserRepository users;
+    private final boolean enabled;
+    private final Timer queryTimer;
+
+    private volatile TrigramIndex index;
+    private volatile Map<UUID, String[]> duringRebuild; // latest write per user while a rebuild runs
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    public UserSearchService(UserRepository users,
+                             MeterRegistry registry,
+                             @Value("${users.search.enabled:true}") boolean enabled) {
+        this.users = users;
+        this.enabled = enabled;
+        this.queryTimer = Timer.builder("users.search.query")
+                .description("Index lookup and ranking, excluding the database fetch of the page")
+                .register(registry);
+        Gauge.builder("users.search.indexed", this, s -> s.index == null ? 0 : s.index.size()).register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) rebuild();
+    }
+
+    /** Rebuilds the index from the users table. Returns the number of users indexed, or -1 if already running. */
+    public long rebuild() {
+        if (!enabled) return 0;
+        if (!rebuilding.compareAndSet(false, true)) return -1;
+        long t0 = System.nanoTime();
+        try {
+            duringRebuild = new ConcurrentHashMap<>();
+            TrigramIndex next = new TrigramIndex(3);
+            long loaded = 0;
+            List<UserSummary> batch = users.findSummaries(PageRequest.ofSize(BATCH_SIZE));
+            while (!batch.isEmpty()) {
+                for (UserSummary u : batch) next.put(u.id(), u.email(), u.firstName(), u.lastName());
+                loaded += batch.size();
+                if (batch.size() < BATCH_SIZE) break;
+                batch = users.findSummariesAfter(batch.get(batch.size() - 1).id(), PageRequest.ofSize(BATCH_SIZE));
+            }
+            // replay what the batches may have missed; an entry overwritten meanwhile stays for the final pass
+            Map<UUID, String[]> missed = duringRebuild;
+            missed.forEach((id, fields) -> {
+                apply(next, id, fields);
+                missed.remove(id, fields);
+            });
+            next.trim();
+            swapLock.writeLock().lock();
+            try {
+                missed.forEach((id, fields) -> apply(next, id, fields));
+                index = next;
+                duringRebuild = null;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            log.info("User search index built: {} users in {} ms", loaded, (System.nanoTime() - t0) / 1_000_000);
+            return loaded;
+        } finally {
+            duringRebuild = null;
+            rebuilding.set(false);
+        }
+    }
+
+    /** Call after a user row has been inserted or its email/name changed. */
+    public void indexed(User u) {
+        if (u != null) indexed(u.getId(), u.getEmail(), u.getFirstName(), u.getLastName());
+    }
+
+    public void indexed(UUID id, String email, String firstName, String lastName) {
+        if (!enabled || id == null) return;
+        write(id, new String[]{email, firstName, lastName});
+    }
+
+    /** Call after a user has been deleted. */
+    public void removed(UUID id) {
+        if (!enabled || id == null) return;
+        write(id, REMOVED);
+    }
+
+    private void write(UUID id, String[] fields) {
+        swapLock.readLock().lock();
+        try {
+            Map<UUID, String[]> pending = duringRebuild;
+            if (pending != null) pending.put(id, fields);
+            TrigramIndex i = index;
+            if (i != null) apply(i, id, fields);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private static void apply(TrigramIndex index, UUID id, String[] fields) {
+        if (fields == REMOVED) index.remove(id);
+        else index.put(id, fields);
+    }
+
+    /** Ranked page of users matching every whitespace-separated token of {@code query}. */
+    public SearchResult search(String query, int offset, int limit) {
+        TrigramIndex i = index;
+        if (i == null) throw new IllegalStateException("Search index is not ready");
+
+        TrigramIndex.Result hits = queryTimer.record(() -> i.search(query, offset, limit));
+        if (hits.ids().isEmpty()) return new SearchResult(List.of(), hits.total());
+
+        Map<UUID, UserSummary> byId = users.findSummariesByIdIn(hits.ids()).stream()
+                .collect(Collectors.toMap(UserSummary::id, Function.identity()));
+        // keep the index's ranking; a user deleted since the lookup is simply left out
+        List<UserSummary> items = hits.ids().stream().map(byId::get).filter(Objects::nonNull).toList();
+        return new SearchResult(items, hits.total());
+    }
+
+    public boolean isReady() {
+        return index != null;
+    }
+}
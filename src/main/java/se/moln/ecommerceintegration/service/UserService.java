@@ -1,32 +1,73 @@
 package se.moln.ecommerceintegration.service;
 
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import se.moln.ecommerceintegration.exception.TooManyRequestsException;
 import se.moln.ecommerceintegration.model.User;
 import se.moln.ecommerceintegration.repository.UserRepository;
 
+import java.util.UUID;
+
 @Service
 public class UserService {
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
     private final UserRepository users;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashing;
+    private final EmailAvailabilityService emailAvailability;
+    private final UserSearchService search;
 
-    public UserService(UserRepository users, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository users, PasswordHashingService passwordHashing,
+                       EmailAvailabilityService emailAvailability, UserSearchService search) {
         this.users = users;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashing = passwordHashing;
+        this.emailAvailability = emailAvailability;
+        this.search = search;
     }
 
-    @Transactional
+    /**
+     * One INSERT; a duplicate email is detected by the unique constraint, which also
+     * makes concurrent sign-ups for the same address race-free.
+     * Not transactional on purpose: the hash (which may wait for a slot in the hashing pool)
+     * is computed before saveAndFlush opens its own transaction, so no JDBC connection is
+     * held while a sign-up queues for CPU.
+     */
     public User register(String email, String rawPassword, String firstName, String lastName) {
-        if (users.existsByEmail(email)) throw new IllegalStateException("Email is already registered");
-        String hash = passwordEncoder.encode(rawPassword);
-        return users.save(User.newUser(email, hash, firstName, lastName));
+        String hash = passwordHashing.encode(rawPassword);
+        try {
+            User saved = users.saveAndFlush(User.newUser(email, hash, firstName, lastName));
+            emailAvailability.added(saved.getEmail());
+            search.indexed(saved);
+            return saved;
+        } catch (DataIntegrityViolationException e) {
+            if (UserRepository.isDuplicateEmail(e)) throw new IllegalStateException("Email is already registered");
+            throw e;
+        }
+    }
+
+    /**
+     * Re-encodes the password with the current algorithm/cost after a successful login.
+     * Best effort: if the hashing pool is saturated the upgrade is simply retried next login.
+     * Hashes first and only then writes, and then only the hash column and only if the stored hash is
+     * still the one login verified; {@code user} was loaded before the hash waits and may be stale.
+     */
+    public void rehashPassword(User user, String rawPassword) {
+        String hash;
+        try {
+            hash = passwordHashing.encode(rawPassword);
+        } catch (TooManyRequestsException e) {
+            log.debug("Skipping password rehash for {}: hashing pool saturated", user.getId());
+            return;
+        }
+        if (users.updatePasswordHash(user.getId(), user.getPasswordHash(), hash) == 1) user.setPasswordHash(hash);
     }
 
     @Transactional
-    public User updateSettings(String email,String firstName, String lastName) {
-        User user = users.findByEmail(email)
-                .orElseThrow(() -> new IllegalStateException("User not found: " + email));
+    public User updateSettings(UUID userId, String firstName, String lastName) {
+        User user = users.findById(userId)
+                .orElseThrow(() -> new IllegalStateException("User not found: " + userId));
 
         if (firstName != null){
             user.setFirstName(firstName);
@@ -34,7 +75,8 @@ public class UserService {
         if (lastName != null){
             user.setLastName(lastName);
         }
-        return users.save(user);
-
+        User saved = users.save(user);
+        search.indexed(saved);
+        return saved;
     }
 }
\ No newline at end of file
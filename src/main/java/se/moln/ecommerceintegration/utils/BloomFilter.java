@@ -0,0 +1,98 @@
+package se.moln.ecommerceintegration.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings: no false negatives, false positives at roughly
+ * {@code fpp} while no more than {@code expectedInsertions} values have been added.
+ * <p>
+ * Bits live in an AtomicLongArray and are set with CAS, so readers and writers never lock.
+ * Probes use double hashing ({@code h1 + i*h2}) over one 64-bit hash of the UTF-8 bytes.
+ */
+public final class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashes;
+    private final long expectedInsertions;
+    private final AtomicLong insertions = new AtomicLong();
+
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(expectedInsertions, 1);
+        double p = Math.min(Math.max(fpp, 1e-9), 0.5);
+        long bits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min((bits + 63) >>> 6, Integer.MAX_VALUE - 8);
+
+        this.words = new AtomicLongArray(words);
+        this.bitCount = (long) words << 6;
+        this.hashes = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.expectedInsertions = n;
+    }
+
+    public void put(String value) {
+        long h = hash(value);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = index(h1 + i * h2);
+            int w = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long cur = words.get(w);
+            while ((cur & mask) == 0 && !words.compareAndSet(w, cur, cur | mask)) {
+                cur = words.get(w);
+            }
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String value) {
+        long h = hash(value);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        for (int i = 1; i <= hashes; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /** Number of put calls, including repeats of the same value. */
+    public long insertions() {
+        return insertions.get();
+    }
+
+    public long expectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public long bitSize() {
+        return bitCount;
+    }
+
+    public int hashFunctions() {
+        return hashes;
+    }
+
+    /** False positive probability implied by the current fill ratio, (setBits/m)^k. */
+    public double estimatedFpp() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) set += Long.bitCount(words.get(i));
+        return Math.pow((double) set / bitCount, hashes);
+    }
+
+    private long index(int combined) {
+        // spread negative combinations too
+        return (combined & 0xffffffffL) % bitCount;
+    }
+
+    // FNV-1a over the UTF-8 bytes, finished with the splitmix64 mixer so both halves are usable
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,42 @@
+package se.moln.ecommerceintegration.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+public final class RequestUtils {
+    private RequestUtils() {}
+
+    // Client IP: first X-Forwarded-For hop if present, otherwise the socket address.
+    // One pass over the header; allocates only when the hop has to be cut out of a longer value.
+    // The first hop is whatever the client sent, so this is for logs only; limits use the overload below.
+    public static String clientIp(HttpServletRequest req) {
+        String xff = req.getHeader("X-Forwarded-For");
+        if (xff != null) {
+            int end = xff.indexOf(',');
+            if (end < 0) end = xff.length();
+            int start = 0;
+            while (start < end && xff.charAt(start) <= ' ') start++;
+            while (end > start && xff.charAt(end - 1) <= ' ') end--;
+            if (start < end) return (start == 0 && end == xff.length()) ? xff : xff.substring(start, end);
+        }
+        return req.getRemoteAddr();
+    }
+
+    // Client IP as recorded by our own proxies: each of the trustedProxies in front of us appends the
+    // address it was connected from, so the hop that many places from the right is the first one a
+    // client cannot forge. 0 trusts no header. With fewer hops than proxies, the left-most is used.
+    public static String clientIp(HttpServletRequest req, int trustedProxies) {
+        String xff = trustedProxies > 0 ? req.getHeader("X-Forwarded-For") : null;
+        if (xff != null) {
+            int end = xff.length();
+            int start = xff.lastIndexOf(',', end - 1) + 1;
+            for (int hop = 1; hop < trustedProxies && start > 0; hop++) {
+                end = start - 1;
+                start = xff.lastIndexOf(',', end - 1) + 1;
+            }
+            while (start < end && xff.charAt(start) <= ' ') start++;
+            while (end > start && xff.charAt(end - 1) <= ' ') end--;
+            if (start < end) return (start == 0 && end == xff.length()) ? xff : xff.substring(start, end);
+        }
+        return req.getRemoteAddr();
+    }
+}
@@ -0,0 +1,430 @@
+package se.moln.ecommerceintegration.utils;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over a few short text fields per document (e.g. email, first and last
+ * name), keyed by UUID.
+ * <p>
+ * Each field is lowercased and indexed by every trigram it contains, plus two padded
+ * trigrams at each word start ({@code "^^a"}, {@code "^ab"}), so that
+ * <ul>
+ *   <li>query tokens of 3+ characters match as substrings anywhere, and</li>
+ *   <li>tokens of 1-2 characters match as word prefixes.</li>
+ * </ul>
+ * Postings are sorted {@code int[]} of dense document numbers; a query intersects the shortest
+ * lists first and then verifies each candidate against the stored text, since trigram hits alone
+ * do not prove the token occurs contiguously. All query tokens must match (AND).
+ * <p>
+ * Updates append a new document and tombstone the old one; when a quarter of the documents are
+ * dead the postings are rebuilt from the live ones on the compactor, off the lock.
+ * Reads share a read lock, writes are exclusive.
+ */
+public final class TrigramIndex {
+    private static final char PAD = '^';
+    private static final int COMPACT_MIN_DOCS = 1024;
+
+    // score per query token, summed over tokens
+    static final int SCORE_EXACT_PRIMARY = 100;
+    static final int SCORE_FIELD_PREFIX = 40;
+    static final int SCORE_WORD_PREFIX = 25;
+    static final int SCORE_SUBSTRING = 10;
+
+    private final int fieldCount;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Executor compactor;
+
+    private Docs docs;
+    private List<Object[]> sinceSnapshot; // {id, values or null} written while a compaction runs
+
+    public record Result(List<UUID> ids, int total) {}
+
+    /** Compacts on a short-lived daemon thread. */
+    public TrigramIndex(int fieldCount) {
+        this(fieldCount, task -> Thread.ofPlatform().daemon().name("trigram-index-compaction").start(task));
+    }
+
+    /** {@code compactor} runs compactions; it is called after the write lock has been released. */
+    public TrigramIndex(int fieldCount, Executor compactor) {
+        this.fieldCount = fieldCount;
+        this.compactor = compactor;
+        this.docs = new Docs(fieldCount, 1024);
+    }
+
+    /** Adds or replaces the document for {@code id}. Field 0 is the primary field (exact hits rank highest). */
+    public void put(UUID id, String... values) {
+        write(id, values);
+    }
+
+    public boolean remove(UUID id) {
+        return write(id, null);
+    }
+
+    private boolean write(UUID id, String[] values) {
+        boolean changed;
+        boolean compact;
+        lock.writeLock().lock();
+        try {
+            changed = values == null ? docs.remove(id) : docs.put(id, values);
+            if (changed && sinceSnapshot != null) sinceSnapshot.add(new Object[]{id, values});
+            compact = changed && sinceSnapshot == null && docs.needsCompaction();
+            if (compact) sinceSnapshot = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (compact) compactor.execute(this::compact);
+        return changed;
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            docs = new Docs(fieldCount, 1024); // a running compaction sees the swap and gives up
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Shrinks postings arrays to their size; call after a bulk load. */
+    public void trim() {
+        lock.writeLock().lock();
+        try {
+            docs.postings.values().forEach(Postings::trim);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.docByKey.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the postings from the live documents without holding the lock for the rebuild: only the
+     * snapshot copy and the final replay of writes made meanwhile plus the swap are done under it,
+     * like {@code UserSearchService.rebuild}.
+     */
+    private void compact() {
+        Docs source;
+        long[] hi, lo;
+        String[] fields;
+        BitSet dead;
+        int count;
+        lock.writeLock().lock();
+        try {
+            source = docs;
+            hi = source.idHi;
+            lo = source.idLo;
+            count = source.docCount;
+            // kill() nulls fields in place, so those two are copied; ids of existing docs never change
+            fields = Arrays.copyOf(source.fields, count * fieldCount);
+            dead = (BitSet) source.dead.clone();
+            sinceSnapshot.clear(); // writes so far are in the copy
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Docs next;
+        try {
+            next = new Docs(fieldCount, Math.max(1024, count - dead.cardinality()));
+            String[] values = new String[fieldCount];
+            for (int doc = 0; doc < count; doc++) {
+                if (dead.get(doc)) continue;
+                System.arraycopy(fields, doc * fieldCount, values, 0, fieldCount);
+                UUID id = new UUID(hi[doc], lo[doc]);
+                next.docByKey.put(id, next.append(id, values));
+            }
+            next.postings.values().forEach(Postings::trim);
+        } catch (RuntimeException | Error e) {
+            lock.writeLock().lock();
+            try {
+                sinceSnapshot = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (docs == source) {
+                for (Object[] w : sinceSnapshot) {
+                    if (w[1] == null) next.remove((UUID) w[0]);
+                    else next.put((UUID) w[0], (String[]) w[1]);
+                }
+                docs = next;
+            }
+            sinceSnapshot = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Ranked matches for {@code query}; {@code total} counts all matches, {@code ids} is the requested slice. */
+    public Result search(String query, int offset, int limit) {
+        String[] tokens = tokenize(query);
+        if (tokens.length == 0) return new Result(List.of(), 0);
+
+        lock.readLock().lock();
+        try {
+            Docs d = docs;
+            List<Postings> lists = new ArrayList<>();
+            for (String t : tokens) {
+                for (long gram : queryGrams(t)) {
+                    Postings p = d.postings.get(gram);
+                    if (p == null) return new Result(List.of(), 0);
+                    lists.add(p);
+                }
+            }
+            lists.sort(Comparator.comparingInt(p -> p.size));
+
+            // sort key: (max - score) | primary length | doc, so ascending order = best first.
+            // Only the best offset + limit keys are kept, in a max-heap; total still counts every hit.
+            int k = (int) Math.min((long) Math.max(offset, 0) + Math.max(limit, 0), Integer.MAX_VALUE);
+            long[] heap = new long[Math.min(k, 1024)];
+            int heapSize = 0;
+            int total = 0;
+            int[] cursors = new int[lists.size()];
+            Postings shortest = lists.get(0);
+            outer:
+            for (int i = 0; i < shortest.size; i++) {
+                int doc = shortest.docs[i];
+                if (d.dead.get(doc)) continue;
+                for (int l = 1; l < lists.size(); l++) {
+                    Postings p = lists.get(l);
+                    int c = cursors[l] = p.advance(cursors[l], doc);
+                    if (c == p.size) break outer; // a list is exhausted, nothing further can match
+                    if (p.docs[c] != doc) continue outer;
+                }
+                int score = d.score(doc, tokens);
+                if (score < 0) continue; // trigrams matched but the token is not contiguous
+                total++;
+                if (k == 0) continue;
+                String primary = d.fields[doc * fieldCount];
+                int len = Math.min(primary == null ? 0 : primary.length(), 255);
+                long key = ((long) (0xffffff - score) << 40) | ((long) len << 32) | doc;
+                if (heapSize < k) {
+                    if (heapSize == heap.length) heap = Arrays.copyOf(heap, Math.min(heap.length * 2, k));
+                    heap[heapSize] = key;
+                    siftUp(heap, heapSize++);
+                } else if (key < heap[0]) {
+                    heap[0] = key;
+                    siftDown(heap, 0, heapSize);
+                }
+            }
+            Arrays.sort(heap, 0, heapSize);
+
+            int from = Math.min(Math.max(offset, 0), heapSize);
+            List<UUID> ids = new ArrayList<>(heapSize - from);
+            for (int i = from; i < heapSize; i++) {
+                int doc = (int) heap[i];
+                ids.add(new UUID(d.idHi[doc], d.idLo[doc]));
+            }
+            return new Result(ids, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void siftUp(long[] heap, int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= key) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private static void siftDown(long[] heap, int i, int size) {
+        long key = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] > heap[child]) child++;
+            if (heap[child] <= key) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+
+    // one pass over the occurrences of t in v; short tokens only count at word starts
+    private static int score(String v, String t, boolean primary) {
+        int i = v.indexOf(t);
+        if (i < 0) return -1;
+        if (i == 0) return primary && v.length() == t.length() ? SCORE_EXACT_PRIMARY : SCORE_FIELD_PREFIX;
+        for (; i >= 0; i = v.indexOf(t, i + 1)) {
+            if (!Character.isLetterOrDigit(v.charAt(i - 1))) return SCORE_WORD_PREFIX;
+        }
+        return t.length() >= 3 ? SCORE_SUBSTRING : -1;
+    }
+
+    private static List<Long> queryGrams(String t) {
+        if (t.length() == 1) return List.of(gram(PAD, PAD, t.charAt(0)));
+        if (t.length() == 2) return List.of(gram(PAD, t.charAt(0), t.charAt(1)));
+        List<Long> grams = new ArrayList<>(t.length() - 2);
+        for (int i = 0; i + 2 < t.length(); i++) grams.add(gram(t.charAt(i), t.charAt(i + 1), t.charAt(i + 2)));
+        return grams;
+    }
+
+    private static String[] tokenize(String query) {
+        if (query == null) return new String[0];
+        return Arrays.stream(normalize(query).split("\\s+")).filter(s -> !s.isEmpty()).distinct().toArray(String[]::new);
+    }
+
+    private static String normalize(String s) {
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long gram(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    /** Documents and postings; replaced wholesale by a compaction. Guarded by the index lock. */
+    private static final class Docs {
+        private final int fieldCount;
+        long[] idHi;
+        long[] idLo;
+        String[] fields;  // fieldCount entries per document, lowercased
+        BitSet dead = new BitSet();
+        int docCount;
+        int deadCount;
+        final HashMap<UUID, Integer> docByKey = new HashMap<>();
+        final HashMap<Long, Postings> postings = new HashMap<>();
+
+        Docs(int fieldCount, int capacity) {
+            this.fieldCount = fieldCount;
+            this.idHi = new long[capacity];
+            this.idLo = new long[capacity];
+            this.fields = new String[capacity * fieldCount];
+        }
+
+        boolean put(UUID id, String[] values) {
+            Integer old = docByKey.get(id);
+            if (old != null) {
+                if (sameFields(old, values)) return false;
+                kill(old);
+            }
+            docByKey.put(id, append(id, values));
+            return true;
+        }
+
+        boolean remove(UUID id) {
+            Integer doc = docByKey.remove(id);
+            if (doc == null) return false;
+            kill(doc);
+            return true;
+        }
+
+        boolean needsCompaction() {
+            return docCount >= COMPACT_MIN_DOCS && deadCount * 4 >= docCount;
+        }
+
+        // -1 when some token does not really occur
+        private int score(int doc, String[] tokens) {
+            int total = 0;
+            for (String t : tokens) {
+                int best = -1;
+                for (int f = 0; f < fieldCount && best < SCORE_FIELD_PREFIX; f++) {
+                    String v = fields[doc * fieldCount + f];
+                    if (v != null) best = Math.max(best, TrigramIndex.score(v, t, f == 0));
+                }
+                if (best < 0) return -1;
+                total += best;
+            }
+            return total;
+        }
+
+        private int append(UUID id, String[] values) {
+            int doc = docCount++;
+            if (doc == idHi.length) {
+                int cap = idHi.length * 2;
+                idHi = Arrays.copyOf(idHi, cap);
+                idLo = Arrays.copyOf(idLo, cap);
+                fields = Arrays.copyOf(fields, cap * fieldCount);
+            }
+            idHi[doc] = id.getMostSignificantBits();
+            idLo[doc] = id.getLeastSignificantBits();
+            for (int f = 0; f < fieldCount; f++) {
+                String v = f < values.length && values[f] != null ? normalize(values[f]) : null;
+                fields[doc * fieldCount + f] = v;
+                if (v != null) indexField(doc, v);
+            }
+            return doc;
+        }
+
+        private void indexField(int doc, String v) {
+            for (int i = 0; i < v.length(); i++) {
+                char c = v.charAt(i);
+                if (Character.isLetterOrDigit(c) && (i == 0 || !Character.isLetterOrDigit(v.charAt(i - 1)))) {
+                    add(gram(PAD, PAD, c), doc);
+                    if (i + 1 < v.length()) add(gram(PAD, c, v.charAt(i + 1)), doc);
+                }
+                if (i + 2 < v.length()) add(gram(c, v.charAt(i + 1), v.charAt(i + 2)), doc);
+            }
+        }
+
+        private void add(long gram, int doc) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(doc);
+        }
+
+        private boolean sameFields(int doc, String[] values) {
+            for (int f = 0; f < fieldCount; f++) {
+                String v = f < values.length && values[f] != null ? normalize(values[f]) : null;
+                if (!Objects.equals(v, fields[doc * fieldCount + f])) return false;
+            }
+            return true;
+        }
+
+        private void kill(int doc) {
+            dead.set(doc);
+            deadCount++;
+            for (int f = 0; f < fieldCount; f++) fields[doc * fieldCount + f] = null;
+        }
+    }
+
+    /** Growable sorted int list; documents are appended in increasing order so it stays sorted. */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) return; // same trigram twice in one document
+            if (size == docs.length) docs = Arrays.copyOf(docs, size + (size >> 1) + 1);
+            docs[size++] = doc;
+        }
+
+        /** First index at or after {@code from} whose doc is {@code >= doc}, or size; gallops, then binary searches. */
+        int advance(int from, int doc) {
+            if (from >= size || docs[from] >= doc) return from;
+            int step = 1;
+            int lo = from, hi = from + 1;
+            while (hi < size && docs[hi] < doc) {
+                lo = hi;
+                step <<= 1;
+                hi = lo + step;
+            }
+            if (hi > size) hi = size;
+            // docs[lo] < doc, and docs[hi] >= doc or hi == size
+            while (lo + 1 < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (docs[mid] < doc) lo = mid;
+                else hi = mid;
+            }
+            return hi;
+        }
+
+        void trim() {
+            if (docs.length != size) docs = Arrays.copyOf(docs, size);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package se.moln.ecommerceintegration.benchmark;
+
+import ch.qos.logback.classic.Level;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import se.moln.ecommerceintegration.logging.AuditLoggingFilter;
+import se.moln.ecommerceintegration.logging.AuditPolicy;
+import se.moln.ecommerceintegration.logging.LatencyRecorder;
+import se.moln.ecommerceintegration.service.ActivityHistoryService;
+import se.moln.ecommerceintegration.service.ActivityLogPartitions;
+import se.moln.ecommerceintegration.service.AuditJournalService;
+import se.moln.ecommerceintegration.service.AuditLogService;
+import se.moln.ecommerceintegration.service.AuditLogWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of {@link AuditLoggingFilter} with INFO off for the filter's logger: the previous
+ * implementation (UUID request id, eager String.format, headers parsed twice) vs. the current one,
+ * with audit persistence disabled so only the filter's own work is measured, and {@code baseline}
+ * as the floor every variant pays for the servlet plumbing and mock request.
+ * <p>
+ * {@code currentPersisted} is the current filter with persistence on, i.e. what every request the
+ * audit policy keeps pays: event id, the ActivityLog and its journal append. The journal lives in
+ * a temp directory and is shipped by its own thread into an in-memory H2 table, as in production;
+ * if shipping falls behind, events spill into the writer's buffer and are dropped once it is full.
+ * Run with {@code -prof gc} for bytes allocated per request.
+ * <pre>mvn -Pbench test-compile exec:exec -Dbench.args="AuditFilter -prof gc"</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AuditFilterBenchmark {
+
+    private static final FilterChain NOOP = (req, res) -> { };
+
+    private OncePerRequestFilter baseline;
+    private OncePerRequestFilter legacy;
+    private AuditLoggingFilter current;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private String baselineFiltered;
+    private String legacyFiltered;
+    private String currentFiltered;
+
+    private AuditLoggingFilter persisted;
+    private AuditLogWriter writer;
+    private AuditJournalService journal;
+    private Path journalDir;
+
+    @Setup
+    public void setup() throws IOException {
+        for (Class<?> c : new Class<?>[]{AuditLoggingFilter.class, LegacyAuditLoggingFilter.class}) {
+            ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(c)).setLevel(Level.WARN);
+        }
+        AuditLogService audit = new AuditLogService(null, null, null, false);
+        AuditPolicy policy = new AuditPolicy(new SimpleMeterRegistry(),
+                "action:AUTH_LOGIN,AUTH_REGISTER -> always; path:/actuator/**,/swagger-ui/**,/v3/api-docs/** -> never;"
+                        + " auth:anon status:401,403 -> sample 100", "always");
+        baseline = new BaselineFilter();
+        legacy = new LegacyAuditLoggingFilter(audit);
+        current = new AuditLoggingFilter(audit, policy, new LatencyRecorder(true, 60, 6));
+        persisted = new AuditLoggingFilter(persistingAuditLog(), policy, new LatencyRecorder(true, 60, 6));
+
+        request = new MockHttpServletRequest("GET", "/users/me");
+        request.addHeader("X-Forwarded-For", "203.0.113.10, 70.41.3.18, 150.172.238.178");
+        request.addHeader("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36");
+        response = new MockHttpServletResponse();
+        // OncePerRequestFilter marks the request; cleared each call so the same request can be reused
+        baselineFiltered = BaselineFilter.class.getName() + ".FILTERED";
+        legacyFiltered = legacy.getClass().getName() + ".FILTERED";
+        currentFiltered = AuditLoggingFilter.class.getName() + ".FILTERED";
+        SecurityContextHolder.clearContext();
+    }
+
+    // journal + shipper + batch writer against in-memory H2, wired as Spring would with persistence on
+    private AuditLogService persistingAuditLog() throws IOException {
+        DriverManagerDataSource ds = new DriverManagerDataSource("jdbc:h2:mem:auditbench;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(ds);
+        jdbc.execute("create table if not exists activity_logs (id uuid primary key, action varchar(32) not null, "
+                + "user_email varchar(255), method varchar(10), path varchar(512), status int not null, ip varchar(64), "
+                + "user_agent varchar(256), duration_ms bigint not null, created_at timestamp(6) with time zone not null, "
+                + "sample_weight int default 1 not null)");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ActivityLogPartitions partitions = new ActivityLogPartitions(jdbc, false, "day", 90);
+        writer = new AuditLogWriter(jdbc, partitions, new DataSourceTransactionManager(ds), registry,
+                8192, 500, 200, "drop", 50, 10, 5000);
+        journalDir = Files.createTempDirectory("audit-bench");
+        journal = new AuditJournalService(writer, registry, true, true, journalDir.toString(), 16, 2, 200, 500);
+        writer.start();
+        journal.start();
+        return new AuditLogService(writer, journal, new ActivityHistoryService(partitions, registry, true, 10_000, 300), true);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.stop();
+        writer.stop();
+        try (var files = Files.walk(journalDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public MockHttpServletResponse baseline() throws ServletException, IOException {
+        request.removeAttribute(baselineFiltered);
+        baseline.doFilter(request, response, NOOP);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse legacy() throws ServletException, IOException {
+        request.removeAttribute(legacyFiltered);
+        legacy.doFilter(request, response, NOOP);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse current() throws ServletException, IOException {
+        request.removeAttribute(currentFiltered);
+        current.doFilter(request, response, NOOP);
+        return response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse currentPersisted() throws ServletException, IOException {
+        request.removeAttribute(currentFiltered);
+        persisted.doFilter(request, response, NOOP);
+        return response;
+    }
+
+    /** What every variant pays anyway: OncePerRequestFilter bookkeeping and the mock's two header lookups. */
+    static final class BaselineFilter extends OncePerRequestFilter {
+        @Override
+        protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+                throws ServletException, IOException {
+            chain.doFilter(req, res);
+            req.getHeader("X-Forwarded-For");
+            req.getHeader("User-Agent");
+        }
+    }
+
+    /** The filter as it was before the hot-path rework, kept for comparison. */
+    static final class LegacyAuditLoggingFilter extends OncePerRequestFilter {
+        private static final Logger log = LoggerFactory.getLogger(LegacyAuditLoggingFilter.class);
+        private final AuditLogService audit;
+
+        LegacyAuditLoggingFilter(AuditLogService audit) {
+            this.audit = audit;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest req, HttpServletResponse res, FilterChain chain)
+                throws ServletException, IOException {
+            String reqId = UUID.randomUUID().toString().substring(0, 8);
+            MDC.put("reqId", reqId);
+            MDC.put("ip", clientIp(req));
+
+            long started = System.currentTimeMillis();
+            try {
+                chain.doFilter(req, res);
+            } finally {
+                var a = SecurityContextHolder.getContext().getAuthentication();
+                String user = (a != null) ? a.getName() : null;
+                MDC.put("userEmail", user != null ? user : "anon");
+
+                int status = res.getStatus();
+                long took = System.currentTimeMillis() - started;
+                String action = actionFor(req);
+
+                String msg = String.format("%s %s status=%d took=%dms ua=\"%s\"",
+                        req.getMethod(), req.getRequestURI(), status, took, userAgent(req));
+
+                if (status >= 400) log.warn("{} - {}", action, msg);
+                else               log.info("{} - {}", action, msg);
+
+                audit.save(action, user, req.getMethod(), req.getRequestURI(), status, clientIp(req), userAgent(req), took);
+
+                MDC.clear();
+            }
+        }
+
+        private String actionFor(HttpServletRequest req) {
+            String p = req.getRequestURI();
+            String m = req.getMethod();
+            if (p.startsWith("/auth/login"))    return "AUTH_LOGIN";
+            if (p.startsWith("/auth/register")) return "AUTH_REGISTER";
+            if (p.equals("/me"))                return "PROFILE_VIEW";
+            if (p.startsWith("/users") && ("PUT".equals(m) || "PATCH".equals(m)))
+                return "USER_UPDATE";
+            return "REQUEST";
+        }
+
+        private String clientIp(HttpServletRequest req) {
+            String xff = req.getHeader("X-Forwarded-For");
+            return (xff != null && !xff.isBlank()) ? xff.split(",")[0].trim() : req.getRemoteAddr();
+        }
+
+        private String userAgent(HttpServletRequest req) {
+            String ua = req.getHeader("User-Agent");
+            return ua != null ? ua : "-";
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package se.moln.ecommerceintegration.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import se.moln.ecommerceintegration.security.Hs256TokenCodec;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access-token mint and verify: jjwt's builder/parser (what JwtService did before) vs. the
+ * fixed-shape {@link Hs256TokenCodec}. Run with {@code -prof gc} for allocation per op.
+ * <pre>mvn -Pbench test-compile exec:exec -Dbench.args="JwtCodec -prof gc"</pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtCodecBenchmark {
+
+    private static final String ISSUER = "user-service";
+
+    private SecretKey key;
+    private JwtParser parser;
+    private Hs256TokenCodec codec;
+    private UUID uid;
+    private String token;
+
+    @Setup
+    public void setup() {
+        key = Keys.hmacShaKeyFor("super-secret-key-that-is-long-enough-32-bytes-minimum!".getBytes());
+        parser = Jwts.parserBuilder().setSigningKey(key).requireIssuer(ISSUER).build();
+        codec = new Hs256TokenCodec(key.getEncoded(), ISSUER);
+        uid = UUID.randomUUID();
+        token = mintJjwt();
+    }
+
+    @Benchmark
+    public String mintJjwt() {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setSubject("anna.svensson@example.com").setIssuer(ISSUER)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + 1_800_000))
+                .addClaims(Map.of("uid", uid.toString(), "role", "USER"))
+                .setId(UUID.randomUUID().toString())
+                .signWith(key, SignatureAlgorithm.HS256).compact();
+    }
+
+    @Benchmark
+    public String mintFast() {
+        long now = System.currentTimeMillis() / 1000;
+        return codec.mint(uid, "anna.svensson@example.com", "USER", now, now + 1800, UUID.randomUUID().toString());
+    }
+
+    @Benchmark
+    public Claims verifyJjwt() {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public Hs256TokenCodec.AccessClaims verifyFast() {
+        return codec.verify(token, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,102 @@
+package se.moln.ecommerceintegration.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registration write path: existsByEmail + INSERT (old) vs. a single INSERT relying on the
+ * unique email constraint (new). Hashing is left out; it is identical in both paths.
+ * <p>
+ * Runs against in-memory H2, so it measures statement count rather than network round trips;
+ * against a remote database the gap widens by one RTT per registration.
+ * <pre>mvn -Pbench test-compile exec:exec -Dbench.args=RegistrationInsert</pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RegistrationInsertBenchmark {
+
+    private static final String URL = "jdbc:h2:mem:regbench;DB_CLOSE_DELAY=-1";
+    private static final String INSERT = "insert into users (id, email, password_hash, first_name, last_name, role, is_active, created_at, updated_at) "
+            + "values (?, ?, 'HASH', 'F', 'L', 'USER', true, current_timestamp, current_timestamp)";
+    private static final AtomicLong SEQ = new AtomicLong();
+
+    @State(Scope.Benchmark)
+    public static class Schema {
+        @Setup(Level.Trial)
+        public void create() throws SQLException {
+            try (Connection c = DriverManager.getConnection(URL, "sa", "");
+                 Statement s = c.createStatement()) {
+                s.execute("drop table if exists users");
+                s.execute("create table users (id uuid primary key, email varchar(255) not null, password_hash varchar(255) not null, "
+                        + "first_name varchar(100), last_name varchar(100), role varchar(255), is_active boolean not null, "
+                        + "created_at timestamp not null, updated_at timestamp not null, constraint uk_users_email unique (email))");
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Conn {
+        Connection connection;
+        PreparedStatement exists;
+        PreparedStatement insert;
+
+        @Setup(Level.Trial)
+        public void open(Schema schema) throws SQLException {
+            connection = DriverManager.getConnection(URL, "sa", "");
+            connection.setAutoCommit(false);
+            exists = connection.prepareStatement("select count(*) from users where email = ?");
+            insert = connection.prepareStatement(INSERT);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public boolean checkThenInsert(Conn c) throws SQLException {
+        String email = "u" + SEQ.incrementAndGet() + "@bench.test";
+        c.exists.setString(1, email);
+        try (ResultSet rs = c.exists.executeQuery()) {
+            rs.next();
+            if (rs.getLong(1) > 0) {
+                c.connection.rollback();
+                return false;
+            }
+        }
+        return insert(c, email);
+    }
+
+    @Benchmark
+    public boolean insertOnly(Conn c) throws SQLException {
+        return insert(c, "u" + SEQ.incrementAndGet() + "@bench.test");
+    }
+
+    @Benchmark
+    public boolean insertOnly_duplicate(Conn c) throws SQLException {
+        // the conflict path: one failed INSERT instead of one SELECT
+        return insert(c, "taken@bench.test");
+    }
+
+    private static boolean insert(Conn c, String email) throws SQLException {
+        c.insert.setObject(1, UUID.randomUUID());
+        c.insert.setString(2, email);
+        try {
+            c.insert.executeUpdate();
+            c.connection.commit();
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            c.connection.rollback();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package se.moln.ecommerceintegration.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import se.moln.ecommerceintegration.security.CalibratedPasswordEncoder;
+import se.moln.ecommerceintegration.service.JwtService;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU per renewed session: re-login (password verification + access token) vs. refresh
+ * (hash the presented refresh token, generate and hash its successor + access token), i.e.
+ * the in-process work of /auth/login vs. /auth/refresh. Database work is left out; refresh
+ * does one more small write (marking the old token used) than login.
+ * <pre>mvn -Pbench test-compile exec:exec -Dbench.args=SessionRenewal</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionRenewalBenchmark {
+
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+
+    // 12 is what calibration picks for ~250 ms on typical hosts; 10 is the Spring default
+    @Param({"10", "12"})
+    public int bcryptCost;
+
+    private CalibratedPasswordEncoder encoder;
+    private String passwordHash;
+    private JwtService jwt;
+    private final SecureRandom random = new SecureRandom();
+    private final UUID userId = UUID.randomUUID();
+    private String refreshToken;
+
+    @Setup
+    public void setup() {
+        encoder = new CalibratedPasswordEncoder(CalibratedPasswordEncoder.BCRYPT, bcryptCost, 19456);
+        passwordHash = encoder.encode("Password123!");
+        jwt = new JwtService("super-secret-key-that-is-long-enough-32-bytes-minimum!", "user-service", 30);
+        refreshToken = newToken();
+    }
+
+    @Benchmark
+    public String relogin() {
+        if (!encoder.matches("Password123!", passwordHash)) throw new IllegalStateException();
+        return jwt.createAccessToken(userId, "anna@example.com", "USER");
+    }
+
+    @Benchmark
+    public String refresh() throws NoSuchAlgorithmException {
+        String presentedHash = hash(refreshToken); // lookup key
+        String next = newToken();
+        String nextHash = hash(next);              // stored
+        if (presentedHash.equals(nextHash)) throw new IllegalStateException();
+        return jwt.createAccessToken(userId, "anna@example.com", "USER") + next;
+    }
+
+    // same work as RefreshTokenService.newToken/hash
+    private String newToken() {
+        byte[] b = new byte[32];
+        random.nextBytes(b);
+        return B64.encodeToString(b);
+    }
+
+    private static String hash(String token) throws NoSuchAlgorithmException {
+        return B64.encodeToString(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
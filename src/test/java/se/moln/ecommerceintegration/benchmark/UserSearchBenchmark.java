@@ -0,0 +1,90 @@
+package se.moln.ecommerceintegration.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import se.moln.ecommerceintegration.utils.TrigramIndex;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admin search latency over one million synthetic users: the trigram index vs. a linear
+ * {@code contains} scan of the same lowercased fields (what a {@code LIKE '%q%'} over all
+ * rows amounts to, minus I/O). Page size 20, as the endpoint default.
+ * <pre>mvn -Pbench test-compile exec:exec -Dbench.args="UserSearch -prof gc"</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class UserSearchBenchmark {
+
+    private static final String[] FIRST = {"anna", "johan", "maria", "erik", "karin", "lars", "eva", "per", "sara", "anders",
+            "lena", "mikael", "emma", "nils", "ida", "oskar", "elin", "gustav", "frida", "henrik"};
+    private static final String[] LAST = {"andersson", "johansson", "karlsson", "nilsson", "eriksson", "larsson", "olsson",
+            "persson", "svensson", "gustafsson", "pettersson", "jonsson", "jansson", "hansson", "bengtsson", "lindberg",
+            "lindqvist", "berg", "lund", "holm"};
+    private static final String[] DOMAINS = {"moln.se", "example.com", "mail.se", "firma.nu", "kund.org"};
+
+    @Param({"1000000"})
+    public int users;
+
+    // short prefix (many hits), name substring, two terms, near-unique email
+    @Param({"an", "sson", "anna svensson", "user424242@"})
+    public String query;
+
+    private TrigramIndex index;
+    private String[] scanFields;
+
+    @Setup(Level.Trial)
+    public void build() {
+        Random rnd = new Random(42);
+        index = new TrigramIndex(3);
+        scanFields = new String[users * 3];
+        long t0 = System.nanoTime();
+        for (int i = 0; i < users; i++) {
+            String first = FIRST[rnd.nextInt(FIRST.length)];
+            String last = LAST[rnd.nextInt(LAST.length)];
+            String email = (rnd.nextBoolean() ? first + "." + last + i : "user" + i) + "@" + DOMAINS[rnd.nextInt(DOMAINS.length)];
+            index.put(new UUID(0, i), email, capitalize(first), capitalize(last));
+            scanFields[i * 3] = email;
+            scanFields[i * 3 + 1] = first;
+            scanFields[i * 3 + 2] = last;
+        }
+        index.trim();
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        System.out.printf("%n%d users indexed in %d ms, heap used %d MB (index + scan copy)%n",
+                users, (System.nanoTime() - t0) / 1_000_000, (rt.totalMemory() - rt.freeMemory()) >> 20);
+    }
+
+    @Benchmark
+    public TrigramIndex.Result trigramIndex() {
+        return index.search(query, 0, 20);
+    }
+
+    @Benchmark
+    public int linearScan() {
+        String[] terms = query.toLowerCase(Locale.ROOT).split("\\s+");
+        int hits = 0;
+        for (int doc = 0; doc < users; doc++) {
+            boolean all = true;
+            for (String t : terms) {
+                int f = doc * 3;
+                if (!scanFields[f].contains(t) && !scanFields[f + 1].contains(t) && !scanFields[f + 2].contains(t)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) hits++;
+        }
+        return hits;
+    }
+
+    private static String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+}
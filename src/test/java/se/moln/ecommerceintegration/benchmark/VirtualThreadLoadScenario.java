@@ -0,0 +1,262 @@
+package se.moln.ecommerceintegration.benchmark;
+
+import org.h2.tools.Server;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import se.moln.ecommerceintegration.ECommerceIntegrationApplication;
+import se.moln.ecommerceintegration.model.User;
+import se.moln.ecommerceintegration.repository.UserRepository;
+import se.moln.ecommerceintegration.service.EntitlementService;
+import se.moln.ecommerceintegration.service.JwtService;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * In-process load scenario: starts the application once on platform threads and once on
+ * virtual threads, drives the same mixed workload against each and prints throughput and
+ * p50/p99 per endpoint.
+ * <p>
+ * Mix per request: 10% POST /auth/login (bcrypt), 60% GET /me, 30% POST
+ * /api/users/me/entitlements/consume (row lock + update). The database is H2 behind its TCP
+ * server by default, so every statement is real blocking socket I/O as against a remote DB.
+ * Clients use a fixed seed per worker, so the request sequence is identical across runs.
+ * <pre>
+ * mvn -Pbench test-compile exec:exec -Dbench.main=se.moln.ecommerceintegration.benchmark.VirtualThreadLoadScenario \
+ *     -Dbench.args="--concurrency=400 --duration=20"
+ * </pre>
+ * Options: --concurrency, --warmup and --duration (seconds), --users, --bcrypt-cost,
+ * --db=tcp|mem, --modes=platform,virtual, and any number of --spring.some.property=value
+ * passed to both application runs.
+ */
+public final class VirtualThreadLoadScenario {
+    private static final String PASSWORD = "Password123!";
+    private static final String SKU = "LOAD";
+    private static final String[] OPS = {"login", "me", "consume"};
+
+    private final int concurrency;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int userCount;
+    private final int bcryptCost;
+    private final String db;
+    private final List<String> modes;
+    private final Map<String, String> extra = new LinkedHashMap<>();
+
+    private VirtualThreadLoadScenario(Map<String, String> opts) {
+        this.concurrency = Integer.parseInt(opts.getOrDefault("concurrency", "400"));
+        this.warmupSeconds = Integer.parseInt(opts.getOrDefault("warmup", "5"));
+        this.durationSeconds = Integer.parseInt(opts.getOrDefault("duration", "20"));
+        this.userCount = Integer.parseInt(opts.getOrDefault("users", "500"));
+        this.bcryptCost = Integer.parseInt(opts.getOrDefault("bcrypt-cost", "10"));
+        this.db = opts.getOrDefault("db", "tcp");
+        this.modes = List.of(opts.getOrDefault("modes", "platform,virtual").split(","));
+        opts.forEach((k, v) -> { if (k.contains(".")) extra.put(k, v); }); // property overrides
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            opts.put(eq < 0 ? a.substring(2) : a.substring(2, eq), eq < 0 ? "true" : a.substring(eq + 1));
+        }
+        new VirtualThreadLoadScenario(opts).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        System.out.printf("concurrency=%d warmup=%ds duration=%ds users=%d bcrypt-cost=%d db=%s cpus=%d%n",
+                concurrency, warmupSeconds, durationSeconds, userCount, bcryptCost, db,
+                Runtime.getRuntime().availableProcessors());
+        List<String> report = new ArrayList<>();
+        for (String mode : modes) report.addAll(runMode(mode.trim()));
+
+        System.out.println();
+        System.out.printf("%-9s %-8s %9s %9s %9s %9s %9s %7s%n", "mode", "op", "requests", "req/s", "2xx/s", "p50 ms", "p99 ms", "non-2xx");
+        report.forEach(System.out::println);
+    }
+
+    private List<String> runMode(String mode) throws Exception {
+        Server h2 = null;
+        String url = "jdbc:h2:mem:load-" + mode + ";DB_CLOSE_DELAY=-1";
+        if ("tcp".equals(db)) {
+            int port = freePort();
+            h2 = Server.createTcpServer("-tcpPort", Integer.toString(port), "-ifNotExists").start();
+            url = "jdbc:h2:tcp://localhost:" + port + "/mem:load-" + mode + ";DB_CLOSE_DELAY=-1";
+        }
+
+        // passed as command-line args so they win over application-dev.properties
+        Map<String, String> props = new LinkedHashMap<>();
+        props.put("server.port", "0");
+        props.put("spring.datasource.url", url);
+        props.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        props.put("spring.jpa.properties.hibernate.format_sql", "false");
+        props.put("spring.threads.virtual.enabled", Boolean.toString("virtual".equals(mode)));
+        props.put("auth.password.cost", Integer.toString(bcryptCost));
+        props.put("auth.throttle.enabled", "false");
+        props.put("logging.level.root", "WARN");
+        props.putAll(extra);
+
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(ECommerceIntegrationApplication.class)
+                .run(props.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue()).toArray(String[]::new));
+        try {
+            int port = Integer.parseInt(ctx.getEnvironment().getProperty("local.server.port"));
+            List<String[]> accounts = seed(ctx);
+            System.out.printf("[%s] started on port %d, %d users seeded%n", mode, port, accounts.size());
+
+            Load load = new Load(port, accounts);
+            load.drive(warmupSeconds, false);
+            Result r = load.drive(durationSeconds, true);
+            return r.rows(mode, durationSeconds);
+        } finally {
+            ctx.close();
+            if (h2 != null) h2.stop();
+        }
+    }
+
+    /** Creates users sharing one precomputed hash and gives each a large entitlement; returns {email, token}. */
+    private List<String[]> seed(ConfigurableApplicationContext ctx) {
+        UserRepository users = ctx.getBean(UserRepository.class);
+        EntitlementService entitlements = ctx.getBean(EntitlementService.class);
+        JwtService jwt = ctx.getBean(JwtService.class);
+        String hash = ctx.getBean(PasswordEncoder.class).encode(PASSWORD);
+
+        List<String[]> accounts = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            User u = users.save(User.newUser("load" + i + "@example.com", hash, "Load", "User" + i));
+            entitlements.issue(u.getId(), SKU, 1_000_000, null);
+            accounts.add(new String[]{u.getEmail(), jwt.createAccessToken(u.getId(), u.getEmail(), u.getRole().name())});
+        }
+        return accounts;
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    private final class Load {
+        private final HttpClient client;
+        private final String base;
+        private final List<String[]> accounts;
+
+        Load(int port, List<String[]> accounts) {
+            this.base = "http://localhost:" + port;
+            this.accounts = accounts;
+            this.client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+        }
+
+        Result drive(int seconds, boolean record) throws Exception {
+            long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+            List<Future<Result>> workers = new ArrayList<>(concurrency);
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int w = 0; w < concurrency; w++) {
+                    long seed = w;
+                    workers.add(clients.submit(() -> worker(new Random(seed), deadline)));
+                }
+                Result total = new Result();
+                for (Future<Result> f : workers) total.merge(f.get());
+                return record ? total : null;
+            }
+        }
+
+        private Result worker(Random rnd, long deadline) {
+            Result r = new Result();
+            while (System.nanoTime() < deadline) {
+                String[] account = accounts.get(rnd.nextInt(accounts.size()));
+                int roll = rnd.nextInt(100);
+                int op = roll < 10 ? 0 : roll < 70 ? 1 : 2;
+                HttpRequest req = switch (op) {
+                    case 0 -> json("/auth/login", null,
+                            "{\"email\":\"" + account[0] + "\",\"password\":\"" + PASSWORD + "\"}");
+                    case 1 -> HttpRequest.newBuilder(URI.create(base + "/me"))
+                            .header("Authorization", "Bearer " + account[1]).GET().build();
+                    default -> json("/api/users/me/entitlements/consume", account[1],
+                            "{\"sku\":\"" + SKU + "\",\"count\":1}");
+                };
+                long t0 = System.nanoTime();
+                int status;
+                try {
+                    status = client.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+                } catch (Exception e) {
+                    status = -1;
+                }
+                r.record(op, System.nanoTime() - t0, status);
+            }
+            return r;
+        }
+
+        private HttpRequest json(String path, String token, String body) {
+            HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(base + path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+            if (token != null) b.header("Authorization", "Bearer " + token);
+            return b.build();
+        }
+    }
+
+    /** Latencies per op in growable primitive arrays, plus non-2xx counts. */
+    private static final class Result {
+        final long[][] latencies = new long[OPS.length][1024];
+        final int[] sizes = new int[OPS.length];
+        final int[] failures = new int[OPS.length];
+
+        void record(int op, long nanos, int status) {
+            if (sizes[op] == latencies[op].length) latencies[op] = Arrays.copyOf(latencies[op], sizes[op] * 2);
+            latencies[op][sizes[op]++] = nanos;
+            if (status < 200 || status >= 300) failures[op]++;
+        }
+
+        void merge(Result o) {
+            for (int op = 0; op < OPS.length; op++) {
+                long[] merged = Arrays.copyOf(latencies[op], sizes[op] + o.sizes[op]);
+                System.arraycopy(o.latencies[op], 0, merged, sizes[op], o.sizes[op]);
+                latencies[op] = merged;
+                sizes[op] += o.sizes[op];
+                failures[op] += o.failures[op];
+            }
+        }
+
+        List<String> rows(String mode, int seconds) {
+            List<String> rows = new ArrayList<>();
+            long[] all = new long[0];
+            int failed = 0;
+            for (int op = 0; op < OPS.length; op++) {
+                long[] l = Arrays.copyOf(latencies[op], sizes[op]);
+                rows.add(row(mode, OPS[op], l, seconds, failures[op]));
+                long[] merged = Arrays.copyOf(all, all.length + l.length);
+                System.arraycopy(l, 0, merged, all.length, l.length);
+                all = merged;
+                failed += failures[op];
+            }
+            rows.add(row(mode, "all", all, seconds, failed));
+            return rows;
+        }
+
+        private static String row(String mode, String op, long[] l, int seconds, int failed) {
+            Arrays.sort(l);
+            return String.format("%-9s %-8s %9d %9.1f %9.1f %9.2f %9.2f %7d", mode, op, l.length,
+                    l.length / (double) seconds, (l.length - failed) / (double) seconds, pct(l, 0.50), pct(l, 0.99), failed);
+        }
+
+        private static double pct(long[] sorted, double p) {
+            if (sorted.length == 0) return 0;
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package se.moln.ecommerceintegration.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    @Test
+    void requestsBeyondLimit_areShedWith429_andPermitsAreReleased() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, 50, 2, registry);
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain blocking = (req, res) -> {
+            inside.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> first = pool.submit(() -> {
+                filter.doFilter(new MockHttpServletRequest("GET", "/me"), new MockHttpServletResponse(), blocking);
+                return null;
+            });
+            assertThat(inside.await(5, TimeUnit.SECONDS)).isTrue();
+
+            MockHttpServletResponse shed = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/me"), shed, (req, res) -> {});
+            assertThat(shed.getStatus()).isEqualTo(429);
+            assertThat(shed.getHeader("Retry-After")).isEqualTo("2");
+            assertThat(shed.getContentAsString()).contains("too_many_requests");
+            assertThat(registry.get("http.server.concurrency.rejected").counter().count()).isEqualTo(1);
+
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        MockHttpServletResponse ok = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/me"), ok, (req, res) -> {});
+        assertThat(ok.getStatus()).isEqualTo(200);
+        assertThat(registry.get("http.server.concurrency.in.flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void actuatorIsNeverLimited() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, 0, 1, new SimpleMeterRegistry());
+        CountDownLatch ran = new CountDownLatch(2);
+        // hold the only permit, then a health probe must still pass
+        filter.doFilter(new MockHttpServletRequest("GET", "/me"), new MockHttpServletResponse(), (req, res) -> {
+            ran.countDown();
+            MockHttpServletResponse health = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), health, (r2, s2) -> ran.countDown());
+            assertThat(health.getStatus()).isEqualTo(200);
+        });
+        assertThat(ran.getCount()).isZero();
+    }
+}
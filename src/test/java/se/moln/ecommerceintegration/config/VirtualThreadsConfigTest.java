@@ -0,0 +1,38 @@
+package se.moln.ecommerceintegration.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:vthreads;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4",
+        "spring.threads.virtual.enabled=true",
+        "spring.datasource.hikari.maximum-pool-size=5"
+})
+class VirtualThreadsConfigTest {
+
+    @Autowired
+    private FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter;
+    @Autowired
+    private AsyncTaskExecutor applicationTaskExecutor;
+    @Autowired
+    private VirtualThreadPinningMonitor pinningMonitor;
+
+    @Test
+    void virtualMode_limitsToPoolMultiple_andRunsAsyncWorkOnVirtualThreads() throws Exception {
+        assertThat(concurrencyLimitFilter.getFilter().getMaxConcurrent()).isEqualTo(10);
+        assertThat(pinningMonitor).isNotNull();
+
+        CompletableFuture<Boolean> virtual = applicationTaskExecutor.submitCompletable(() -> Thread.currentThread().isVirtual());
+        assertThat(virtual.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
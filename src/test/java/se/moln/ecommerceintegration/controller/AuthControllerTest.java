@@ -5,7 +5,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import se.moln.ecommerceintegration.dto.LoginRequest;
@@ -13,13 +15,20 @@ import se.moln.ecommerceintegration.dto.RegisterRequest;
 import se.moln.ecommerceintegration.exception.GlobalExceptionHandler;
 import se.moln.ecommerceintegration.model.User;
 import se.moln.ecommerceintegration.repository.UserRepository;
+import se.moln.ecommerceintegration.security.CalibratedPasswordEncoder;
+import se.moln.ecommerceintegration.security.LoginThrottle;
 import se.moln.ecommerceintegration.service.JwtService;
+import se.moln.ecommerceintegration.service.PasswordHashingService;
+import se.moln.ecommerceintegration.service.RefreshTokenService;
+import se.moln.ecommerceintegration.service.TokenRevocationService;
 import se.moln.ecommerceintegration.service.UserService;
 
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -29,6 +38,7 @@ class AuthControllerTest {
     private UserService userService;
     private UserRepository userRepository;
     private JwtService jwtService;
+    private RefreshTokenService refreshTokens;
     private MockMvc mvc;
     private final ObjectMapper om = new ObjectMapper();
 
@@ -37,8 +47,17 @@ class AuthControllerTest {
         userService = Mockito.mock(UserService.class);
         userRepository = Mockito.mock(UserRepository.class);
         jwtService = Mockito.mock(JwtService.class);
+        refreshTokens = Mockito.mock(RefreshTokenService.class);
 
-        AuthController controller = new AuthController(userService, userRepository, jwtService);
+        // riktig hashing-pool med samma encoder som i prod (bcrypt, cost 12) så att login-testerna verifierar mot en äkta hash
+        PasswordHashingService hashing = new PasswordHashingService(
+                new CalibratedPasswordEncoder(CalibratedPasswordEncoder.BCRYPT, 12, 19456), new SimpleMeterRegistry(), 1, 4, 5000, 1);
+
+        // max 3 försök per e-post och 100 per IP
+        LoginThrottle throttle = new LoginThrottle(new SimpleMeterRegistry(), true, 3, 300, 100, 60, 10, 1000, 1);
+
+        AuthController controller = new AuthController(userService, userRepository, jwtService, hashing, throttle, refreshTokens,
+                Mockito.mock(TokenRevocationService.class));
         mvc = MockMvcBuilders
                 .standaloneSetup(controller)
                 .setControllerAdvice(new GlobalExceptionHandler())
@@ -94,12 +113,13 @@ class AuthControllerTest {
     void login_ok_returns200_withToken() throws Exception {
         String email = "user@example.com";
         String rawPassword = "Password123!";
-        // controller skapar själv en ny BCryptPasswordEncoder() så vi använder en riktig hash här
+        // hashing-poolen kör en riktig BCryptPasswordEncoder så vi använder en riktig hash här
         String hash = new org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder().encode(rawPassword);
         User user = User.newUser(email, hash, "David", "Andreasson");
 
         when(userRepository.findByEmail(email)).thenReturn(Optional.of(user));
         when(jwtService.createAccessToken(user.getId(), user.getEmail(), user.getRole().name())).thenReturn("token-xyz");
+        when(refreshTokens.issue(user.getId())).thenReturn("refresh-xyz");
         LoginRequest req = new LoginRequest(email, rawPassword);
 
         mvc.perform(post("/auth/login")
@@ -108,7 +128,51 @@ class AuthControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.accessToken", equalTo("token-xyz")))
-                .andExpect(jsonPath("$.tokenType", equalTo("Bearer")));
+                .andExpect(jsonPath("$.tokenType", equalTo("Bearer")))
+                .andExpect(jsonPath("$.refreshToken", equalTo("refresh-xyz")));
+    }
+
+    @Test
+    void login_outdatedHash_isRehashed_currentHashIsNot() throws Exception {
+        String rawPassword = "Password123!";
+        User legacy = User.newUser("old@example.com", new BCryptPasswordEncoder(10).encode(rawPassword), "D", "A");
+        User current = User.newUser("new@example.com", "{bcrypt}" + new BCryptPasswordEncoder(11).encode(rawPassword), "D", "A");
+        when(userRepository.findByEmail("old@example.com")).thenReturn(Optional.of(legacy));
+        when(userRepository.findByEmail("new@example.com")).thenReturn(Optional.of(current));
+
+        mvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(new LoginRequest("old@example.com", rawPassword))))
+                .andExpect(status().isOk());
+        mvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(new LoginRequest("new@example.com", rawPassword))))
+                .andExpect(status().isOk());
+
+        verify(userService).rehashPassword(legacy, rawPassword);
+        verify(userService, never()).rehashPassword(current, rawPassword);
+    }
+
+    @Test
+    void login_tooManyAttemptsForEmail_returns429_withoutLookup() throws Exception {
+        when(userRepository.findByEmail("victim@example.com")).thenReturn(Optional.empty());
+        LoginRequest req = new LoginRequest("victim@example.com", "guess");
+
+        for (int i = 0; i < 3; i++) {
+            mvc.perform(post("/auth/login")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(om.writeValueAsString(req)))
+                    .andExpect(status().isUnauthorized());
+        }
+        // same mailbox, different casing -> same throttle key
+        mvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(new LoginRequest("Victim@Example.com", "guess"))))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(jsonPath("$.error", equalTo("too_many_requests")));
+
+        verify(userRepository, org.mockito.Mockito.times(3)).findByEmail(ArgumentMatchers.anyString());
     }
 
     @Test
@@ -144,4 +208,29 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.message", equalTo("Invalid credentials")))
                 .andExpect(jsonPath("$.details", hasSize(0)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void refresh_rotatesWithoutPasswordCheck() throws Exception {
+        User user = User.newUser("user@example.com", "{bcrypt}never-checked", "D", "A");
+        when(refreshTokens.rotate("old-refresh")).thenReturn(Optional.of(new RefreshTokenService.Rotation(user, "new-refresh")));
+        when(jwtService.createAccessToken(user.getId(), user.getEmail(), user.getRole().name())).thenReturn("token-new");
+
+        mvc.perform(post("/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"old-refresh\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accessToken", equalTo("token-new")))
+                .andExpect(jsonPath("$.refreshToken", equalTo("new-refresh")));
+    }
+
+    @Test
+    void refresh_invalidToken_returns401() throws Exception {
+        when(refreshTokens.rotate("spent")).thenReturn(Optional.empty());
+
+        mvc.perform(post("/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"spent\"}"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.error", equalTo("unauthorized")));
+    }
+}
@@ -0,0 +1,41 @@
+package se.moln.ecommerceintegration.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import se.moln.ecommerceintegration.service.SigningKeyService;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class JwksControllerTest {
+
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setup() {
+        SigningKeyService keys = Mockito.mock(SigningKeyService.class);
+        when(keys.jwks()).thenReturn(new SigningKeyService.Jwks("{\"keys\":[{\"kid\":\"k1\"}]}".getBytes(), "\"abc\""));
+        mvc = MockMvcBuilders.standaloneSetup(new JwksController(keys, 300)).build();
+    }
+
+    @Test
+    void jwks_isCacheableWithEtag() throws Exception {
+        mvc.perform(get("/.well-known/jwks.json"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=300, public"))
+                .andExpect(jsonPath("$.keys[0].kid").value("k1"));
+    }
+
+    @Test
+    void jwks_notModifiedForMatchingEtag() throws Exception {
+        mvc.perform(get("/.well-known/jwks.json").header(HttpHeaders.IF_NONE_MATCH, "\"abc\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+}
@@ -2,41 +2,46 @@ package se.moln.ecommerceintegration.controller;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.web.server.ResponseStatusException;
 import se.moln.ecommerceintegration.dto.UserProfileResponse;
+import se.moln.ecommerceintegration.model.Role;
 import se.moln.ecommerceintegration.model.User;
 import se.moln.ecommerceintegration.repository.UserRepository;
+import se.moln.ecommerceintegration.security.AuthenticatedUser;
 
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class ProfileControllerTest {
 
     @Test
-    void me_returnsProfile_forUserDetailsPrincipal() {
+    void me_returnsProfile_byIdFromPrincipal() {
         UserRepository repo = Mockito.mock(UserRepository.class);
         ProfileController controller = new ProfileController(repo);
 
-        var ud = org.springframework.security.core.userdetails.User
-                .withUsername("user@example.com").password("x").roles("USER").build();
-
         User entity = User.newUser("user@example.com", "HASH", "Anna", "Andersson");
-        when(repo.findByEmail("user@example.com")).thenReturn(Optional.of(entity));
+        var principal = new AuthenticatedUser(entity.getId(), "user@example.com", Role.USER);
+        when(repo.findById(entity.getId())).thenReturn(Optional.of(entity));
 
-        UserProfileResponse resp = controller.me(ud);
+        UserProfileResponse resp = controller.me(principal);
         assertThat(resp.email()).isEqualTo("user@example.com");
         assertThat(resp.firstName()).isEqualTo("Anna");
         assertThat(resp.role()).isEqualTo("USER");
         assertThat(resp.isActive()).isTrue();
+        verify(repo, never()).findByEmail(any());
     }
 
     @Test
-    void me_unsupportedPrincipal_throws() {
+    void me_withoutPrincipal_unauthorized() {
         UserRepository repo = Mockito.mock(UserRepository.class);
         ProfileController controller = new ProfileController(repo);
 
-        assertThrows(IllegalStateException.class, () -> controller.me(new Object()));
+        assertThrows(ResponseStatusException.class, () -> controller.me(null));
     }
 }
@@ -0,0 +1,104 @@
+package se.moln.ecommerceintegration.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import se.moln.ecommerceintegration.exception.GlobalExceptionHandler;
+import se.moln.ecommerceintegration.repository.RevokedTokenRepository;
+import se.moln.ecommerceintegration.service.JwtService;
+import se.moln.ecommerceintegration.service.TokenIntrospectionService;
+import se.moln.ecommerceintegration.service.TokenRevocationService;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class TokenIntrospectionControllerTest {
+
+    private static final String SECRET = "super-secret-key-that-is-long-enough-32-bytes-minimum!";
+
+    private final JwtService jwt = new JwtService(SECRET, "test-issuer", 5);
+    private final UUID uid = UUID.randomUUID();
+    private TokenRevocationService revocations;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setup() {
+        revocations = new TokenRevocationService(mock(RevokedTokenRepository.class), new SimpleMeterRegistry(), 60, 5);
+        // threshold 2 so the batches below take the parallel path
+        TokenIntrospectionService service = new TokenIntrospectionService(jwt, revocations, new SimpleMeterRegistry(), 2, 2, 8, 5000, 1);
+        mvc = MockMvcBuilders.standaloneSetup(new TokenIntrospectionController(service))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    private String batch() {
+        String valid = jwt.createAccessToken(uid, "anna@example.com", "ADMIN");
+        String expired = new JwtService(SECRET, "test-issuer", -1).createAccessToken(uid, "anna@example.com", "USER");
+        String revoked = jwt.createAccessToken(uid, "anna@example.com", "USER");
+        revocations.revoke(jwt.verify(revoked).tokenId(), uid);
+        return "{\"tokens\":[\"" + valid + "\",\"" + expired + "\",\"" + revoked + "\",\"garbage\"]}";
+    }
+
+    @Test
+    void introspect_json_resultPerTokenInOrder() throws Exception {
+        mvc.perform(post("/auth/introspect").contentType(MediaType.APPLICATION_JSON).content(batch()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-store"))
+                .andExpect(jsonPath("$.results[0].active").value(true))
+                .andExpect(jsonPath("$.results[0].sub").value("anna@example.com"))
+                .andExpect(jsonPath("$.results[0].uid").value(uid.toString()))
+                .andExpect(jsonPath("$.results[0].role").value("ADMIN"))
+                .andExpect(jsonPath("$.results[0].error").doesNotExist())
+                .andExpect(jsonPath("$.results[1].error").value("expired"))
+                .andExpect(jsonPath("$.results[1].sub").doesNotExist())
+                .andExpect(jsonPath("$.results[2].error").value("revoked"))
+                .andExpect(jsonPath("$.results[3].error").value("invalid"));
+    }
+
+    @Test
+    void introspect_binary() throws Exception {
+        byte[] body = mvc.perform(post("/auth/introspect")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(TokenIntrospectionController.BINARY)
+                        .content(batch()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(TokenIntrospectionController.BINARY))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        assertThat(in.readInt()).isEqualTo(4);
+        assertThat(in.readByte()).isEqualTo((byte) 0);
+        assertThat(new UUID(in.readLong(), in.readLong())).isEqualTo(uid);
+        assertThat(in.readLong()).isGreaterThan(System.currentTimeMillis() / 1000);
+        assertThat(readString(in)).isEqualTo("ADMIN");
+        assertThat(readString(in)).isEqualTo("anna@example.com");
+        assertThat(readString(in)).isNotBlank();
+        assertThat(in.readByte()).isEqualTo((byte) 1);
+        assertThat(in.readByte()).isEqualTo((byte) 2);
+        assertThat(in.readByte()).isEqualTo((byte) 3);
+        assertThat(in.available()).isZero();
+    }
+
+    @Test
+    void introspect_tooManyTokens_returns400() throws Exception {
+        String tokens = "\"t\",".repeat(TokenIntrospectionController.MAX_TOKENS) + "\"t\"";
+        mvc.perform(post("/auth/introspect").contentType(MediaType.APPLICATION_JSON).content("{\"tokens\":[" + tokens + "]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static String readString(DataInputStream in) throws Exception {
+        byte[] b = new byte[in.readUnsignedShort()];
+        in.readFully(b);
+        return new String(b, java.nio.charset.StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,69 @@
+package se.moln.ecommerceintegration.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import se.moln.ecommerceintegration.security.ServiceKeyAuthenticationFilter;
+import se.moln.ecommerceintegration.service.JwtService;
+
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:introspectsecurity;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4",
+        "auth.service-keys=gateway:gateway-key, orders:orders-key"
+})
+@AutoConfigureMockMvc
+class TokenIntrospectionSecurityTest {
+
+    @Autowired
+    private MockMvc mvc;
+    @Autowired
+    private JwtService jwt;
+
+    private MockHttpServletRequestBuilder introspect() {
+        return post("/auth/introspect").contentType(MediaType.APPLICATION_JSON).content("{\"tokens\":[\"garbage\"]}");
+    }
+
+    @Test
+    void anonymous_returns401() throws Exception {
+        mvc.perform(introspect()).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void wrongServiceKey_returns401() throws Exception {
+        mvc.perform(introspect().header(ServiceKeyAuthenticationFilter.HEADER, "gateway-key-guess"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void userToken_returns403() throws Exception {
+        String token = jwt.createAccessToken(UUID.randomUUID(), "anna@example.com", "USER");
+        mvc.perform(introspect().header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void serviceKey_isAccepted() throws Exception {
+        mvc.perform(introspect().header(ServiceKeyAuthenticationFilter.HEADER, "orders-key"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].error").value("invalid"));
+    }
+
+    @Test
+    void adminToken_isAccepted() throws Exception {
+        String token = jwt.createAccessToken(UUID.randomUUID(), "admin@example.com", "ADMIN");
+        mvc.perform(introspect().header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk());
+    }
+}
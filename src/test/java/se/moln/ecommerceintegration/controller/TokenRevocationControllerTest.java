@@ -0,0 +1,58 @@
+package se.moln.ecommerceintegration.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import se.moln.ecommerceintegration.exception.GlobalExceptionHandler;
+import se.moln.ecommerceintegration.service.JwtService;
+import se.moln.ecommerceintegration.service.TokenRevocationService;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class TokenRevocationControllerTest {
+
+    private final JwtService jwt = new JwtService("super-secret-key-that-is-long-enough-32-bytes-minimum!", "test-issuer", 5);
+    private TokenRevocationService revocations;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setup() {
+        revocations = Mockito.mock(TokenRevocationService.class);
+        mvc = MockMvcBuilders.standaloneSetup(new TokenRevocationController(jwt, revocations))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void revoke_validToken_revokesItsJtiUntilExpiry() throws Exception {
+        UUID uid = UUID.randomUUID();
+        String token = jwt.createAccessToken(uid, "user@example.com", "USER");
+        var claims = jwt.verify(token);
+
+        mvc.perform(post("/users/tokens/revoke")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"token\":\"" + token + "\"}"))
+                .andExpect(status().isNoContent());
+
+        verify(revocations).revoke(claims.tokenId(), uid, Instant.ofEpochSecond(claims.expiresAt()));
+    }
+
+    @Test
+    void revoke_invalidToken_returns400() throws Exception {
+        mvc.perform(post("/users/tokens/revoke")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"token\":\"garbage\"}"))
+                .andExpect(status().isBadRequest());
+
+        verify(revocations, never()).revoke(any(), any(), any());
+    }
+}
@@ -5,10 +5,16 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import se.moln.ecommerceintegration.dto.UserCursor;
+import se.moln.ecommerceintegration.dto.UserFilter;
+import se.moln.ecommerceintegration.dto.UserSummary;
 import se.moln.ecommerceintegration.model.Role;
 import se.moln.ecommerceintegration.model.User;
 import se.moln.ecommerceintegration.repository.UserRepository;
+import se.moln.ecommerceintegration.service.EmailAvailabilityService;
+import se.moln.ecommerceintegration.service.UserSearchService;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -22,25 +28,59 @@ class UserAdminControllerTest {
 
     private UserRepository users;
     private PasswordEncoder encoder;
+    private EmailAvailabilityService emailAvailability;
+    private UserSearchService search;
     private UserAdminController controller;
 
     @BeforeEach
     void setup() {
         users = Mockito.mock(UserRepository.class);
         encoder = Mockito.mock(PasswordEncoder.class);
-        controller = new UserAdminController(users, encoder);
+        emailAvailability = Mockito.mock(EmailAvailabilityService.class);
+        search = Mockito.mock(UserSearchService.class);
+        controller = new UserAdminController(users, encoder, emailAvailability, search);
     }
 
     @Test
-    void list_returnsAll() {
-        when(users.findAll()).thenReturn(List.of(
-                User.newUser("a@e.com", "H", "A", "A"),
-                User.newUser("b@e.com", "H", "B", "B")
-        ));
-
-        var result = controller.list();
-        assertThat(result).hasSize(2);
-        assertThat(result.get(0).email()).isEqualTo("a@e.com");
+    void list_firstPage_passesFilters_andReturnsNextCursorWhenMoreRows() {
+        List<UserSummary> rows = List.of(summary("a@e.com", 3), summary("b@e.com", 2), summary("c@e.com", 1));
+        when(users.findPage(any(), isNull(), eq(3))).thenReturn(rows);
+
+        var res = controller.list(Role.ADMIN, true, " a", null, null, null, 2);
+
+        ArgumentCaptor<UserFilter> filter = ArgumentCaptor.forClass(UserFilter.class);
+        verify(users).findPage(filter.capture(), isNull(), eq(3));
+        assertThat(filter.getValue()).isEqualTo(new UserFilter(Role.ADMIN, true, "a", null, null));
+        assertThat(res.getBody()).extracting(UserSummary::email).containsExactly("a@e.com", "b@e.com");
+        String next = res.getHeaders().getFirst(UserAdminController.NEXT_CURSOR_HEADER);
+        assertThat(UserCursor.decode(next)).isEqualTo(UserCursor.after(rows.get(1)));
+    }
+
+    @Test
+    void list_lastPage_hasNoCursor_andCursorIsPassedThrough() {
+        UserCursor cursor = new UserCursor(Instant.parse("2025-01-01T00:00:00Z"), UUID.randomUUID());
+        when(users.findPage(any(), eq(cursor), eq(51))).thenReturn(List.of(summary("z@e.com", 0)));
+
+        var res = controller.list(null, null, null, null, null, cursor.encode(), 50);
+
+        assertThat(res.getBody()).hasSize(1);
+        assertThat(res.getHeaders().containsKey(UserAdminController.NEXT_CURSOR_HEADER)).isFalse();
+        verify(users, never()).findAll();
+    }
+
+    @Test
+    void list_rejectsBadCursorAndLimit() {
+        var bad = assertThrows(org.springframework.web.server.ResponseStatusException.class,
+                () -> controller.list(null, null, null, null, null, "not-a-cursor", 50));
+        assertThat(bad.getStatusCode().value()).isEqualTo(400);
+        assertThrows(org.springframework.web.server.ResponseStatusException.class,
+                () -> controller.list(null, null, null, null, null, null, 0));
+        assertThrows(org.springframework.web.server.ResponseStatusException.class,
+                () -> controller.list(null, null, null, null, null, null, 201));
+    }
+
+    private static UserSummary summary(String email, long secondsAfterEpoch) {
+        return new UserSummary(UUID.randomUUID(), email, "F", "L", Role.USER, true, Instant.ofEpochSecond(secondsAfterEpoch));
     }
 
     @Test
@@ -64,19 +104,20 @@ class UserAdminControllerTest {
     void create_success_encodesPassword_andSetsDefaults() {
         when(encoder.encode("Pwd123!"))
                 .thenReturn("ENC");
-        when(users.existsByEmail("new@e.com")).thenReturn(false);
-        when(users.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(users.saveAndFlush(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
 
         var req = new UserAdminController.CreateUserRequest("new@e.com", "Pwd123!", "NewF", "NewL", Role.ADMIN);
         var dto = controller.create(req);
 
         ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
-        verify(users).save(captor.capture());
+        verify(users).saveAndFlush(captor.capture());
         User saved = captor.getValue();
         assertThat(saved.getEmail()).isEqualTo("new@e.com");
         assertThat(saved.getPasswordHash()).isEqualTo("ENC");
         assertThat(saved.getRole()).isEqualTo(Role.ADMIN);
         assertThat(dto.email()).isEqualTo("new@e.com");
+        verify(emailAvailability).added("new@e.com");
+        verify(search).indexed(saved);
     }
 
     @Test
@@ -87,10 +128,13 @@ class UserAdminControllerTest {
 
     @Test
     void create_emailExists_conflict() {
-        when(users.existsByEmail("dup@e.com")).thenReturn(true);
+        when(encoder.encode("Pwd123!")).thenReturn("ENC");
+        when(users.saveAndFlush(any(User.class))).thenThrow(new org.springframework.dao.DataIntegrityViolationException("dup",
+                new org.hibernate.exception.ConstraintViolationException("dup", new java.sql.SQLException(), User.EMAIL_CONSTRAINT)));
         var req = new UserAdminController.CreateUserRequest("dup@e.com", "Pwd123!", "F", "L", Role.USER);
-        assertThrows(org.springframework.web.server.ResponseStatusException.class, () -> controller.create(req));
-        verify(users, never()).save(any());
+        var ex = assertThrows(org.springframework.web.server.ResponseStatusException.class, () -> controller.create(req));
+        assertThat(ex.getStatusCode().value()).isEqualTo(409);
+        verify(users, never()).existsByEmail(any());
     }
 
     @Test
@@ -127,15 +171,28 @@ class UserAdminControllerTest {
     @Test
     void delete_notFound_throws404() {
         UUID id = UUID.randomUUID();
-        when(users.existsById(id)).thenReturn(false);
+        when(users.findById(id)).thenReturn(Optional.empty());
         assertThrows(org.springframework.web.server.ResponseStatusException.class, () -> controller.delete(id));
+        verify(emailAvailability, never()).removed(any());
     }
 
     @Test
     void delete_ok_deletes() {
         UUID id = UUID.randomUUID();
-        when(users.existsById(id)).thenReturn(true);
+        User u = User.newUser("gone@e.com", "H", "F", "L");
+        when(users.findById(id)).thenReturn(Optional.of(u));
         controller.delete(id);
-        verify(users).deleteById(id);
+        verify(users).delete(u);
+        verify(emailAvailability).removed("gone@e.com");
+        verify(search).removed(u.getId());
+    }
+
+    @Test
+    void rebuildEmailFilter_reportsLoadedCount() {
+        when(emailAvailability.rebuild()).thenReturn(42L);
+        assertThat(controller.rebuildEmailFilter()).isEqualTo(new UserAdminController.EmailFilterRebuildResponse(42, false));
+
+        when(emailAvailability.rebuild()).thenReturn(-1L);
+        assertThat(controller.rebuildEmailFilter().alreadyRunning()).isTrue();
     }
 }
@@ -0,0 +1,73 @@
+package se.moln.ecommerceintegration.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import se.moln.ecommerceintegration.dto.UserFilter;
+import se.moln.ecommerceintegration.exception.GlobalExceptionHandler;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.service.UserBulkService;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class UserBulkControllerTest {
+
+    private UserBulkService bulkService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setup() {
+        bulkService = Mockito.mock(UserBulkService.class);
+        mvc = MockMvcBuilders.standaloneSetup(new UserBulkController(bulkService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void role_byIds_returnsCounts() throws Exception {
+        UUID id = UUID.randomUUID();
+        when(bulkService.setRole(List.of(id), null, Role.ADMIN)).thenReturn(new UserBulkService.BulkResult(1, 1));
+
+        mvc.perform(post("/users/bulk/role").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[\"" + id + "\"],\"role\":\"ADMIN\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.matched").value(1))
+                .andExpect(jsonPath("$.affected").value(1));
+    }
+
+    @Test
+    void active_byFilter_passesFilter() throws Exception {
+        when(bulkService.setActive(isNull(), any(), eq(false))).thenReturn(new UserBulkService.BulkResult(3, 2));
+
+        mvc.perform(post("/users/bulk/active").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"filter\":{\"role\":\"USER\",\"emailPrefix\":\"temp\"},\"active\":false}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(2));
+        verify(bulkService).setActive(null, new UserFilter(Role.USER, null, "temp", null, null), false);
+    }
+
+    @Test
+    void rejectsAmbiguousOrUnboundedTargets() throws Exception {
+        // neither, both, and an empty filter that would match everyone
+        for (String body : List.of("{}",
+                "{\"ids\":[\"" + UUID.randomUUID() + "\"],\"filter\":{\"role\":\"USER\"}}",
+                "{\"filter\":{}}",
+                "{\"ids\":[]}")) {
+            mvc.perform(post("/users/bulk/delete").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isBadRequest());
+        }
+        mvc.perform(post("/users/bulk/role").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"filter\":{\"role\":\"USER\"}}"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(bulkService);
+    }
+}
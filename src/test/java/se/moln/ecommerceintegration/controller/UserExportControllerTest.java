@@ -0,0 +1,56 @@
+package se.moln.ecommerceintegration.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import se.moln.ecommerceintegration.exception.GlobalExceptionHandler;
+import se.moln.ecommerceintegration.service.UserExportService;
+
+import java.io.OutputStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class UserExportControllerTest {
+
+    private UserExportService exportService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setup() {
+        exportService = Mockito.mock(UserExportService.class);
+        mvc = MockMvcBuilders.standaloneSetup(new UserExportController(exportService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void csv_setsAttachmentHeaders_andStreamsServiceOutput() throws Exception {
+        when(exportService.export(eq(UserExportService.Format.CSV), any())).thenAnswer(inv -> {
+            ((OutputStream) inv.getArgument(1)).write("id,email\n".getBytes());
+            return 0L;
+        });
+
+        mvc.perform(get("/users/export").param("format", "CSV"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"users.csv\""))
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string("id,email\n"));
+    }
+
+    @Test
+    void defaultsToNdjson_andRejectsUnknownFormat() throws Exception {
+        mvc.perform(get("/users/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(UserImportController.NDJSON));
+        verify(exportService).export(eq(UserExportService.Format.NDJSON), any());
+
+        mvc.perform(get("/users/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+}
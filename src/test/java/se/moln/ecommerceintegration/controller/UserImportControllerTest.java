@@ -0,0 +1,58 @@
+package se.moln.ecommerceintegration.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import se.moln.ecommerceintegration.exception.GlobalExceptionHandler;
+import se.moln.ecommerceintegration.exception.TooManyRequestsException;
+import se.moln.ecommerceintegration.service.UserImportService;
+
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class UserImportControllerTest {
+
+    private UserImportService importService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setup() {
+        importService = Mockito.mock(UserImportService.class);
+        mvc = MockMvcBuilders.standaloneSetup(new UserImportController(importService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void csvBody_isImportedAsCsv_andResultsAreStreamedAsNdjson() throws Exception {
+        when(importService.importUsers(any(), eq(UserImportService.Format.CSV), any())).thenAnswer(inv -> {
+            OutputStream out = ((Callable<OutputStream>) inv.getArgument(2)).call();
+            out.write("{\"line\":2,\"status\":\"created\"}\n".getBytes());
+            return new UserImportService.Summary(1, 1, 0, 1);
+        });
+
+        mvc.perform(post("/users/import").contentType("text/csv").content("email,password\na@e.com,Pwd12345!\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(UserImportController.NDJSON))
+                .andExpect(content().string("{\"line\":2,\"status\":\"created\"}\n"));
+    }
+
+    @Test
+    void importAlreadyRunning_returns429WithRetryAfter() throws Exception {
+        when(importService.importUsers(any(), eq(UserImportService.Format.NDJSON), any()))
+                .thenThrow(new TooManyRequestsException("An import is already running", 30));
+
+        mvc.perform(post("/users/import").contentType(UserImportController.NDJSON).content("{}\n"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "30"));
+    }
+}
@@ -0,0 +1,62 @@
+package se.moln.ecommerceintegration.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import se.moln.ecommerceintegration.dto.UserSummary;
+import se.moln.ecommerceintegration.exception.GlobalExceptionHandler;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.service.UserSearchService;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class UserSearchControllerTest {
+
+    private UserSearchService searchService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setup() {
+        searchService = Mockito.mock(UserSearchService.class);
+        when(searchService.isReady()).thenReturn(true);
+        mvc = MockMvcBuilders.standaloneSetup(new UserSearchController(searchService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void search_returnsPageAndTotal() throws Exception {
+        UserSummary anna = new UserSummary(UUID.randomUUID(), "anna@e.com", "Anna", "S", Role.USER, true, Instant.EPOCH);
+        when(searchService.search("ann", 20, 10)).thenReturn(new UserSearchService.SearchResult(List.of(anna), 21));
+
+        mvc.perform(get("/users/search").param("q", "ann").param("offset", "20").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(21))
+                .andExpect(jsonPath("$.offset").value(20))
+                .andExpect(jsonPath("$.items[0].email").value("anna@e.com"));
+    }
+
+    @Test
+    void search_validatesParams() throws Exception {
+        mvc.perform(get("/users/search").param("q", " ")).andExpect(status().isBadRequest());
+        mvc.perform(get("/users/search").param("q", "a").param("limit", "0")).andExpect(status().isBadRequest());
+        mvc.perform(get("/users/search").param("q", "a").param("offset", "-1")).andExpect(status().isBadRequest());
+        verify(searchService, never()).search(anyString(), anyInt(), anyInt());
+    }
+
+    @Test
+    void search_unavailableWhileIndexBuilds() throws Exception {
+        when(searchService.isReady()).thenReturn(false);
+        mvc.perform(get("/users/search").param("q", "anna")).andExpect(status().isServiceUnavailable());
+    }
+}
@@ -3,13 +3,15 @@ package se.moln.ecommerceintegration.controller;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
-import org.springframework.security.core.userdetails.User;
 import se.moln.ecommerceintegration.dto.UpdateSettingsRequest;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.security.AuthenticatedUser;
 import se.moln.ecommerceintegration.service.UserService;
 
+import java.util.UUID;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
 class UserSettingsControllerTest {
@@ -25,11 +27,11 @@ class UserSettingsControllerTest {
 
     @Test
     void updateSettings_trimsNames_andReturnsProfile() {
-        var ud = User.withUsername("user@example.com").password("x").roles("USER").build();
+        var ud = new AuthenticatedUser(UUID.randomUUID(), "user@example.com", Role.USER);
         var req = new UpdateSettingsRequest("  Anna  ", "  Andersson  ");
 
         se.moln.ecommerceintegration.model.User saved = se.moln.ecommerceintegration.model.User.newUser("user@example.com", "HASH", "Anna", "Andersson");
-        when(userService.updateSettings(anyString(), anyString(), anyString())).thenReturn(saved);
+        when(userService.updateSettings(ud.userId(), "Anna", "Andersson")).thenReturn(saved);
         var resp = controller.updateSettings(ud, req);
         assertThat(resp.email()).isEqualTo("user@example.com");
         assertThat(resp.firstName()).isEqualTo("Anna");
@@ -40,7 +42,7 @@ class UserSettingsControllerTest {
 
     @Test
     void updateSettings_blankFirstName_throwsResponseStatusException() {
-        var ud = User.withUsername("user@example.com").password("x").roles("USER").build();
+        var ud = new AuthenticatedUser(UUID.randomUUID(), "user@example.com", Role.USER);
         var req = new UpdateSettingsRequest("   ", null);
 
         assertThrows(org.springframework.web.server.ResponseStatusException.class,
@@ -49,7 +51,7 @@ class UserSettingsControllerTest {
 
     @Test
     void updateSettings_blankLastName_throwsResponseStatusException() {
-        var ud = User.withUsername("user@example.com").password("x").roles("USER").build();
+        var ud = new AuthenticatedUser(UUID.randomUUID(), "user@example.com", Role.USER);
         var req = new UpdateSettingsRequest(null, "   ");
 
         assertThrows(org.springframework.web.server.ResponseStatusException.class,
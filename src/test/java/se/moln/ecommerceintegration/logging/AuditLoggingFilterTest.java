@@ -1,5 +1,6 @@
 package se.moln.ecommerceintegration.logging;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import org.junit.jupiter.api.AfterEach;
@@ -9,21 +10,26 @@ import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.servlet.HandlerMapping;
 import se.moln.ecommerceintegration.service.AuditLogService;
 
 import java.io.IOException;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.*;
 
 class AuditLoggingFilterTest {
 
     private AuditLogService audit;
     private AuditLoggingFilter filter;
+    private LatencyRecorder latency;
 
     @BeforeEach
     void setup() {
         audit = mock(AuditLogService.class);
-        filter = new AuditLoggingFilter(audit);
+        latency = new LatencyRecorder(true, 60, 6);
+        filter = new AuditLoggingFilter(audit, new AuditPolicy(new SimpleMeterRegistry(), "path:/actuator/** -> never", "always"), latency);
     }
 
     @AfterEach
@@ -49,7 +55,7 @@ class AuditLoggingFilterTest {
         filter.doFilter(req, res, chain);
 
         // verify audit persisted
-        verify(audit, times(1)).save(eq("PROFILE_VIEW"), eq("user@example.com"), eq("GET"), eq("/me"), eq(200), eq("203.0.113.10"), eq("JUnit/5"), anyLong());
+        verify(audit, times(1)).save(eq("PROFILE_VIEW"), eq("user@example.com"), eq("GET"), eq("/me"), eq(200), eq("203.0.113.10"), eq("JUnit/5"), anyLong(), eq(1));
     }
 
     @Test
@@ -64,7 +70,7 @@ class AuditLoggingFilterTest {
 
         filter.doFilter(req, res, chain);
 
-        verify(audit).save(eq("AUTH_LOGIN"), eq(null), eq("POST"), eq("/auth/login"), eq(401), eq("127.0.0.1"), eq("-"), anyLong());
+        verify(audit).save(eq("AUTH_LOGIN"), eq(null), eq("POST"), eq("/auth/login"), eq(401), eq("127.0.0.1"), eq("-"), anyLong(), eq(1));
     }
 
     @Test
@@ -74,7 +80,7 @@ class AuditLoggingFilterTest {
 
         filter.doFilter(req, res, (r, s) -> {});
 
-        verify(audit).save(eq("REQUEST"), any(), eq("GET"), eq("/other"), anyInt(), anyString(), anyString(), anyLong());
+        verify(audit).save(eq("REQUEST"), any(), eq("GET"), eq("/other"), anyInt(), anyString(), anyString(), anyLong(), eq(1));
     }
 
     @Test
@@ -84,6 +90,32 @@ class AuditLoggingFilterTest {
 
         filter.doFilter(req, res, (r, s) -> {});
 
-        verify(audit).save(eq("USER_UPDATE"), any(), eq("PUT"), eq("/users/123"), anyInt(), anyString(), anyString(), anyLong());
+        verify(audit).save(eq("USER_UPDATE"), any(), eq("PUT"), eq("/users/123"), anyInt(), anyString(), anyString(), anyLong(), eq(1));
+    }
+
+    @Test
+    void policy_skipsMatchingRequests() throws ServletException, IOException {
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", "/actuator/health");
+        MockHttpServletResponse res = new MockHttpServletResponse();
+
+        filter.doFilter(req, res, (r, s) -> {});
+
+        verifyNoInteractions(audit);
+    }
+
+    @Test
+    void latency_isRecordedPerRouteTemplate() throws ServletException, IOException {
+        for (String id : new String[]{"1", "2", "3"}) {
+            MockHttpServletRequest req = new MockHttpServletRequest("GET", "/users/" + id);
+            MockHttpServletResponse res = new MockHttpServletResponse();
+            filter.doFilter(req, res, (r, s) -> r.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/users/{id}"));
+        }
+        filter.doFilter(new MockHttpServletRequest("GET", "/nope"), new MockHttpServletResponse(),
+                (r, s) -> ((MockHttpServletResponse) s).setStatus(404));
+
+        assertThat(latency.summaries())
+                .extracting(LatencyRecorder.Summary::route, LatencyRecorder.Summary::method, LatencyRecorder.Summary::status,
+                        LatencyRecorder.Summary::count)
+                .containsExactly(tuple("/users/{id}", "GET", "2xx", 3L), tuple(LatencyRecorder.UNMATCHED, "GET", "4xx", 1L));
     }
 }
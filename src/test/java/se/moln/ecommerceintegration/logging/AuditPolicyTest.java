@@ -0,0 +1,74 @@
+package se.moln.ecommerceintegration.logging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AuditPolicyTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private AuditPolicy policy(String rules) {
+        return new AuditPolicy(registry, rules, "always");
+    }
+
+    @Test
+    void firstMatchingRuleWins_otherwiseDefault() {
+        AuditPolicy p = policy("action:AUTH_LOGIN -> always; path:/actuator/**,/v3/api-docs/** -> never; auth:anon status:4xx -> never");
+
+        assertThat(p.weight("AUTH_LOGIN", "/auth/login", 401, false)).isEqualTo(1);
+        assertThat(p.weight("REQUEST", "/actuator/health", 200, false)).isZero();
+        assertThat(p.weight("REQUEST", "/v3/api-docs/swagger-config", 200, true)).isZero();
+        assertThat(p.weight("REQUEST", "/users/me", 401, false)).isZero();
+        assertThat(p.weight("REQUEST", "/users/me", 401, true)).isEqualTo(1);
+        assertThat(p.weight("REQUEST", "/users/me", 200, false)).isEqualTo(1);
+        assertThat(registry.get("audit.events.skipped").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void pathPatterns_followAntSemantics() {
+        AuditPolicy p = policy("path:/actuator/**,/swagger-ui.html,/users/*/roles -> never");
+
+        assertThat(p.weight("REQUEST", "/actuator", 200, false)).isZero();
+        assertThat(p.weight("REQUEST", "/actuator/health/liveness", 200, false)).isZero();
+        assertThat(p.weight("REQUEST", "/actuatorx", 200, false)).isEqualTo(1);
+        assertThat(p.weight("REQUEST", "/swagger-ui.html", 200, false)).isZero();
+        assertThat(p.weight("REQUEST", "/users/42/roles", 200, false)).isZero();
+        assertThat(p.weight("REQUEST", "/users/42/settings", 200, false)).isEqualTo(1);
+    }
+
+    @Test
+    void sample_keepsOneInN_withWeightN() {
+        AuditPolicy p = policy("status:401 -> sample 10");
+        int rows = 0, weight = 0;
+        for (int i = 0; i < 100; i++) {
+            int w = p.weight("REQUEST", "/x", 401, false);
+            if (w > 0) rows++;
+            weight += w;
+        }
+        assertThat(rows).isEqualTo(10);
+        assertThat(weight).isEqualTo(100);
+    }
+
+    @Test
+    void rate_capsPerSecond_andNextKeptRowCarriesTheSuppressed() {
+        AuditPolicy.Rule r = AuditPolicy.parse("path:/** -> rate 2").get(0);
+
+        assertThat(r.acquire(1)).isEqualTo(1);
+        assertThat(r.acquire(1)).isEqualTo(1);
+        assertThat(r.acquire(1)).isZero();
+        assertThat(r.acquire(1)).isZero();
+        assertThat(r.acquire(2)).isEqualTo(3);
+        assertThat(r.acquire(2)).isEqualTo(1);
+    }
+
+    @Test
+    void invalidRules_failAtStartup() {
+        assertThatThrownBy(() -> policy("path:/x never")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> policy("host:x -> never")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> policy("path:/x -> sample")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> policy("path:/x -> sometimes")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
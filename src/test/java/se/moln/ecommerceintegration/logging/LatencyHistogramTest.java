@@ -0,0 +1,54 @@
+package se.moln.ecommerceintegration.logging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyHistogramTest {
+
+    @Test
+    void buckets_areContiguous_andWithinOneSixteenth() {
+        assertThat(LatencyHistogram.bucket(0)).isZero();
+        assertThat(LatencyHistogram.bucket(15)).isEqualTo(15);
+        assertThat(LatencyHistogram.bucket(16)).isEqualTo(16);
+        assertThat(LatencyHistogram.bucket(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.BUCKETS - 1);
+
+        int previous = 0;
+        for (long v = 1; v < 1L << 28; v += Math.max(1, v / 64)) {
+            int b = LatencyHistogram.bucket(v);
+            assertThat(b).isBetween(previous, previous + 1);
+            previous = b;
+            assertThat((double) LatencyHistogram.valueOf(b)).isCloseTo(v, within(Math.max(v / 16.0, 0.5)));
+        }
+    }
+
+    @Test
+    void snapshot_reportsPercentilesOverTheWindow() {
+        LatencyHistogram h = new LatencyHistogram(6, 10_000);
+        long now = 1_000_000;
+        for (int i = 1; i <= 1000; i++) h.record(i * 100L, now);   // 0.1 .. 100 ms
+
+        LatencyHistogram.Snapshot s = h.snapshot(now);
+        assertThat(s.count()).isEqualTo(1000);
+        assertThat(s.mean()).isCloseTo(50_050, within(1.0));
+        assertThat((double) s.p50()).isCloseTo(50_000, within(50_000 / 16.0));
+        assertThat((double) s.p90()).isCloseTo(90_000, within(90_000 / 16.0));
+        assertThat((double) s.p99()).isCloseTo(99_000, within(99_000 / 16.0));
+        assertThat((double) s.p999()).isCloseTo(99_900, within(99_900 / 16.0));
+    }
+
+    @Test
+    void oldSlots_rollOutOfTheWindow() {
+        LatencyHistogram h = new LatencyHistogram(6, 10_000);
+        h.record(1_000, 0);
+        h.record(2_000, 30_000);
+
+        assertThat(h.snapshot(50_000).count()).isEqualTo(2);
+        assertThat(h.snapshot(60_000).count()).isEqualTo(1);  // the first slot is now older than 60 s
+        h.record(3_000, 60_000);                               // reuses, and resets, the first slot
+        assertThat(h.snapshot(60_000).count()).isEqualTo(2);
+        assertThat(h.snapshot(200_000).count()).isZero();
+        assertThat(h.snapshot(200_000).p99()).isEqualTo(-1);
+    }
+}
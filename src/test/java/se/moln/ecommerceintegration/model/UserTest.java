@@ -96,4 +96,13 @@ class UserTest {
 
         assertThat(u1.getId()).isNotEqualTo(u2.getId());
     }
-}
\ No newline at end of file
+
+    @Test
+    void isNew_untilPersistedOrLoaded() {
+        User u = User.newUser("u@e.com", "H", "F", "L");
+        assertThat(u.isNew()).isTrue(); // save() -> persist, a single INSERT
+
+        u.markNotNew(); // @PostPersist / @PostLoad
+        assertThat(u.isNew()).isFalse();
+    }
+}
@@ -0,0 +1,86 @@
+package se.moln.ecommerceintegration.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import se.moln.ecommerceintegration.dto.UserCursor;
+import se.moln.ecommerceintegration.dto.UserFilter;
+import se.moln.ecommerceintegration.dto.UserSummary;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.model.User;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:userquery;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4"
+})
+class UserQueryRepositoryTest {
+
+    private static final Instant T0 = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Autowired
+    private UserRepository users;
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void seed() {
+        users.deleteAll();
+        // 10 users over 5 distinct timestamps, two per timestamp, so pages must break ties on id
+        for (int i = 0; i < 10; i++) {
+            User u = User.newUser("user" + i + "@e.com", "{bcrypt}h", "F", "L");
+            u.setRole(i % 3 == 0 ? Role.ADMIN : Role.USER);
+            u.setIsActive(i % 2 == 0);
+            users.save(u);
+            jdbc.update("update users set created_at = ? where id = ?", Timestamp.from(T0.plusSeconds(i / 2)), u.getId());
+        }
+        users.save(User.newUser("under_score@e.com", "{bcrypt}h", "F", "L"));
+        users.save(User.newUser("underXscore@e.com", "{bcrypt}h", "F", "L"));
+    }
+
+    @Test
+    void pagingWithCursor_visitsEveryRowOnceInCreatedDescOrder() {
+        UserFilter onlySeeded = new UserFilter(null, null, "user", null, null);
+        List<UserSummary> all = new ArrayList<>();
+        UserCursor cursor = null;
+        for (int pages = 0; pages < 10; pages++) {
+            List<UserSummary> page = users.findPage(onlySeeded, cursor, 3);
+            all.addAll(page);
+            if (page.size() < 3) break;
+            cursor = UserCursor.decode(UserCursor.after(page.get(page.size() - 1)).encode());
+        }
+
+        assertThat(all).hasSize(10);
+        assertThat(all).extracting(UserSummary::id).doesNotHaveDuplicates();
+        for (int i = 1; i < all.size(); i++) {
+            assertThat(all.get(i).createdAt()).isBeforeOrEqualTo(all.get(i - 1).createdAt());
+        }
+        assertThat(all.get(0).createdAt()).isEqualTo(T0.plusSeconds(4));
+    }
+
+    @Test
+    void filters_combine() {
+        // i = 0 and 6 are ADMIN and even (active)
+        assertThat(users.findPage(new UserFilter(Role.ADMIN, true, null, null, null), null, 50))
+                .extracting(UserSummary::email).containsExactlyInAnyOrder("user0@e.com", "user6@e.com");
+
+        assertThat(users.findPage(new UserFilter(null, null, "user", T0.plusSeconds(1), T0.plusSeconds(3)), null, 50))
+                .extracting(UserSummary::email)
+                .containsExactlyInAnyOrder("user2@e.com", "user3@e.com", "user4@e.com", "user5@e.com");
+    }
+
+    @Test
+    void emailPrefix_treatsLikeWildcardsLiterally() {
+        assertThat(users.findPage(new UserFilter(null, null, "under_", null, null), null, 50))
+                .extracting(UserSummary::email).containsExactly("under_score@e.com");
+    }
+}
@@ -0,0 +1,82 @@
+package se.moln.ecommerceintegration.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CalibratedPasswordEncoderTest {
+
+    @Test
+    void encode_prefixesActiveAlgorithm_andMatches() {
+        var enc = new CalibratedPasswordEncoder(CalibratedPasswordEncoder.BCRYPT, 4, 19456);
+
+        String hash = enc.encode("Password123!");
+
+        assertThat(hash).startsWith("{bcrypt}$2a$04$");
+        assertThat(enc.matches("Password123!", hash)).isTrue();
+        assertThat(enc.upgradeEncoding(hash)).isFalse();
+    }
+
+    @Test
+    void matches_legacyUnprefixedBcryptHash() {
+        var enc = new CalibratedPasswordEncoder(CalibratedPasswordEncoder.BCRYPT, 12, 19456);
+        String legacy = new BCryptPasswordEncoder(4).encode("Password123!");
+
+        assertThat(enc.matches("Password123!", legacy)).isTrue();
+    }
+
+    @Test
+    void upgradeEncoding_flagsUnderAndOverCost_outsideOneStepBand() {
+        var enc = new CalibratedPasswordEncoder(CalibratedPasswordEncoder.BCRYPT, 12, 19456);
+        String tail = "$abcdefghijklmnopqrstuv0123456789012345678901234567890";
+
+        assertThat(enc.upgradeEncoding("$2a$10" + tail)).isTrue();          // legacy, too weak
+        assertThat(enc.upgradeEncoding("$2a$11" + tail)).isFalse();         // within band
+        assertThat(enc.upgradeEncoding("{bcrypt}$2a$13" + tail)).isFalse(); // within band
+        assertThat(enc.upgradeEncoding("{bcrypt}$2a$14" + tail)).isTrue();  // too expensive
+    }
+
+    @Test
+    void upgradeEncoding_otherAlgorithm_isUpgraded() {
+        var argon = new CalibratedPasswordEncoder(CalibratedPasswordEncoder.ARGON2, 2, 1024);
+        String bcrypt = new BCryptPasswordEncoder(4).encode("pw");
+
+        assertThat(argon.matches("pw", bcrypt)).isTrue();
+        assertThat(argon.upgradeEncoding(bcrypt)).isTrue();
+        assertThat(argon.upgradeEncoding("{noop}pw")).isTrue();
+    }
+
+    @Test
+    void argon2_and_scrypt_roundtrip_withExactParameterCheck() {
+        var argon = new CalibratedPasswordEncoder(CalibratedPasswordEncoder.ARGON2, 2, 1024);
+        String a = argon.encode("pw");
+        assertThat(a).startsWith("{argon2}$argon2id$");
+        assertThat(argon.matches("pw", a)).isTrue();
+        assertThat(argon.upgradeEncoding(a)).isFalse();
+        // same algorithm, different memory -> rehash
+        assertThat(new CalibratedPasswordEncoder(CalibratedPasswordEncoder.ARGON2, 2, 2048).upgradeEncoding(a)).isTrue();
+
+        var scrypt = new CalibratedPasswordEncoder(CalibratedPasswordEncoder.SCRYPT, 10, 0);
+        String s = scrypt.encode("pw");
+        assertThat(scrypt.matches("pw", s)).isTrue();
+        assertThat(scrypt.upgradeEncoding(s)).isFalse();
+        assertThat(new CalibratedPasswordEncoder(CalibratedPasswordEncoder.SCRYPT, 14, 0).upgradeEncoding(s)).isTrue();
+    }
+
+    @Test
+    void calibrator_extrapolatesFromReferenceCost_andClamps() {
+        // pretend bcrypt cost 10 takes 60 ms: 250 ms target -> two doublings -> cost 12
+        var calibrator = new PasswordEncoderCalibrator(e -> 60.0);
+        assertThat(calibrator.calibrate(CalibratedPasswordEncoder.BCRYPT, 250, 0).getCost()).isEqualTo(12);
+
+        // a very slow host never goes below the floor
+        var slow = new PasswordEncoderCalibrator(e -> 5_000.0);
+        assertThat(slow.calibrate(CalibratedPasswordEncoder.BCRYPT, 250, 0).getCost()).isEqualTo(PasswordEncoderCalibrator.BCRYPT_MIN);
+
+        // argon2 is linear: t=2 takes 40 ms -> 20 ms/iteration -> 250 ms target -> t=10 (max)
+        var argon = new PasswordEncoderCalibrator(e -> 40.0);
+        assertThat(argon.calibrate(CalibratedPasswordEncoder.ARGON2, 250, 1024).getCost()).isEqualTo(10);
+        assertThat(argon.calibrate(CalibratedPasswordEncoder.ARGON2, 100, 1024).getCost()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,110 @@
+package se.moln.ecommerceintegration.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.IncorrectClaimException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Hs256TokenCodecTest {
+
+    private static final SecretKey KEY = Keys.hmacShaKeyFor("super-secret-key-that-is-long-enough-32-bytes-minimum!".getBytes());
+    private static final long NOW = 1_800_000_000L;
+
+    private final Hs256TokenCodec codec = new Hs256TokenCodec(KEY.getEncoded(), "test-issuer");
+    private final UUID uid = UUID.randomUUID();
+
+    private String jjwt(String email, String issuer, long iat, long exp) {
+        return Jwts.builder()
+                .setSubject(email).setIssuer(issuer)
+                .setIssuedAt(new Date(iat * 1000)).setExpiration(new Date(exp * 1000))
+                .addClaims(Map.of("uid", uid.toString(), "role", "USER")).setId("jti-2")
+                .signWith(KEY, SignatureAlgorithm.HS256).compact();
+    }
+
+    @Test
+    void mint_isAcceptedByJjwt() {
+        String token = codec.mint(uid, "anna@example.com", "ADMIN", NOW, NOW + 600, "jti-1");
+
+        Claims c = Jwts.parserBuilder().setSigningKey(KEY).requireIssuer("test-issuer")
+                .setClock(() -> new Date(NOW * 1000)).build().parseClaimsJws(token).getBody();
+        assertThat(c.getSubject()).isEqualTo("anna@example.com");
+        assertThat(c.getIssuedAt()).isEqualTo(new Date(NOW * 1000));
+        assertThat(c.getExpiration()).isEqualTo(new Date((NOW + 600) * 1000));
+        assertThat(c.get("uid")).isEqualTo(uid.toString());
+        assertThat(c.get("role")).isEqualTo("ADMIN");
+        assertThat(c.getId()).isEqualTo("jti-1");
+        assertThat(codec.verify(token, NOW * 1000).tokenId()).isEqualTo("jti-1");
+    }
+
+    @Test
+    void verify_readsJjwtTokens() {
+        var c = codec.verify(jjwt("anna@example.com", "test-issuer", NOW, NOW + 600), NOW * 1000);
+
+        assertThat(c).isEqualTo(new Hs256TokenCodec.AccessClaims(
+                "anna@example.com", "test-issuer", NOW, NOW + 600, uid, "USER", "jti-2"));
+    }
+
+    @Test
+    void roundtrip_escapesAndNonAscii() {
+        String email = "\"åsa\"\\ö\u0001😀@exempel.se";
+        String token = codec.mint(uid, email, "USER", NOW, NOW + 60, null);
+
+        assertThat(codec.verify(token, NOW * 1000).subject()).isEqualTo(email);
+        assertThat(Jwts.parserBuilder().setSigningKey(KEY).setClock(() -> new Date(NOW * 1000)).build()
+                .parseClaimsJws(token).getBody().getSubject()).isEqualTo(email);
+    }
+
+    @Test
+    void verify_rejectsTamperedSignatureAndPayload() {
+        String token = codec.mint(uid, "a@b.se", "USER", NOW, NOW + 60, null);
+        String badSig = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BA" : "AA");
+        String[] parts = token.split("\\.");
+        String admin = codec.mint(uid, "a@b.se", "ADMIN", NOW, NOW + 60, null).split("\\.")[1];
+
+        assertThatThrownBy(() -> codec.verify(badSig, NOW * 1000)).isInstanceOf(SignatureException.class);
+        assertThatThrownBy(() -> codec.verify(parts[0] + "." + admin + "." + parts[2], NOW * 1000))
+                .isInstanceOf(SignatureException.class);
+    }
+
+    @Test
+    void verify_rejectsExpiredAndWrongIssuer() {
+        String token = codec.mint(uid, "a@b.se", "USER", NOW, NOW + 60, null);
+
+        assertThatThrownBy(() -> codec.verify(token, (NOW + 61) * 1000)).isInstanceOf(ExpiredJwtException.class);
+        assertThatThrownBy(() -> codec.verify(jjwt("a@b.se", "other", NOW, NOW + 60), NOW * 1000))
+                .isInstanceOf(IncorrectClaimException.class);
+    }
+
+    @Test
+    void verify_rejectsMalformed() {
+        assertThatThrownBy(() -> codec.verify(Hs256TokenCodec.HEADER + ".abc", NOW * 1000))
+                .isInstanceOf(MalformedJwtException.class);
+        assertThatThrownBy(() -> codec.verify(Hs256TokenCodec.HEADER + ".a.b.c", NOW * 1000))
+                .isInstanceOf(MalformedJwtException.class);
+    }
+
+    @Test
+    void verify_leavesOtherShapesToTheGeneralParser() {
+        String otherHeader = Jwts.builder().setHeaderParam("typ", "JWT").setSubject("a@b.se")
+                .signWith(KEY, SignatureAlgorithm.HS256).compact();
+        String extraClaim = Jwts.builder().setSubject("a@b.se").setIssuer("test-issuer").setNotBefore(new Date())
+                .signWith(KEY, SignatureAlgorithm.HS256).compact();
+
+        assertThat(codec.verify(otherHeader, NOW * 1000)).isNull();
+        assertThat(codec.verify(extraClaim, NOW * 1000)).isNull();
+        assertThat(codec.verify("not-a-token", NOW * 1000)).isNull();
+    }
+}
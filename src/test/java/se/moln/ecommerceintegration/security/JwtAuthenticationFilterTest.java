@@ -1,11 +1,15 @@
 package se.moln.ecommerceintegration.security;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.core.context.SecurityContextHolder;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.repository.RevokedTokenRepository;
 import se.moln.ecommerceintegration.service.JwtService;
+import se.moln.ecommerceintegration.service.TokenRevocationService;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -13,9 +17,14 @@ import java.io.IOException;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
 
 class JwtAuthenticationFilterTest {
 
+    private static TokenRevocationService revocations() {
+        return new TokenRevocationService(mock(RevokedTokenRepository.class), new SimpleMeterRegistry(), 60, 5);
+    }
+
     @AfterEach
     void tearDown() {
         SecurityContextHolder.clearContext();
@@ -26,8 +35,9 @@ class JwtAuthenticationFilterTest {
         String secret = "super-secret-key-that-is-long-enough-32-bytes-minimum!";
         JwtService jwt = new JwtService(secret, "test-issuer", 5);
 
-        String token = jwt.createAccessToken(UUID.randomUUID(), "user@example.com", "ADMIN");
-        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwt);
+        UUID uid = UUID.randomUUID();
+        String token = jwt.createAccessToken(uid, "user@example.com", "ADMIN");
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwt, new TokenAuthenticationCache(new SimpleMeterRegistry(), true, 100), revocations());
 
         MockHttpServletRequest req = new MockHttpServletRequest("GET", "/any");
         req.addHeader("Authorization", "Bearer " + token);
@@ -41,5 +51,56 @@ class JwtAuthenticationFilterTest {
         assertThat(auth).isNotNull();
         assertThat(auth.getName()).isEqualTo("user@example.com");
         assertThat(auth.getAuthorities()).extracting("authority").contains("ROLE_ADMIN");
+        assertThat(auth.getPrincipal()).isInstanceOfSatisfying(AuthenticatedUser.class, p -> {
+            assertThat(p.userId()).isEqualTo(uid);
+            assertThat(p.email()).isEqualTo("user@example.com");
+            assertThat(p.role()).isEqualTo(Role.ADMIN);
+            assertThat(p.tokenId()).isEqualTo(jwt.verify(token).tokenId()).isNotNull();
+        });
+    }
+
+    @Test
+    void secondRequestWithSameToken_isServedFromCache_andBadTokensAreNotCached() throws ServletException, IOException {
+        JwtService jwt = spy(new JwtService("super-secret-key-that-is-long-enough-32-bytes-minimum!", "test-issuer", 5));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TokenAuthenticationCache cache = new TokenAuthenticationCache(registry, true, 100);
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwt, cache, revocations());
+        String token = jwt.createAccessToken(UUID.randomUUID(), "user@example.com", "USER");
+
+        for (int i = 0; i < 3; i++) {
+            SecurityContextHolder.clearContext();
+            MockHttpServletRequest req = new MockHttpServletRequest("GET", "/any");
+            req.addHeader("Authorization", "Bearer " + token);
+            filter.doFilter(req, new MockHttpServletResponse(), (request, response) -> { });
+            assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("user@example.com");
+        }
+        verify(jwt, times(1)).verify(token);
+        assertThat(registry.get("auth.token.cache").tag("result", "hit").counter().count()).isEqualTo(2);
+
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest bad = new MockHttpServletRequest("GET", "/any");
+        bad.addHeader("Authorization", "Bearer " + token + "x");
+        filter.doFilter(bad, new MockHttpServletResponse(), (request, response) -> { });
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void revokedToken_isRejected_evenWhenCached() throws ServletException, IOException {
+        JwtService jwt = new JwtService("super-secret-key-that-is-long-enough-32-bytes-minimum!", "test-issuer", 5);
+        TokenRevocationService revocations = revocations();
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwt, new TokenAuthenticationCache(new SimpleMeterRegistry(), true, 100), revocations);
+        UUID uid = UUID.randomUUID();
+        String token = jwt.createAccessToken(uid, "user@example.com", "USER");
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", "/any");
+        req.addHeader("Authorization", "Bearer " + token);
+
+        filter.doFilter(req, new MockHttpServletResponse(), (request, response) -> { });
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
+
+        SecurityContextHolder.clearContext();
+        revocations.revoke(jwt.verify(token).tokenId(), uid);
+        filter.doFilter(req, new MockHttpServletResponse(), (request, response) -> { });
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
     }
-}
\ No newline at end of file
+}
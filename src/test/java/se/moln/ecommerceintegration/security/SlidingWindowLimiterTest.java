@@ -0,0 +1,93 @@
+package se.moln.ecommerceintegration.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowLimiterTest {
+
+    @Test
+    void rejectsOverLimit_andSlidesOldBucketsOut() {
+        // 3 attempts per 10 s, 10 buckets of 1 s
+        var limiter = new SlidingWindowLimiter(3, 10_000, 10, 100);
+
+        assertThat(limiter.tryAcquire("k", 0)).isZero();
+        assertThat(limiter.tryAcquire("k", 2_000)).isZero();
+        assertThat(limiter.tryAcquire("k", 4_000)).isZero();
+
+        // full: wait until the attempt at t=0 leaves the window
+        assertThat(limiter.tryAcquire("k", 5_000)).isEqualTo(5_000);
+        assertThat(limiter.tryAcquire("other", 5_000)).isZero();
+
+        assertThat(limiter.tryAcquire("k", 10_000)).isZero();
+        assertThat(limiter.tryAcquire("k", 10_500)).isPositive();
+    }
+
+    @Test
+    void millisecondBuckets_atEpochTimestamps_stillCount() {
+        // 1 ms buckets: the bucket index is the epoch millis itself, far wider than the 40 stored bits
+        var limiter = new SlidingWindowLimiter(3, 10, 10, 100);
+        long now = 1_760_000_000_000L;
+
+        assertThat(limiter.tryAcquire("k", now)).isZero();
+        assertThat(limiter.tryAcquire("k", now + 1)).isZero();
+        assertThat(limiter.tryAcquire("k", now + 2)).isZero();
+        assertThat(limiter.tryAcquire("k", now + 3)).isEqualTo(7);
+        assertThat(limiter.tryAcquire("k", now + 10)).isZero();
+    }
+
+    @Test
+    void window_spanningTheStoredBucketWrap_isCountedAcrossIt() {
+        var limiter = new SlidingWindowLimiter(3, 10, 10, 100);
+        long wrap = 1L << 40;
+
+        assertThat(limiter.tryAcquire("k", wrap - 1)).isZero();
+        assertThat(limiter.tryAcquire("k", wrap)).isZero();
+        assertThat(limiter.tryAcquire("k", wrap + 1)).isZero();
+        // oldest attempt (wrap - 1) leaves the window at wrap + 9
+        assertThat(limiter.tryAcquire("k", wrap + 2)).isEqualTo(7);
+        assertThat(limiter.tryAcquire("k", wrap + 9)).isZero();
+    }
+
+    @Test
+    void reset_clearsKey() {
+        var limiter = new SlidingWindowLimiter(1, 10_000, 10, 100);
+        limiter.tryAcquire("k", 0);
+        assertThat(limiter.tryAcquire("k", 1)).isPositive();
+
+        limiter.reset("k");
+        assertThat(limiter.tryAcquire("k", 2)).isZero();
+    }
+
+    @Test
+    void memoryIsBounded_byMaxKeys() {
+        var limiter = new SlidingWindowLimiter(5, 1_000, 10, 100);
+        for (int i = 0; i < 1_000; i++) limiter.tryAcquire("ip-" + i, i * 10L);
+
+        assertThat(limiter.trackedKeys()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void concurrentAttempts_areCountedWithoutLosingUpdates() throws Exception {
+        var limiter = new SlidingWindowLimiter(1_000, 60_000, 10, 100);
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            pool.submit(() -> {
+                for (int i = 0; i < 100; i++) if (limiter.tryAcquire("hot", 1_000) == 0) admitted.incrementAndGet();
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        // 800 attempts, limit 1000: everything admitted and the next 200 fit exactly
+        assertThat(admitted.get()).isEqualTo(800);
+        for (int i = 0; i < 200; i++) assertThat(limiter.tryAcquire("hot", 1_000)).isZero();
+        assertThat(limiter.tryAcquire("hot", 1_000)).isPositive();
+    }
+}
@@ -0,0 +1,67 @@
+package se.moln.ecommerceintegration.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenAuthenticationCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private static Authentication auth(String name) {
+        return new UsernamePasswordAuthenticationToken(name, null, List.of());
+    }
+
+    @Test
+    void expiredEntry_isReloaded() {
+        TokenAuthenticationCache cache = new TokenAuthenticationCache(registry, true, 10);
+        AtomicInteger loads = new AtomicInteger();
+        long past = System.currentTimeMillis() - 1;
+
+        cache.get("t", t -> { loads.incrementAndGet(); return new TokenAuthenticationCache.Entry(auth("a"), past); });
+        cache.get("t", t -> { loads.incrementAndGet(); return new TokenAuthenticationCache.Entry(auth("a"), past); });
+
+        assertThat(loads).hasValue(2);
+        assertThat(cache.size()).isZero(); // already expired when loaded, never stored
+    }
+
+    @Test
+    void loaderFailure_propagates_andCachesNothing() {
+        TokenAuthenticationCache cache = new TokenAuthenticationCache(registry, true, 10);
+        assertThatThrownBy(() -> cache.get("bad", t -> { throw new IllegalArgumentException("invalid"); }))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(cache.size()).isZero();
+        assertThat(registry.get("auth.token.cache").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void sizeIsBounded() {
+        TokenAuthenticationCache cache = new TokenAuthenticationCache(registry, true, 100);
+        long future = System.currentTimeMillis() + 60_000;
+        for (int i = 0; i < 1000; i++) {
+            cache.get("token-" + i, t -> new TokenAuthenticationCache.Entry(auth(t), future));
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(100);
+        assertThat(registry.get("auth.token.cache.evictions").counter().count()).isPositive();
+
+        // the newest token is still served from cache
+        Authentication last = cache.get("token-999", t -> { throw new AssertionError("should hit"); });
+        assertThat(last.getName()).isEqualTo("token-999");
+    }
+
+    @Test
+    void disabled_alwaysLoads() {
+        TokenAuthenticationCache cache = new TokenAuthenticationCache(registry, false, 10);
+        AtomicInteger loads = new AtomicInteger();
+        long future = System.currentTimeMillis() + 60_000;
+        for (int i = 0; i < 3; i++) cache.get("t", t -> { loads.incrementAndGet(); return new TokenAuthenticationCache.Entry(auth("a"), future); });
+        assertThat(loads).hasValue(3);
+    }
+}
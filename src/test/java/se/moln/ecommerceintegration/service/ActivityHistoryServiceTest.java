@@ -0,0 +1,133 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import se.moln.ecommerceintegration.model.ActivityLog;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class ActivityHistoryServiceTest {
+
+    private final ActivityLogPartitions store = mock(ActivityLogPartitions.class);
+
+    private ActivityHistoryService service(int maxUsers, long refreshSeconds) {
+        return new ActivityHistoryService(store, new SimpleMeterRegistry(), true, maxUsers, refreshSeconds);
+    }
+
+    private static ActivityLog event(String email, int i) {
+        ActivityLog e = ActivityLog.of("REQUEST", email, "GET", "/x/" + i, 200, "127.0.0.1", "UA", i);
+        e.setId(UUID.randomUUID());
+        e.setCreatedAt(Instant.ofEpochSecond(1_700_000_000L + i));
+        return e;
+    }
+
+    @Test
+    void firstRead_mergesTableWithRecordedEvents_thenServesFromMemory() {
+        ActivityHistoryService history = service(10, 300);
+        ActivityLog stored = event("a@moln.se", 1);
+        ActivityLog pending = event("a@moln.se", 2);   // recorded, not yet written by the async writer
+        when(store.latest(eq("a@moln.se"), isNull(), isNull(), eq(50))).thenReturn(List.of(stored));
+        history.recorded(pending);
+
+        assertThat(history.history("a@moln.se")).containsExactly(pending, stored);
+
+        ActivityLog later = event("a@moln.se", 3);
+        history.recorded(later);
+        assertThat(history.history("a@moln.se")).containsExactly(later, pending, stored);
+        verify(store, times(1)).latest(eq("a@moln.se"), isNull(), isNull(), eq(50));
+    }
+
+    @Test
+    void ring_keepsOnlyTheLatestFifty() {
+        ActivityHistoryService history = service(10, 300);
+        when(store.latest(eq("a@moln.se"), isNull(), isNull(), eq(50))).thenReturn(List.of());
+        history.history("a@moln.se");
+
+        List<ActivityLog> all = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            ActivityLog e = event("a@moln.se", i);
+            all.add(e);
+            history.recorded(e);
+        }
+
+        List<ActivityLog> result = history.history("a@moln.se");
+        assertThat(result).hasSize(ActivityHistoryService.CAPACITY);
+        assertThat(result.get(0)).isSameAs(all.get(119));
+        assertThat(result.get(49)).isSameAs(all.get(70));
+    }
+
+    @Test
+    void leastRecentlyUsedUser_isDropped_andReloadedFromTheTable() {
+        ActivityHistoryService history = service(2, 300);
+        when(store.latest(anyString(), isNull(), isNull(), eq(50))).thenReturn(List.of());
+        history.history("a@moln.se");
+        history.history("b@moln.se");
+        history.history("a@moln.se");
+        history.history("c@moln.se");   // evicts b
+
+        assertThat(history.users()).isEqualTo(2);
+        history.history("a@moln.se");
+        verify(store, times(1)).latest(eq("a@moln.se"), isNull(), isNull(), eq(50));
+        history.history("b@moln.se");
+        verify(store, times(2)).latest(eq("b@moln.se"), isNull(), isNull(), eq(50));
+    }
+
+    @Test
+    void concurrentWriters_neverLeaveMoreThanMaxUsers() throws Exception {
+        ActivityHistoryService history = service(100, 300);
+        when(store.latest(anyString(), isNull(), isNull(), eq(50))).thenReturn(List.of());
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2_000; i++) {
+                    String email = "u" + thread + "-" + i + "@moln.se";
+                    history.recorded(event(email, i));
+                    if (i % 10 == 0) history.history(email);
+                    assertThat(history.users()).isLessThanOrEqualTo(100 + threads);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertThat(history.users()).isBetween(1, 100);
+    }
+
+    @Test
+    void anonymousAndUnauthenticatedEvents_getNoRing() {
+        ActivityHistoryService history = service(10, 300);
+
+        history.recorded(event(ActivityHistoryService.ANONYMOUS, 1));
+        history.recorded(event(null, 2));
+
+        assertThat(history.users()).isZero();
+    }
+
+    @Test
+    void zeroRefresh_alwaysConsultsTheTable() {
+        ActivityHistoryService history = service(10, 0);
+        ActivityLog other = event("a@moln.se", 5);   // e.g. written by another node
+        when(store.latest(eq("a@moln.se"), isNull(), isNull(), eq(50))).thenReturn(List.of()).thenReturn(List.of(other));
+
+        history.history("a@moln.se");
+        assertThat(history.history("a@moln.se")).containsExactly(other);
+    }
+}
@@ -0,0 +1,119 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import se.moln.ecommerceintegration.model.ActivityLog;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:auditwriter;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4",
+        "audit.persist.enabled=false"
+})
+class ActivityLogPartitionsTest {
+
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.DAYS).plus(12, ChronoUnit.HOURS);
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private final List<ActivityLogPartitions> created = new ArrayList<>();
+
+    @AfterEach
+    void dropBuckets() {
+        // a far-future "now" expires every bucket
+        for (ActivityLogPartitions p : created) p.dropExpired(NOW.plus(3650, ChronoUnit.DAYS));
+    }
+
+    private ActivityLogPartitions partitions(String bucket, int retentionDays) {
+        ActivityLogPartitions p = new ActivityLogPartitions(jdbc, true, bucket, retentionDays);
+        created.add(p);
+        return p;
+    }
+
+    private static ActivityLog event(String email, Instant at) {
+        ActivityLog e = ActivityLog.of("REQUEST", email, "GET", "/x", 200, "127.0.0.1", "UA", 1);
+        e.setId(UUID.randomUUID());
+        e.setCreatedAt(at);
+        return e;
+    }
+
+    @Test
+    void bucketsCreatedByAnotherNode_areSeenAfterTheRetentionRun() {
+        ActivityLogPartitions here = partitions("day", 30);
+        ActivityLogPartitions otherNode = partitions("day", 30);
+        assertThat(here.tablesOverlapping(null, null)).containsExactly(ActivityLogPartitions.BASE_TABLE);
+
+        String table = otherNode.tableFor(NOW);
+        assertThat(here.tablesOverlapping(null, null)).doesNotContain(table);
+
+        here.dropExpired(NOW);
+        assertThat(here.tablesOverlapping(null, null)).containsExactly(table, ActivityLogPartitions.BASE_TABLE);
+    }
+
+    @Test
+    void writer_routesRowsIntoDayBuckets_andReadsOnlyOverlappingOnes() {
+        ActivityLogPartitions p = partitions("day", 30);
+        AuditLogWriter writer = new AuditLogWriter(jdbc, p, txManager, new SimpleMeterRegistry(), 100, 500, 50, "drop", 10, 4, 1000);
+        List<ActivityLog> batch = new ArrayList<>();
+        for (int day = 0; day < 5; day++) {
+            batch.add(event("a@moln.se", NOW.minus(day, ChronoUnit.DAYS)));
+            batch.add(event("b@moln.se", NOW.minus(day, ChronoUnit.DAYS)));
+        }
+        batch.get(0).setSampleWeight(10);
+        writer.write(batch);
+
+        assertThat(p.tablesOverlapping(null, null)).hasSize(6);   // five days plus the original table
+        // yesterday noon .. today noon touches two day tables, not the older ones or the original table
+        assertThat(p.tablesOverlapping(NOW.minus(1, ChronoUnit.DAYS), NOW))
+                .containsExactly(p.tableFor(NOW), p.tableFor(NOW.minus(1, ChronoUnit.DAYS)));
+
+        List<ActivityLog> latest = p.latest("a@moln.se", null, null, 3);
+        assertThat(latest).extracting(ActivityLog::getCreatedAt)
+                .containsExactly(NOW, NOW.minus(1, ChronoUnit.DAYS), NOW.minus(2, ChronoUnit.DAYS));
+        assertThat(latest).extracting(ActivityLog::getSampleWeight).containsExactly(10, 1, 1);
+        assertThat(p.latest("a@moln.se", NOW.minus(3, ChronoUnit.DAYS), NOW, 50)).hasSize(3);
+    }
+
+    @Test
+    void dropExpired_dropsWholeBuckets_andRejectsExpiredWrites() {
+        ActivityLogPartitions p = partitions("week", 14);
+        String current = p.tableFor(NOW);
+        String old = p.tableFor(NOW.minus(10, ChronoUnit.DAYS));
+        assertThat(p.tableFor(NOW.minus(60, ChronoUnit.DAYS))).isNull();
+
+        // cutoff at the start of the current week: only the earlier bucket has ended
+        Instant weekStart = LocalDate.ofInstant(NOW, ZoneOffset.UTC).with(DayOfWeek.MONDAY).atStartOfDay(ZoneOffset.UTC).toInstant();
+        assertThat(p.dropExpired(weekStart.plus(14, ChronoUnit.DAYS))).isEqualTo(1);
+        assertThat(p.tablesOverlapping(null, null)).contains(current).doesNotContain(old);
+        assertThat(tableExists(old)).isFalse();
+
+        // a restarted instance finds the remaining buckets
+        ActivityLogPartitions reopened = partitions("week", 14);
+        assertThat(reopened.tablesOverlapping(null, null)).contains(current);
+    }
+
+    private boolean tableExists(String table) {
+        Integer n = jdbc.queryForObject("select count(*) from information_schema.tables where lower(table_name) = ?",
+                Integer.class, table);
+        return n != null && n > 0;
+    }
+}
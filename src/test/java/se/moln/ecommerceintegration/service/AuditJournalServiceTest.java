@@ -0,0 +1,103 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import se.moln.ecommerceintegration.model.ActivityLog;
+import se.moln.ecommerceintegration.repository.ActivityLogRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:auditwriter;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4",
+        "audit.persist.enabled=false"
+})
+class AuditJournalServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PlatformTransactionManager txManager;
+    @Autowired
+    private ActivityLogRepository logs;
+
+    @TempDir
+    Path dir;
+
+    private AuditJournalService journal;
+
+    @BeforeEach
+    void setUp() {
+        logs.deleteAll();
+        journal = journal();
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.stop();
+    }
+
+    // long ship interval: the test drives ship() itself
+    private AuditJournalService journal() {
+        var registry = new SimpleMeterRegistry();
+        var writer = new AuditLogWriter(jdbc, new ActivityLogPartitions(jdbc, false, "day", 90), txManager, registry, 100, 500, 50, "drop", 10, 4, 1000);
+        var svc = new AuditJournalService(writer, registry, true, true, dir.toString(), 1, 1, 60_000, 40);
+        svc.start();
+        return svc;
+    }
+
+    private static ActivityLog event(int i) {
+        ActivityLog e = ActivityLog.of("REQUEST", "u" + i + "@moln.se", "GET", "/x/" + i, 200, "127.0.0.1", "UA", i);
+        e.setId(UUID.randomUUID());
+        e.setCreatedAt(Instant.now());
+        return e;
+    }
+
+    @Test
+    void ship_replaysJournalIntoTheTableAndCheckpoints() throws IOException {
+        assertThat(journal.isActive()).isTrue();
+        for (int i = 0; i < 100; i++) assertThat(journal.append(event(i))).isTrue();
+        assertThat(logs.count()).isZero();
+
+        assertThat(journal.ship()).isEqualTo(100);
+        assertThat(logs.count()).isEqualTo(100);
+        assertThat(journal.ship()).isZero();
+    }
+
+    @Test
+    void eventsLeftInTheJournal_areShippedAfterARestart() throws IOException {
+        journal.stop();
+        // e.g. the process died before the shipper got to these
+        try (AuditJournal j = AuditJournal.open(dir, 1024 * 1024, 1)) {
+            for (int i = 0; i < 10; i++) j.append(event(i));
+        }
+
+        journal = journal();
+        assertThat(journal.ship()).isEqualTo(10);
+        assertThat(logs.count()).isEqualTo(10);
+    }
+
+    @Test
+    void secondInstance_fallsBackToTheBuffer() {
+        AuditJournalService other = journal();
+        try {
+            assertThat(other.isActive()).isFalse();
+            assertThat(other.append(event(1))).isFalse();
+        } finally {
+            other.stop();
+        }
+    }
+}
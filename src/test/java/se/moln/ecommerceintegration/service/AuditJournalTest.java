@@ -0,0 +1,158 @@
+package se.moln.ecommerceintegration.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.moln.ecommerceintegration.model.ActivityLog;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AuditJournalTest {
+
+    private static final int SEGMENT = 4096;
+
+    @TempDir
+    Path dir;
+
+    private static ActivityLog event(int i) {
+        ActivityLog e = ActivityLog.of("REQUEST", i % 2 == 0 ? null : "u" + i + "@moln.se", "GET", "/users/" + i,
+                200, "127.0.0.1", "Mozilla/5.0 åäö", i);
+        e.setId(UUID.randomUUID());
+        e.setCreatedAt(Instant.ofEpochMilli(1_700_000_000_000L + i));
+        return e;
+    }
+
+    @Test
+    void appendAndPoll_roundTripsAllFields() throws IOException {
+        try (AuditJournal j = AuditJournal.open(dir, SEGMENT, 1)) {
+            ActivityLog a = event(1), b = event(2);
+            b.setSampleWeight(100);
+            j.append(a);
+            j.append(b);
+
+            AuditJournal.Batch batch = j.poll(null, 10);
+            assertThat(batch.events()).usingRecursiveFieldByFieldElementComparator().containsExactly(a, b);
+            assertThat(batch.events().get(1).getUserEmail()).isNull();
+            assertThat(j.poll(null, 1).events()).hasSize(1);  // nothing moves until checkpoint
+        }
+    }
+
+    @Test
+    void rollsOverSegments_andRecyclesShippedOnes() throws IOException {
+        try (AuditJournal j = AuditJournal.open(dir, SEGMENT, 1)) {
+            List<UUID> appended = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                ActivityLog e = event(i);
+                j.append(e);
+                appended.add(e.getId());
+            }
+            assertThat(j.end().segment()).isGreaterThan(3);
+
+            List<UUID> read = new ArrayList<>();
+            AuditJournal.Batch b;
+            while (!(b = j.poll(null, 7)).events().isEmpty()) {
+                b.events().forEach(e -> read.add(e.getId()));
+                j.checkpoint(b.end());
+            }
+            assertThat(read).containsExactlyElementsOf(appended);
+            assertThat(files(".seg")).hasSize(1);
+            assertThat(files(".spare")).hasSize(1);
+
+            // the spare is reused for the next segment, and its old records are not read back
+            ActivityLog next = null;
+            long segment = j.end().segment();
+            while (j.end().segment() == segment) j.append(next = event(999));
+            assertThat(files(".spare")).isEmpty();
+            List<ActivityLog> tail = new ArrayList<>();
+            while (!(b = j.poll(null, 50)).events().isEmpty()) {
+                tail.addAll(b.events());
+                j.checkpoint(b.end());
+            }
+            assertThat(tail).last().extracting(ActivityLog::getId).isEqualTo(next.getId());
+        }
+    }
+
+    @Test
+    void reopen_replaysFromCheckpoint_andIgnoresTornTail() throws IOException {
+        ActivityLog shipped = event(1), pending = event(2);
+        try (AuditJournal j = AuditJournal.open(dir, SEGMENT, 1)) {
+            j.append(shipped);
+            j.checkpoint(j.poll(null, 10).end());
+            j.append(pending);
+            j.append(event(3));
+        }
+        // simulate a crash in the middle of the last record
+        Path seg = files(".seg").get(0);
+        try (RandomAccessFile f = new RandomAccessFile(seg.toFile(), "rw")) {
+            long lastPayload = 0;
+            for (long p = 0; ; ) {
+                f.seek(p);
+                int len = f.readInt();
+                if (len == 0) break;
+                lastPayload = p + AuditJournal.HEADER;
+                p += AuditJournal.HEADER + len;
+            }
+            f.seek(lastPayload + 20);
+            f.write(0x7F);
+        }
+
+        try (AuditJournal j = AuditJournal.open(dir, SEGMENT, 1)) {
+            assertThat(j.poll(null, 10).events()).extracting(ActivityLog::getId).containsExactly(pending.getId());
+            ActivityLog after = event(4);
+            j.append(after);  // overwrites the torn record
+            assertThat(j.poll(null, 10).events()).extracting(ActivityLog::getId)
+                    .containsExactly(pending.getId(), after.getId());
+        }
+    }
+
+    @Test
+    void preparedSegment_isUsedOnRollover_andSurvivesReopenUnused() throws IOException {
+        List<UUID> appended = new ArrayList<>();
+        try (AuditJournal j = AuditJournal.open(dir, SEGMENT, 1)) {
+            j.prepareNext();
+            assertThat(files(".seg")).hasSize(2);
+            long segment = j.end().segment();
+            while (j.end().segment() == segment) {
+                ActivityLog e = event(appended.size());
+                j.append(e);
+                appended.add(e.getId());
+            }
+            j.force();
+            j.prepareNext();  // maps the one after, which stays empty
+            assertThat(files(".seg")).hasSize(3);
+        }
+
+        try (AuditJournal j = AuditJournal.open(dir, SEGMENT, 1)) {
+            List<UUID> read = new ArrayList<>();
+            AuditJournal.Batch b;
+            while (!(b = j.poll(null, 7)).events().isEmpty()) {
+                b.events().forEach(e -> read.add(e.getId()));
+                j.checkpoint(b.end());
+            }
+            assertThat(read).containsExactlyElementsOf(appended);
+        }
+    }
+
+    @Test
+    void open_failsWhileAnotherInstanceHoldsTheDirectory() throws IOException {
+        try (AuditJournal ignored = AuditJournal.open(dir, SEGMENT, 1)) {
+            assertThatThrownBy(() -> AuditJournal.open(dir, SEGMENT, 1)).isInstanceOf(IOException.class);
+        }
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(f -> f.getFileName().toString().endsWith(suffix)).toList();
+        }
+    }
+}
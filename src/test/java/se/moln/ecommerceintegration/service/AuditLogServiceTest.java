@@ -3,7 +3,6 @@ package se.moln.ecommerceintegration.service;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import se.moln.ecommerceintegration.model.ActivityLog;
-import se.moln.ecommerceintegration.repository.ActivityLogRepository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -12,23 +11,27 @@ class AuditLogServiceTest {
 
     @Test
     void save_whenDisabled_doesNothing() {
-        ActivityLogRepository repo = mock(ActivityLogRepository.class);
-        AuditLogService svc = new AuditLogService(repo, false);
+        AuditLogWriter writer = mock(AuditLogWriter.class);
+        AuditLogService svc = new AuditLogService(writer, mock(AuditJournalService.class), mock(ActivityHistoryService.class), false);
 
         svc.save("ACTION", "user@example.com", "GET", "/x", 200, "127.0.0.1", "UA", 1);
-        verify(repo, never()).save(any());
+        verify(writer, never()).offer(any());
     }
 
     @Test
-    void save_whenEnabled_persistsActivityLog() {
-        ActivityLogRepository repo = mock(ActivityLogRepository.class);
-        AuditLogService svc = new AuditLogService(repo, true);
+    void save_whenEnabled_queuesActivityLog() {
+        AuditLogWriter writer = mock(AuditLogWriter.class);
+        AuditLogService svc = new AuditLogService(writer, mock(AuditJournalService.class), mock(ActivityHistoryService.class), true);
 
         ArgumentCaptor<ActivityLog> captor = ArgumentCaptor.forClass(ActivityLog.class);
         svc.save("ACTION", "user@example.com", "GET", "/x", 200, "127.0.0.1", "UA", 42);
 
-        verify(repo).save(captor.capture());
+        verify(writer).offer(captor.capture());
         ActivityLog saved = captor.getValue();
+        assertThat(saved.getId()).isNotNull();
+        assertThat(saved.getId().version()).isEqualTo(4);
+        assertThat(saved.getId().variant()).isEqualTo(2);
+        assertThat(saved.getCreatedAt()).isNotNull();
         assertThat(saved.getAction()).isEqualTo("ACTION");
         assertThat(saved.getUserEmail()).isEqualTo("user@example.com");
         assertThat(saved.getMethod()).isEqualTo("GET");
@@ -38,4 +41,16 @@ class AuditLogServiceTest {
         assertThat(saved.getUserAgent()).isEqualTo("UA");
         assertThat(saved.getDurationMs()).isEqualTo(42);
     }
+
+    @Test
+    void save_prefersJournal() {
+        AuditLogWriter writer = mock(AuditLogWriter.class);
+        AuditJournalService journal = mock(AuditJournalService.class);
+        when(journal.append(any())).thenReturn(true);
+        AuditLogService svc = new AuditLogService(writer, journal, mock(ActivityHistoryService.class), true);
+
+        svc.save("ACTION", "user@example.com", "GET", "/x", 200, "127.0.0.1", "UA", 1);
+        verify(journal).append(any());
+        verify(writer, never()).offer(any());
+    }
 }
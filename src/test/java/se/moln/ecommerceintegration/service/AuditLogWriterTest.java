@@ -0,0 +1,115 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import se.moln.ecommerceintegration.model.ActivityLog;
+import se.moln.ecommerceintegration.repository.ActivityLogRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:auditwriter;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4",
+        "audit.persist.enabled=false"
+})
+class AuditLogWriterTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PlatformTransactionManager txManager;
+    @Autowired
+    private ActivityLogRepository logs;
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void clean() {
+        logs.deleteAll();
+        registry = new SimpleMeterRegistry();
+    }
+
+    // not started: events stay queued until flush()
+    private AuditLogWriter writer(int capacity, String overflow) {
+        return new AuditLogWriter(jdbc, new ActivityLogPartitions(jdbc, false, "day", 90), txManager, registry, capacity, 500, 50, overflow, 10, 4, 1000);
+    }
+
+    private static ActivityLog event(int i) {
+        ActivityLog e = ActivityLog.of("REQUEST", "u" + i + "@moln.se", "GET", "/x/" + i, 200, "127.0.0.1", "UA", i);
+        e.setId(UUID.randomUUID());
+        e.setCreatedAt(Instant.now());
+        return e;
+    }
+
+    @Test
+    void flush_writesAllRowsInMultiRowStatements() {
+        AuditLogWriter writer = writer(1000, "drop");
+        for (int i = 0; i < 120; i++) assertThat(writer.offer(event(i))).isTrue();
+        assertThat(logs.count()).isZero();
+
+        writer.flush();
+
+        assertThat(logs.count()).isEqualTo(120);
+        assertThat(logs.findTop50ByUserEmailOrderByCreatedAtDesc("u119@moln.se"))
+                .singleElement().satisfies(l -> {
+                    assertThat(l.getPath()).isEqualTo("/x/119");
+                    assertThat(l.getDurationMs()).isEqualTo(119);
+                });
+        assertThat(registry.get("audit.events.written").counter().count()).isEqualTo(120);
+        assertThat(writer.depth()).isZero();
+    }
+
+    @Test
+    void dropPolicy_countsOverflow() {
+        AuditLogWriter writer = writer(10, "drop");
+        for (int i = 0; i < 15; i++) writer.offer(event(i));
+
+        assertThat(writer.depth()).isEqualTo(10);
+        assertThat(registry.get("audit.events.dropped").tag("reason", "full").counter().count()).isEqualTo(5);
+    }
+
+    @Test
+    void samplePolicy_keepsOneInNAboveWatermark() {
+        AuditLogWriter writer = writer(100, "sample");
+        for (int i = 0; i < 75; i++) writer.offer(event(i));   // up to the 3/4 watermark, all kept
+        for (int i = 0; i < 20; i++) writer.offer(event(i));   // sample rate 4 -> 5 kept
+
+        assertThat(writer.depth()).isEqualTo(80);
+        assertThat(registry.get("audit.events.dropped").tag("reason", "sampled").counter().count()).isEqualTo(15);
+    }
+
+    @Test
+    void stop_flushesWhatIsQueued() throws Exception {
+        AuditLogWriter writer = writer(1000, "block");
+        writer.start();
+        for (int i = 0; i < 30; i++) writer.offer(event(i));
+
+        writer.stop();
+
+        assertThat(writer.isRunning()).isFalse();
+        assertThat(logs.count()).isEqualTo(30);
+    }
+
+    @Test
+    void replay_skipsEventsAlreadyStored() {
+        AuditLogWriter writer = writer(1000, "drop");
+        List<ActivityLog> batch = new ArrayList<>();
+        for (int i = 0; i < 60; i++) batch.add(event(i));
+        writer.replay(batch.subList(0, 20));
+
+        writer.replay(batch);
+
+        assertThat(logs.count()).isEqualTo(60);
+    }
+}
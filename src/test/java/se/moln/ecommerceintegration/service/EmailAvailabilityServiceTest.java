@@ -0,0 +1,91 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class EmailAvailabilityServiceTest {
+
+    private UserRepository users;
+    private SimpleMeterRegistry registry;
+    private EmailAvailabilityService service;
+
+    @BeforeEach
+    void setup() {
+        users = Mockito.mock(UserRepository.class);
+        registry = new SimpleMeterRegistry();
+        service = new EmailAvailabilityService(users, registry, true, 1000, 0.01);
+    }
+
+    @Test
+    void beforeWarmUp_everyCheckGoesToDatabase() {
+        when(users.existsByEmail("a@e.com")).thenReturn(false);
+
+        assertThat(service.isReady()).isFalse();
+        assertThat(service.isAvailable("a@e.com")).isTrue();
+        verify(users).existsByEmail("a@e.com");
+    }
+
+    @Test
+    void definiteNegative_isAnsweredWithoutDatabase() {
+        when(users.streamAllEmails()).thenReturn(Stream.of("taken@e.com"));
+        assertThat(service.rebuild()).isEqualTo(1);
+
+        assertThat(service.isAvailable("free@e.com")).isTrue();
+        verify(users, never()).existsByEmail(any());
+        assertThat(registry.get("auth.email.filter.checks").tag("result", "negative").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void probablePositive_isConfirmedByDatabase_caseInsensitively() {
+        when(users.streamAllEmails()).thenReturn(Stream.of("Taken@E.com"));
+        service.rebuild();
+        when(users.existsByEmail("taken@e.com")).thenReturn(true);
+
+        assertThat(service.isAvailable(" taken@e.com ")).isFalse();
+        verify(users).existsByEmail("taken@e.com");
+        assertThat(registry.get("auth.email.filter.checks").tag("result", "true_positive").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void registeredAfterBuild_isVisible_andDeletedCountsAsStaleUntilRebuild() {
+        when(users.streamAllEmails()).thenReturn(Stream.empty());
+        service.rebuild();
+
+        service.added("new@e.com");
+        when(users.existsByEmail("new@e.com")).thenReturn(true);
+        assertThat(service.isAvailable("new@e.com")).isFalse();
+
+        service.removed("new@e.com");
+        when(users.existsByEmail("new@e.com")).thenReturn(false);
+        assertThat(service.staleEntries()).isEqualTo(1);
+        assertThat(service.isAvailable("new@e.com")).isTrue(); // false positive resolved by the DB
+        assertThat(registry.get("auth.email.filter.false.positive.rate").gauge().value()).isEqualTo(1.0);
+
+        when(users.streamAllEmails()).thenReturn(Stream.empty());
+        service.rebuild();
+        assertThat(service.staleEntries()).isZero();
+        clearInvocations(users);
+        assertThat(service.isAvailable("new@e.com")).isTrue();
+        verify(users, never()).existsByEmail(any());
+    }
+
+    @Test
+    void disabled_alwaysUsesDatabase() {
+        EmailAvailabilityService off = new EmailAvailabilityService(users, new SimpleMeterRegistry(), false, 1000, 0.01);
+        off.warmUp();
+        off.added("x@e.com");
+
+        assertThat(off.isReady()).isFalse();
+        off.isAvailable("x@e.com");
+        verify(users).existsByEmail("x@e.com");
+        verify(users, never()).streamAllEmails();
+    }
+}
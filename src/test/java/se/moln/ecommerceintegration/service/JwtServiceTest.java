@@ -1,12 +1,25 @@
 package se.moln.ecommerceintegration.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
 import org.junit.jupiter.api.Test;
+import se.moln.ecommerceintegration.model.SigningKey;
+import se.moln.ecommerceintegration.repository.SigningKeyRepository;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 class JwtServiceTest {
 
@@ -26,4 +39,59 @@ class JwtServiceTest {
         assertThat(c.get("uid")).isEqualTo(uid.toString());
         assertThat(c.get("role")).isEqualTo("USER");
     }
-}
\ No newline at end of file
+
+    @Test
+    void verify_acceptsOwnAndJjwtTokens_rejectsForeignKey() {
+        String secret = "super-secret-key-that-is-long-enough-32-bytes-minimum!";
+        JwtService jwt = new JwtService(secret, "test-issuer", 5);
+        UUID uid = UUID.randomUUID();
+
+        var own = jwt.verify(jwt.createAccessToken(uid, "user@example.com", "ADMIN"));
+        assertThat(own.userId()).isEqualTo(uid);
+        assertThat(own.role()).isEqualTo("ADMIN");
+
+        // another header, so it takes the jjwt path
+        String jjwt = Jwts.builder().setHeaderParam("typ", "JWT")
+                .setSubject("user@example.com").setIssuer("test-issuer")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .addClaims(Map.of("uid", uid.toString(), "role", "USER"))
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes()), SignatureAlgorithm.HS256).compact();
+        assertThat(jwt.verify(jjwt).role()).isEqualTo("USER");
+        assertThat(jwt.isTokenValid(jjwt)).isTrue();
+
+        String foreign = new JwtService("another-secret-key-that-is-long-enough-32-bytes!", "test-issuer", 5)
+                .createAccessToken(uid, "user@example.com", "ADMIN");
+        assertThat(jwt.isTokenValid(foreign)).isFalse();
+    }
+
+    @Test
+    void rs256_tokensCarryKid_andVerifyAgainstPublishedKey() {
+        SigningKeyRepository repo = mock(SigningKeyRepository.class);
+        List<SigningKey> stored = new ArrayList<>();
+        when(repo.findAllByOrderByActivatesAtAsc()).thenAnswer(inv -> List.copyOf(stored));
+        when(repo.saveAndFlush(any(SigningKey.class))).thenAnswer(inv -> {
+            stored.add(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        SigningKeyService keys = new SigningKeyService(repo, new ObjectMapper(), "RS256", 168, 10, 5);
+        keys.refresh(); // at startup
+        String secret = "super-secret-key-that-is-long-enough-32-bytes-minimum!";
+        JwtService jwt = new JwtService(secret, "test-issuer", 5, keys);
+        UUID uid = UUID.randomUUID();
+
+        String token = jwt.createAccessToken(uid, "user@example.com", "USER");
+
+        Jws<Claims> parsed = Jwts.parserBuilder().setSigningKey(keys.verificationKey(keys.signingKey().kid()))
+                .build().parseClaimsJws(token);
+        assertThat(parsed.getHeader().getAlgorithm()).isEqualTo("RS256");
+        assertThat(parsed.getHeader().getKeyId()).isEqualTo(keys.signingKey().kid());
+        assertThat(jwt.verify(token).userId()).isEqualTo(uid);
+        // HS256 tokens from before the switch remain valid
+        assertThat(jwt.isTokenValid(new JwtService(secret, "test-issuer", 5).createAccessToken(uid, "user@example.com", "USER"))).isTrue();
+        // an HS256 token naming our kid must not verify with the public key as HMAC secret
+        String confused = Jwts.builder().setHeaderParam("kid", keys.signingKey().kid())
+                .setSubject("user@example.com").setIssuer("test-issuer")
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes()), SignatureAlgorithm.HS256).compact();
+        assertThat(jwt.isTokenValid(confused)).isFalse();
+    }
+}
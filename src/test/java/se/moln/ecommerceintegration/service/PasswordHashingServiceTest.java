@@ -0,0 +1,89 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import se.moln.ecommerceintegration.exception.TooManyRequestsException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PasswordHashingServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PasswordHashingService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) service.shutdown();
+    }
+
+    @Test
+    void encodeAndMatches_runOnPool_andRecordMetrics() {
+        service = new PasswordHashingService(new BCryptPasswordEncoder(4), registry, 2, 8, 5000, 1);
+
+        String hash = service.encode("Password123!");
+
+        assertThat(service.matches("Password123!", hash)).isTrue();
+        assertThat(service.matches("wrong", hash)).isFalse();
+        assertThat(registry.get("auth.hashing.duration").tag("op", "matches").timer().count()).isEqualTo(2);
+        assertThat(registry.get("auth.hashing.wait").timer().count()).isEqualTo(3);
+        assertThat(registry.get("auth.hashing.queue.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    void whenQueueFull_shedsWith429_andRetryAfter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = mock(PasswordEncoder.class);
+        when(slow.encode(any())).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "H";
+        });
+        service = new PasswordHashingService(slow, registry, 1, 1, 5000, 3);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // one task occupies the worker, one fills the queue
+            callers.submit(() -> service.encode("a"));
+            callers.submit(() -> service.encode("b"));
+            waitUntil(() -> registry.get("auth.hashing.queue.depth").gauge().value() == 1);
+
+            TooManyRequestsException ex = assertThrows(TooManyRequestsException.class, () -> service.encode("c"));
+            assertThat(ex.getStatusCode().value()).isEqualTo(429);
+            assertThat(ex.getHeaders().getFirst("Retry-After")).isEqualTo("3");
+            assertThat(registry.get("auth.hashing.rejected").counter().count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void whenWaitExceedsMax_shedsWith429() {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = mock(PasswordEncoder.class);
+        when(slow.matches(any(), any())).thenAnswer(inv -> release.await(5, TimeUnit.SECONDS));
+        service = new PasswordHashingService(slow, registry, 1, 4, 50, 1);
+
+        try {
+            assertThrows(TooManyRequestsException.class, () -> service.matches("a", "H"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier cond) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!cond.getAsBoolean() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+    }
+}
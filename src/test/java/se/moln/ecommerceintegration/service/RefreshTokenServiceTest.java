@@ -0,0 +1,98 @@
+package se.moln.ecommerceintegration.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import se.moln.ecommerceintegration.model.RefreshToken;
+import se.moln.ecommerceintegration.model.User;
+import se.moln.ecommerceintegration.repository.RefreshTokenRepository;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:refreshtokens;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4"
+})
+class RefreshTokenServiceTest {
+
+    @Autowired
+    private RefreshTokenService refreshTokens;
+    @Autowired
+    private RefreshTokenRepository tokens;
+    @Autowired
+    private UserRepository users;
+
+    private User user;
+
+    @BeforeEach
+    void seed() {
+        tokens.deleteAll();
+        users.deleteAll();
+        user = users.save(User.newUser("refresh@moln.se", "{bcrypt}h", "R", "T"));
+    }
+
+    @Test
+    void rotate_issuesSuccessor_andStoresOnlyHashes() {
+        String first = refreshTokens.issue(user.getId());
+
+        var rotation = refreshTokens.rotate(first).orElseThrow();
+
+        assertThat(rotation.user().getId()).isEqualTo(user.getId());
+        assertThat(rotation.refreshToken()).isNotEqualTo(first);
+        assertThat(refreshTokens.rotate(rotation.refreshToken())).isPresent();
+        assertThat(tokens.findAll()).hasSize(3)
+                .noneMatch(t -> t.getTokenHash().equals(first))
+                .allMatch(t -> t.getFamilyId().equals(tokens.findAll().get(0).getFamilyId()));
+    }
+
+    @Test
+    void reuse_revokesWholeFamily_butNotOtherSessions() {
+        String stolen = refreshTokens.issue(user.getId());
+        String otherDevice = refreshTokens.issue(user.getId());
+        String legit = refreshTokens.rotate(stolen).orElseThrow().refreshToken();
+
+        assertThat(refreshTokens.rotate(stolen)).isEmpty();   // replay
+        assertThat(refreshTokens.rotate(legit)).isEmpty();    // family is gone
+        assertThat(refreshTokens.rotate(otherDevice)).isPresent();
+    }
+
+    @Test
+    void rotate_rejectsUnknownAndDeactivatedUsers() {
+        String token = refreshTokens.issue(user.getId());
+        user.setIsActive(false);
+        users.save(user);
+
+        assertThat(refreshTokens.rotate("not-a-token")).isEmpty();
+        assertThat(refreshTokens.rotate(token)).isEmpty();
+    }
+
+    @Test
+    void logout_allSessions_revokesEveryFamily() {
+        String a = refreshTokens.issue(user.getId());
+        String b = refreshTokens.issue(user.getId());
+
+        refreshTokens.revoke(a, true);
+
+        assertThat(refreshTokens.rotate(a)).isEmpty();
+        assertThat(refreshTokens.rotate(b)).isEmpty();
+    }
+
+    @Test
+    void newTokens_arePersistedNotMerged_andLoadedOnesAreNot() {
+        Instant now = Instant.now();
+        RefreshToken t = RefreshToken.of("h".repeat(43), UUID.randomUUID(), user.getId(), now,
+                now.plusSeconds(60), now.plusSeconds(120));
+        assertThat(t.isNew()).isTrue(); // save() -> persist, a single INSERT
+
+        tokens.save(t);
+
+        assertThat(t.isNew()).isFalse();
+        assertThat(tokens.findAll()).singleElement().matches(loaded -> !loaded.isNew());
+    }
+}
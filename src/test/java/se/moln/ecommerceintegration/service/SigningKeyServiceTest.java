@@ -0,0 +1,143 @@
+package se.moln.ecommerceintegration.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import se.moln.ecommerceintegration.model.SigningKey;
+import se.moln.ecommerceintegration.repository.SigningKeyRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SigningKeyServiceTest {
+
+    private final List<SigningKey> stored = new ArrayList<>();
+    private SigningKeyRepository repo;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        repo = mock(SigningKeyRepository.class);
+        when(repo.findAllByOrderByActivatesAtAsc()).thenAnswer(inv -> stored.stream()
+                .sorted(Comparator.comparing(SigningKey::getActivatesAt)).toList());
+        when(repo.saveAndFlush(any(SigningKey.class))).thenAnswer(inv -> {
+            SigningKey k = inv.getArgument(0);
+            // uk_signing_keys_alg_activates
+            if (stored.stream().anyMatch(o -> o.getAlgorithm().equals(k.getAlgorithm()) && o.getActivatesAt().equals(k.getActivatesAt())))
+                throw new DataIntegrityViolationException("uk_signing_keys_alg_activates");
+            stored.add(k);
+            return k;
+        });
+        doAnswer(inv -> stored.removeIf(k -> ((Collection<String>) inv.getArgument(0)).contains(k.getKid())))
+                .when(repo).deleteAllById(any());
+    }
+
+    private SigningKeyService service(String alg) {
+        // rotate daily, publish 10 min ahead, 30 min tokens
+        return new SigningKeyService(repo, new ObjectMapper(), alg, 24, 10, 30);
+    }
+
+    @Test
+    void firstRefresh_createsActiveKey_andPublishesIt() throws Exception {
+        SigningKeyService keys = service("RS256");
+        Instant t0 = Instant.parse("2026-01-01T00:00:00Z");
+
+        keys.refresh(t0);
+
+        assertThat(stored).hasSize(1);
+        SigningKeyService.ActiveKey active = keys.signingKey();
+        assertThat(active.algorithm()).isEqualTo(SignatureAlgorithm.RS256);
+        assertThat(keys.verificationKey(active.kid())).isNotNull();
+
+        JsonNode jwk = new ObjectMapper().readTree(keys.jwks().json()).get("keys").get(0);
+        assertThat(jwk.get("kid").asText()).isEqualTo(active.kid());
+        assertThat(jwk.get("kty").asText()).isEqualTo("RSA");
+        assertThat(jwk.get("alg").asText()).isEqualTo("RS256");
+        assertThat(jwk.get("e").asText()).isEqualTo("AQAB");
+    }
+
+    @Test
+    void rotation_publishesAhead_thenSwitches_thenDropsOldKeyAfterTokensExpire() {
+        SigningKeyService keys = service("ES256");
+        Instant t0 = Instant.parse("2026-01-01T00:00:00Z");
+        keys.refresh(t0);
+        String first = keys.signingKey().kid();
+        String etag = keys.jwks().etag();
+
+        // 23h55m: rotation due within the publish-ahead window, successor created but not signing yet
+        Instant due = t0.plus(Duration.ofHours(24)).minus(Duration.ofMinutes(5));
+        keys.refresh(due);
+        assertThat(stored).hasSize(2);
+        assertThat(keys.signingKey().kid()).isEqualTo(first);
+        assertThat(keys.jwks().etag()).isNotEqualTo(etag);
+        String second = stored.get(1).getKid();
+        assertThat(keys.verificationKey(second)).isNotNull();
+
+        Instant switched = due.plus(Duration.ofMinutes(10));
+        keys.refresh(switched);
+        assertThat(keys.signingKey().kid()).isEqualTo(second);
+        assertThat(keys.verificationKey(first)).isNotNull();
+
+        // first key's last token (30 min + 1 min skew) is gone
+        keys.refresh(switched.plus(Duration.ofMinutes(32)));
+        assertThat(stored).extracting(SigningKey::getKid).containsExactly(second);
+    }
+
+    @Test
+    void nodesRotatingAtOnce_addOneSuccessor_andBothUseIt() {
+        SigningKeyService a = service("ES256");
+        SigningKeyService b = service("ES256");
+        Instant t0 = Instant.parse("2026-01-01T00:00:00Z");
+        a.refresh(t0);
+        b.refresh(t0.plusSeconds(1));
+        assertThat(stored).hasSize(1);
+
+        Instant due = t0.plus(Duration.ofHours(24)).minus(Duration.ofMinutes(5));
+        List<SigningKey> before = List.copyOf(stored);
+        a.refresh(due);
+        // b read the table just before a's successor landed, so it tries to add one too
+        when(repo.findAllByOrderByActivatesAtAsc()).thenReturn(before).thenAnswer(inv -> stored.stream()
+                .sorted(Comparator.comparing(SigningKey::getActivatesAt)).toList());
+        b.refresh(due.plusSeconds(30));
+
+        verify(repo, times(3)).saveAndFlush(any()); // initial, a's successor, b's losing attempt
+        assertThat(stored).hasSize(2);
+        String successor = stored.get(1).getKid();
+        assertThat(a.verificationKey(successor)).isNotNull();
+        assertThat(b.verificationKey(successor)).isNotNull();
+    }
+
+    @Test
+    void requestThreads_onlyReload_neverCreateKeys() {
+        SigningKeyService keys = service("RS256");
+
+        assertThat(keys.verificationKey("unknown-kid")).isNull();
+        assertThatThrownBy(keys::signingKey).isInstanceOf(IllegalStateException.class);
+
+        verify(repo, never()).saveAndFlush(any());
+        assertThat(stored).isEmpty();
+    }
+
+    @Test
+    void hs256_isDisabled_withEmptyJwks() {
+        SigningKeyService keys = service("HS256");
+
+        keys.refresh();
+
+        assertThat(keys.isEnabled()).isFalse();
+        assertThat(new String(keys.jwks().json())).isEqualTo("{\"keys\":[]}");
+        verifyNoInteractions(repo);
+    }
+}
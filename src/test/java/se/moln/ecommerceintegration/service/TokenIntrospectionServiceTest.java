@@ -0,0 +1,61 @@
+package se.moln.ecommerceintegration.service;
+
+import io.jsonwebtoken.MalformedJwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import se.moln.ecommerceintegration.dto.IntrospectionResult;
+import se.moln.ecommerceintegration.exception.TooManyRequestsException;
+import se.moln.ecommerceintegration.repository.RevokedTokenRepository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TokenIntrospectionServiceTest {
+
+    private final JwtService jwt = mock(JwtService.class);
+    private final TokenRevocationService revocations =
+            new TokenRevocationService(mock(RevokedTokenRepository.class), new SimpleMeterRegistry(), 60, 5);
+
+    @Test
+    void largeBatch_isSplitAcrossPoolAndCaller() {
+        when(jwt.verify(anyString())).thenThrow(new MalformedJwtException("bad"));
+        TokenIntrospectionService service =
+                new TokenIntrospectionService(jwt, revocations, new SimpleMeterRegistry(), 2, 2, 4, 5000, 1);
+        try {
+            List<IntrospectionResult> results = service.introspect(Collections.nCopies(10, "t"));
+            assertThat(results).hasSize(10).allSatisfy(r -> assertThat(r.error()).isEqualTo("invalid"));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void stuckPool_shedsWith429() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(jwt.verify(anyString())).thenAnswer(inv -> {
+            // only the pool's workers hang; the caller's own chunk finishes
+            if (Thread.currentThread().getName().startsWith("token-introspect-")) release.await();
+            throw new MalformedJwtException("bad");
+        });
+        TokenIntrospectionService service =
+                new TokenIntrospectionService(jwt, revocations, new SimpleMeterRegistry(), 2, 1, 1, 50, 3);
+        try {
+            assertThatThrownBy(() -> service.introspect(Collections.nCopies(4, "t")))
+                    .isInstanceOfSatisfying(TooManyRequestsException.class,
+                            e -> assertThat(e.getRetryAfterSeconds()).isEqualTo(3));
+            // small batches stay on the caller's thread and are unaffected
+            assertThat(service.introspect(List.of("t"))).singleElement()
+                    .satisfies(r -> assertThat(r.error()).isEqualTo("invalid"));
+        } finally {
+            release.countDown();
+            service.shutdown();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import se.moln.ecommerceintegration.model.RevokedToken;
+import se.moln.ecommerceintegration.repository.RevokedTokenRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:revocations;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4",
+        "auth.revocation.poll-ms=3600000"
+})
+class TokenRevocationServiceTest {
+
+    @Autowired
+    private TokenRevocationService revocations;
+    @Autowired
+    private RevokedTokenRepository repo;
+
+    @BeforeEach
+    void clean() {
+        repo.deleteAll();
+    }
+
+    @Test
+    void revoke_isVisibleLocallyAtOnce_andOnOtherNodesAfterPoll() {
+        // a second node: same table, its own memory
+        TokenRevocationService otherNode = new TokenRevocationService(repo, new SimpleMeterRegistry(), 60, 30);
+        otherNode.poll();
+        Instant exp = Instant.now().plus(Duration.ofMinutes(10));
+
+        revocations.revoke("jti-a", UUID.randomUUID(), exp);
+        revocations.revoke("jti-a", UUID.randomUUID(), exp); // idempotent
+
+        assertThat(revocations.isRevoked("jti-a")).isTrue();
+        assertThat(otherNode.isRevoked("jti-a")).isFalse();
+        otherNode.poll();
+        assertThat(otherNode.isRevoked("jti-a")).isTrue();
+        assertThat(repo.count()).isEqualTo(1);
+        assertThat(revocations.isRevoked("jti-b")).isFalse();
+        assertThat(revocations.isRevoked(null)).isFalse();
+    }
+
+    @Test
+    void revoke_whenAnotherNodeInsertedTheJtiFirst_isStillRevokedHere() {
+        Instant exp = Instant.now().plus(Duration.ofMinutes(10));
+        repo.saveAndFlush(RevokedToken.of("jti-raced", UUID.randomUUID(), exp, Instant.now()));
+
+        revocations.revoke("jti-raced", UUID.randomUUID(), exp);  // duplicate insert, must not surface
+
+        assertThat(revocations.isRevoked("jti-raced")).isTrue();
+        assertThat(repo.count()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredBuckets_areDroppedWhole() {
+        TokenRevocationService node = new TokenRevocationService(repo, new SimpleMeterRegistry(), 60, 30);
+        Instant now = Instant.now();
+        node.revoke("soon-1", null, now.plusSeconds(61));
+        node.revoke("soon-2", null, now.plusSeconds(62));
+        node.revoke("later", null, now.plus(Duration.ofMinutes(20)));
+        node.revoke("already-expired", null, now.minusSeconds(1));
+
+        node.expire(now.getEpochSecond() + 60 * 3);
+
+        assertThat(node.isRevoked("soon-1")).isFalse();
+        assertThat(node.isRevoked("soon-2")).isFalse();
+        assertThat(node.isRevoked("later")).isTrue();
+        assertThat(node.isRevoked("already-expired")).isFalse();
+        assertThat(node.size()).isEqualTo(1);
+    }
+}
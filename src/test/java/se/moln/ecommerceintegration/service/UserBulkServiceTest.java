@@ -0,0 +1,112 @@
+package se.moln.ecommerceintegration.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import se.moln.ecommerceintegration.dto.UserFilter;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.model.User;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:userbulk;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4",
+        "users.bulk.chunk-size=2"
+})
+class UserBulkServiceTest {
+
+    @Autowired
+    private UserBulkService bulk;
+    @Autowired
+    private UserRepository users;
+    @Autowired
+    private UserSearchService search;
+    @MockitoSpyBean
+    private EmailAvailabilityService emailAvailability;
+
+    private final List<UUID> ids = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        users.deleteAll();
+        ids.clear();
+        for (int i = 0; i < 5; i++) {
+            User u = User.newUser("bulk" + i + "@e.com", "{bcrypt}h", "Bulk", "User" + i);
+            u.setRole(i == 0 ? Role.ADMIN : Role.USER);
+            ids.add(users.save(u).getId());
+        }
+        users.save(User.newUser("other@e.com", "{bcrypt}h", "Other", "User"));
+        search.rebuild();
+    }
+
+    @Test
+    void setRole_byIds_updatesInChunks_andCountsOnlyChangedRows() {
+        List<UUID> target = new ArrayList<>(ids);
+        target.add(UUID.randomUUID()); // unknown id is counted as given, but not affected
+
+        var res = bulk.setRole(target, null, Role.ADMIN);
+
+        assertThat(res.matched()).isEqualTo(6);
+        assertThat(res.affected()).isEqualTo(4); // bulk0 already ADMIN
+        assertThat(users.findAllById(ids)).allMatch(u -> u.getRole() == Role.ADMIN);
+        assertThat(users.findByEmail("other@e.com").orElseThrow().getRole()).isEqualTo(Role.USER);
+    }
+
+    @Test
+    void setActive_byFilter_walksAllMatches() {
+        var res = bulk.setActive(null, new UserFilter(Role.USER, null, "bulk", null, null), false);
+
+        assertThat(res.matched()).isEqualTo(4);
+        assertThat(res.affected()).isEqualTo(4);
+        assertThat(users.findAll()).filteredOn(u -> !u.getIsActive())
+                .extracting(User::getEmail)
+                .containsExactlyInAnyOrder("bulk1@e.com", "bulk2@e.com", "bulk3@e.com", "bulk4@e.com");
+    }
+
+    @Test
+    void setRole_byFilterOnTheSameColumn_stillVisitsEveryRowOnce() {
+        // rows leave the filter as they are updated; the keyset cursor must not skip any
+        var res = bulk.setRole(null, new UserFilter(Role.USER, null, null, null, null), Role.ADMIN);
+
+        assertThat(res.matched()).isEqualTo(5);
+        assertThat(res.affected()).isEqualTo(5);
+        assertThat(users.findAll()).allMatch(u -> u.getRole() == Role.ADMIN);
+    }
+
+    @Test
+    void delete_removesRows_andUpdatesFilterAndIndex() {
+        var res = bulk.delete(null, new UserFilter(null, null, "bulk", null, null));
+
+        assertThat(res.affected()).isEqualTo(5);
+        assertThat(users.count()).isEqualTo(1);
+        ArgumentCaptor<Integer> deleted = ArgumentCaptor.forClass(Integer.class);
+        verify(emailAvailability, atLeastOnce()).removed(deleted.capture());
+        assertThat(deleted.getAllValues().stream().mapToInt(Integer::intValue).sum()).isEqualTo(5);
+        assertThat(search.search("bulk", 0, 10).total()).isZero();
+        assertThat(search.search("other", 0, 10).total()).isEqualTo(1);
+    }
+
+    @Test
+    void delete_byIds_removesOnlyThoseRows_andUpdatesFilterAndIndex() {
+        var res = bulk.delete(List.of(ids.get(1), ids.get(2), UUID.randomUUID()), null);
+
+        assertThat(res.matched()).isEqualTo(3);
+        assertThat(res.affected()).isEqualTo(2);
+        assertThat(users.count()).isEqualTo(4);
+        verify(emailAvailability).removed(2);
+        verify(emailAvailability).removed(0);
+        assertThat(search.search("bulk", 0, 10).total()).isEqualTo(3);
+    }
+}
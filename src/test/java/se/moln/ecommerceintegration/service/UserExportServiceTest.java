@@ -0,0 +1,80 @@
+package se.moln.ecommerceintegration.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import se.moln.ecommerceintegration.model.User;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:userexport;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4",
+        "users.export.batch-size=2"
+})
+class UserExportServiceTest {
+
+    @Autowired
+    private UserExportService exportService;
+    @MockitoSpyBean
+    private UserRepository users;
+    private final ObjectMapper om = new ObjectMapper();
+
+    @BeforeEach
+    void seed() {
+        users.deleteAll();
+        for (int i = 0; i < 5; i++) users.save(User.newUser("u" + i + "@e.com", "{bcrypt}secret", "F" + i, "L" + i));
+        users.save(User.newUser("quote@e.com", "{bcrypt}secret", "Anna \"Nan\"", "Svensson, Jr"));
+        clearInvocations(users);
+    }
+
+    @Test
+    void ndjson_walksAllRowsInKeysetBatches_withoutPasswordHashes() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long n = exportService.export(UserExportService.Format.NDJSON, out);
+
+        String body = out.toString(StandardCharsets.UTF_8);
+        List<JsonNode> rows = new ArrayList<>();
+        for (String line : body.split("\n")) rows.add(om.readTree(line));
+
+        assertThat(n).isEqualTo(6);
+        assertThat(rows).hasSize(6);
+        assertThat(body).doesNotContain("secret").doesNotContain("passwordHash");
+        Set<String> emails = new HashSet<>();
+        rows.forEach(r -> emails.add(r.get("email").asText()));
+        assertThat(emails).hasSize(6).contains("u0@e.com", "quote@e.com");
+        assertThat(rows.get(0).get("role").asText()).isEqualTo("USER");
+
+        // 6 rows, batch 2: first page + 3 keyset pages (the last one empty), no findAll
+        verify(users, times(1)).findSummaries(any(Pageable.class));
+        verify(users, times(3)).findSummariesAfter(any(), any(Pageable.class));
+        verify(users, never()).findAll();
+    }
+
+    @Test
+    void csv_writesHeaderAndEscapesFields() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(UserExportService.Format.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines[0]).isEqualTo(UserExportService.CSV_HEADER);
+        assertThat(lines).hasSize(7);
+        assertThat(lines).anyMatch(l -> l.contains(",quote@e.com,\"Anna \"\"Nan\"\"\",\"Svensson, Jr\",USER,true,"));
+    }
+}
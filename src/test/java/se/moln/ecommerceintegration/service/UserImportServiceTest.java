@@ -0,0 +1,107 @@
+package se.moln.ecommerceintegration.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.model.User;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:userimport;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4",
+        "users.import.chunk-size=2",
+        "users.import.hash-threads=2"
+})
+class UserImportServiceTest {
+
+    @Autowired
+    private UserImportService importService;
+    @Autowired
+    private UserRepository users;
+    @Autowired
+    private PasswordEncoder encoder;
+    private final ObjectMapper om = new ObjectMapper();
+
+    @BeforeEach
+    void clean() {
+        users.deleteAll();
+    }
+
+    @Test
+    void ndjson_insertsInChunks_reportsEachLine_andFallsBackRowByRowOnDuplicates() throws Exception {
+        users.save(User.newUser("exists@e.com", "{bcrypt}x", "E", "X"));
+        String body = """
+                {"email":"a@e.com","password":"Password123!","firstName":"A","lastName":"One"}
+                {"email":"exists@e.com","password":"Password123!"}
+                {"email":"not-an-email","password":"Password123!"}
+
+                {"email":"b@e.com","passwordHash":"$2a$10$abcdefghijklmnopqrstuuJ6sDcFJ1yN7tNzPXzR5Jq1s5e7Tz9a","role":"admin","active":false}
+                {"email":"c@e.com"}
+                """;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserImportService.Summary summary = importService.importUsers(new StringReader(body), UserImportService.Format.NDJSON, () -> out);
+        List<JsonNode> lines = lines(out);
+
+        assertThat(summary.total()).isEqualTo(5);
+        assertThat(summary.created()).isEqualTo(2);
+        assertThat(summary.failed()).isEqualTo(3);
+        assertThat(lines).hasSize(6);
+        assertThat(lines.get(0).get("status").asText()).isEqualTo("created");
+        assertThat(lines.get(1).get("error").asText()).isEqualTo("Email already in use");
+        assertThat(lines.get(2).get("error").asText()).isEqualTo("Invalid email");
+        assertThat(lines.get(3).get("line").asInt()).isEqualTo(5); // blank line 4 is skipped but counted
+        assertThat(lines.get(4).get("error").asText()).contains("password");
+        assertThat(lines.get(5).get("summary").get("created").asInt()).isEqualTo(2);
+
+        User a = users.findByEmail("a@e.com").orElseThrow();
+        assertThat(encoder.matches("Password123!", a.getPasswordHash())).isTrue();
+        User b = users.findByEmail("b@e.com").orElseThrow();
+        assertThat(b.getPasswordHash()).startsWith("$2a$10$"); // pre-hashed rows are stored as given
+        assertThat(b.getRole()).isEqualTo(Role.ADMIN);
+        assertThat(b.getIsActive()).isFalse();
+    }
+
+    @Test
+    void csv_withHeaderAndQuotedFields() throws Exception {
+        String body = """
+                email,password,firstName,lastName
+                x@e.com,"Pass,word1!","Anna ""Nan""\",Svensson
+                y@e.com,Password123!,Bo,Ek
+                """;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserImportService.Summary summary = importService.importUsers(new StringReader(body), UserImportService.Format.CSV, () -> out);
+
+        assertThat(summary.created()).isEqualTo(2);
+        User x = users.findByEmail("x@e.com").orElseThrow();
+        assertThat(x.getFirstName()).isEqualTo("Anna \"Nan\"");
+        assertThat(encoder.matches("Pass,word1!", x.getPasswordHash())).isTrue();
+    }
+
+    @Test
+    void splitCsv_handlesEmptyAndQuotedFields() {
+        assertThat(UserImportService.splitCsv("a,,\"b,c\",\"d\"\"e\""))
+                .containsExactly("a", "", "b,c", "d\"e");
+    }
+
+    private List<JsonNode> lines(ByteArrayOutputStream out) throws Exception {
+        List<JsonNode> nodes = new ArrayList<>();
+        for (String l : out.toString(StandardCharsets.UTF_8).split("\n")) nodes.add(om.readTree(l));
+        return nodes;
+    }
+}
@@ -0,0 +1,100 @@
+package se.moln.ecommerceintegration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import se.moln.ecommerceintegration.dto.UserSummary;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.model.User;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:usersearch;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4"
+})
+class UserSearchServiceTest {
+
+    @Autowired
+    private UserSearchService search;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository users;
+
+    @BeforeEach
+    void seed() {
+        users.deleteAll();
+        for (int i = 0; i < 3; i++) users.save(User.newUser("kund" + i + "@moln.se", "{bcrypt}h", "Kund", "Nummer" + i));
+        users.save(User.newUser("anna@moln.se", "{bcrypt}h", "Anna", "Svensson"));
+        assertThat(search.rebuild()).isEqualTo(4);
+    }
+
+    @Test
+    void search_returnsRankedSummariesFromTheDatabase() {
+        User vip = users.save(User.newUser("vip@e.com", "{bcrypt}h", "Kund", "Vip"));
+        vip.setIsActive(false);
+        users.save(vip);
+        search.indexed(vip);
+
+        UserSearchService.SearchResult r = search.search("kund", 0, 10);
+
+        assertThat(r.total()).isEqualTo(4);
+        // "kund" is the first name of all four; the shorter email wins the tie
+        assertThat(r.items()).first().extracting(UserSummary::email).isEqualTo("vip@e.com");
+        assertThat(r.items().get(0).isActive()).isFalse();
+        assertThat(search.search("kund moln", 1, 2).items()).hasSize(2);
+    }
+
+    @Test
+    void writePaths_keepIndexCurrent() {
+        User reg = userService.register("ny@moln.se", "Secret123!", "Greta", "Lund");
+        assertThat(search.search("greta", 0, 10).items()).extracting(UserSummary::id).containsExactly(reg.getId());
+
+        userService.updateSettings(reg.getId(), "Gunilla", null);
+        assertThat(search.search("greta", 0, 10).total()).isZero();
+        assertThat(search.search("gunilla lund", 0, 10).total()).isEqualTo(1);
+
+        users.deleteById(reg.getId());
+        search.removed(reg.getId());
+        assertThat(search.search("gunilla", 0, 10).total()).isZero();
+    }
+
+    @Test
+    void deleteRacingTheSwap_isNotUndoneByReplay() throws Exception {
+        UUID id = UUID.randomUUID();
+        for (int round = 0; round < 5; round++) {
+            UserRepository repo = mock(UserRepository.class);
+            UserSearchService s = new UserSearchService(repo, new SimpleMeterRegistry(), true);
+            when(repo.findSummaries(any())).thenAnswer(inv -> {
+                s.indexed(id, "alpha@moln.se", "Alpha", "Old"); // rename while the batches load
+                // other sign-ups during the load, so there is plenty to replay around the swap
+                for (int i = 0; i < 5_000; i++) s.indexed(UUID.randomUUID(), "k" + i + "@moln.se", "Kund", "Ny");
+                return List.of(new UserSummary(id, "orig@moln.se", "Orig", "Old", Role.USER, true, Instant.EPOCH));
+            });
+            // delete as soon as the new index is published, i.e. right on top of the swap
+            CompletableFuture<Void> delete = CompletableFuture.runAsync(() -> {
+                while (!s.isReady()) Thread.onSpinWait();
+                s.removed(id);
+            });
+
+            s.rebuild();
+            delete.get(5, TimeUnit.SECONDS);
+
+            assertThat(s.search("old", 0, 10).total()).as("round %d", round).isZero();
+        }
+    }
+}
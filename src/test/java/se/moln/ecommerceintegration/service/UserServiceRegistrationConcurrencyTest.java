@@ -0,0 +1,102 @@
+package se.moln.ecommerceintegration.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import se.moln.ecommerceintegration.repository.UserRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:registration;DB_CLOSE_DELAY=-1",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "auth.password.cost=4"
+})
+class UserServiceRegistrationConcurrencyTest {
+
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserRepository users;
+    @MockitoSpyBean
+    private PasswordHashingService passwordHashing;
+
+    @Test
+    void parallelRegistrations_sameEmail_exactlyOneWins() throws Exception {
+        int threads = 16;
+        String email = "race@example.com";
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger won = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    userService.register(email, "Password123!", "Race", "Condition");
+                    won.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    assertThat(e.getMessage()).isEqualTo("Email is already registered");
+                    conflicts.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertThat(won.get()).isEqualTo(1);
+        assertThat(conflicts.get()).isEqualTo(threads - 1);
+        assertThat(users.findAll().stream().filter(u -> u.getEmail().equals(email))).hasSize(1);
+    }
+
+    @Test
+    void register_thenDuplicate_mapsConstraintViolationToConflict() {
+        userService.register("dup@example.com", "Password123!", "A", "B");
+
+        var ex = org.junit.jupiter.api.Assertions.assertThrows(IllegalStateException.class,
+                () -> userService.register("dup@example.com", "Password123!", "C", "D"));
+        assertThat(ex.getMessage()).isEqualTo("Email is already registered");
+    }
+
+    @Test
+    void register_hashesOutsideAnyTransaction() {
+        List<Boolean> inTransaction = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> {
+            inTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return inv.callRealMethod();
+        }).when(passwordHashing).encode(any());
+
+        var user = userService.register("outside@example.com", "Password123!", "A", "B");
+        userService.rehashPassword(user, "Password123!");
+
+        assertThat(inTransaction).containsExactly(false, false);
+        assertThat(users.findByEmail("outside@example.com")).isPresent();
+    }
+
+    @Test
+    void rehashPassword_doesNotOverwriteChangesMadeSinceLogin() {
+        var loggedIn = userService.register("stale@example.com", "Password123!", "A", "B");
+        var admin = users.findById(loggedIn.getId()).orElseThrow();
+        admin.setIsActive(false);
+        users.save(admin);  // deactivated between the login's load and its rehash
+
+        userService.rehashPassword(loggedIn, "Password123!");
+
+        var stored = users.findById(loggedIn.getId()).orElseThrow();
+        assertThat(stored.getIsActive()).isFalse();
+        assertThat(stored.getPasswordHash()).isEqualTo(loggedIn.getPasswordHash());
+    }
+}
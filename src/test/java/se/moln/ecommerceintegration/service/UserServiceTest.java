@@ -3,11 +3,15 @@ package se.moln.ecommerceintegration.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.mockito.Mockito;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
+import se.moln.ecommerceintegration.exception.TooManyRequestsException;
 import se.moln.ecommerceintegration.model.User;
 import se.moln.ecommerceintegration.repository.UserRepository;
 
+import java.sql.SQLException;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
@@ -15,42 +19,81 @@ import static org.mockito.Mockito.*;
 class UserServiceTest {
 
     private UserRepository users;
-    private PasswordEncoder encoder;
+    private PasswordHashingService hashing;
+    private EmailAvailabilityService emailAvailability;
     private UserService service;
 
     @BeforeEach
     void setup() {
         users = Mockito.mock(UserRepository.class);
-        encoder = Mockito.mock(PasswordEncoder.class);
-        service = new UserService(users, encoder);
+        hashing = Mockito.mock(PasswordHashingService.class);
+        emailAvailability = Mockito.mock(EmailAvailabilityService.class);
+        service = new UserService(users, hashing, emailAvailability, Mockito.mock(UserSearchService.class));
     }
 
     @Test
-    void register_success_encodesPassword_andSaves() {
-        when(users.existsByEmail("user@example.com")).thenReturn(false);
-        when(encoder.encode("Password123!")).thenReturn("ENC_HASH");
-        when(users.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
+    void register_success_encodesPassword_andInsertsOnce() {
+        when(hashing.encode("Password123!")).thenReturn("ENC_HASH");
+        when(users.saveAndFlush(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
 
         User u = service.register("user@example.com", "Password123!", "King", "Kong");
 
         ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
-        verify(users).save(captor.capture());
+        verify(users).saveAndFlush(captor.capture());
         User saved = captor.getValue();
 
         assertThat(saved.getEmail()).isEqualTo("user@example.com");
         assertThat(saved.getPasswordHash()).isEqualTo("ENC_HASH");
         assertThat(u.getFirstName()).isEqualTo("King");
         assertThat(u.getLastName()).isEqualTo("Kong");
+        verify(users, never()).existsByEmail(any());
+        verify(emailAvailability).added("user@example.com");
     }
 
     @Test
-    void register_whenEmailExists_throwsIllegalState() {
-        when(users.existsByEmail("user@example.com")).thenReturn(true);
+    void register_whenEmailConstraintViolated_throwsIllegalState() {
+        when(users.saveAndFlush(any(User.class))).thenThrow(duplicate(User.EMAIL_CONSTRAINT));
 
         IllegalStateException ex = assertThrows(IllegalStateException.class, () ->
                 service.register("user@example.com", "Password123!", "D", "A"));
 
         assertThat(ex.getMessage()).contains("Email is already registered");
+        verify(emailAvailability, never()).added(any());
+    }
+
+    @Test
+    void register_otherIntegrityViolation_isRethrown() {
+        when(users.saveAndFlush(any(User.class))).thenThrow(duplicate("PRIMARY_KEY_4"));
+
+        assertThrows(DataIntegrityViolationException.class, () ->
+                service.register("user@example.com", "Password123!", "D", "A"));
+    }
+
+    static DataIntegrityViolationException duplicate(String constraint) {
+        return new DataIntegrityViolationException("could not execute statement",
+                new ConstraintViolationException("Unique index or primary key violation", new SQLException(), constraint));
+    }
+
+    @Test
+    void rehashPassword_storesNewHash() {
+        User u = User.newUser("user@example.com", "OLD", "D", "A");
+        when(hashing.encode("Password123!")).thenReturn("NEW");
+        when(users.updatePasswordHash(u.getId(), "OLD", "NEW")).thenReturn(1);
+
+        service.rehashPassword(u, "Password123!");
+
+        assertThat(u.getPasswordHash()).isEqualTo("NEW");
         verify(users, never()).save(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void rehashPassword_whenPoolSaturated_keepsOldHash() {
+        User u = User.newUser("user@example.com", "OLD", "D", "A");
+        when(hashing.encode(any())).thenThrow(new TooManyRequestsException("busy", 1));
+
+        service.rehashPassword(u, "Password123!");
+
+        assertThat(u.getPasswordHash()).isEqualTo("OLD");
+        verify(users, never()).updatePasswordHash(any(), any(), any());
+    }
+}
@@ -8,6 +8,7 @@ import se.moln.ecommerceintegration.model.User;
 import se.moln.ecommerceintegration.repository.UserRepository;
 
 import java.util.Optional;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -21,18 +22,18 @@ class UserServiceUpdateSettingsTest {
     @BeforeEach
     void setup() {
         users = Mockito.mock(UserRepository.class);
-        // PasswordEncoder not used in updateSettings path; pass a dummy mock
-        var encoder = Mockito.mock(org.springframework.security.crypto.password.PasswordEncoder.class);
-        service = new UserService(users, encoder);
+        // password hashing not used in updateSettings path; pass a dummy mock
+        var encoder = Mockito.mock(PasswordHashingService.class);
+        service = new UserService(users, encoder, Mockito.mock(EmailAvailabilityService.class), Mockito.mock(UserSearchService.class));
     }
 
     @Test
     void updateSettings_updatesFirstAndLastName_whenProvided() {
         User u = User.newUser("user@example.com", "H", "OldF", "OldL");
-        when(users.findByEmail("user@example.com")).thenReturn(Optional.of(u));
+        when(users.findById(u.getId())).thenReturn(Optional.of(u));
         when(users.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
 
-        User res = service.updateSettings("user@example.com", "NewF", "NewL");
+        User res = service.updateSettings(u.getId(), "NewF", "NewL");
 
         ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
         verify(users).save(captor.capture());
@@ -46,17 +47,18 @@ class UserServiceUpdateSettingsTest {
     @Test
     void updateSettings_nulls_doNotChangeFields() {
         User u = User.newUser("user@example.com", "H", "OldF", "OldL");
-        when(users.findByEmail("user@example.com")).thenReturn(Optional.of(u));
+        when(users.findById(u.getId())).thenReturn(Optional.of(u));
         when(users.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
 
-        User res = service.updateSettings("user@example.com", null, null);
+        User res = service.updateSettings(u.getId(), null, null);
         assertThat(res.getFirstName()).isEqualTo("OldF");
         assertThat(res.getLastName()).isEqualTo("OldL");
     }
 
     @Test
     void updateSettings_userNotFound_throws() {
-        when(users.findByEmail("missing@example.com")).thenReturn(Optional.empty());
-        assertThrows(IllegalStateException.class, () -> service.updateSettings("missing@example.com", "A", "B"));
+        UUID missing = UUID.randomUUID();
+        when(users.findById(missing)).thenReturn(Optional.empty());
+        assertThrows(IllegalStateException.class, () -> service.updateSettings(missing, "A", "B"));
     }
 }
@@ -0,0 +1,41 @@
+package se.moln.ecommerceintegration.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTest {
+
+    @Test
+    void neverReportsFalseNegatives() {
+        BloomFilter f = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) f.put("user" + i + "@example.com");
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(f.mightContain("user" + i + "@example.com")).isTrue();
+        }
+        assertThat(f.insertions()).isEqualTo(10_000);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTarget() {
+        BloomFilter f = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) f.put("user" + i + "@example.com");
+
+        int fp = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (f.mightContain("other" + i + "@example.org")) fp++;
+        }
+        assertThat(fp / 100_000.0).isLessThan(0.02);
+        assertThat(f.estimatedFpp()).isBetween(0.002, 0.02);
+    }
+
+    @Test
+    void sizesFromExpectedInsertionsAndFpp() {
+        BloomFilter f = new BloomFilter(1_000_000, 0.01);
+        // ~9.59 bits and ~7 hash functions per element at 1%
+        assertThat(f.bitSize()).isBetween(9_500_000L, 9_700_000L);
+        assertThat(f.hashFunctions()).isEqualTo(7);
+        assertThat(f.mightContain("anyone@example.com")).isFalse();
+    }
+}
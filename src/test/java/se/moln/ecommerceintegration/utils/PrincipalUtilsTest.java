@@ -2,6 +2,10 @@ package se.moln.ecommerceintegration.utils;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.security.core.userdetails.User;
+import se.moln.ecommerceintegration.model.Role;
+import se.moln.ecommerceintegration.security.AuthenticatedUser;
+
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -14,6 +18,12 @@ class PrincipalUtilsTest {
         assertThat(PrincipalUtils.extractEmail(ud)).isEqualTo("user@example.com");
     }
 
+    @Test
+    void extractEmail_fromAuthenticatedUser() {
+        var u = new AuthenticatedUser(UUID.randomUUID(), "typed@example.com", Role.USER);
+        assertThat(PrincipalUtils.extractEmail(u)).isEqualTo("typed@example.com");
+    }
+
     @Test
     void extractEmail_fromString() {
         assertThat(PrincipalUtils.extractEmail("someone@example.com")).isEqualTo("someone@example.com");
@@ -0,0 +1,43 @@
+package se.moln.ecommerceintegration.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestUtilsTest {
+
+    private static MockHttpServletRequest request(String xff) {
+        MockHttpServletRequest req = new MockHttpServletRequest();
+        req.setRemoteAddr("10.0.0.2");
+        if (xff != null) req.addHeader("X-Forwarded-For", xff);
+        return req;
+    }
+
+    @Test
+    void clientIp_takesTheFirstHop() {
+        assertThat(RequestUtils.clientIp(request(" 203.0.113.10 , 70.41.3.18"))).isEqualTo("203.0.113.10");
+        assertThat(RequestUtils.clientIp(request(null))).isEqualTo("10.0.0.2");
+    }
+
+    @Test
+    void trustedClientIp_ignoresHopsTheClientPrepended() {
+        // the client forged "1.2.3.4"; our one proxy appended the address it saw
+        MockHttpServletRequest req = request("1.2.3.4, 203.0.113.10");
+
+        assertThat(RequestUtils.clientIp(req, 1)).isEqualTo("203.0.113.10");
+        assertThat(RequestUtils.clientIp(req, 0)).isEqualTo("10.0.0.2");
+    }
+
+    @Test
+    void trustedClientIp_countsProxiesFromTheRight() {
+        MockHttpServletRequest req = request("1.2.3.4, 203.0.113.10 ,70.41.3.18");
+
+        assertThat(RequestUtils.clientIp(req, 2)).isEqualTo("203.0.113.10");
+        assertThat(RequestUtils.clientIp(req, 3)).isEqualTo("1.2.3.4");
+        assertThat(RequestUtils.clientIp(req, 5)).isEqualTo("1.2.3.4"); // fewer hops than proxies
+        assertThat(RequestUtils.clientIp(request("203.0.113.10"), 1)).isEqualTo("203.0.113.10");
+        assertThat(RequestUtils.clientIp(request(null), 1)).isEqualTo("10.0.0.2");
+        assertThat(RequestUtils.clientIp(request("1.2.3.4, "), 1)).isEqualTo("10.0.0.2");
+    }
+}
@@ -0,0 +1,131 @@
+package se.moln.ecommerceintegration.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrigramIndexTest {
+
+    private final UUID anna = UUID.randomUUID();
+    private final UUID johan = UUID.randomUUID();
+    private final UUID annika = UUID.randomUUID();
+
+    private TrigramIndex seeded() {
+        TrigramIndex idx = new TrigramIndex(3);
+        idx.put(anna, "anna.svensson@moln.se", "Anna", "Svensson");
+        idx.put(johan, "johan@example.com", "Johan", "Annersten");
+        idx.put(annika, "annika@moln.se", "Annika", "Berg");
+        return idx;
+    }
+
+    @Test
+    void shortTokens_matchWordPrefixesOnly() {
+        TrigramIndex idx = seeded();
+        assertThat(idx.search("an", 0, 10).ids()).containsExactlyInAnyOrder(anna, johan, annika);
+        // "ha" occurs inside "johan" but starts no word
+        assertThat(idx.search("ha", 0, 10).total()).isZero();
+        assertThat(idx.search("j", 0, 10).ids()).containsExactly(johan);
+    }
+
+    @Test
+    void longTokens_matchSubstrings_andAllTokensMustMatch() {
+        TrigramIndex idx = seeded();
+        assertThat(idx.search("ohan", 0, 10).ids()).containsExactly(johan);
+        assertThat(idx.search("moln anni", 0, 10).ids()).containsExactly(annika);
+        assertThat(idx.search("MOLN.SE", 0, 10).ids()).containsExactlyInAnyOrder(anna, annika);
+    }
+
+    @Test
+    void trigramHitsThatAreNotContiguous_areFiltered() {
+        TrigramIndex idx = new TrigramIndex(1);
+        UUID id = UUID.randomUUID();
+        idx.put(id, "abcx bcd");
+        // abc and bcd are both present, abcd is not
+        assertThat(idx.search("abcd", 0, 10).total()).isZero();
+        assertThat(idx.search("bcd", 0, 10).ids()).containsExactly(id);
+    }
+
+    @Test
+    void ranking_exactEmailThenFieldPrefixThenWordPrefixThenSubstring() {
+        TrigramIndex idx = seeded();
+        UUID exact = UUID.randomUUID();
+        UUID wordPrefix = UUID.randomUUID();
+        UUID substring = UUID.randomUUID();
+        idx.put(substring, "bosvenssonx@e.com", "B", "C");
+        idx.put(wordPrefix, "kund@svensson.se", "K", "L");
+        idx.put(exact, "svensson", "S", "T");
+
+        assertThat(idx.search("svensson", 0, 10).ids()).containsExactly(exact, anna, wordPrefix, substring);
+    }
+
+    @Test
+    void paging_slicesRankedHits_andReportsTotal() {
+        TrigramIndex idx = new TrigramIndex(1);
+        for (int i = 0; i < 25; i++) idx.put(UUID.randomUUID(), "user" + i + "@e.com");
+
+        TrigramIndex.Result first = idx.search("user", 0, 10);
+        TrigramIndex.Result last = idx.search("user", 20, 10);
+        assertThat(first.total()).isEqualTo(25);
+        assertThat(first.ids()).hasSize(10);
+        assertThat(last.ids()).hasSize(5).doesNotContainAnyElementsOf(first.ids());
+        assertThat(idx.search("user", 30, 10).ids()).isEmpty();
+    }
+
+    @Test
+    void updateAndRemove_replaceOldText() {
+        TrigramIndex idx = seeded();
+        idx.put(johan, "johan@example.com", "Johan", "Lind");
+        assertThat(idx.search("annersten", 0, 10).total()).isZero();
+        assertThat(idx.search("lind", 0, 10).ids()).containsExactly(johan);
+
+        assertThat(idx.remove(anna)).isTrue();
+        assertThat(idx.remove(anna)).isFalse();
+        assertThat(idx.search("svensson", 0, 10).total()).isZero();
+        assertThat(idx.size()).isEqualTo(2);
+    }
+
+    @Test
+    void manyUpdates_compact_withoutLosingLiveDocuments() {
+        TrigramIndex idx = new TrigramIndex(1);
+        UUID[] ids = new UUID[2000];
+        for (int i = 0; i < ids.length; i++) idx.put(ids[i] = UUID.randomUUID(), "old" + i + "@e.com");
+        for (int i = 0; i < ids.length; i++) idx.put(ids[i], "new" + i + "@e.com");
+
+        assertThat(idx.size()).isEqualTo(2000);
+        assertThat(idx.search("old", 0, 10).total()).isZero();
+        assertThat(idx.search("new", 0, 10).total()).isEqualTo(2000);
+        assertThat(idx.search("new1999@e.com", 0, 10).ids()).containsExactly(ids[1999]);
+    }
+
+    @Test
+    void writesDuringACompaction_areKeptWhenItSwapsIn() {
+        List<Runnable> compactions = new ArrayList<>();
+        TrigramIndex idx = new TrigramIndex(1, compactions::add);
+        UUID[] ids = new UUID[2000];
+        for (int i = 0; i < ids.length; i++) idx.put(ids[i] = UUID.randomUUID(), "old" + i + "@e.com");
+        for (int i = 0; compactions.isEmpty(); i++) idx.put(ids[i], "new" + i + "@e.com");
+        assertThat(compactions).hasSize(1);
+
+        // the compaction has not run yet: writes and searches proceed, and no second one is queued
+        idx.put(ids[0], "renamed@e.com");
+        idx.remove(ids[1]);
+        UUID added = UUID.randomUUID();
+        idx.put(added, "added@e.com");
+        for (int i = 2; i < ids.length; i++) idx.put(ids[i], "new" + i + "@e.com");
+        assertThat(compactions).hasSize(1);
+
+        compactions.get(0).run();
+        idx.remove(ids[2]);  // after the swap
+
+        assertThat(idx.size()).isEqualTo(1999);
+        assertThat(idx.search("old", 0, 10).total()).isZero();
+        assertThat(idx.search("new", 0, 10).total()).isEqualTo(1997);
+        assertThat(idx.search("renamed", 0, 10).ids()).containsExactly(ids[0]);
+        assertThat(idx.search("added", 0, 10).ids()).containsExactly(added);
+        assertThat(idx.search("new1@e.com", 0, 10).total()).isZero();
+    }
+}